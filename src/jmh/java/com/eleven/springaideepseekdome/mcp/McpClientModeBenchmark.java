@@ -0,0 +1,170 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import com.eleven.springaideepseekdome.tools.execution.ParallelToolCallingManager;
+import com.eleven.springaideepseekdome.tools.execution.ReactiveToolCallback;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.StaticToolCallbackResolver;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MCP 同步/异步客户端模式下的工具执行基准
+ * <p>
+ * 两种模式使用相同的并发度与服务端延迟模型：32 个会话线程同时发起工具调用轮次，每轮 3 个 MCP 工具调用，
+ * 服务端响应由同一个调度线程在 20 ms 后完成：
+ * - sync：SyncMcpToolCallback 的行为，工具执行线程阻塞等待服务端响应，受工具执行线程池大小限制
+ * - async：{@link ReactiveMcpToolCallback} 的行为，订阅服务端响应，不占用工具执行线程
+ * <p>
+ * 吞吐量为每秒完成的工具调用轮次；结束时打印峰值线程数。该基准只衡量工具执行线程池的占用差异：
+ * 线程池足够大（toolThreads=96，即 32 × 3）时两种模式吞吐量应基本一致；不包含网络传输与 MCP 协议编解码的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(32)
+@Fork(1)
+public class McpClientModeBenchmark {
+
+    private static final int TOOL_CALLS = 3;
+    private static final long SERVER_LATENCY_MILLIS = 20;
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    @Param({"8", "96"})
+    public int toolThreads;
+
+    private ScheduledExecutorService server;
+
+    private ParallelToolCallingManager manager;
+    private Prompt prompt;
+    private ChatResponse response;
+    private int baselineThreads;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        StaticToolCallbackResolver resolver = new StaticToolCallbackResolver(List.of());
+        DefaultToolExecutionExceptionProcessor processor = DefaultToolExecutionExceptionProcessor.builder().build();
+        DefaultToolCallingManager delegate = DefaultToolCallingManager.builder()
+                .toolCallbackResolver(resolver)
+                .toolExecutionExceptionProcessor(processor)
+                .build();
+        manager = new ParallelToolCallingManager(delegate, resolver, processor, ObservationRegistry.NOOP, null,
+                toolThreads, 64, Duration.ofSeconds(30), Map.of());
+
+        List<ToolCallback> callbacks = new ArrayList<>();
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        for (int i = 0; i < TOOL_CALLS; i++) {
+            String name = "mcp_tool_" + i;
+            callbacks.add("async".equals(mode) ? asyncTool(name, server) : syncTool(name, server));
+            toolCalls.add(new AssistantMessage.ToolCall("call_" + i, "function", name, "{\"city\":\"成都\"}"));
+        }
+        prompt = new Prompt(List.of(new UserMessage("查询天气")),
+                ToolCallingChatOptions.builder().toolCallbacks(callbacks).build());
+        response = new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), toolCalls))));
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        baselineThreads = threads.getThreadCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.out.printf("%n[%s, toolThreads=%d] 峰值线程数 %d（基准开始时 %d）%n",
+                mode, toolThreads, threads.getPeakThreadCount(), baselineThreads);
+        manager.destroy();
+        server.shutdownNow();
+    }
+
+    @Benchmark
+    public ToolExecutionResult toolTurn() {
+        return manager.executeToolCalls(prompt, response);
+    }
+
+    // 模拟 MCP 服务端：固定延迟后完成响应，两种模式共用
+    private static CompletableFuture<String> respond(ScheduledExecutorService server) {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        server.schedule(() -> response.complete("[{\"type\":\"text\",\"text\":\"晴\"}]"),
+                SERVER_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    private static ToolCallback syncTool(String name, ScheduledExecutorService server) {
+        ToolDefinition definition = definition(name);
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return respond(server).join();
+            }
+        };
+    }
+
+    private static ToolCallback asyncTool(String name, ScheduledExecutorService server) {
+        ToolDefinition definition = definition(name);
+        return new ReactiveToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public Mono<String> callAsync(String toolInput, ToolContext toolContext) {
+                return Mono.fromFuture(() -> respond(server));
+            }
+        };
+    }
+
+    private static ToolDefinition definition(String name) {
+        return DefaultToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+    }
+}
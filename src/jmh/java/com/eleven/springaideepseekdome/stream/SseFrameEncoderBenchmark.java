@@ -0,0 +1,105 @@
+package com.eleven.springaideepseekdome.stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 流式接口 SSE 帧编码基准（每次处理一条 500 个 token 增量的完整回复）
+ * <p>
+ * - perTokenMap：原实现，逐 token 构建 Map、两次查询聊天记忆并拼接日志字符串（作为对照）
+ * - encoder：当前编码器，按 {@code maxBytes} 合并增量（0 表示不合并）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseFrameEncoderBenchmark {
+
+    private static final String SESSION_ID = "session_1718000000000";
+    private static final int TOKENS = 500;
+
+    @Param({"0", "64"})
+    public int maxBytes;
+
+    private ChatMemory chatMemory;
+    private List<ChatResponse> chunks;
+    private SseFrameEncoder encoder;
+
+    @Setup
+    public void setup() {
+        chatMemory = MessageWindowChatMemory.builder().maxMessages(20).build();
+        List<Message> history = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            history.add(new UserMessage("查询课节表中 status 为 2 的课程数"));
+            history.add(new AssistantMessage("共有 42 门课程满足条件"));
+        }
+        chatMemory.add(SESSION_ID, history);
+
+        // 典型的单 token 增量
+        chunks = new ArrayList<>(TOKENS);
+        for (int i = 0; i < TOKENS; i++) {
+            chunks.add(new ChatResponse(List.of(new Generation(new AssistantMessage(i % 2 == 0 ? "课程" : " id")))));
+        }
+        // 合并间隔足够长，只按大小触发，避免计时器影响结果
+        encoder = new SseFrameEncoder(maxBytes == 0 ? Duration.ZERO : Duration.ofSeconds(10), maxBytes);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> perTokenMap() {
+        List<Map<String, Object>> frames = new ArrayList<>(TOKENS);
+        for (ChatResponse chunk : chunks) {
+            Map<String, Object> responseMap = Map.of(
+                    "session", SESSION_ID,
+                    "round", chatMemory.get(SESSION_ID) != null ?
+                            chatMemory.get(SESSION_ID).size() : 0,
+                    "content", chunk.getResult().getOutput().getText(),
+                    "tools", Optional.ofNullable(chunk.getResult().getOutput().getToolCalls())
+                            .orElse(Collections.emptyList())
+                            .stream().map(Object::toString).toList()
+            );
+            String line = responseMap.entrySet().stream()
+                    .map(entry -> entry.getKey() + "=" + entry.getValue())
+                    .collect(Collectors.joining(", ", "{", "}"));
+            if (line.isEmpty()) {
+                throw new IllegalStateException();
+            }
+            frames.add(responseMap);
+        }
+        return frames;
+    }
+
+    @Benchmark
+    public List<String> encoder() {
+        return encoder.encode(SESSION_ID, () -> chatMemory.get(SESSION_ID).size(), Flux.fromIterable(chunks))
+                .collectList()
+                .block();
+    }
+}
@@ -0,0 +1,100 @@
+package com.eleven.springaideepseekdome.tools;
+
+import com.eleven.springaideepseekdome.tools.sql.SqlStatementClassifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MysqlTools 纯 CPU 热点基准：SQL 校验、日志 SQL 拼接、样本数据格式化、Markdown 渲染
+ * <p>
+ * 直接调用不依赖实例状态的静态辅助方法与 {@link SqlStatementClassifier}，无需构造带数据库依赖的 MysqlTools
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MysqlToolsBenchmark {
+
+    // 典型的模型生成 SQL：多表 LEFT JOIN + 注释 + 字符串条件
+    private static final String GENERATED_SQL = """
+            /* 统计课程数 */
+            SELECT COUNT(DISTINCT tc.course_id) AS course_count
+            FROM t_course tc
+            LEFT JOIN t_course_lessons tcl ON tcl.course_id = tc.course_id AND tcl.deleted = 0
+            LEFT JOIN t_class c ON c.class_id = tc.class_id AND c.deleted = 0
+            WHERE tc.deleted = 0 -- 软删除
+              AND tc.school_id = '1826210090298900508'
+              AND (tcl.STATUS = 2 OR c.grade = 2020);
+            """;
+
+    private static final String PARAMETERIZED_SQL =
+            "SELECT * FROM t_course WHERE school_id = ? AND grade = ? AND create_time > ? AND status IN (?, ?)";
+
+    private static final Object[] PARAMS = {
+            "1826210090298900508", 2020, new Timestamp(1_700_000_000_000L), 1, 2
+    };
+
+    @Param({"10", "200"})
+    public int rows;
+
+    private List<Map<String, Object>> result;
+
+    @Setup
+    public void setup() {
+        result = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", 1_000_000L + i);
+            row.put("course_id", "C" + (20_000 + i));
+            row.put("course_name", "高一数学第" + i + "课时");
+            row.put("school_id", "1826210090298900508");
+            row.put("grade", 2020);
+            row.put("status", i % 3);
+            row.put("price", new BigDecimal("199.00"));
+            row.put("teacher_name", i % 7 == 0 ? null : "张老师");
+            row.put("create_time", new Timestamp(1_700_000_000_000L + i * 60_000L));
+            row.put("deleted", 0);
+            result.add(row);
+        }
+    }
+
+    @Benchmark
+    public boolean validateQueryOnly() {
+        SqlStatementClassifier.validateReadOnly(GENERATED_SQL);
+        return true;
+    }
+
+    @Benchmark
+    public String buildFullSql() {
+        return MysqlTools.buildFullSql(PARAMETERIZED_SQL, PARAMS);
+    }
+
+    @Benchmark
+    public String formatSampleData() {
+        return MysqlTools.formatSampleData(result, Math.min(5, result.size()));
+    }
+
+    @Benchmark
+    public String toMarkdownTable() {
+        return MysqlTools.renderMarkdownTable(result);
+    }
+}
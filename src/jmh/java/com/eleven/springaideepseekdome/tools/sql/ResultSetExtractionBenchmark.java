@@ -0,0 +1,95 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResultSet 提取基准（H2 内存库模拟 MySQL）
+ * <p>
+ * - mapPerRow：原实现的逐行 LinkedHashMap 物化（作为对照）
+ * - columnarJson：当前有界列式 JSON 提取
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSetExtractionBenchmark {
+
+    private static final String QUERY = "SELECT * FROM t_course ORDER BY id LIMIT ?";
+
+    @Param({"10", "200", "5000"})
+    public int rows;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        Connection connection = h2.getConnection();
+        dataSource = new SingleConnectionDataSource(connection, true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("DROP TABLE IF EXISTS t_course");
+        jdbcTemplate.execute("""
+                CREATE TABLE t_course (
+                    id BIGINT PRIMARY KEY,
+                    course_id VARCHAR(32),
+                    course_name VARCHAR(128),
+                    school_id VARCHAR(32),
+                    grade INT,
+                    status INT,
+                    price DECIMAL(10, 2),
+                    teacher_name VARCHAR(64),
+                    create_time TIMESTAMP,
+                    deleted TINYINT
+                )
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO t_course
+                SELECT X, CONCAT('C', X), CONCAT('高一数学第', X, '课时'), '1826210090298900508',
+                       2020, MOD(X, 3), 199.00, CASE WHEN MOD(X, 7) = 0 THEN NULL ELSE '张老师' END,
+                       TIMESTAMP '2024-01-01 00:00:00', 0
+                FROM SYSTEM_RANGE(1, 5000)
+                """);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS t_course");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> mapPerRow() {
+        return jdbcTemplate.query(QUERY, new ColumnMapRowMapper(), rows);
+    }
+
+    @Benchmark
+    public QueryResult columnarJson() {
+        return jdbcTemplate.query(QUERY, new BoundedResultSetExtractor(Integer.MAX_VALUE, Long.MAX_VALUE), rows);
+    }
+}
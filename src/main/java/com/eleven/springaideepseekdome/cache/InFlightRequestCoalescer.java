@@ -0,0 +1,165 @@
+package com.eleven.springaideepseekdome.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 相同无状态请求的合并（single-flight）
+ * <p>
+ * 同一作用域内问题文本完全相同的请求同时进行时只调用一次模型（不做归一化，大小写、空白与标点的差异都视为不同问题）：
+ * - 同步：先到的请求调用模型，期间到达的相同请求等待并共享同一结果（包括异常）
+ * - 流式：上游只订阅一次，后加入的订阅者先收到已生成的内容，再接收后续增量；
+ *   所有订阅者都取消时才取消上游调用
+ * <p>
+ * 调用完成后立即移除，不做缓存（缓存由 {@link PromptResponseCache} 负责）；
+ * 只适用于不依赖会话历史、不调用工具的请求，作用域需区分接口、模型、模型选项与提示词配置（见 {@link ResponseScopes}），由调用方判断
+ */
+@Slf4j
+@Component
+public class InFlightRequestCoalescer implements MeterBinder {
+
+    private record Key(String scope, String question) {
+    }
+
+    /**
+     * 同步调用结果
+     *
+     * @param answer 回答内容
+     * @param shared 是否共享了其他请求的调用结果（为 true 时调用方需自行补充聊天记忆）
+     */
+    public record Result(String answer, boolean shared) {
+    }
+
+    private final boolean enabled;
+    private final Map<Key, CompletableFuture<String>> calls = new ConcurrentHashMap<>();
+    private final Map<Key, Flux<?>> streams = new ConcurrentHashMap<>();
+
+    private final LongAdder callLeaders = new LongAdder();
+    private final LongAdder callJoined = new LongAdder();
+    private final LongAdder streamLeaders = new LongAdder();
+    private final LongAdder streamJoined = new LongAdder();
+
+    public InFlightRequestCoalescer(@Value("${ai.coalesce.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 同步调用：相同请求进行中时等待并共享其结果
+     *
+     * @param scope    作用域（{@link ResponseScopes}）
+     * @param question 用户问题
+     * @param caller   实际的模型调用
+     */
+    public Result call(String scope, String question, Supplier<String> caller) {
+        if (!enabled || question == null) {
+            return new Result(caller.get(), false);
+        }
+        Key key = new Key(scope, question);
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = calls.putIfAbsent(key, created);
+        if (inFlight != null) {
+            callJoined.increment();
+            log.debug("合并相同请求（作用域 {}）", scope);
+            return new Result(await(inFlight), true);
+        }
+
+        callLeaders.increment();
+        try {
+            String answer = caller.get();
+            created.complete(answer);
+            return new Result(answer, false);
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, created);
+        }
+    }
+
+    /**
+     * 流式调用：相同请求进行中时加入同一上游，先重放已生成的内容再接收后续增量
+     *
+     * @param scope    作用域（{@link ResponseScopes}）
+     * @param question 用户问题
+     * @param caller   实际的模型流式调用（延迟到首个订阅时执行）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Flux<T> stream(String scope, String question, Supplier<Flux<T>> caller) {
+        if (!enabled || question == null) {
+            return Flux.defer(caller);
+        }
+        Key key = new Key(scope, question);
+        return Flux.defer(() -> {
+            boolean[] created = new boolean[1];
+            Flux<T> shared = (Flux<T>) streams.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return share(k, caller);
+            });
+            if (created[0]) {
+                streamLeaders.increment();
+            } else {
+                streamJoined.increment();
+                log.debug("合并相同流式请求（作用域 {}）", scope);
+            }
+            return shared;
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ai.coalesce.requests", callLeaders, LongAdder::sum)
+                .tags("mode", "call", "result", "leader")
+                .description("请求合并次数（leader 为实际调用模型，joined 为共享结果）")
+                .register(registry);
+        FunctionCounter.builder("ai.coalesce.requests", callJoined, LongAdder::sum)
+                .tags("mode", "call", "result", "joined")
+                .description("请求合并次数（leader 为实际调用模型，joined 为共享结果）")
+                .register(registry);
+        FunctionCounter.builder("ai.coalesce.requests", streamLeaders, LongAdder::sum)
+                .tags("mode", "stream", "result", "leader")
+                .description("请求合并次数（leader 为实际调用模型，joined 为共享结果）")
+                .register(registry);
+        FunctionCounter.builder("ai.coalesce.requests", streamJoined, LongAdder::sum)
+                .tags("mode", "stream", "result", "joined")
+                .description("请求合并次数（leader 为实际调用模型，joined 为共享结果）")
+                .register(registry);
+    }
+
+    // 上游结束（完成、失败或全部订阅者取消）时移除，之后的相同请求重新调用模型
+    private <T> Flux<T> share(Key key, Supplier<Flux<T>> caller) {
+        AtomicReference<Flux<T>> self = new AtomicReference<>();
+        Flux<T> shared = Flux.defer(caller)
+                .doFinally(signal -> streams.remove(key, self.get()))
+                .replay()
+                .refCount(1);
+        self.set(shared);
+        return shared;
+    }
+
+    private static String await(CompletableFuture<String> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.eleven.springaideepseekdome.cache;
+
+import java.util.Arrays;
+
+/**
+ * MinHash 签名（基于字符 2-gram 分片，适合中文短句且无需分词与向量服务）
+ * <p>
+ * 两个签名相同位置取值相等的比例是两段文本分片集合 Jaccard 相似度的无偏估计
+ */
+public final class MinHashSignature {
+
+    public static final int SIZE = 64;
+    public static final int SHINGLE = 2;
+
+    private static final long[] SEEDS = new long[SIZE];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < SIZE; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private final long[] values;
+    private final int shingles;
+
+    private MinHashSignature(long[] values, int shingles) {
+        this.values = values;
+        this.shingles = shingles;
+    }
+
+    /**
+     * 计算已归一化文本的签名
+     */
+    public static MinHashSignature of(String text) {
+        long[] values = new long[SIZE];
+        Arrays.fill(values, Long.MAX_VALUE);
+        int count = Math.max(0, text.length() - SHINGLE + 1);
+        for (int start = 0; start < count; start++) {
+            long h = 1125899906842597L;
+            for (int i = start; i < start + SHINGLE; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            for (int k = 0; k < SIZE; k++) {
+                long v = mix(h ^ SEEDS[k]);
+                if (v < values[k]) {
+                    values[k] = v;
+                }
+            }
+        }
+        return new MinHashSignature(values, count);
+    }
+
+    /**
+     * 估算 Jaccard 相似度
+     */
+    public double similarity(MinHashSignature other) {
+        int equal = 0;
+        for (int k = 0; k < SIZE; k++) {
+            if (values[k] == other.values[k]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIZE;
+    }
+
+    /**
+     * 第 band 段（每段 rows 个取值）的局部敏感哈希键
+     */
+    public long bandKey(int band, int rows) {
+        long h = band;
+        for (int k = band * rows; k < (band + 1) * rows; k++) {
+            h = mix(h * 31 + values[k]);
+        }
+        return h;
+    }
+
+    /**
+     * 文本分片数（过短的文本不参与近似匹配）
+     */
+    public int shingles() {
+        return shingles;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,311 @@
+package com.eleven.springaideepseekdome.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 无状态对话的提示词响应缓存
+ * <p>
+ * - 精确匹配：问题归一化（NFKC、小写、合并空白、去除句末标点）后作为键
+ * - 近似匹配（默认关闭，{@code ai.prompt-cache.near-match.enabled}）：字符 2-gram 的 MinHash 签名 + LSH 分段索引查找候选，
+ *   估算相似度不低于阈值，且数字序列与否定词序列都完全一致时命中
+ *   （避免"status 为 2"与"status 为 3"、"有哪些课程"与"没有哪些课程"被视为同一问题）
+ * - 缓存按作用域隔离（{@link ResponseScopes}：接口、模型与模型选项、是否使用预设提示词不同的回答不能互相复用）
+ * - 按总字符数限制内存，按写入时间过期；请求头 {@value #BYPASS_HEADER}: bypass 时跳过缓存
+ * <p>
+ * 只适用于不依赖会话历史、不调用工具的请求，由调用方判断
+ */
+@Slf4j
+@Component
+public class PromptResponseCache implements MeterBinder {
+
+    public static final String BYPASS_HEADER = "X-AI-Cache";
+    public static final String BYPASS_VALUE = "bypass";
+
+    private static final int BANDS = 16;
+    private static final int ROWS = MinHashSignature.SIZE / BANDS;
+    // 分片数少于该值的短问题只做精确匹配
+    private static final int MIN_SHINGLES = 8;
+    // 否定词：近似匹配时要求出现的否定词及其顺序完全一致（按最长优先匹配）
+    private static final String[] NEGATIONS = {"没有", "除了", "排除", "不是", "不", "没", "无", "非", "未", "别", "勿",
+            "without", "except", "never", "not", "no"};
+
+    private record Key(String scope, String question) {
+    }
+
+    private record Entry(String answer, MinHashSignature signature, String guard) {
+    }
+
+    private final boolean enabled;
+    private final boolean nearMatchEnabled;
+    private final double similarityThreshold;
+    private final Cache<Key, Entry> cache;
+    // LSH 分段键 → 缓存键
+    private final Map<Long, Set<Key>> bands = new ConcurrentHashMap<>();
+
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    public PromptResponseCache(@Value("${ai.prompt-cache.enabled:true}") boolean enabled,
+                               @Value("${ai.prompt-cache.near-match.enabled:false}") boolean nearMatchEnabled,
+                               @Value("${ai.prompt-cache.similarity-threshold:0.85}") double similarityThreshold,
+                               @Value("${ai.prompt-cache.ttl:10m}") Duration ttl,
+                               @Value("${ai.prompt-cache.max-weight:16777216}") long maxWeight) {
+        this.enabled = enabled;
+        this.nearMatchEnabled = nearMatchEnabled;
+        this.similarityThreshold = similarityThreshold;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Key key, Entry entry) -> 64 + (key.question().length() + entry.answer().length()) * 2)
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .removalListener((Key key, Entry entry, RemovalCause cause) -> {
+                    if (key != null && entry != null && entry.signature() != null && cause != RemovalCause.REPLACED) {
+                        unindex(key, entry.signature());
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 查询缓存，未命中时调用模型并写入缓存
+     *
+     * @param scope    作用域（{@link ResponseScopes}）
+     * @param question 用户问题
+     * @param bypass   请求头中的缓存控制值
+     * @param caller   实际的模型调用
+     * @return 回答内容
+     */
+    public String getOrCall(String scope, String question, String bypass, Supplier<String> caller) {
+        String cached = lookup(scope, question, bypass);
+        if (cached != null) {
+            return cached;
+        }
+        String answer = caller.get();
+        put(scope, question, answer);
+        return answer;
+    }
+
+    /**
+     * 查询缓存（先精确匹配，开启近似匹配时再近似匹配）
+     *
+     * @param scope    作用域（{@link ResponseScopes}）
+     * @param question 用户问题
+     * @param bypass   请求头中的缓存控制值，为 bypass 时不读缓存
+     * @return 缓存的回答，未命中时返回 null
+     */
+    public String lookup(String scope, String question, String bypass) {
+        if (!enabled || question == null) {
+            return null;
+        }
+        if (BYPASS_VALUE.equalsIgnoreCase(bypass)) {
+            bypassed.increment();
+            return null;
+        }
+        String normalized = normalize(question);
+        Entry exact = cache.getIfPresent(new Key(scope, normalized));
+        if (exact != null) {
+            exactHits.increment();
+            return exact.answer();
+        }
+
+        if (!nearMatchEnabled) {
+            misses.increment();
+            return null;
+        }
+        MinHashSignature signature = MinHashSignature.of(normalized);
+        if (signature.shingles() >= MIN_SHINGLES) {
+            Entry near = findNear(scope, signature, guard(normalized));
+            if (near != null) {
+                nearHits.increment();
+                return near.answer();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入缓存（跳过缓存读取的请求同样写入，用于刷新旧回答）
+     */
+    public void put(String scope, String question, String answer) {
+        if (!enabled || question == null || answer == null || answer.isBlank()) {
+            return;
+        }
+        String normalized = normalize(question);
+        Key key = new Key(scope, normalized);
+        if (!nearMatchEnabled) {
+            cache.put(key, new Entry(answer, null, null));
+            return;
+        }
+        MinHashSignature signature = MinHashSignature.of(normalized);
+        cache.put(key, new Entry(answer, signature, guard(normalized)));
+        if (signature.shingles() >= MIN_SHINGLES) {
+            index(key, signature);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "ai.prompt-cache");
+        FunctionCounter.builder("ai.prompt-cache.lookups", exactHits, LongAdder::sum)
+                .tag("result", "exact")
+                .description("提示词缓存查询次数")
+                .register(registry);
+        FunctionCounter.builder("ai.prompt-cache.lookups", nearHits, LongAdder::sum)
+                .tag("result", "near")
+                .description("提示词缓存查询次数")
+                .register(registry);
+        FunctionCounter.builder("ai.prompt-cache.lookups", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("提示词缓存查询次数")
+                .register(registry);
+        FunctionCounter.builder("ai.prompt-cache.lookups", bypassed, LongAdder::sum)
+                .tag("result", "bypass")
+                .description("提示词缓存查询次数")
+                .register(registry);
+    }
+
+    private Entry findNear(String scope, MinHashSignature signature, String guard) {
+        Entry best = null;
+        double bestSimilarity = similarityThreshold;
+        for (int band = 0; band < BANDS; band++) {
+            Set<Key> candidates = bands.get(signature.bandKey(band, ROWS));
+            if (candidates == null) {
+                continue;
+            }
+            for (Key candidate : candidates) {
+                if (!candidate.scope().equals(scope)) {
+                    continue;
+                }
+                Entry entry = cache.getIfPresent(candidate);
+                if (entry == null || !guard.equals(entry.guard())) {
+                    continue;
+                }
+                double similarity = signature.similarity(entry.signature());
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void index(Key key, MinHashSignature signature) {
+        for (int band = 0; band < BANDS; band++) {
+            bands.computeIfAbsent(signature.bandKey(band, ROWS), k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void unindex(Key key, MinHashSignature signature) {
+        for (int band = 0; band < BANDS; band++) {
+            bands.computeIfPresent(signature.bandKey(band, ROWS), (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    /**
+     * 问题归一化：NFKC（全角转半角）、小写、合并空白、去除首尾空白与句末标点
+     */
+    static String normalize(String question) {
+        String text = Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = !sb.isEmpty();
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            sb.append(c);
+        }
+        int end = sb.length();
+        while (end > 0 && "?？。.!！~～".indexOf(sb.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        sb.setLength(end);
+        return sb.toString();
+    }
+
+    // 提取数字序列（以 / 分隔）与否定词序列（以 | 开头），近似匹配时要求完全一致
+    static String guard(String text) {
+        StringBuilder digits = new StringBuilder();
+        StringBuilder negations = new StringBuilder();
+        boolean inNumber = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (!inNumber && !digits.isEmpty()) {
+                    digits.append('/');
+                }
+                digits.append(c);
+                inNumber = true;
+                continue;
+            }
+            inNumber = false;
+            String negation = negationAt(text, i);
+            if (negation != null) {
+                negations.append('|').append(negation);
+                i += negation.length() - 1;
+            }
+        }
+        return digits.append(negations).toString();
+    }
+
+    // 英文否定词须为完整单词
+    private static String negationAt(String text, int index) {
+        for (String negation : NEGATIONS) {
+            if (!text.startsWith(negation, index)) {
+                continue;
+            }
+            if (isAsciiLetter(negation.charAt(0))) {
+                int end = index + negation.length();
+                boolean wordStart = index == 0 || !isAsciiLetter(text.charAt(index - 1));
+                boolean wordEnd = end == text.length() || !isAsciiLetter(text.charAt(end));
+                if (!wordStart || !wordEnd) {
+                    continue;
+                }
+            }
+            return negation;
+        }
+        return null;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
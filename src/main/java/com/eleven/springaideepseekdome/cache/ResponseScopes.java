@@ -0,0 +1,65 @@
+package com.eleven.springaideepseekdome.cache;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.deepseek.DeepSeekChatModel;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 回答缓存与请求合并的作用域
+ * <p>
+ * 作用域区分接口、实际使用的模型及其默认选项（模型名、温度等）与请求变量（工具类型、是否使用预设提示词），
+ * 只有这些都相同的请求才能共享回答；模型选项在启动时序列化一次
+ */
+@Component
+public class ResponseScopes {
+
+    private final String defaultClientScope;
+    private final String deepSeekScope;
+
+    public ResponseScopes(@Value("${ai.model:deepseek}") String defaultModel,
+                          DeepSeekChatModel deepSeekChatModel,
+                          OpenAiChatModel openAiChatModel) {
+        this.deepSeekScope = modelScope("deepseek", deepSeekChatModel);
+        this.defaultClientScope = switch (defaultModel.toLowerCase()) {
+            case "openai" -> modelScope("openai", openAiChatModel);
+            // 自动路由时回答可能来自任一模型
+            case "auto" -> "auto[" + deepSeekScope + "," + modelScope("openai", openAiChatModel) + "]";
+            default -> deepSeekScope;
+        };
+    }
+
+    /**
+     * 经默认 ChatClient（{@code ai.model}）调用的请求
+     *
+     * @param endpoint 接口路径
+     * @param variants 影响回答的请求变量（工具类型、是否使用预设提示词等）
+     */
+    public String defaultClient(String endpoint, Object... variants) {
+        return scope(endpoint, defaultClientScope, variants);
+    }
+
+    /**
+     * 直接调用 DeepSeek 模型的请求
+     */
+    public String deepSeek(String endpoint, Object... variants) {
+        return scope(endpoint, deepSeekScope, variants);
+    }
+
+    private static String scope(String endpoint, String model, Object... variants) {
+        StringBuilder scope = new StringBuilder(endpoint.length() + model.length() + 32)
+                .append(endpoint).append('|').append(model);
+        for (Object variant : variants) {
+            scope.append('|').append(variant);
+        }
+        return scope.toString();
+    }
+
+    private static String modelScope(String name, ChatModel chatModel) {
+        ChatOptions options = chatModel.getDefaultOptions();
+        return name + (options == null ? "" : ModelOptionsUtils.toJsonString(options));
+    }
+}
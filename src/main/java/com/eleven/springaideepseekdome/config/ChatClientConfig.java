@@ -1,31 +1,73 @@
 package com.eleven.springaideepseekdome.config;
 
+import com.eleven.springaideepseekdome.limit.AdaptiveConcurrencyLimiter;
+import com.eleven.springaideepseekdome.limit.LimitedChatModel;
+import com.eleven.springaideepseekdome.metrics.ModelUsageListener;
+import com.eleven.springaideepseekdome.prompt.PromptAssemblyAdvisor;
+import com.eleven.springaideepseekdome.retry.ModelRetryPolicy;
+import com.eleven.springaideepseekdome.routing.RoutingChatModel;
+import com.eleven.springaideepseekdome.tools.execution.ToolLoopChatModel;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.deepseek.DeepSeekChatModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
 import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
+import java.util.List;
+
 @Configuration
 public class ChatClientConfig {
 
     /**
      * 创建 DeepSeek 模型
+     * <p>
+     * 默认挂载 {@link PromptAssemblyAdvisor}，保证提示词前缀稳定以命中模型上下文缓存；
+     * 工具调用循环由 {@link ToolLoopChatModel} 在模型之外驱动，每轮模型请求单独按 {@link ModelRetryPolicy} 重试
+     * （429、5xx、超时），每次尝试受自适应并发限制
      */
     @Bean
-    public ChatClient deepseekChatClient(DeepSeekChatModel chatModel) {
-        return ChatClient.create(chatModel);
+    public ChatClient deepseekChatClient(DeepSeekChatModel chatModel, PromptAssemblyAdvisor promptAssemblyAdvisor,
+                                         ModelRetryPolicy modelRetryPolicy, ToolCallingManager toolCallingManager,
+                                         ObjectProvider<ModelUsageListener> usageListeners,
+                                         @Qualifier("deepseekLimiter") AdaptiveConcurrencyLimiter deepseekLimiter) {
+        return ChatClient.builder(new ToolLoopChatModel(
+                        modelRetryPolicy.wrap("deepseek", new LimitedChatModel(chatModel, deepseekLimiter)), toolCallingManager,
+                        listeners(usageListeners)))
+                .defaultAdvisors(promptAssemblyAdvisor).build();
     }
 
     /**
      * 创建 OpenAI 模型
      */
     @Bean
-    public ChatClient openAiChatClient(OpenAiChatModel chatModel) {
-        return ChatClient.create(chatModel);
+    public ChatClient openAiChatClient(OpenAiChatModel chatModel, PromptAssemblyAdvisor promptAssemblyAdvisor,
+                                       ModelRetryPolicy modelRetryPolicy, ToolCallingManager toolCallingManager,
+                                       ObjectProvider<ModelUsageListener> usageListeners,
+                                       @Qualifier("openAiLimiter") AdaptiveConcurrencyLimiter openAiLimiter) {
+        return ChatClient.builder(new ToolLoopChatModel(
+                        modelRetryPolicy.wrap("openai", new LimitedChatModel(chatModel, openAiLimiter)), toolCallingManager,
+                        listeners(usageListeners)))
+                .defaultAdvisors(promptAssemblyAdvisor).build();
+    }
+
+    /**
+     * 创建多模型路由（DeepSeek、OpenAI 按延迟/成本选择，带熔断与故障转移）
+     * <p>
+     * 重试包在路由之外：单个模型失败时先立即故障转移，整体失败后再退避重试并重新选择模型；
+     * 工具调用循环在最外层，每轮模型请求单独路由
+     */
+    @Bean
+    public ChatClient routingChatClient(RoutingChatModel chatModel, PromptAssemblyAdvisor promptAssemblyAdvisor,
+                                        ModelRetryPolicy modelRetryPolicy, ToolCallingManager toolCallingManager,
+                                        ObjectProvider<ModelUsageListener> usageListeners) {
+        return ChatClient.builder(new ToolLoopChatModel(modelRetryPolicy.wrap("auto", chatModel), toolCallingManager,
+                        listeners(usageListeners)))
+                .defaultAdvisors(promptAssemblyAdvisor).build();
     }
 
     // 新增配置方法
@@ -34,14 +76,21 @@ public class ChatClientConfig {
     public ChatClient defaultChatClient(
             @Value("${ai.model:deepseek}") String defaultModel,
             @Qualifier("deepseekChatClient") ChatClient deepseekClient,
-            @Qualifier("openAiChatClient") ChatClient openaiClient) {
+            @Qualifier("openAiChatClient") ChatClient openaiClient,
+            @Qualifier("routingChatClient") ChatClient routingClient) {
 
         if ("deepseek".equalsIgnoreCase(defaultModel)) {
             return deepseekClient;
         } else if ("openai".equalsIgnoreCase(defaultModel)) {
             return openaiClient;
+        } else if ("auto".equalsIgnoreCase(defaultModel)) {
+            return routingClient;
         } else {
             throw new IllegalArgumentException("不支持的模型: " + defaultModel);
         }
     }
-}
\ No newline at end of file
+
+    private static List<ModelUsageListener> listeners(ObjectProvider<ModelUsageListener> usageListeners) {
+        return usageListeners.orderedStream().toList();
+    }
+}
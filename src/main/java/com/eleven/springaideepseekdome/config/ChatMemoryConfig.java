@@ -0,0 +1,139 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.limit.AdaptiveConcurrencyLimiter;
+import com.eleven.springaideepseekdome.limit.LimitedChatModel;
+import com.eleven.springaideepseekdome.memory.ChatMemoryArchive;
+import com.eleven.springaideepseekdome.memory.CompactingChatMemory;
+import com.eleven.springaideepseekdome.memory.JdbcChatMemoryArchive;
+import com.eleven.springaideepseekdome.memory.WriteBehindJdbcChatMemoryRepository;
+import com.eleven.springaideepseekdome.retry.ModelRetryPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.deepseek.DeepSeekChatModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * 聊天记忆存储配置
+ * <p>
+ * {@code ai.chat-memory.repository=jdbc} 时使用持久化的写后缓冲 JDBC 存储，
+ * 否则沿用 Spring AI 默认的内存存储（ChatMemory 由自动配置基于该存储创建）
+ * <p>
+ * 配置 {@code ai.chat-memory.jdbc.url} 时使用独立的连接池（建议指向单独的库），不与分析库共用；
+ * 未配置时落在分析库中，表结构快照与 SQL 校验会排除这些内部表（见 {@code SqlStatementClassifier#INTERNAL_TABLES}）
+ * <p>
+ * {@code ai.chat-memory.compaction.enabled=true} 时使用带后台摘要压缩的 ChatMemory
+ */
+@Slf4j
+@Configuration
+public class ChatMemoryConfig {
+
+    /**
+     * 聊天记忆使用的 JDBC 访问对象
+     * <p>
+     * 独立连接池不注册为 DataSource Bean，避免分析库的自动配置与数据源包装器作用到它
+     */
+    public record ChatMemoryJdbc(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 DataSource ownedDataSource) {
+
+        public void close() throws Exception {
+            if (ownedDataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ai.chat-memory.repository", havingValue = "jdbc")
+    public ChatMemoryJdbc chatMemoryJdbc(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${ai.chat-memory.jdbc.url:}") String url,
+            @Value("${ai.chat-memory.jdbc.username:}") String username,
+            @Value("${ai.chat-memory.jdbc.password:}") String password) {
+
+        if (!StringUtils.hasText(url)) {
+            log.warn("聊天记忆表将创建在分析库中，建议通过 ai.chat-memory.jdbc.url 配置独立的库");
+            return new ChatMemoryJdbc(jdbcTemplate, new TransactionTemplate(transactionManager), null);
+        }
+        DataSource dataSource = DataSourceBuilder.create()
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        return new ChatMemoryJdbc(new JdbcTemplate(dataSource),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), dataSource);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ai.chat-memory.repository", havingValue = "jdbc")
+    public WriteBehindJdbcChatMemoryRepository jdbcChatMemoryRepository(
+            ChatMemoryJdbc chatMemoryJdbc,
+            @Value("${ai.chat-memory.jdbc.initialize-schema:true}") boolean initializeSchema,
+            @Value("${ai.chat-memory.jdbc.near-cache-size:1000}") int nearCacheSize,
+            @Value("${ai.chat-memory.jdbc.near-cache-idle:30m}") Duration nearCacheIdle,
+            @Value("${ai.chat-memory.jdbc.flush-interval:1s}") Duration flushInterval) {
+
+        WriteBehindJdbcChatMemoryRepository repository = new WriteBehindJdbcChatMemoryRepository(
+                chatMemoryJdbc.jdbcTemplate(), chatMemoryJdbc.transactionTemplate(), nearCacheSize, nearCacheIdle, flushInterval);
+        if (initializeSchema) {
+            repository.initializeSchema();
+        }
+        return repository;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ai.chat-memory.repository", havingValue = "jdbc")
+    public JdbcChatMemoryArchive jdbcChatMemoryArchive(
+            ChatMemoryJdbc chatMemoryJdbc,
+            @Value("${ai.chat-memory.jdbc.initialize-schema:true}") boolean initializeSchema) {
+
+        JdbcChatMemoryArchive archive = new JdbcChatMemoryArchive(chatMemoryJdbc.jdbcTemplate());
+        if (initializeSchema) {
+            archive.initializeSchema();
+        }
+        return archive;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ai.chat-memory.compaction.enabled", havingValue = "true")
+    public CompactingChatMemory chatMemory(
+            ChatMemoryRepository chatMemoryRepository,
+            DeepSeekChatModel chatModel,
+            ModelRetryPolicy modelRetryPolicy,
+            @Qualifier("deepseekLimiter") AdaptiveConcurrencyLimiter deepseekLimiter,
+            ObjectProvider<ChatMemoryArchive> archiveProvider,
+            @Value("${ai.chat-memory.window-size:20}") int windowSize,
+            @Value("${ai.chat-memory.compaction.token-budget:6000}") int tokenBudget,
+            @Value("${ai.chat-memory.compaction.keep-recent:4}") int keepRecent,
+            @Value("${ai.chat-memory.compaction.max-summary-tokens:512}") int maxSummaryTokens) {
+
+        ChatMemory delegate = MessageWindowChatMemory.builder()
+                .chatMemoryRepository(chatMemoryRepository)
+                .maxMessages(windowSize)
+                .build();
+        // 未配置持久化归档时仅记录日志
+        ChatMemoryArchive archive = archiveProvider.getIfAvailable(() -> (conversationId, messages) ->
+                log.info("会话 {} 的 {} 条历史消息已被摘要替换（未配置归档存储）", conversationId, messages.size()));
+        // 摘要请求只需模型本身：不挂载提示词装配等默认 advisor，不带工具，仍经过重试与并发限制
+        ChatClient summarizer = ChatClient.builder(
+                modelRetryPolicy.wrap("deepseek", new LimitedChatModel(chatModel, deepseekLimiter))).build();
+        return new CompactingChatMemory(delegate, summarizer, archive, tokenBudget, keepRecent, maxSummaryTokens);
+    }
+}
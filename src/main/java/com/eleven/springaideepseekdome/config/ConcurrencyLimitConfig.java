@@ -0,0 +1,57 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.limit.AdaptiveConcurrencyLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 自适应并发限制配置
+ * <p>
+ * - 模型：DeepSeek、OpenAI 各一个限制器（共用 {@code ai.limit.model.*} 配置），作用于所有 ChatClient 与多模型路由
+ * - 数据库：MysqlTools 的查询类工具共用一个限制器（{@code ai.limit.jdbc.*}），命中查询缓存的调用不占用许可
+ */
+@Configuration
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public AdaptiveConcurrencyLimiter deepseekLimiter(@Value("${ai.limit.model.initial-limit:20}") int initialLimit,
+                                                      @Value("${ai.limit.model.min-limit:2}") int minLimit,
+                                                      @Value("${ai.limit.model.max-limit:100}") int maxLimit,
+                                                      @Value("${ai.limit.model.max-queue:50}") int maxQueue,
+                                                      @Value("${ai.limit.model.queue-timeout:5s}") Duration queueTimeout,
+                                                      @Value("${ai.limit.model.tolerance:2.0}") double tolerance,
+                                                      @Value("${ai.limit.model.smoothing:0.2}") double smoothing,
+                                                      @Value("${ai.limit.model.rtt-alpha:0.05}") double rttAlpha) {
+        return new AdaptiveConcurrencyLimiter("model.deepseek", initialLimit, minLimit, maxLimit,
+                maxQueue, queueTimeout, tolerance, smoothing, rttAlpha);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter openAiLimiter(@Value("${ai.limit.model.initial-limit:20}") int initialLimit,
+                                                    @Value("${ai.limit.model.min-limit:2}") int minLimit,
+                                                    @Value("${ai.limit.model.max-limit:100}") int maxLimit,
+                                                    @Value("${ai.limit.model.max-queue:50}") int maxQueue,
+                                                    @Value("${ai.limit.model.queue-timeout:5s}") Duration queueTimeout,
+                                                    @Value("${ai.limit.model.tolerance:2.0}") double tolerance,
+                                                    @Value("${ai.limit.model.smoothing:0.2}") double smoothing,
+                                                    @Value("${ai.limit.model.rtt-alpha:0.05}") double rttAlpha) {
+        return new AdaptiveConcurrencyLimiter("model.openai", initialLimit, minLimit, maxLimit,
+                maxQueue, queueTimeout, tolerance, smoothing, rttAlpha);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter jdbcQueryLimiter(@Value("${ai.limit.jdbc.initial-limit:8}") int initialLimit,
+                                                       @Value("${ai.limit.jdbc.min-limit:1}") int minLimit,
+                                                       @Value("${ai.limit.jdbc.max-limit:10}") int maxLimit,
+                                                       @Value("${ai.limit.jdbc.max-queue:100}") int maxQueue,
+                                                       @Value("${ai.limit.jdbc.queue-timeout:2s}") Duration queueTimeout,
+                                                       @Value("${ai.limit.jdbc.tolerance:2.0}") double tolerance,
+                                                       @Value("${ai.limit.jdbc.smoothing:0.2}") double smoothing,
+                                                       @Value("${ai.limit.jdbc.rtt-alpha:0.05}") double rttAlpha) {
+        return new AdaptiveConcurrencyLimiter("jdbc", initialLimit, minLimit, maxLimit,
+                maxQueue, queueTimeout, tolerance, smoothing, rttAlpha);
+    }
+}
@@ -0,0 +1,49 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.mcp.McpListChangedEvent;
+import com.eleven.springaideepseekdome.mcp.McpToolRegistry;
+import io.modelcontextprotocol.client.McpClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.mcp.customizer.McpAsyncClientCustomizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * 自定义 MCP 异步客户端配置类（{@code spring.ai.mcp.client.type=async} 时生效）
+ * <p>
+ * 与 {@link CustomMcpSyncClientCustomizer} 行为一致：设置请求超时，
+ * 并将服务端推送的工具/资源/提示变更通知以 {@link McpListChangedEvent} 发布，由 {@link McpToolRegistry} 刷新工具快照
+ */
+@Slf4j
+@Component
+public class CustomMcpAsyncClientCustomizer implements McpAsyncClientCustomizer {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration requestTimeout;
+
+    public CustomMcpAsyncClientCustomizer(ApplicationEventPublisher eventPublisher,
+                                          @Value("${ai.mcp.request-timeout:30s}") Duration requestTimeout) {
+        this.eventPublisher = eventPublisher;
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public void customize(String serverConfigurationName, McpClient.AsyncSpec spec) {
+        spec.requestTimeout(requestTimeout);
+
+        // 通知回调运行在客户端的事件线程上，只发布事件，刷新由注册表在后台线程完成
+        spec.toolsChangeConsumer(tools -> publish(serverConfigurationName, McpListChangedEvent.Kind.TOOLS));
+        spec.resourcesChangeConsumer(resources -> publish(serverConfigurationName, McpListChangedEvent.Kind.RESOURCES));
+        spec.promptsChangeConsumer(prompts -> publish(serverConfigurationName, McpListChangedEvent.Kind.PROMPTS));
+
+        spec.loggingConsumer(notification -> Mono.fromRunnable(() -> log.info("MCP日志: {}", notification)));
+    }
+
+    private Mono<Void> publish(String serverConfigurationName, McpListChangedEvent.Kind kind) {
+        return Mono.fromRunnable(() -> eventPublisher.publishEvent(new McpListChangedEvent(serverConfigurationName, kind)));
+    }
+}
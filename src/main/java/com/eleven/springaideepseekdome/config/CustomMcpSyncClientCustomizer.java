@@ -1,8 +1,12 @@
 package com.eleven.springaideepseekdome.config;
 
+import com.eleven.springaideepseekdome.mcp.McpListChangedEvent;
+import com.eleven.springaideepseekdome.mcp.McpToolRegistry;
 import io.modelcontextprotocol.client.McpClient;
 import io.modelcontextprotocol.spec.McpSchema;
 import org.springframework.ai.mcp.customizer.McpSyncClientCustomizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
@@ -11,10 +15,21 @@ import java.util.List;
 /**
  * 自定义 MCP 同步客户端配置类
  * 用于配置同步客户端的各种行为，例如请求超时、文件系统访问、事件处理等。
+ * <p>
+ * 服务端推送的工具/资源/提示变更通知以 {@link McpListChangedEvent} 发布，由 {@link McpToolRegistry} 刷新工具快照
  */
 @Component
 public class CustomMcpSyncClientCustomizer implements McpSyncClientCustomizer {
 
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration requestTimeout;
+
+    public CustomMcpSyncClientCustomizer(ApplicationEventPublisher eventPublisher,
+                                         @Value("${ai.mcp.request-timeout:30s}") Duration requestTimeout) {
+        this.eventPublisher = eventPublisher;
+        this.requestTimeout = requestTimeout;
+    }
+
     /**
      * 定制化方法，用于配置 MCP 同步客户端的行为
      *
@@ -24,8 +39,8 @@ public class CustomMcpSyncClientCustomizer implements McpSyncClientCustomizer {
     @Override
     public void customize(String serverConfigurationName, McpClient.SyncSpec spec) {
 
-        // 设置请求超时时间为30秒
-        spec.requestTimeout(Duration.ofSeconds(30));
+        // 设置请求超时时间（多副本时超时后由连接池转移到其他副本，可适当调小）
+        spec.requestTimeout(requestTimeout);
 
         // 配置客户端可以访问的文件系统根目录（roots）
         // roots 是一个预先定义好的 List<URI> 对象，表示服务器可以访问的目录
@@ -41,17 +56,17 @@ public class CustomMcpSyncClientCustomizer implements McpSyncClientCustomizer {
 
         // 添加工具变更监听器，当服务器可用工具列表发生变化时触发
         spec.toolsChangeConsumer((List<McpSchema.Tool> tools) -> {
-            // 在这里实现工具变更时的处理逻辑
+            eventPublisher.publishEvent(new McpListChangedEvent(serverConfigurationName, McpListChangedEvent.Kind.TOOLS));
         });
 
         // 添加资源变更监听器，当服务器可用资源列表发生变化时触发
         spec.resourcesChangeConsumer((List<McpSchema.Resource> resources) -> {
-            // 在这里实现资源变更时的处理逻辑
+            eventPublisher.publishEvent(new McpListChangedEvent(serverConfigurationName, McpListChangedEvent.Kind.RESOURCES));
         });
 
         // 添加提示变更监听器，当服务器可用提示列表发生变化时触发
         spec.promptsChangeConsumer((List<McpSchema.Prompt> prompts) -> {
-            // 在这里实现提示变更时的处理逻辑
+            eventPublisher.publishEvent(new McpListChangedEvent(serverConfigurationName, McpListChangedEvent.Kind.PROMPTS));
         });
 
         // 添加日志消息处理器，接收服务器发送的结构化日志消息
@@ -0,0 +1,42 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler;
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler.Lane;
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler.LaneSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 请求公平调度配置
+ * <p>
+ * 流式与同步请求分道调度，权重通过 {@code ai.scheduler.weights.<调度键>} 设置
+ */
+@Configuration
+public class FairSchedulingConfig {
+
+    @Bean
+    public FairShareScheduler fairShareScheduler(Environment environment,
+                                                 @Value("${ai.scheduler.sync.capacity:32}") int syncCapacity,
+                                                 @Value("${ai.scheduler.sync.queue-timeout:10s}") Duration syncQueueTimeout,
+                                                 @Value("${ai.scheduler.stream.capacity:64}") int streamCapacity,
+                                                 @Value("${ai.scheduler.stream.queue-timeout:5s}") Duration streamQueueTimeout,
+                                                 @Value("${ai.scheduler.max-in-flight-per-session:2}") int maxInFlightPerSession,
+                                                 @Value("${ai.scheduler.max-queued-per-session:8}") int maxQueuedPerSession,
+                                                 @Value("${ai.scheduler.max-in-flight-per-address:16}") int maxInFlightPerAddress,
+                                                 @Value("${ai.scheduler.max-queued-per-address:64}") int maxQueuedPerAddress) {
+        Map<String, Double> weights = Binder.get(environment)
+                .bind("ai.scheduler.weights", Bindable.mapOf(String.class, Double.class))
+                .orElse(Map.of());
+        return new FairShareScheduler(Map.of(
+                Lane.SYNC, new LaneSettings(syncCapacity, syncQueueTimeout),
+                Lane.STREAM, new LaneSettings(streamCapacity, streamQueueTimeout)),
+                maxInFlightPerSession, maxQueuedPerSession, maxInFlightPerAddress, maxQueuedPerAddress, weights);
+    }
+}
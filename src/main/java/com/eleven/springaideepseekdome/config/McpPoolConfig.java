@@ -0,0 +1,53 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.mcp.McpReplica;
+import com.eleven.springaideepseekdome.mcp.McpReplicaPool;
+import io.modelcontextprotocol.client.McpSyncClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 多副本 MCP 连接池配置
+ * <p>
+ * {@code ai.mcp.pool.enabled=true} 时，{@code spring.ai.mcp.client.sse.connections} 下的所有连接
+ * 视为同一 MCP 服务的副本，工具调用经 {@link McpReplicaPool} 路由。此时建议同时设置：
+ * - {@code spring.ai.mcp.client.initialized=false}：启动时不可用的副本不阻塞应用启动，由健康检查负责初始化
+ * - {@code spring.ai.mcp.client.toolcallback.enabled=false}：不再按连接分别注册工具，避免同一工具以多个名称暴露给模型
+ * <p>
+ * 连接池只基于 {@link McpSyncClient} 构建，池化工具的调用在工具执行线程上阻塞等待副本响应；
+ * 异步客户端模式（{@code spring.ai.mcp.client.type=ASYNC}）下没有同步客户端，连接池为空，
+ * 此时应关闭连接池，工具改由非阻塞的 {@code ReactiveMcpToolCallback} 提供（不具备多副本路由与故障转移）
+ */
+@Slf4j
+@Configuration
+public class McpPoolConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "ai.mcp.pool.enabled", havingValue = "true")
+    public McpReplicaPool mcpReplicaPool(
+            ObjectProvider<List<McpSyncClient>> mcpSyncClients,
+            @Value("${spring.ai.mcp.client.name:spring-ai-mcp-client}") String clientName,
+            @Value("${ai.mcp.pool.ewma-alpha:0.3}") double ewmaAlpha,
+            @Value("${ai.mcp.pool.max-in-flight:16}") int maxInFlight,
+            @Value("${ai.mcp.pool.failure-threshold:3}") int failureThreshold,
+            @Value("${ai.mcp.pool.acquire-timeout:2s}") Duration acquireTimeout,
+            @Value("${ai.mcp.pool.health-interval:10s}") Duration healthInterval,
+            @Value("${ai.mcp.pool.idempotent-tools:}") Set<String> idempotentTools) {
+
+        List<McpReplica> replicas = mcpSyncClients.getIfAvailable(List::of).stream()
+                .map(client -> new McpReplica(client.getClientInfo().name(), client, ewmaAlpha, maxInFlight))
+                .toList();
+        if (replicas.isEmpty()) {
+            log.warn("ai.mcp.pool.enabled=true 但没有可用的 MCP 同步客户端，连接池不提供任何工具（异步客户端模式不支持连接池）");
+        }
+        return new McpReplicaPool(replicas, clientName, failureThreshold, acquireTimeout, healthInterval, idempotentTools);
+    }
+}
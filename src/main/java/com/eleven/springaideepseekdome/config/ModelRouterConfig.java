@@ -0,0 +1,53 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.limit.AdaptiveConcurrencyLimiter;
+import com.eleven.springaideepseekdome.limit.LimitedChatModel;
+import com.eleven.springaideepseekdome.routing.CircuitBreaker;
+import com.eleven.springaideepseekdome.routing.ModelRoute;
+import com.eleven.springaideepseekdome.routing.RoutingChatModel;
+import com.eleven.springaideepseekdome.routing.RoutingPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.deepseek.DeepSeekChatModel;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 多模型路由配置
+ * <p>
+ * {@code ai.model=auto} 时默认 ChatClient 使用该路由模型；各模型与直接使用时共用同一个并发限制器
+ */
+@Slf4j
+@Configuration
+public class ModelRouterConfig {
+
+    @Bean
+    public RoutingChatModel routingChatModel(DeepSeekChatModel deepSeekChatModel,
+                                             OpenAiChatModel openAiChatModel,
+                                             @Qualifier("deepseekLimiter") AdaptiveConcurrencyLimiter deepseekLimiter,
+                                             @Qualifier("openAiLimiter") AdaptiveConcurrencyLimiter openAiLimiter,
+                                             @Value("${ai.model-router.policy:cheapest}") String policy,
+                                             @Value("${ai.model-router.failure-threshold:5}") int failureThreshold,
+                                             @Value("${ai.model-router.open-duration:30s}") Duration openDuration,
+                                             @Value("${ai.model-router.ewma-alpha:0.2}") double alpha,
+                                             @Value("${ai.model-router.degraded-error-rate:0.5}") double degradedErrorRate,
+                                             @Value("${ai.model-router.deepseek.cost:1}") double deepseekCost,
+                                             @Value("${ai.model-router.deepseek.weight:1}") double deepseekWeight,
+                                             @Value("${ai.model-router.openai.cost:4}") double openaiCost,
+                                             @Value("${ai.model-router.openai.weight:1}") double openaiWeight) {
+        long openNanos = openDuration.toNanos();
+        List<ModelRoute> routes = List.of(
+                new ModelRoute("deepseek", new LimitedChatModel(deepSeekChatModel, deepseekLimiter), deepseekCost, deepseekWeight, alpha,
+                        new CircuitBreaker(failureThreshold, openNanos)),
+                new ModelRoute("openai", new LimitedChatModel(openAiChatModel, openAiLimiter), openaiCost, openaiWeight, alpha,
+                        new CircuitBreaker(failureThreshold, openNanos)));
+        RoutingPolicy routingPolicy = RoutingPolicy.parse(policy);
+        log.info("模型路由策略: {}，熔断阈值: {} 次，熔断时长: {}", routingPolicy, failureThreshold, openDuration);
+        return new RoutingChatModel(routes, routingPolicy, degradedErrorRate);
+    }
+}
@@ -0,0 +1,64 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.retry.AiRetryInterceptor;
+import com.eleven.springaideepseekdome.retry.ModelRetryPolicy;
+import com.eleven.springaideepseekdome.retry.RetryBudget;
+import com.eleven.springaideepseekdome.retry.RetryEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.retry.annotation.EnableRetry;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 重试配置
+ * <p>
+ * 模型调用与工具调用共享同一个 {@link RetryEngine}（同一份全局重试预算）；
+ * Spring AI 模型内置的重试（{@code spring.ai.retry.*}）已关闭，避免两层重试叠加
+ */
+@Configuration
+@EnableRetry
+public class RetryConfig {
+
+    @Bean
+    public RetryEngine retryEngine(@Value("${ai.retry.enabled:true}") boolean enabled,
+                                   @Value("${ai.retry.initial-backoff:200ms}") Duration initialBackoff,
+                                   @Value("${ai.retry.max-backoff:5s}") Duration maxBackoff,
+                                   @Value("${ai.retry.multiplier:2.0}") double multiplier,
+                                   @Value("${ai.retry.budget.ratio:0.1}") double budgetRatio,
+                                   @Value("${ai.retry.budget.max-tokens:20}") int budgetMaxTokens) {
+        return new RetryEngine(enabled, initialBackoff, maxBackoff, multiplier, new RetryBudget(budgetRatio, budgetMaxTokens));
+    }
+
+    /**
+     * 模型调用的重试策略，截止时间通过 {@code ai.retry.model.deadlines.<模型名>} 覆盖
+     */
+    @Bean
+    public ModelRetryPolicy modelRetryPolicy(RetryEngine retryEngine,
+                                             Environment environment,
+                                             @Value("${ai.retry.model.max-attempts:3}") int maxAttempts,
+                                             @Value("${ai.retry.model.deadline:60s}") Duration deadline) {
+        Map<String, Duration> deadlines = Binder.get(environment)
+                .bind("ai.retry.model.deadlines", Bindable.mapOf(String.class, Duration.class))
+                .orElse(Map.of());
+        return new ModelRetryPolicy(retryEngine, maxAttempts, deadline, deadlines);
+    }
+
+    /**
+     * {@code MysqlTools} 上 {@code @Retryable(interceptor = "aiRetryInterceptor")} 使用的拦截器
+     */
+    @Bean
+    public AiRetryInterceptor aiRetryInterceptor(RetryEngine retryEngine,
+                                                 Environment environment,
+                                                 @Value("${ai.tools.parallel.timeout:30s}") Duration toolTimeout) {
+        Map<String, Duration> toolTimeouts = Binder.get(environment)
+                .bind("ai.tools.parallel.tool-timeouts", Bindable.mapOf(String.class, Duration.class))
+                .orElse(Map.of());
+        return new AiRetryInterceptor(retryEngine, toolTimeout, toolTimeouts);
+    }
+}
@@ -0,0 +1,29 @@
+package com.eleven.springaideepseekdome.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 响应式链路调度器配置
+ * <p>
+ * 非阻塞接口中仍需执行的阻塞操作（请求准备、聊天记忆读写等）统一放到有界调度器上，
+ * 线程数与排队任务数都有上限，避免阻塞操作占用 Reactor 事件循环或无限制地创建线程
+ * <p>
+ * 虚拟线程模式下的调度器见 {@link VirtualThreadConfig}
+ */
+@Configuration
+public class SchedulerConfig {
+
+    @Bean(destroyMethod = "dispose")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public Scheduler chatBlockingScheduler(
+            @Value("${ai.reactive.blocking.thread-cap:64}") int threadCap,
+            @Value("${ai.reactive.blocking.queued-task-cap:10000}") int queuedTaskCap) {
+        return Schedulers.newBoundedElastic(threadCap, queuedTaskCap, "chat-blocking");
+    }
+}
@@ -0,0 +1,56 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.tools.execution.ParallelToolCallingManager;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.observation.ToolCallingObservationConvention;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 工具调用执行配置
+ * <p>
+ * {@code ai.tools.parallel.enabled=true}（默认）时替换 Spring AI 自动配置的 ToolCallingManager，
+ * 同一轮的多个工具调用并发执行；单个工具的超时通过 {@code ai.tools.parallel.tool-timeouts.<工具名>} 覆盖
+ */
+@Configuration
+public class ToolExecutionConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "ai.tools.parallel.enabled", havingValue = "true", matchIfMissing = true)
+    public ParallelToolCallingManager toolCallingManager(
+            ToolCallbackResolver toolCallbackResolver,
+            ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+            ObjectProvider<ObservationRegistry> observationRegistry,
+            ObjectProvider<ToolCallingObservationConvention> observationConvention,
+            Environment environment,
+            @Value("${ai.tools.parallel.max-threads:8}") int maxThreads,
+            @Value("${ai.tools.parallel.queue-capacity:64}") int queueCapacity,
+            @Value("${ai.tools.parallel.timeout:30s}") Duration timeout) {
+
+        ObservationRegistry registry = observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP);
+        ToolCallingManager delegate = DefaultToolCallingManager.builder()
+                .observationRegistry(registry)
+                .toolCallbackResolver(toolCallbackResolver)
+                .toolExecutionExceptionProcessor(toolExecutionExceptionProcessor)
+                .build();
+        Map<String, Duration> toolTimeouts = Binder.get(environment)
+                .bind("ai.tools.parallel.tool-timeouts", Bindable.mapOf(String.class, Duration.class))
+                .orElse(Map.of());
+        return new ParallelToolCallingManager(delegate, toolCallbackResolver, toolExecutionExceptionProcessor,
+                registry, observationConvention.getIfUnique(() -> null),
+                maxThreads, queueCapacity, timeout, toolTimeouts);
+    }
+}
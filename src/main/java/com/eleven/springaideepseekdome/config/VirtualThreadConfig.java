@@ -0,0 +1,82 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.jdbc.ConcurrencyLimitedDataSource;
+import com.eleven.springaideepseekdome.mcp.McpSyncCallLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * 虚拟线程执行模式配置（{@code spring.threads.virtual.enabled=true} 开启，需 JDK 21+）
+ * <p>
+ * - Tomcat 请求处理由 Spring Boot 切换为虚拟线程，同步接口中的模型调用、工具调用、
+ *   MCP 同步调用与 JDBC 访问都运行在虚拟线程上
+ * - 非阻塞接口的阻塞操作调度器改为每任务一个虚拟线程
+ * - 分析库数据源（Bean 名 {@value #ANALYTICS_DATA_SOURCE}）包装为 {@link ConcurrencyLimitedDataSource}，
+ *   用信号量限制同时访问数据库的调用方数量；其他 DataSource Bean 不包装，各自的连接池自行限流
+ * - MCP 同步工具调用经 {@link McpSyncCallLimiter} 限制并发，同时阻塞在同步客户端内（可能钉住载体线程）的
+ *   调用方不超过 {@code ai.mcp.sync.concurrency.max}（默认为 CPU 核数的一半），保证始终有空闲的载体线程
+ * <p>
+ * 防止钉住载体线程：MySQL 驱动使用 9.x（内部为 ReentrantLock）；项目内可能执行 JDBC 的临界区
+ * 使用 ReentrantLock 而非 synchronized。排查时可加 JVM 参数 {@code -Djdk.tracePinnedThreads=short}
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    // Spring Boot 自动配置的分析库数据源 Bean 名
+    static final String ANALYTICS_DATA_SOURCE = "dataSource";
+
+    public VirtualThreadConfig() {
+        if (Runtime.version().feature() < 21) {
+            log.warn("已配置 spring.threads.virtual.enabled=true，但当前 JDK {} 不支持虚拟线程，将继续使用平台线程",
+                    Runtime.version().feature());
+        }
+    }
+
+    @Bean(destroyMethod = "dispose")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Scheduler chatBlockingScheduler() {
+        return Schedulers.fromExecutor(new VirtualThreadTaskExecutor("chat-blocking-"));
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public McpSyncCallLimiter mcpSyncCallLimiter(Environment environment) {
+        int maxConcurrency = environment.getProperty("ai.mcp.sync.concurrency.max", Integer.class,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        Duration acquireTimeout = environment.getProperty("ai.mcp.sync.concurrency.acquire-timeout", Duration.class, Duration.ofSeconds(5));
+        log.info("虚拟线程模式：MCP 同步调用最大并发数 {}", maxConcurrency);
+        return new McpSyncCallLimiter(maxConcurrency, acquireTimeout);
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public static BeanPostProcessor concurrencyLimitedDataSourcePostProcessor(Environment environment) {
+        int maxConcurrency = environment.getProperty("ai.jdbc.concurrency.max", Integer.class, 10);
+        Duration acquireTimeout = environment.getProperty("ai.jdbc.concurrency.acquire-timeout", Duration.class, Duration.ofSeconds(5));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (ANALYTICS_DATA_SOURCE.equals(beanName) && bean instanceof DataSource dataSource
+                        && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                    log.info("虚拟线程模式：数据源 {} 最大并发访问数 {}", beanName, maxConcurrency);
+                    return new ConcurrencyLimitedDataSource(dataSource, maxConcurrency, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
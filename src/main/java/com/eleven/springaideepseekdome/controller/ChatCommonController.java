@@ -1,31 +1,39 @@
 package com.eleven.springaideepseekdome.controller;
 
+import com.eleven.springaideepseekdome.cache.InFlightRequestCoalescer;
+import com.eleven.springaideepseekdome.cache.ResponseScopes;
+import com.eleven.springaideepseekdome.cache.PromptResponseCache;
 import com.eleven.springaideepseekdome.console.PromptConsole;
 import com.eleven.springaideepseekdome.domain.dto.ChatCommonRequest;
 import com.eleven.springaideepseekdome.domain.dto.ChatReply;
+import com.eleven.springaideepseekdome.mcp.McpToolRegistry;
+import com.eleven.springaideepseekdome.metrics.AiMetrics;
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler;
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler.Lane;
 import com.eleven.springaideepseekdome.tools.DateTimeTools;
+import com.eleven.springaideepseekdome.stream.SseFrameEncoder;
 import com.eleven.springaideepseekdome.tools.MysqlTools;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
-import org.springframework.ai.mcp.SyncMcpToolCallbackProvider;
-import org.springframework.ai.tool.ToolCallback;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import javax.validation.Valid;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -36,12 +44,25 @@ public class ChatCommonController {
     @Autowired
     private ChatMemory chatMemory;
     @Autowired
-    private JdbcTemplate jdbcTemplate;
-
+    private MysqlTools mysqlTools;
+    @Autowired
+    private SseFrameEncoder sseFrameEncoder;
+    @Autowired
+    private PromptResponseCache promptResponseCache;
+    @Autowired
+    private InFlightRequestCoalescer inFlightRequestCoalescer;
+    @Autowired
+    private ResponseScopes responseScopes;
+    @Autowired
+    private FairShareScheduler fairShareScheduler;
     @Autowired
-    private SyncMcpToolCallbackProvider toolCallbackProvider;
+    private AiMetrics aiMetrics;
+    @Autowired
+    @Qualifier("chatBlockingScheduler")
+    private Scheduler chatBlockingScheduler;
 
-    final int MAX_RETRIES = 3; // 最大重试次数
+    @Autowired
+    private McpToolRegistry mcpToolRegistry;
 
     /**
      * 统一同步聊天接口
@@ -53,62 +74,49 @@ public class ChatCommonController {
      *   - usePrompt：是否使用预设提示词
      *
      * 处理流程：
-     * 1. 会话ID处理 → 2. 提示词配置 → 3. 顾问配置 →
-     * 4. 工具配置 → 5. 执行请求 → 6. 返回响应
+     * 1. 会话ID处理 → 2. 提示词缓存查询 → 3. 提示词配置 → 4. 顾问配置 →
+     * 5. 工具配置 → 6. 执行请求 → 7. 返回响应
+     *
+     * 提示词缓存：toolType=NONE 且会话无历史记录时启用，请求头 {@code X-AI-Cache: bypass} 可跳过；
+     * 缓存未命中时，同时进行的相同问题只调用一次模型，共享结果的请求单独写入各自的聊天记忆；
+     * 模型调用按会话公平调度（同步分道），缓存命中的请求不参与调度
      */
     @PostMapping("/ai/chat/sync")
-    public ChatReply unifiedChatSync(@RequestBody @Valid ChatCommonRequest request) {
+    public ChatReply unifiedChatSync(@RequestBody @Valid ChatCommonRequest request,
+                                     @RequestHeader(value = PromptResponseCache.BYPASS_HEADER, required = false) String cacheControl) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         final String sessionId = getOrGenerateSessionId(request.getSession());
 
-        ChatClient.ChatClientRequestSpec chatClientRequestSpec;
-
-        // 添加提示词
-        if (request.isUsePrompt()) {
-            chatClientRequestSpec = chatClient.prompt(PromptConsole.MYSQL_STUDYDB_PROMPT);
-        }else {
-           chatClientRequestSpec = chatClient.prompt();
+        // 不使用工具且没有历史记录时回答只取决于问题本身，可以使用提示词缓存
+        final String cacheScope = responseScopes.defaultClient("/ai/chat/sync", request.getToolType(), request.isUsePrompt());
+        boolean cacheable = request.getToolType() == ChatCommonRequest.ToolType.NONE
+                && chatMemory.get(sessionId).isEmpty();
+        if (cacheable) {
+            String cached = promptResponseCache.lookup(cacheScope, request.getMessage(), cacheControl);
+            if (cached != null) {
+                chatMemory.add(sessionId, List.of(new UserMessage(request.getMessage()), new AssistantMessage(cached)));
+                return new ChatReply(cached, sessionId);
+            }
         }
 
-        // 构建基础请求链
-        chatClientRequestSpec = chatClientRequestSpec.advisors(
-                /**
-                 * 添加日志记录顾问：
-                 * 用于记录聊天请求和响应的详细信息，便于调试和监控
-                 * 实现类：{@code SimpleLoggerAdvisor}
-                 */
-                new SimpleLoggerAdvisor(),
-                /**
-                 * 添加聊天记忆顾问：
-                 * 为聊天会话提供记忆功能，保持对话上下文连续性
-                 *
-                 * 配置说明：
-                 * - {@code chatMemory}：聊天记忆存储实现
-                 * - {@code conversationId}：使用会话ID作为记忆存储的键
-                 *   确保同一会话中的消息保持上下文关联
-                 */
-                MessageChatMemoryAdvisor.builder(chatMemory)
-                        .conversationId(sessionId).build()
-        ).user(request.getMessage());
-
-        // 添加工具
-        switch (request.getToolType()) {
-            case MCP:
-                ToolCallback[] toolCallbacks = toolCallbackProvider.getToolCallbacks();
-                log.info("MCP toolCallbacks: {}", toolCallbacks);
-                chatClientRequestSpec = chatClientRequestSpec.toolCallbacks(toolCallbacks);
-                break;
-            case FUNCTION:
-                chatClientRequestSpec = chatClientRequestSpec.tools(new DateTimeTools(), new MysqlTools(jdbcTemplate));
-                break;
-            case NONE:
-            default:
-                // 无额外工具
-                log.info("无额外工具");
+        if (!cacheable) {
+            // 执行请求
+            ChatResponse chatResponse = fairShareScheduler.call(schedulingKey, Lane.SYNC,
+                    () -> prepareRequest("/ai/chat/sync", request, sessionId).call().chatResponse());
+            return new ChatReply(chatResponse.getResult().getOutput().getText(), sessionId);
         }
 
-        // 执行请求
-        ChatResponse chatResponse = chatClientRequestSpec.call().chatResponse();
-        return new ChatReply(chatResponse.getResult().getOutput().getText(), sessionId);
+        // 相同问题进行中时共享其结果
+        // 只有实际调用模型的请求占用调度容量，等待共享结果的请求不占用
+        InFlightRequestCoalescer.Result result = inFlightRequestCoalescer.call(cacheScope, request.getMessage(),
+                () -> fairShareScheduler.call(schedulingKey, Lane.SYNC,
+                        () -> prepareRequest("/ai/chat/sync", request, sessionId).call().chatResponse().getResult().getOutput().getText()));
+        if (result.shared()) {
+            chatMemory.add(sessionId, List.of(new UserMessage(request.getMessage()), new AssistantMessage(result.answer())));
+        } else {
+            promptResponseCache.put(cacheScope, request.getMessage(), result.answer());
+        }
+        return new ChatReply(result.answer(), sessionId);
     }
 
 
@@ -123,38 +131,116 @@ public class ChatCommonController {
      *   - tools：使用过的工具列表（若有）
      *
      * 特别说明：
-     * 流式响应使用Server-Sent Events(SSE)协议
+     * 流式响应使用Server-Sent Events(SSE)协议，每帧为预序列化的 JSON，
+     * 相邻的细小增量会按 {@code ai.stream.coalesce.*} 配置合并为一帧
      * 媒体类型：{@code MediaType.TEXT_EVENT_STREAM_VALUE}
+     * {@code spring.ai.mcp.client.type=async} 时 MCP 工具调用以非阻塞方式组合执行，不占用工具执行线程；
+     * 按会话公平调度（流式分道），排队期间不占用线程，流结束或客户端断开时归还
      */
     @PostMapping(value = "/ai/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<Map<String, Object>> unifiedChatStream(@RequestBody @Valid ChatCommonRequest request) {
+    public Flux<String> unifiedChatStream(@RequestBody @Valid ChatCommonRequest request) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         final String sessionId = getOrGenerateSessionId(request.getSession());
 
+        // MCP 工具快照在响应式链路上获取，尚未加载时不阻塞请求线程
+        Mono<ChatClient.ChatClientRequestSpec> chatClientRequestSpec =
+                request.getToolType() == ChatCommonRequest.ToolType.MCP
+                        ? mcpToolRegistry.snapshotAsync().map(mcpTools -> prepareRequest("/ai/chat/stream", request, sessionId))
+                        : Mono.fromSupplier(() -> prepareRequest("/ai/chat/stream", request, sessionId));
+
+        // 返回流式响应（轮次只在首帧计算一次，细小增量合并后发送）
+        return fairShareScheduler.stream(schedulingKey, Lane.STREAM,
+                () -> chatClientRequestSpec.flatMapMany(spec -> sseFrameEncoder.encode(sessionId,
+                        () -> chatMemory.get(sessionId).size(), spec.stream().chatResponse())));
+    }
+
+    /**
+     * 统一非阻塞聊天接口
+     *
+     * @param request 参数说明同同步接口
+     * @return 完整回复（与同步接口一致）
+     *
+     * 特别说明：
+     * 内部以流式方式调用模型并在响应式链路上汇总内容，等待模型期间不占用 Servlet 线程；
+     * 请求准备（MCP 工具快照未加载时需查询工具列表）与聊天记忆读写在有界调度器上执行，
+     * Function Calling 的 JDBC 调用由模型流式实现在 boundedElastic 调度器上执行；
+     * 按会话公平调度（同步分道），排队同样不占用线程
+     */
+    @PostMapping("/ai/chat")
+    public Mono<ChatReply> unifiedChat(@RequestBody @Valid ChatCommonRequest request) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
+        final String sessionId = getOrGenerateSessionId(request.getSession());
+
+        return fairShareScheduler.mono(schedulingKey, Lane.SYNC, () -> Mono.fromCallable(() -> prepareRequest("/ai/chat", request, sessionId))
+                .subscribeOn(chatBlockingScheduler)
+                .flatMap(chatClientRequestSpec -> chatClientRequestSpec
+                        .stream()
+                        .chatResponse()
+                        .collect(StringBuilder::new, (content, chatResponse) -> {
+                            if (chatResponse.getResult() != null && chatResponse.getResult().getOutput().getText() != null) {
+                                content.append(chatResponse.getResult().getOutput().getText());
+                            }
+                        }))
+                .map(content -> new ChatReply(content.toString(), sessionId)));
+    }
+
+
+    /**
+     * 构建请求链
+     *
+     * 处理流程：
+     * 1. 提示词配置 → 2. 顾问配置 → 3. 工具配置
+     *
+     * @param endpoint 接口路径（指标标签）
+     */
+    private ChatClient.ChatClientRequestSpec prepareRequest(String endpoint, ChatCommonRequest request, String sessionId) {
         ChatClient.ChatClientRequestSpec chatClientRequestSpec;
 
         // 添加提示词
         if (request.isUsePrompt()) {
             chatClientRequestSpec = chatClient.prompt(PromptConsole.MYSQL_STUDYDB_PROMPT);
         }else {
-            chatClientRequestSpec = chatClient.prompt();
+           chatClientRequestSpec = chatClient.prompt();
         }
 
         // 构建基础请求链
         chatClientRequestSpec = chatClientRequestSpec.advisors(
+                /**
+                 * 添加日志记录顾问：
+                 * 用于记录聊天请求和响应的详细信息，便于调试和监控
+                 * 实现类：{@code SimpleLoggerAdvisor}
+                 */
                 new SimpleLoggerAdvisor(),
+                /**
+                 * 添加聊天记忆顾问：
+                 * 为聊天会话提供记忆功能，保持对话上下文连续性
+                 *
+                 * 配置说明：
+                 * - {@code chatMemory}：聊天记忆存储实现
+                 * - {@code conversationId}：使用会话ID作为记忆存储的键
+                 *   确保同一会话中的消息保持上下文关联
+                 */
                 MessageChatMemoryAdvisor.builder(chatMemory)
-                        .conversationId(sessionId).build()
+                        .conversationId(sessionId)
+                        // 流式调用时聊天记忆读写在有界调度器上执行
+                        .scheduler(chatBlockingScheduler)
+                        .build(),
+                /**
+                 * 添加指标顾问：
+                 * 记录模型耗时、token 用量、首 token 延迟与会话历史大小，按接口与工具类型打标签
+                 */
+                aiMetrics.advisor(endpoint, request.getToolType())
         ).user(request.getMessage());
 
         // 添加工具
         switch (request.getToolType()) {
             case MCP:
-                ToolCallback[] toolCallbacks = toolCallbackProvider.getToolCallbacks();
-                log.info("MCP toolCallbacks: {}", toolCallbacks);
-                chatClientRequestSpec = chatClientRequestSpec.toolCallbacks(toolCallbacks);
+                McpToolRegistry.Snapshot mcpTools = mcpToolRegistry.getSnapshot();
+                log.debug("MCP 工具快照版本 {}，共 {} 个工具", mcpTools.version(), mcpTools.callbacks().size());
+                chatClientRequestSpec = chatClientRequestSpec.toolCallbacks(mcpTools.callbacks());
                 break;
             case FUNCTION:
-                chatClientRequestSpec = chatClientRequestSpec.tools(new DateTimeTools(), new MysqlTools(jdbcTemplate));
+                chatClientRequestSpec = chatClientRequestSpec.tools(new DateTimeTools(), mysqlTools);
                 break;
             case NONE:
             default:
@@ -162,61 +248,11 @@ public class ChatCommonController {
                 log.info("无额外工具");
         }
 
-        // 返回流式响应
-        return chatClientRequestSpec
-                .stream()
-                .chatResponse()
-                .map(chatResponse -> buildResponseMap(sessionId, chatResponse));
+        return chatClientRequestSpec;
     }
 
     // 辅助方法
     private String getOrGenerateSessionId(String session) {
         return session != null ? session : "session_" + System.currentTimeMillis();
     }
-
-    private Map<String, Object> buildResponseMap(String sessionId, ChatResponse chatResponse) {
-        Map<String, Object> responseMap = Map.of(
-                "session", sessionId,
-                "round", chatMemory.get(sessionId) != null ?
-                        chatMemory.get(sessionId).size() : 0,
-                "content", chatResponse.getResult().getOutput().getText(),
-                "tools", Optional.ofNullable(chatResponse.getResult().getOutput().getToolCalls())
-                        .orElse(Collections.emptyList())
-                        .stream().map(Object::toString).toList()
-        );
-
-        log.info("流式响应数据: {}",
-                responseMap.entrySet().stream()
-                        .map(entry -> entry.getKey() + "=" + entry.getValue())
-                        .collect(Collectors.joining(", ", "{", "}"))
-        );
-
-        return responseMap;
-    }
-
-
-    // 在 ChatCommonController 类中新增重试逻辑方法
-    private ChatResponse executeWithRetry(ChatClient.ChatClientRequestSpec requestSpec, int maxRetries) {
-        int attempts = 0;
-        while (attempts <= maxRetries) {
-            try {
-                return requestSpec.call().chatResponse();
-            } catch (Exception e) {
-                attempts++;
-                log.error("工具执行失败 (尝试 {}/{}): {}", attempts, maxRetries, e.getMessage());
-
-                if (attempts >= maxRetries) {
-                    throw e; // 达到最大重试次数后抛出异常
-                }
-
-                // 可选：添加延迟避免连续重试
-                try {
-                    Thread.sleep(500); // 500ms 延迟
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-        }
-        throw new IllegalStateException("重试机制异常");
-    }
 }
\ No newline at end of file
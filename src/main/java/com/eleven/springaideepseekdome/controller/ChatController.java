@@ -1,8 +1,21 @@
 package com.eleven.springaideepseekdome.controller;
 
+import com.eleven.springaideepseekdome.cache.InFlightRequestCoalescer;
+import com.eleven.springaideepseekdome.cache.ResponseScopes;
+import com.eleven.springaideepseekdome.cache.PromptResponseCache;
 import com.eleven.springaideepseekdome.console.PromptConsole;
+import com.eleven.springaideepseekdome.domain.dto.ChatCommonRequest.ToolType;
 import com.eleven.springaideepseekdome.domain.dto.ChatReply;
 import com.eleven.springaideepseekdome.domain.dto.ChatRequest;
+import com.eleven.springaideepseekdome.limit.AdaptiveConcurrencyLimiter;
+import com.eleven.springaideepseekdome.limit.LimitedChatModel;
+import com.eleven.springaideepseekdome.mcp.McpToolRegistry;
+import com.eleven.springaideepseekdome.metrics.AiMetrics;
+import com.eleven.springaideepseekdome.metrics.RequestTags;
+import com.eleven.springaideepseekdome.retry.ModelRetryPolicy;
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler;
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler.Lane;
+import com.eleven.springaideepseekdome.stream.SseFrameEncoder;
 import com.eleven.springaideepseekdome.tools.DateTimeTools;
 import com.eleven.springaideepseekdome.tools.MysqlTools;
 import lombok.extern.slf4j.Slf4j;
@@ -10,21 +23,23 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.deepseek.DeepSeekChatModel;
-import org.springframework.ai.mcp.SyncMcpToolCallbackProvider;
-import org.springframework.ai.tool.ToolCallback;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
 import javax.validation.Valid;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Slf4j
 @RestController
@@ -36,9 +51,26 @@ public class ChatController {
     @Autowired
     private ChatMemory chatMemory;
     @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private MysqlTools mysqlTools;
     @Autowired
-    private SyncMcpToolCallbackProvider toolCallbackProvider;
+    private SseFrameEncoder sseFrameEncoder;
+    @Autowired
+    private PromptResponseCache promptResponseCache;
+    @Autowired
+    private InFlightRequestCoalescer inFlightRequestCoalescer;
+    @Autowired
+    private ResponseScopes responseScopes;
+    @Autowired
+    private McpToolRegistry mcpToolRegistry;
+    @Autowired
+    private ModelRetryPolicy modelRetryPolicy;
+    @Autowired
+    @Qualifier("deepseekLimiter")
+    private AdaptiveConcurrencyLimiter deepseekLimiter;
+    @Autowired
+    private FairShareScheduler fairShareScheduler;
+    @Autowired
+    private AiMetrics aiMetrics;
 
 
     /**
@@ -49,24 +81,25 @@ public class ChatController {
      */
     @PostMapping("/ai/chatmemory/mcp/sync")
     public ChatReply chatmemoryMcpSync(@RequestBody @Valid ChatRequest request) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         // 判断sessionID是否为空，为空则生成一个sessionID
         if (request.getSession() == null) {
             request.setSession("session_" + System.currentTimeMillis());
         }
-        ToolCallback[] toolCallbacks = toolCallbackProvider.getToolCallbacks();
-        // 日志打印toolCallbacks
-        log.info("toolCallbacks: {}", toolCallbacks);
+        McpToolRegistry.Snapshot mcpTools = mcpToolRegistry.getSnapshot();
+        log.debug("MCP 工具快照版本 {}，共 {} 个工具", mcpTools.version(), mcpTools.callbacks().size());
 
-        ChatResponse chatResponse = chatClient
+        ChatResponse chatResponse = fairShareScheduler.call(schedulingKey, Lane.SYNC, () -> chatClient
                 .prompt(PromptConsole.MYSQL_STUDYDB_PROMPT)
-                .toolCallbacks(toolCallbacks)
+                .toolCallbacks(mcpTools.callbacks())
                 .advisors(
                         new SimpleLoggerAdvisor(), // 日志
                         MessageChatMemoryAdvisor.builder(chatMemory).
-                                conversationId(request.getSession()).build() // 聊天记忆功能
+                                conversationId(request.getSession()).build(), // 聊天记忆功能
+                        aiMetrics.advisor("/ai/chatmemory/mcp/sync", ToolType.MCP)
                 )
                 .user(request.getMessage())
-                .call().chatResponse();
+                .call().chatResponse());
 
         return new ChatReply(chatResponse.getResult().getOutput().getText(), request.getSession());
     }
@@ -78,46 +111,30 @@ public class ChatController {
      * @return
      */
     @PostMapping(value = "/ai/chatmemory/mcp/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<Map<String, Object>> chatmemoryPromptMcpStream(@RequestBody @Valid ChatRequest request) {
+    public Flux<String> chatmemoryPromptMcpStream(@RequestBody @Valid ChatRequest request) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         // 判断sessionID是否为空，为空则生成一个sessionID
         if (request.getSession() == null) {
             request.setSession("session_" + System.currentTimeMillis());
         }
-        ToolCallback[] toolCallbacks = toolCallbackProvider.getToolCallbacks();
-        // 日志打印toolCallbacks
-        log.info("toolCallbacks: {}", toolCallbacks);
-
-        return chatClient
-                .prompt(PromptConsole.MYSQL_STUDYDB_PROMPT)
-                .toolCallbacks(toolCallbacks)
-                .advisors(
-                        new SimpleLoggerAdvisor(),
-                        MessageChatMemoryAdvisor.builder(chatMemory)
-                                .conversationId(request.getSession()).build()
-                )
-                .user(request.getMessage())
-                .stream()
-                .chatResponse()
-                .map(chatResponse -> {
-                    // 构建响应Map
-                    Map<String, Object> responseMap = Map.of(
-                            "session", request.getSession(),
-                            "round", chatMemory.get(request.getSession()) != null ?
-                                    chatMemory.get(request.getSession()).size() : 0,
-                            "content", chatResponse.getResult().getOutput().getText(),
-                            "tools", chatResponse.getResult().getOutput().getToolCalls()
-                                    .stream().map(tc -> tc.toString()).toList()
-                    );
-
-                    // 打印日志
-                    log.info("流式响应数据: {}",
-                            responseMap.entrySet().stream()
-                                    .map(entry -> entry.getKey() + "=" + entry.getValue())
-                                    .collect(Collectors.joining(", ", "{", "}"))
-                    );
-
-                    return responseMap; // 直接返回Map
-                });
+        // MCP 工具快照在响应式链路上获取，尚未加载时不阻塞请求线程
+        return fairShareScheduler.stream(schedulingKey, Lane.STREAM, () -> mcpToolRegistry.snapshotAsync().flatMapMany(mcpTools -> {
+            log.debug("MCP 工具快照版本 {}，共 {} 个工具", mcpTools.version(), mcpTools.callbacks().size());
+            return chatClient
+                    .prompt(PromptConsole.MYSQL_STUDYDB_PROMPT)
+                    .toolCallbacks(mcpTools.callbacks())
+                    .advisors(
+                            new SimpleLoggerAdvisor(),
+                            MessageChatMemoryAdvisor.builder(chatMemory)
+                                    .conversationId(request.getSession()).build(),
+                            aiMetrics.advisor("/ai/chatmemory/mcp/stream", ToolType.MCP)
+                    )
+                    .user(request.getMessage())
+                    .stream()
+                    .chatResponse()
+                    .transform(responses -> sseFrameEncoder.encode(request.getSession(),
+                            () -> chatMemory.get(request.getSession()).size(), responses));
+        }));
     }
 
 
@@ -130,20 +147,22 @@ public class ChatController {
      */
     @PostMapping("/ai/chatmemory/prompt/tool/sync")
     public ChatReply chatmemoryPromptToolSync(@RequestBody @Valid ChatRequest request) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         // 判断sessionID是否为空，为空则生成一个sessionID
         if (request.getSession() == null) {
             request.setSession("session_" + System.currentTimeMillis());
         }
-        ChatResponse chatResponse = chatClient
+        ChatResponse chatResponse = fairShareScheduler.call(schedulingKey, Lane.SYNC, () -> chatClient
                 .prompt(PromptConsole.MYSQL_STUDYDB_PROMPT)
-                .tools(new DateTimeTools(), new MysqlTools(jdbcTemplate))
+                .tools(new DateTimeTools(), mysqlTools)
                 .advisors(
                         new SimpleLoggerAdvisor(), // 日志
                         MessageChatMemoryAdvisor.builder(chatMemory).
-                                conversationId(request.getSession()).build() // 聊天记忆功能
+                                conversationId(request.getSession()).build(), // 聊天记忆功能
+                        aiMetrics.advisor("/ai/chatmemory/prompt/tool/sync", ToolType.FUNCTION)
                 )
                 .user(request.getMessage())
-                .call().chatResponse();
+                .call().chatResponse());
 
         return new ChatReply(chatResponse.getResult().getOutput().getText(), request.getSession());
     }
@@ -156,42 +175,26 @@ public class ChatController {
      * @return
      */
     @PostMapping(value = "/ai/chatmemory/prompt/tool/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<Map<String, Object>> chatmemoryPromptToolStream(@RequestBody @Valid ChatRequest request) {
+    public Flux<String> chatmemoryPromptToolStream(@RequestBody @Valid ChatRequest request) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         // 判断sessionID是否为空，为空则生成一个sessionID
         if (request.getSession() == null) {
             request.setSession("session_" + System.currentTimeMillis());
         }
-        return chatClient
+        return fairShareScheduler.stream(schedulingKey, Lane.STREAM, () -> chatClient
                 .prompt(PromptConsole.MYSQL_STUDYDB_PROMPT)
-                .tools(new DateTimeTools(), new MysqlTools(jdbcTemplate))
+                .tools(new DateTimeTools(), mysqlTools)
                 .advisors(
                         new SimpleLoggerAdvisor(),
                         MessageChatMemoryAdvisor.builder(chatMemory)
-                                .conversationId(request.getSession()).build()
+                                .conversationId(request.getSession()).build(),
+                        aiMetrics.advisor("/ai/chatmemory/prompt/tool/stream", ToolType.FUNCTION)
                 )
                 .user(request.getMessage())
                 .stream()
                 .chatResponse()
-                .map(chatResponse -> {
-                    // 构建响应Map
-                    Map<String, Object> responseMap = Map.of(
-                            "session", request.getSession(),
-                            "round", chatMemory.get(request.getSession()) != null ?
-                                    chatMemory.get(request.getSession()).size() : 0,
-                            "content", chatResponse.getResult().getOutput().getText(),
-                            "tools", chatResponse.getResult().getOutput().getToolCalls()
-                                    .stream().map(tc -> tc.toString()).toList()
-                    );
-
-                    // 打印日志
-                    log.info("流式响应数据: {}",
-                            responseMap.entrySet().stream()
-                                    .map(entry -> entry.getKey() + "=" + entry.getValue())
-                                    .collect(Collectors.joining(", ", "{", "}"))
-                    );
-
-                    return responseMap; // 直接返回Map
-                });
+                .transform(responses -> sseFrameEncoder.encode(request.getSession(),
+                        () -> chatMemory.get(request.getSession()).size(), responses)));
     }
 
 
@@ -203,20 +206,22 @@ public class ChatController {
      */
     @PostMapping("/ai/chatmemory/tool/sync")
     public ChatReply chatmemoryToolSync(@RequestBody @Valid ChatRequest request) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         // 判断sessionID是否为空，为空则生成一个sessionID
         if (request.getSession() == null) {
             request.setSession("session_" + System.currentTimeMillis());
         }
-        ChatResponse chatResponse = chatClient
+        ChatResponse chatResponse = fairShareScheduler.call(schedulingKey, Lane.SYNC, () -> chatClient
                 .prompt()
-                .tools(new DateTimeTools(), new MysqlTools(jdbcTemplate))
+                .tools(new DateTimeTools(), mysqlTools)
                 .advisors(
                         new SimpleLoggerAdvisor(), // 日志
                         MessageChatMemoryAdvisor.builder(chatMemory).
-                                conversationId(request.getSession()).build() // 聊天记忆功能
+                                conversationId(request.getSession()).build(), // 聊天记忆功能
+                        aiMetrics.advisor("/ai/chatmemory/tool/sync", ToolType.FUNCTION)
                 )
                 .user(request.getMessage())
-                .call().chatResponse();
+                .call().chatResponse());
 
         return new ChatReply(chatResponse.getResult().getOutput().getText(), request.getSession());
     }
@@ -229,40 +234,24 @@ public class ChatController {
      * @return
      */
     @PostMapping(value = "/ai/chatmemory/tool/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<Map<String, Object>> chatmemoryToolStream(@RequestBody @Valid ChatRequest request) {
+    public Flux<String> chatmemoryToolStream(@RequestBody @Valid ChatRequest request) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         final String sessionId = request.getSession() != null ?
                 request.getSession() : "session_" + System.currentTimeMillis();
 
-        return chatClient.prompt()
-                .tools(new DateTimeTools(), new MysqlTools(jdbcTemplate))
+        return fairShareScheduler.stream(schedulingKey, Lane.STREAM, () -> chatClient.prompt()
+                .tools(new DateTimeTools(), mysqlTools)
                 .advisors(
                         new SimpleLoggerAdvisor(),
                         MessageChatMemoryAdvisor.builder(chatMemory)
-                                .conversationId(sessionId).build()
+                                .conversationId(sessionId).build(),
+                        aiMetrics.advisor("/ai/chatmemory/tool/stream", ToolType.FUNCTION)
                 )
                 .user(request.getMessage())
                 .stream()
                 .chatResponse()
-                .map(chatResponse -> {
-                    // 构建响应Map
-                    Map<String, Object> responseMap = Map.of(
-                            "session", sessionId,
-                            "round", chatMemory.get(sessionId) != null ?
-                                    chatMemory.get(sessionId).size() : 0,
-                            "content", chatResponse.getResult().getOutput().getText(),
-                            "tools", chatResponse.getResult().getOutput().getToolCalls()
-                                    .stream().map(tc -> tc.toString()).toList()
-                    );
-
-                    // 打印日志
-                    log.info("流式响应数据: {}",
-                            responseMap.entrySet().stream()
-                                    .map(entry -> entry.getKey() + "=" + entry.getValue())
-                                    .collect(Collectors.joining(", ", "{", "}"))
-                    );
-
-                    return responseMap; // 直接返回Map
-                });
+                .transform(responses -> sseFrameEncoder.encode(sessionId,
+                        () -> chatMemory.get(sessionId).size(), responses)));
     }
 
 
@@ -273,21 +262,46 @@ public class ChatController {
      * @return
      */
     @PostMapping("/ai/chatmemory/sync")
-    public ChatReply generatePost(@RequestBody @Valid ChatRequest request) {
+    public ChatReply generatePost(@RequestBody @Valid ChatRequest request,
+                                  @RequestHeader(value = PromptResponseCache.BYPASS_HEADER, required = false) String cacheControl) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         // 判断sessionID是否为空，为空则生成一个sessionID
         if (request.getSession() == null) {
             request.setSession("session_" + System.currentTimeMillis());
         }
-        String content = chatClient.prompt()
+        // 没有历史记录时回答只取决于问题本身，可以使用提示词缓存
+        boolean cacheable = chatMemory.get(request.getSession()).isEmpty();
+        final String cacheScope = responseScopes.defaultClient("/ai/chatmemory/sync");
+        if (cacheable) {
+            String cached = promptResponseCache.lookup(cacheScope, request.getMessage(), cacheControl);
+            if (cached != null) {
+                chatMemory.add(request.getSession(), List.of(new UserMessage(request.getMessage()), new AssistantMessage(cached)));
+                return new ChatReply(cached, request.getSession());
+            }
+        }
+        Supplier<String> caller = () -> chatClient.prompt()
                 .advisors(
                         new SimpleLoggerAdvisor(), // 日志
                         MessageChatMemoryAdvisor.builder(chatMemory).
-                                conversationId(request.getSession()).build() // 聊天记忆功能
+                                conversationId(request.getSession()).build(), // 聊天记忆功能
+                        aiMetrics.advisor("/ai/chatmemory/sync", ToolType.NONE)
                 )
                 .user(request.getMessage())
                 .call()
                 .content();
-        return new ChatReply(content, request.getSession());
+        if (!cacheable) {
+            return new ChatReply(fairShareScheduler.call(schedulingKey, Lane.SYNC, caller), request.getSession());
+        }
+        // 相同问题进行中时共享其结果，共享的请求单独写入自己的聊天记忆
+        // 只有实际调用模型的请求占用调度容量，等待共享结果的请求不占用
+        InFlightRequestCoalescer.Result result = inFlightRequestCoalescer.call(cacheScope, request.getMessage(),
+                () -> fairShareScheduler.call(schedulingKey, Lane.SYNC, caller));
+        if (result.shared()) {
+            chatMemory.add(request.getSession(), List.of(new UserMessage(request.getMessage()), new AssistantMessage(result.answer())));
+        } else {
+            promptResponseCache.put(cacheScope, request.getMessage(), result.answer());
+        }
+        return new ChatReply(result.answer(), request.getSession());
     }
 
 
@@ -298,23 +312,23 @@ public class ChatController {
      * @return
      */
     @PostMapping(value = "/ai/chatmemory/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<Map<String, Object>> generateSee(@RequestBody @Valid ChatRequest request) {
+    public Flux<String> generateSee(@RequestBody @Valid ChatRequest request) {
+        final String schedulingKey = FairShareScheduler.resolveKey(request.getSession());
         final String sessionId = request.getSession() != null ?
                 request.getSession() : "session_" + System.currentTimeMillis();
 
-        return chatClient.prompt()
+        return fairShareScheduler.stream(schedulingKey, Lane.STREAM, () -> chatClient.prompt()
                 .advisors(
                         new SimpleLoggerAdvisor(),
                         MessageChatMemoryAdvisor.builder(chatMemory)
-                                .conversationId(sessionId).build()
+                                .conversationId(sessionId).build(),
+                        aiMetrics.advisor("/ai/chatmemory/stream", ToolType.NONE)
                 )
                 .user(request.getMessage())
                 .stream()
                 .chatResponse()
-                .map(chatResponse -> Map.of(
-                        "session", sessionId,
-                        "content", chatResponse.getResult().getOutput().getText()
-                ));
+                .transform(responses -> sseFrameEncoder.encode(sessionId,
+                        () -> chatMemory.get(sessionId).size(), responses)));
     }
 
     /**
@@ -324,19 +338,35 @@ public class ChatController {
      * @return
      */
     @GetMapping("/ai/sync")
-    public Map generate(@RequestParam(value = "message", defaultValue = "Tell me a joke") String message) {
-        return Map.of("generation", deepSeekChatModel.call(message));
+    public Map generate(@RequestParam(value = "message", defaultValue = "Tell me a joke") String message,
+                        @RequestHeader(value = PromptResponseCache.BYPASS_HEADER, required = false) String cacheControl) {
+        final String schedulingKey = FairShareScheduler.resolveKey(null);
+        final String scope = responseScopes.deepSeek("/ai/sync");
+        return Map.of("generation", promptResponseCache.getOrCall(scope, message, cacheControl,
+                () -> inFlightRequestCoalescer.call(scope, message, () -> fairShareScheduler.call(schedulingKey, Lane.SYNC,
+                        () -> aiMetrics.observeCall(RequestTags.of("/ai/sync", ToolType.NONE),
+                                () -> limitedDeepSeek().call(new Prompt(message))).getResult().getOutput().getText())).answer()));
     }
 
     /**
      * 处理AI生成的GET请求 流式
+     * <p>
+     * 同时进行的相同问题共享一次模型调用，后加入的请求先收到已生成的内容再接收后续增量
      *
      * @param message
      * @return
      */
     @GetMapping(value = "/ai/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ChatResponse> generateStream(@RequestParam(value = "message", defaultValue = "Tell me a joke") String message) {
+        final String schedulingKey = FairShareScheduler.resolveKey(null);
         var prompt = new Prompt(new UserMessage(message));
-        return deepSeekChatModel.stream(prompt);
+        return inFlightRequestCoalescer.stream(responseScopes.deepSeek("/ai/stream"), message, () -> fairShareScheduler.stream(schedulingKey, Lane.STREAM,
+                () -> aiMetrics.observeStream(RequestTags.of("/ai/stream", ToolType.NONE),
+                        limitedDeepSeek().stream(prompt), Function.identity())));
+    }
+
+    // 直接调用 DeepSeek 模型时同样经过重试与并发限制
+    private ChatModel limitedDeepSeek() {
+        return modelRetryPolicy.wrap("deepseek", new LimitedChatModel(deepSeekChatModel, deepseekLimiter));
     }
 }
\ No newline at end of file
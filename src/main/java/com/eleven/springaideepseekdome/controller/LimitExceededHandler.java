@@ -0,0 +1,29 @@
+package com.eleven.springaideepseekdome.controller;
+
+import com.eleven.springaideepseekdome.limit.LimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+/**
+ * 并发限制拒绝的请求快速返回 503，并通过 Retry-After 告知客户端何时重试
+ */
+@Slf4j
+@RestControllerAdvice
+public class LimitExceededHandler {
+
+    @ExceptionHandler(LimitExceededException.class)
+    public ResponseEntity<Map<String, String>> handleLimitExceeded(LimitExceededException e) {
+        log.warn("请求被并发限制拒绝: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", "服务繁忙，请稍后重试", "limiter", e.getLimiter()));
+    }
+}
@@ -1,5 +1,6 @@
 package com.eleven.springaideepseekdome.domain.dto;
 
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Data
@@ -10,7 +11,9 @@ public class ChatCommonRequest {
      * - 用于标识连续对话会话
      * - 为空时将自动生成新会话ID
      * - 相同会话ID可保持对话上下文连续性
+     * - 最长 128 个字符（与聊天记忆表的 conversation_id 列长度一致）
      */
+    @Size(max = 128, message = "会话ID长度不能超过128个字符")
     private String session;
 
     /**
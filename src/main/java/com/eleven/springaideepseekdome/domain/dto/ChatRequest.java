@@ -1,11 +1,13 @@
 package com.eleven.springaideepseekdome.domain.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Data
 public class ChatRequest{
         @NotBlank(message = "消息内容不能为空")
         String message; // 消息内容
-        String session; // 会话ID
+        @Size(max = 128, message = "会话ID长度不能超过128个字符")
+        String session; // 会话ID（与聊天记忆表的 conversation_id 列长度一致）
 }
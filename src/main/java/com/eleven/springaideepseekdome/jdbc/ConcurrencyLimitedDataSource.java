@@ -0,0 +1,119 @@
+package com.eleven.springaideepseekdome.jdbc;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 限制并发连接数的数据源
+ * <p>
+ * 获取连接前先获取信号量许可，连接关闭时归还。虚拟线程模式下请求线程数不再受线程池限制，
+ * 由该信号量限制同时访问数据库的调用方数量；等待许可的虚拟线程只挂起、不占用载体线程。
+ * 超过等待时间仍未获得许可时抛出 {@link SQLTransientConnectionException}
+ */
+public class ConcurrencyLimitedDataSource extends DelegatingDataSource implements MeterBinder {
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long acquireTimeoutNanos;
+
+    private final LongAdder rejected = new LongAdder();
+
+    public ConcurrencyLimitedDataSource(DataSource target, int maxConcurrency, Duration acquireTimeout) {
+        super(target);
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return limited(obtainTargetDataSource().getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return limited(obtainTargetDataSource().getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ai.jdbc.concurrency.active", this, ds -> ds.maxConcurrency - ds.permits.availablePermits())
+                .description("正在访问数据库的调用方数")
+                .register(registry);
+        Gauge.builder("ai.jdbc.concurrency.waiting", permits, Semaphore::getQueueLength)
+                .description("等待数据库访问许可的调用方数")
+                .register(registry);
+        FunctionCounter.builder("ai.jdbc.concurrency.rejected", rejected, LongAdder::sum)
+                .description("等待超时被拒绝的数据库访问次数")
+                .register(registry);
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new SQLTransientConnectionException("数据库并发访问已达上限 " + maxConcurrency + "，等待超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("等待数据库访问许可时被中断", e);
+        }
+    }
+
+    // 包装连接：首次 close() 时归还许可
+    private Connection limited(Connection target) {
+        AtomicBoolean released = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> {
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                try {
+                    return method.invoke(target);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        permits.release();
+                    }
+                }
+            }
+            return invoke(target, method, args);
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    private static Object invoke(Connection target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
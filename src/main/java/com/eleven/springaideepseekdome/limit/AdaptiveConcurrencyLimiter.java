@@ -0,0 +1,369 @@
+package com.eleven.springaideepseekdome.limit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import com.eleven.springaideepseekdome.retry.RetryableErrors;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 自适应并发限制（梯度算法）
+ * <p>
+ * 根据观测到的延迟动态调整并发上限：
+ * - 长期延迟 longRtt 为样本的慢速 EWMA，代表无排队时的正常延迟
+ * - 梯度 = clamp(tolerance × longRtt / rtt, 0.5, 1)：延迟明显高于正常水平说明下游开始排队，按比例收缩上限
+ * - 新上限 = 上限 × 梯度 + √上限（排队余量），再按 {@code smoothing} 平滑；只有在并发用到上限一半以上时才允许增长
+ * - 过载信号（429、超时等，由调用方通过 {@link Permit#failed} 报告）直接将上限乘以 0.9
+ * <p>
+ * 超过上限的请求进入 FIFO 队列等待（同步调用阻塞等待，流式调用以 Mono 非阻塞等待），
+ * 队列已满或等待超时时抛出 {@link LimitExceededException}
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter implements MeterBinder {
+
+    private static final double DROP_DECREASE = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final Duration queueTimeout;
+    private final double tolerance;
+    private final double smoothing;
+    private final double rttAlpha;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+    private double limit;
+    private double longRttNanos = -1;
+    private int inFlight;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      int maxQueue, Duration queueTimeout, double tolerance, double smoothing, double rttAlpha) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.queueTimeout = queueTimeout;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.rttAlpha = rttAlpha;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 阻塞获取许可：超过上限时排队等待，队列已满或等待超时时抛出 {@link LimitExceededException}
+     */
+    public Permit acquire() {
+        CompletableFuture<Permit> waiter;
+        lock.lock();
+        try {
+            if (inFlight < currentLimit()) {
+                return admit();
+            }
+            waiter = enqueue();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return waiter.get(queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return abandon(waiter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(waiter);
+            throw reject("等待并发许可时被中断");
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * 非阻塞获取许可（用于流式调用），排队期间不占用线程
+     */
+    public Mono<Permit> acquireAsync() {
+        return Mono.defer(() -> {
+            CompletableFuture<Permit> waiter;
+            lock.lock();
+            try {
+                if (inFlight < currentLimit()) {
+                    return Mono.just(admit());
+                }
+                waiter = enqueue();
+            } finally {
+                lock.unlock();
+            }
+            return Mono.fromFuture(waiter, true)
+                    .timeout(queueTimeout)
+                    .onErrorResume(TimeoutException.class, e -> Mono.fromCallable(() -> abandon(waiter)))
+                    .doOnCancel(() -> cancel(waiter));
+        });
+    }
+
+    /**
+     * 在许可内执行阻塞调用，按结果调整上限
+     */
+    public <T> T execute(Supplier<T> action) {
+        Permit permit = acquire();
+        try {
+            T result = action.get();
+            permit.success();
+            return result;
+        } catch (RuntimeException | Error e) {
+            permit.failed(e);
+            throw e;
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ai.limit.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("当前并发上限")
+                .tag("limiter", name)
+                .register(registry);
+        Gauge.builder("ai.limit.in-flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("进行中的调用数")
+                .tag("limiter", name)
+                .register(registry);
+        Gauge.builder("ai.limit.queue", this, AdaptiveConcurrencyLimiter::getQueueDepth)
+                .description("排队等待的调用数")
+                .tag("limiter", name)
+                .register(registry);
+        registerCounter(registry, admitted, "admitted");
+        registerCounter(registry, queued, "queued");
+        registerCounter(registry, rejected, "rejected");
+        registerCounter(registry, dropped, "dropped");
+    }
+
+    private void registerCounter(MeterRegistry registry, LongAdder counter, String result) {
+        FunctionCounter.builder("ai.limit.requests", counter, LongAdder::sum)
+                .description("并发限制的准入结果")
+                .tags("limiter", name, "result", result)
+                .register(registry);
+    }
+
+    // 以下方法需持有锁
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    private Permit admit() {
+        inFlight++;
+        admitted.increment();
+        return new Permit(System.nanoTime());
+    }
+
+    private CompletableFuture<Permit> enqueue() {
+        if (waiters.size() >= maxQueue) {
+            throw reject("并发已达上限 " + currentLimit() + " 且排队已满");
+        }
+        CompletableFuture<Permit> waiter = new CompletableFuture<>();
+        waiters.addLast(waiter);
+        queued.increment();
+        return waiter;
+    }
+
+    // 按当前上限唤醒排队的调用方
+    private void dispatch() {
+        while (inFlight < currentLimit() && !waiters.isEmpty()) {
+            CompletableFuture<Permit> waiter = waiters.pollFirst();
+            Permit permit = admit();
+            if (!waiter.complete(permit)) {
+                // 调用方已放弃等待
+                inFlight--;
+            }
+        }
+    }
+
+    // 等待超时：仍在队列中则移除并拒绝，已获得许可则直接使用
+    private Permit abandon(CompletableFuture<Permit> waiter) {
+        lock.lock();
+        try {
+            if (waiter.cancel(false)) {
+                waiters.remove(waiter);
+                throw reject("排队等待超过 " + queueTimeout.toMillis() + " ms");
+            }
+        } finally {
+            lock.unlock();
+        }
+        return waiter.join();
+    }
+
+    // 订阅方取消等待：仍在队列中则移除，已获得许可则直接归还
+    private void cancel(CompletableFuture<Permit> waiter) {
+        lock.lock();
+        try {
+            if (waiter.cancel(false)) {
+                waiters.remove(waiter);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        waiter.join().ignore();
+    }
+
+    // 建议的重试等待时间：约一个正常请求的耗时，至少 1 秒
+    private LimitExceededException reject(String reason) {
+        rejected.increment();
+        long seconds = longRttNanos < 0 ? 1 : (long) Math.ceil(longRttNanos / 1_000_000_000.0);
+        return new LimitExceededException(name, name + " " + reason, Duration.ofSeconds(Math.max(1, seconds)));
+    }
+
+    private void onSample(long rttNanos, int inFlightAtStart) {
+        if (longRttNanos < 0) {
+            longRttNanos = rttNanos;
+            return;
+        }
+        longRttNanos += rttAlpha * (rttNanos - longRttNanos);
+        // 下游恢复后延迟大幅下降时，让长期延迟更快跟上
+        if (longRttNanos > rttNanos * 2) {
+            longRttNanos = (longRttNanos + rttNanos) / 2;
+        }
+        // 并发没有用到上限的一半时，延迟样本不能说明上限是否合适
+        if (inFlightAtStart < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / rttNanos));
+        double target = limit * gradient + Math.sqrt(limit);
+        double updated = limit * (1 - smoothing) + target * smoothing;
+        setLimit(updated);
+    }
+
+    private void onDrop() {
+        dropped.increment();
+        setLimit(limit * DROP_DECREASE);
+    }
+
+    private void setLimit(double updated) {
+        double bounded = Math.max(minLimit, Math.min(maxLimit, updated));
+        if ((int) bounded != (int) limit) {
+            log.debug("并发上限 {}: {} -> {}", name, (int) limit, (int) bounded);
+        }
+        limit = bounded;
+    }
+
+    /**
+     * 并发许可，调用结束时必须以 {@link #success()}、{@link #dropped()} 或 {@link #ignore()} 之一归还（重复归还无效）
+     */
+    public class Permit {
+
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlight;
+        }
+
+        /**
+         * 调用成功，延迟计入上限调整
+         */
+        public void success() {
+            release(Outcome.SUCCESS);
+        }
+
+        /**
+         * 下游过载（429、超时等），收缩上限
+         */
+        public void dropped() {
+            release(Outcome.DROPPED);
+        }
+
+        /**
+         * 调用失败：瞬时错误（429、5xx、超时等，见 {@link RetryableErrors}）视为过载，其余错误只归还许可
+         */
+        public void failed(Throwable error) {
+            if (RetryableErrors.isRetryable(error)) {
+                dropped();
+            } else {
+                ignore();
+            }
+        }
+
+        /**
+         * 结果与下游负载无关（业务错误、调用方取消），只归还许可
+         */
+        public void ignore() {
+            release(Outcome.IGNORED);
+        }
+
+        private void release(Outcome outcome) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            long rtt = System.nanoTime() - startNanos;
+            lock.lock();
+            try {
+                inFlight--;
+                switch (outcome) {
+                    case SUCCESS -> onSample(rtt, inFlightAtStart);
+                    case DROPPED -> onDrop();
+                    case IGNORED -> {
+                    }
+                }
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        DROPPED,
+        IGNORED
+    }
+}
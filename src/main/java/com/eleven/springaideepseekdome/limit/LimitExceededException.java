@@ -0,0 +1,29 @@
+package com.eleven.springaideepseekdome.limit;
+
+import java.time.Duration;
+
+/**
+ * 并发已达上限且排队已满（或排队超时）时抛出，接口层转换为 503 + Retry-After
+ */
+public class LimitExceededException extends RuntimeException {
+
+    private final String limiter;
+    private final Duration retryAfter;
+
+    public LimitExceededException(String limiter, String message, Duration retryAfter) {
+        super(message);
+        this.limiter = limiter;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * 建议客户端等待多久后重试
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
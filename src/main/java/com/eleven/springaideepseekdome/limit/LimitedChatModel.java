@@ -0,0 +1,45 @@
+package com.eleven.springaideepseekdome.limit;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+/**
+ * 为 ChatModel 增加自适应并发限制
+ * <p>
+ * 同步调用阻塞排队，流式调用非阻塞排队、流结束（完成、失败或取消）时归还许可；
+ * 429、5xx、超时等瞬时错误视为过载信号收缩上限
+ * <p>
+ * 许可覆盖 {@code delegate} 的一次调用。带工具的请求由外层的 {@code ToolLoopChatModel} 驱动循环，
+ * 每轮模型请求单独获取许可，工具执行期间不占用许可，耗时样本只包含模型请求本身
+ */
+public class LimitedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public LimitedChatModel(ChatModel delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return limiter.execute(() -> delegate.call(prompt));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return limiter.acquireAsync().flatMapMany(permit -> Flux.defer(() -> delegate.stream(prompt))
+                .doOnComplete(permit::success)
+                .doOnError(permit::failed)
+                .doOnCancel(permit::ignore));
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+}
@@ -0,0 +1,19 @@
+package com.eleven.springaideepseekdome.mcp;
+
+/**
+ * MCP 服务端推送的列表变更事件（tools/resources/prompts list_changed 通知）
+ *
+ * @param serverName MCP 连接配置名称
+ * @param kind       变更的列表类型
+ */
+public record McpListChangedEvent(String serverName, Kind kind) {
+
+    /**
+     * 变更的列表类型
+     */
+    public enum Kind {
+        TOOLS,
+        RESOURCES,
+        PROMPTS
+    }
+}
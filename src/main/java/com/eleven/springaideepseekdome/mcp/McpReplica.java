@@ -0,0 +1,115 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import io.modelcontextprotocol.client.McpSyncClient;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MCP 服务副本（一个已配置的 MCP 连接）
+ * <p>
+ * - 延迟：工具调用与健康探测的耗时按 EWMA 平滑，尚无样本时为 -1
+ * - 健康：连续失败达到阈值后标记为不健康，任意一次成功即恢复
+ * - 并发：每个副本同时进行的调用数有上限，超出时由连接池选择其他副本
+ */
+public class McpReplica {
+
+    private static final long UNKNOWN = Double.doubleToLongBits(-1.0);
+
+    private final String name;
+    private final McpSyncClient client;
+    private final double alpha;
+    private final Semaphore permits;
+
+    private final AtomicLong ewmaBits = new AtomicLong(UNKNOWN);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean healthy = true;
+
+    public McpReplica(String name, McpSyncClient client, double alpha, int maxInFlight) {
+        this.name = name;
+        this.client = client;
+        this.alpha = alpha;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public McpSyncClient getClient() {
+        return client;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 平滑后的延迟（毫秒），尚无样本时为 -1
+     */
+    public double getLatencyMillis() {
+        return Double.longBitsToDouble(ewmaBits.get());
+    }
+
+    /**
+     * 路由评分（越小越优先）：平滑延迟 × (1 + 进行中的调用数)
+     * <p>
+     * 尚无延迟样本的副本评分为 0，优先获得流量以建立样本
+     */
+    double score() {
+        double latency = getLatencyMillis();
+        return latency < 0 ? 0 : latency * (1 + inFlight.get());
+    }
+
+    boolean tryAcquire() {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        inFlight.incrementAndGet();
+        return true;
+    }
+
+    boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!permits.tryAcquire(timeout, unit)) {
+            return false;
+        }
+        inFlight.incrementAndGet();
+        return true;
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+        permits.release();
+    }
+
+    void recordSuccess(long nanos) {
+        double sample = nanos / 1_000_000.0;
+        long prev;
+        long next;
+        do {
+            prev = ewmaBits.get();
+            double current = Double.longBitsToDouble(prev);
+            next = Double.doubleToLongBits(current < 0 ? sample : current + alpha * (sample - current));
+        } while (!ewmaBits.compareAndSet(prev, next));
+        consecutiveFailures.set(0);
+        healthy = true;
+    }
+
+    /**
+     * 记录一次失败，返回本次是否使副本由健康变为不健康
+     */
+    boolean recordFailure(int failureThreshold) {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && healthy) {
+            healthy = false;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,288 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.mcp.McpToolUtils;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 多副本 MCP 连接池
+ * <p>
+ * 所有已配置的 MCP 连接视为同一个 MCP 服务的副本，对外只暴露一组工具：
+ * - 路由：每次工具调用选择评分最优（平滑延迟 × 并发）且未达并发上限的健康副本
+ * - 故障转移：请求发出前的连接错误（连接被拒绝、主机不可达、副本初始化失败）时依次尝试其余副本，不健康的副本排在最后兜底。
+ *   请求可能已发出的失败（超时、连接中断等）不转移，避免非幂等工具在多个副本上重复执行；
+ *   {@code idempotentTools} 中的工具与 tools/list 等只读操作对任何失败都转移
+ * - 健康检查：后台定时 ping 各副本（未初始化的副本先初始化），探测耗时计入平滑延迟，
+ *   连续失败达到阈值标记为不健康，探测成功即恢复
+ * - 并发上限：所有副本都满载时在最优副本上等待 {@code acquireTimeout}，超时则拒绝调用
+ * <p>
+ * 工具返回的业务错误（isError）不视为副本故障，不触发故障转移
+ */
+@Slf4j
+public class McpReplicaPool implements MeterBinder, DisposableBean {
+
+    private final List<McpReplica> replicas;
+    private final String toolNamePrefix;
+    private final int failureThreshold;
+    private final Duration acquireTimeout;
+    private final Set<String> idempotentTools;
+    private final ScheduledExecutorService healthChecker;
+
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder saturated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public McpReplicaPool(List<McpReplica> replicas,
+                          String toolNamePrefix,
+                          int failureThreshold,
+                          Duration acquireTimeout,
+                          Duration healthInterval) {
+        this(replicas, toolNamePrefix, failureThreshold, acquireTimeout, healthInterval, Set.of());
+    }
+
+    public McpReplicaPool(List<McpReplica> replicas,
+                          String toolNamePrefix,
+                          int failureThreshold,
+                          Duration acquireTimeout,
+                          Duration healthInterval,
+                          Set<String> idempotentTools) {
+        this.replicas = List.copyOf(replicas);
+        this.idempotentTools = Set.copyOf(idempotentTools);
+        this.toolNamePrefix = toolNamePrefix;
+        this.failureThreshold = failureThreshold;
+        this.acquireTimeout = acquireTimeout;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!healthInterval.isZero()) {
+            long intervalMillis = healthInterval.toMillis();
+            this.healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public List<McpReplica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * 从任一可用副本拉取工具列表，生成按副本路由的工具回调
+     */
+    public List<ToolCallback> listToolCallbacks() {
+        McpSchema.ListToolsResult result = execute("tools/list", true, McpSyncClient::listTools);
+        List<ToolCallback> callbacks = new ArrayList<>(result.tools().size());
+        for (McpSchema.Tool tool : result.tools()) {
+            callbacks.add(new PooledMcpToolCallback(this, tool, McpToolUtils.prefixedToolName(toolNamePrefix, tool.name()),
+                    idempotentTools.contains(tool.name())));
+        }
+        return callbacks;
+    }
+
+    /**
+     * 在最优副本上执行操作，请求发出前失败时故障转移到其余副本
+     *
+     * @param operation  操作名称（日志用）
+     * @param idempotent 操作是否幂等（幂等操作任何失败都转移）
+     * @param action     在副本客户端上执行的操作
+     */
+    public <T> T execute(String operation, boolean idempotent, Function<McpSyncClient, T> action) {
+        List<McpReplica> ordered = new ArrayList<>(replicas);
+        ordered.sort(Comparator.comparing((McpReplica replica) -> !replica.isHealthy())
+                .thenComparingDouble(McpReplica::score));
+
+        RuntimeException lastError = null;
+        boolean anyAttempted = false;
+        for (McpReplica replica : ordered) {
+            if (!replica.tryAcquire()) {
+                saturated.increment();
+                continue;
+            }
+            anyAttempted = true;
+            try {
+                return invoke(replica, action);
+            } catch (ReplicaUnavailableException e) {
+                lastError = (RuntimeException) e.getCause();
+                failovers.increment();
+                log.warn("MCP 副本 {} 不可用，{} 转移到其他副本: {}", replica.getName(), operation, lastError.getMessage());
+            } catch (RuntimeException e) {
+                if (!idempotent) {
+                    // 请求可能已送达副本，转移可能导致重复执行
+                    throw e;
+                }
+                lastError = e;
+                failovers.increment();
+                log.warn("MCP 副本 {} 执行 {} 失败，尝试其他副本: {}", replica.getName(), operation, e.getMessage());
+            } finally {
+                replica.release();
+            }
+        }
+
+        if (!anyAttempted && !ordered.isEmpty()) {
+            // 所有副本都已满载：在最优副本上限时等待
+            McpReplica best = ordered.get(0);
+            boolean acquired;
+            try {
+                acquired = best.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待 MCP 副本时被中断: " + operation, e);
+            }
+            if (acquired) {
+                try {
+                    return invoke(best, action);
+                } catch (ReplicaUnavailableException e) {
+                    throw (RuntimeException) e.getCause();
+                } finally {
+                    best.release();
+                }
+            }
+            rejected.increment();
+            throw new IllegalStateException("MCP 所有副本均已达到并发上限，" + operation + " 被拒绝");
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+        throw new IllegalStateException("未配置可用的 MCP 副本");
+    }
+
+    /**
+     * 对所有副本执行一次健康检查（后台线程定时调用，包可见便于测试）
+     */
+    void checkHealth() {
+        for (McpReplica replica : replicas) {
+            long start = System.nanoTime();
+            try {
+                McpSyncClient client = replica.getClient();
+                if (!initializeIfNecessary(client)) {
+                    client.ping();
+                }
+                boolean recovered = !replica.isHealthy();
+                replica.recordSuccess(System.nanoTime() - start);
+                if (recovered) {
+                    log.info("MCP 副本 {} 已恢复", replica.getName());
+                }
+            } catch (RuntimeException e) {
+                if (replica.recordFailure(failureThreshold)) {
+                    log.warn("MCP 副本 {} 健康检查连续失败，标记为不健康: {}", replica.getName(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        healthChecker.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (McpReplica replica : replicas) {
+            Gauge.builder("ai.mcp.replica.latency", replica, McpReplica::getLatencyMillis)
+                    .description("MCP 副本平滑延迟（毫秒，-1 表示尚无样本）")
+                    .tag("replica", replica.getName())
+                    .register(registry);
+            Gauge.builder("ai.mcp.replica.in-flight", replica, McpReplica::getInFlight)
+                    .description("MCP 副本进行中的调用数")
+                    .tag("replica", replica.getName())
+                    .register(registry);
+            Gauge.builder("ai.mcp.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                    .description("MCP 副本是否健康")
+                    .tag("replica", replica.getName())
+                    .register(registry);
+        }
+        FunctionCounter.builder("ai.mcp.pool.failovers", failovers, LongAdder::sum)
+                .description("MCP 调用故障转移次数")
+                .register(registry);
+        FunctionCounter.builder("ai.mcp.pool.saturated", saturated, LongAdder::sum)
+                .description("因副本达到并发上限而跳过的次数")
+                .register(registry);
+        FunctionCounter.builder("ai.mcp.pool.rejected", rejected, LongAdder::sum)
+                .description("所有副本满载导致拒绝的调用次数")
+                .register(registry);
+    }
+
+    /**
+     * 在副本上执行操作；请求发出前的失败包装为 {@link ReplicaUnavailableException}
+     */
+    private <T> T invoke(McpReplica replica, Function<McpSyncClient, T> action) {
+        long start = System.nanoTime();
+        try {
+            // 启动时不可用的副本在首次被选中时初始化，此时操作尚未发出
+            try {
+                initializeIfNecessary(replica.getClient());
+            } catch (RuntimeException e) {
+                throw new ReplicaUnavailableException(e);
+            }
+            T result;
+            try {
+                result = action.apply(replica.getClient());
+            } catch (RuntimeException e) {
+                throw isConnectFailure(e) ? new ReplicaUnavailableException(e) : e;
+            }
+            replica.recordSuccess(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            if (replica.recordFailure(failureThreshold)) {
+                log.warn("MCP 副本 {} 连续调用失败，标记为不健康", replica.getName());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 是否为建立连接阶段的失败（请求未发出）
+     */
+    static boolean isConnectFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof NoRouteToHostException
+                    || cause instanceof UnknownHostException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 副本在请求发出前不可用，可以安全地转移到其他副本
+     */
+    private static final class ReplicaUnavailableException extends RuntimeException {
+
+        ReplicaUnavailableException(RuntimeException cause) {
+            super(cause.getMessage(), cause, false, false);
+        }
+    }
+
+    // 返回本次是否执行了初始化
+    private static boolean initializeIfNecessary(McpSyncClient client) {
+        if (client.isInitialized()) {
+            return false;
+        }
+        client.initialize();
+        return true;
+    }
+}
@@ -0,0 +1,108 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MCP 同步调用并发限制
+ * <p>
+ * MCP 同步客户端在调用线程上阻塞等待异步客户端的结果，虚拟线程执行期间可能钉住载体线程。
+ * 与 {@code ConcurrencyLimitedDataSource} 相同，调用前先获取信号量许可，限制同时阻塞在同步客户端内的调用方数量，
+ * 上限应小于载体线程数，保证始终有空闲的载体线程；等待许可的虚拟线程只挂起、不占用载体线程。
+ * 超过等待时间仍未获得许可时拒绝调用
+ */
+public class McpSyncCallLimiter implements MeterBinder {
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long acquireTimeoutNanos;
+
+    private final LongAdder rejected = new LongAdder();
+
+    public McpSyncCallLimiter(int maxConcurrency, Duration acquireTimeout) {
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    /**
+     * 包装同步 MCP 工具，调用时受并发上限约束
+     */
+    public ToolCallback limit(ToolCallback callback) {
+        return new LimitedToolCallback(callback);
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ai.mcp.sync.concurrency.active", this, limiter -> limiter.maxConcurrency - limiter.permits.availablePermits())
+                .description("正在执行的 MCP 同步调用数")
+                .register(registry);
+        Gauge.builder("ai.mcp.sync.concurrency.waiting", permits, Semaphore::getQueueLength)
+                .description("等待 MCP 同步调用许可的调用方数")
+                .register(registry);
+        FunctionCounter.builder("ai.mcp.sync.concurrency.rejected", rejected, LongAdder::sum)
+                .description("等待超时被拒绝的 MCP 同步调用次数")
+                .register(registry);
+    }
+
+    private void acquire(String toolName) {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new IllegalStateException("MCP 同步调用并发已达上限 " + maxConcurrency + "，工具 " + toolName + " 被拒绝");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待 MCP 同步调用许可时被中断: " + toolName, e);
+        }
+    }
+
+    private final class LimitedToolCallback implements ToolCallback {
+
+        private final ToolCallback delegate;
+
+        LimitedToolCallback(ToolCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, null);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            acquire(getToolDefinition().name());
+            try {
+                return toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
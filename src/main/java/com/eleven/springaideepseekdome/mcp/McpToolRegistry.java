@@ -0,0 +1,215 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.modelcontextprotocol.client.McpAsyncClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.mcp.SyncMcpToolCallbackProvider;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 版本化的 MCP 工具注册表
+ * <p>
+ * - 启动完成后一次性拉取 MCP 工具列表，生成不可变快照；请求路径直接读取快照，不再逐次向服务端查询工具列表
+ * - 收到服务端 tools/resources/prompts 变更通知（{@link McpListChangedEvent}）后在后台线程重新拉取，
+ *   并原子替换为新版本；刷新期间及刷新失败时继续使用旧快照
+ * - 短时间内的多次通知合并为一次刷新
+ * - 工具来源：启用 {@link McpReplicaPool} 时为按副本路由的工具；异步客户端模式下为非阻塞的
+ *   {@link ReactiveMcpToolCallback}；否则为 Spring AI 按连接生成的同步工具
+ * - 同步工具（连接池与按连接生成的工具）在配置了 {@link McpSyncCallLimiter}（虚拟线程模式）时受并发上限约束
+ * - 指标：快照版本、工具数、刷新次数与失败次数
+ */
+@Slf4j
+@Component
+public class McpToolRegistry implements MeterBinder, DisposableBean {
+
+    /**
+     * 工具快照（版本 0 表示尚未成功加载）
+     *
+     * @param version   快照版本，每次刷新成功加一
+     * @param callbacks 不可变的工具列表
+     */
+    public record Snapshot(long version, List<ToolCallback> callbacks) {
+
+        static final Snapshot EMPTY = new Snapshot(0, List.of());
+    }
+
+    private final ObjectProvider<SyncMcpToolCallbackProvider> providers;
+    private final ObjectProvider<McpReplicaPool> pools;
+    private final ObjectProvider<List<McpAsyncClient>> asyncClients;
+    private final ObjectProvider<McpSyncCallLimiter> syncCallLimiters;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.EMPTY);
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final ExecutorService refresher;
+
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    public McpToolRegistry(ObjectProvider<SyncMcpToolCallbackProvider> providers,
+                           ObjectProvider<McpReplicaPool> pools,
+                           ObjectProvider<List<McpAsyncClient>> asyncClients,
+                           ObjectProvider<McpSyncCallLimiter> syncCallLimiters) {
+        this.providers = providers;
+        this.pools = pools;
+        this.asyncClients = asyncClients;
+        this.syncCallLimiters = syncCallLimiters;
+        this.refresher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-tool-registry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 当前版本的 MCP 工具列表（尚未加载成功时同步加载一次）
+     */
+    public List<ToolCallback> getToolCallbacks() {
+        return getSnapshot().callbacks();
+    }
+
+    /**
+     * 当前快照（尚未加载成功时同步加载一次）
+     */
+    public Snapshot getSnapshot() {
+        Snapshot snapshot = current.get();
+        if (snapshot.version() > 0) {
+            return snapshot;
+        }
+        refreshLock.lock();
+        try {
+            snapshot = current.get();
+            return snapshot.version() > 0 ? snapshot : refresh();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * 响应式链路使用的快照：已加载时立即返回，否则在 boundedElastic 上加载，不阻塞调用线程
+     */
+    public Mono<Snapshot> snapshotAsync() {
+        Snapshot snapshot = current.get();
+        if (snapshot.version() > 0) {
+            return Mono.just(snapshot);
+        }
+        return Mono.fromCallable(this::getSnapshot).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRefresh("启动");
+    }
+
+    @EventListener
+    public void onListChanged(McpListChangedEvent event) {
+        scheduleRefresh(event.serverName() + " " + event.kind());
+    }
+
+    @Override
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ai.mcp.tools.version", current, ref -> ref.get().version())
+                .description("当前 MCP 工具快照版本")
+                .register(registry);
+        Gauge.builder("ai.mcp.tools.size", current, ref -> ref.get().callbacks().size())
+                .description("当前 MCP 工具数")
+                .register(registry);
+        FunctionCounter.builder("ai.mcp.tools.refreshes", refreshes, LongAdder::sum)
+                .description("MCP 工具快照刷新次数")
+                .register(registry);
+        FunctionCounter.builder("ai.mcp.tools.refresh.failures", refreshFailures, LongAdder::sum)
+                .description("MCP 工具快照刷新失败次数")
+                .register(registry);
+    }
+
+    /**
+     * 提交后台刷新；已有待执行的刷新时直接合并
+     */
+    void scheduleRefresh(String reason) {
+        if (!refreshScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                // 先清除标记：刷新期间到达的通知会再触发一次刷新，保证拿到最新列表
+                refreshScheduled.set(false);
+                refreshLock.lock();
+                try {
+                    log.info("刷新 MCP 工具快照（{}）", reason);
+                    refresh();
+                } catch (RuntimeException e) {
+                    log.warn("MCP 工具快照刷新失败，继续使用版本 {}: {}", current.get().version(), e.getMessage());
+                } finally {
+                    refreshLock.unlock();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshScheduled.set(false);
+        }
+    }
+
+    // 调用方需持有 refreshLock
+    private Snapshot refresh() {
+        try {
+            List<ToolCallback> callbacks = loadToolCallbacks();
+            if (callbacks == null) {
+                return current.get();
+            }
+            Snapshot snapshot = new Snapshot(versionSequence.incrementAndGet(), callbacks);
+            current.set(snapshot);
+            refreshes.increment();
+            log.info("MCP 工具快照已更新到版本 {}，共 {} 个工具", snapshot.version(), snapshot.callbacks().size());
+            return snapshot;
+        } catch (RuntimeException e) {
+            refreshFailures.increment();
+            throw e;
+        }
+    }
+
+    // 未配置任何 MCP 客户端时返回 null
+    private List<ToolCallback> loadToolCallbacks() {
+        McpReplicaPool pool = pools.getIfAvailable();
+        if (pool != null) {
+            return limitSyncCalls(pool.listToolCallbacks());
+        }
+        List<McpAsyncClient> clients = asyncClients.getIfAvailable(List::of);
+        if (!clients.isEmpty()) {
+            return List.copyOf(ReactiveMcpToolCallback.listAll(clients).block());
+        }
+        SyncMcpToolCallbackProvider provider = providers.getIfAvailable();
+        return provider == null ? null : limitSyncCalls(List.of(provider.getToolCallbacks()));
+    }
+
+    private List<ToolCallback> limitSyncCalls(List<ToolCallback> callbacks) {
+        McpSyncCallLimiter limiter = syncCallLimiters.getIfAvailable();
+        if (limiter == null) {
+            return List.copyOf(callbacks);
+        }
+        return callbacks.stream().map(limiter::limit).toList();
+    }
+}
@@ -0,0 +1,53 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import io.modelcontextprotocol.spec.McpSchema;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+/**
+ * 经 {@link McpReplicaPool} 路由的 MCP 工具回调
+ * <p>
+ * 工具定义与结果转换与 Spring AI 的 SyncMcpToolCallback 一致，调用时由连接池选择副本；
+ * 请求发出前的连接失败转移到其他副本，幂等工具（{@code ai.mcp.pool.idempotent-tools}）任何失败都转移
+ */
+public class PooledMcpToolCallback implements ToolCallback {
+
+    private final McpReplicaPool pool;
+    private final McpSchema.Tool tool;
+    private final ToolDefinition toolDefinition;
+    private final boolean idempotent;
+
+    public PooledMcpToolCallback(McpReplicaPool pool, McpSchema.Tool tool, String toolName, boolean idempotent) {
+        this.pool = pool;
+        this.tool = tool;
+        this.idempotent = idempotent;
+        this.toolDefinition = DefaultToolDefinition.builder()
+                .name(toolName)
+                .description(tool.description())
+                .inputSchema(ModelOptionsUtils.toJsonString(tool.inputSchema()))
+                .build();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return toolDefinition;
+    }
+
+    @Override
+    public String call(String toolInput) {
+        McpSchema.CallToolRequest request = new McpSchema.CallToolRequest(tool.name(), ModelOptionsUtils.jsonToMap(toolInput));
+        McpSchema.CallToolResult response = pool.execute("tools/call " + tool.name(), idempotent, client -> client.callTool(request));
+        if (response.isError() != null && response.isError()) {
+            throw new IllegalStateException("Error calling tool: " + response.content());
+        }
+        return ModelOptionsUtils.toJsonString(response.content());
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return call(toolInput);
+    }
+}
@@ -0,0 +1,65 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import com.eleven.springaideepseekdome.tools.execution.ReactiveToolCallback;
+import io.modelcontextprotocol.client.McpAsyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 基于 {@link McpAsyncClient} 的非阻塞 MCP 工具回调
+ * <p>
+ * 工具定义与结果转换与 Spring AI 的 AsyncMcpToolCallback 一致，区别在于提供 {@link #callAsync}，
+ * 由 {@code ParallelToolCallingManager} 直接组合到响应式链路中，不在工具执行线程上阻塞等待
+ */
+public class ReactiveMcpToolCallback implements ReactiveToolCallback {
+
+    private final McpAsyncClient client;
+    private final McpSchema.Tool tool;
+    private final ToolDefinition toolDefinition;
+
+    public ReactiveMcpToolCallback(McpAsyncClient client, McpSchema.Tool tool) {
+        this.client = client;
+        this.tool = tool;
+        this.toolDefinition = DefaultToolDefinition.builder()
+                .name(McpToolUtils.prefixedToolName(client.getClientInfo().name(), tool.name()))
+                .description(tool.description())
+                .inputSchema(ModelOptionsUtils.toJsonString(tool.inputSchema()))
+                .build();
+    }
+
+    /**
+     * 非阻塞地列出所有客户端的工具
+     */
+    public static Mono<List<ToolCallback>> listAll(List<McpAsyncClient> clients) {
+        return Flux.fromIterable(clients)
+                .flatMapSequential(client -> client.listTools()
+                        .flatMapIterable(McpSchema.ListToolsResult::tools)
+                        .map(tool -> (ToolCallback) new ReactiveMcpToolCallback(client, tool)))
+                .collectList();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return toolDefinition;
+    }
+
+    @Override
+    public Mono<String> callAsync(String toolInput, ToolContext toolContext) {
+        McpSchema.CallToolRequest request = new McpSchema.CallToolRequest(tool.name(), ModelOptionsUtils.jsonToMap(toolInput));
+        return client.callTool(request).map(response -> {
+            if (response.isError() != null && response.isError()) {
+                throw new IllegalStateException("Error calling tool: " + response.content());
+            }
+            return ModelOptionsUtils.toJsonString(response.content());
+        });
+    }
+}
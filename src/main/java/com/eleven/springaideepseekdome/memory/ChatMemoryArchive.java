@@ -0,0 +1,19 @@
+package com.eleven.springaideepseekdome.memory;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 聊天记忆归档（保存被摘要压缩掉的原始消息）
+ */
+public interface ChatMemoryArchive {
+
+    /**
+     * 归档会话中被压缩的原始消息
+     *
+     * @param conversationId 会话ID
+     * @param messages       原始消息（按时间顺序）
+     */
+    void archive(String conversationId, List<Message> messages);
+}
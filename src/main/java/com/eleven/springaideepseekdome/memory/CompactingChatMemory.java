@@ -0,0 +1,230 @@
+package com.eleven.springaideepseekdome.memory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 带后台摘要压缩的聊天记忆
+ * <p>
+ * - 写入后估算会话 token 数，超过预算时将会话提交到低优先级后台线程，请求线程不等待
+ * - 后台线程调用模型将较早的消息总结为一条摘要系统消息，仅保留最近 {@code keepRecent} 条原文
+ * - 替换前校验会话前缀未被并发修改，被替换的原始消息写入 {@link ChatMemoryArchive}
+ * - 保留的最近消息本身已超出预算时不压缩（压缩后仍超预算，会在每次写入时反复触发摘要）
+ * - 后台队列已满时丢弃任务，下次写入会重新触发
+ * <p>
+ * 摘要使用的 ChatClient 应不挂载任何默认 advisor 与工具，避免摘要请求带上提示词前缀、表结构快照或工具定义
+ */
+@Slf4j
+public class CompactingChatMemory implements ChatMemory, DisposableBean, MeterBinder {
+
+    public static final String SUMMARY_PREFIX = "【历史对话摘要】\n";
+
+    private static final String SUMMARY_PROMPT = """
+            你是对话记录压缩助手。请将下面的历史对话压缩为一段简洁的中文摘要，供后续对话作为上下文使用。
+            必须保留：用户的问题意图、已确认的表名与字段、已执行过的 SQL、关键结论与数字。
+            不要保留：完整的表结构清单、查询结果明细、寒暄内容。
+            直接输出摘要正文，不要添加任何前言。
+            """;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ChatMemory delegate;
+    private final ChatClient chatClient;
+    private final ChatMemoryArchive archive;
+    private final int tokenBudget;
+    private final int keepRecent;
+    private final ChatOptions summaryOptions;
+
+    // 分段锁：临界区内可能从数据库加载会话，使用 ReentrantLock 避免虚拟线程钉住载体线程
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    // 已提交压缩任务的会话，避免重复提交
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor compactor;
+
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder compactionFailures = new LongAdder();
+    private final LongAdder compactedMessages = new LongAdder();
+
+    public CompactingChatMemory(ChatMemory delegate,
+                                ChatClient chatClient,
+                                ChatMemoryArchive archive,
+                                int tokenBudget,
+                                int keepRecent,
+                                int maxSummaryTokens) {
+        this.delegate = delegate;
+        this.chatClient = chatClient;
+        this.archive = archive;
+        this.tokenBudget = tokenBudget;
+        this.keepRecent = keepRecent;
+        this.summaryOptions = ChatOptions.builder()
+                .temperature(0.0)
+                .maxTokens(maxSummaryTokens)
+                .build();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.compactor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(256),
+                r -> {
+                    Thread thread = new Thread(r, "chat-memory-compactor");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        List<Message> current;
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            delegate.add(conversationId, messages);
+            current = delegate.get(conversationId);
+        } finally {
+            lock.unlock();
+        }
+        if (TokenEstimator.estimate(current) > tokenBudget && compactible(current) && inFlight.add(conversationId)) {
+            try {
+                compactor.execute(() -> compact(conversationId));
+            } catch (RejectedExecutionException e) {
+                // 队列已满时丢弃并释放标记，下次写入重新触发
+                inFlight.remove(conversationId);
+                log.debug("会话压缩队列已满，跳过: {}", conversationId);
+            }
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        return delegate.get(conversationId);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            delegate.clear(conversationId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 压缩指定会话（后台线程调用，包可见便于测试）
+     */
+    void compact(String conversationId) {
+        try {
+            List<Message> snapshot = delegate.get(conversationId);
+            if (!compactible(snapshot)) {
+                return;
+            }
+            int older = snapshot.size() - keepRecent;
+            List<Message> compacted = List.copyOf(snapshot.subList(0, older));
+            String summary = summarize(compacted);
+            if (summary == null || summary.isBlank()) {
+                return;
+            }
+
+            ReentrantLock lock = lockFor(conversationId);
+            lock.lock();
+            try {
+                List<Message> current = delegate.get(conversationId);
+                // 摘要期间会话被清空或改写时放弃本次结果
+                if (current.size() < older || !current.subList(0, older).equals(compacted)) {
+                    log.debug("会话在压缩期间被修改，放弃本次摘要: {}", conversationId);
+                    return;
+                }
+                List<Message> replaced = new ArrayList<>(current.size() - older + 1);
+                replaced.add(new SystemMessage(SUMMARY_PREFIX + summary.trim()));
+                replaced.addAll(current.subList(older, current.size()));
+                delegate.clear(conversationId);
+                delegate.add(conversationId, replaced);
+            } finally {
+                lock.unlock();
+            }
+
+            archive.archive(conversationId, compacted);
+            compactions.increment();
+            compactedMessages.add(compacted.size());
+            log.info("会话 {} 已压缩 {} 条历史消息", conversationId, compacted.size());
+        } catch (RuntimeException e) {
+            compactionFailures.increment();
+            log.warn("会话 {} 压缩失败: {}", conversationId, e.getMessage());
+        } finally {
+            inFlight.remove(conversationId);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        compactor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ai.chat-memory.compactions", compactions, LongAdder::sum)
+                .description("会话摘要压缩次数")
+                .register(registry);
+        FunctionCounter.builder("ai.chat-memory.compactions.failures", compactionFailures, LongAdder::sum)
+                .description("会话摘要压缩失败次数")
+                .register(registry);
+        FunctionCounter.builder("ai.chat-memory.compacted-messages", compactedMessages, LongAdder::sum)
+                .description("被压缩归档的消息数")
+                .register(registry);
+        Gauge.builder("ai.chat-memory.compactions.pending", inFlight, Set::size)
+                .description("等待或正在压缩的会话数")
+                .register(registry);
+    }
+
+    /**
+     * 较早的消息多于 1 条，且保留的最近消息本身在预算以内（否则压缩后仍超预算）
+     */
+    private boolean compactible(List<Message> messages) {
+        return messages.size() > keepRecent + 1
+                && TokenEstimator.estimate(messages.subList(messages.size() - keepRecent, messages.size())) < tokenBudget;
+    }
+
+    private String summarize(List<Message> messages) {
+        StringBuilder transcript = new StringBuilder(4096);
+        for (Message message : messages) {
+            String text = message.getText();
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            transcript.append('[').append(message.getMessageType().getValue()).append("] ")
+                    .append(text).append('\n');
+        }
+        return chatClient.prompt()
+                .system(SUMMARY_PROMPT)
+                .user(transcript.toString())
+                .options(summaryOptions)
+                .call()
+                .content();
+    }
+
+    private ReentrantLock lockFor(String conversationId) {
+        return locks[(conversationId.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+}
@@ -0,0 +1,62 @@
+package com.eleven.springaideepseekdome.memory;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * 基于 JDBC 的聊天记忆归档
+ */
+public class JdbcChatMemoryArchive implements ChatMemoryArchive {
+
+    public static final String SCHEMA_DDL = """
+            CREATE TABLE IF NOT EXISTS ai_chat_memory_archive (
+                id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                conversation_id VARCHAR(128) NOT NULL,
+                message_type VARCHAR(16) NOT NULL,
+                content LONGTEXT,
+                archived_at TIMESTAMP NOT NULL
+            )
+            """;
+
+    private static final String INSERT_ARCHIVE =
+            "INSERT INTO ai_chat_memory_archive (conversation_id, message_type, content, archived_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcChatMemoryArchive(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 创建表结构（表已存在时忽略）
+     */
+    public void initializeSchema() {
+        jdbcTemplate.execute(SCHEMA_DDL);
+    }
+
+    @Override
+    public void archive(String conversationId, List<Message> messages) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_ARCHIVE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Message message = messages.get(i);
+                ps.setString(1, conversationId);
+                ps.setString(2, message.getMessageType().name());
+                ps.setString(3, message.getText());
+                ps.setTimestamp(4, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return messages.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package com.eleven.springaideepseekdome.memory;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 本地 token 数估算（无需调用分词器）
+ * <p>
+ * 经验值：ASCII 约 4 个字符 1 个 token，中文等非 ASCII 字符约 1 个字符 1 个 token
+ */
+public final class TokenEstimator {
+
+    // 每条消息的角色与格式开销
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            if (text.charAt(i) < 0x80) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    public static int estimate(List<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += MESSAGE_OVERHEAD + estimate(message.getText());
+        }
+        return tokens;
+    }
+}
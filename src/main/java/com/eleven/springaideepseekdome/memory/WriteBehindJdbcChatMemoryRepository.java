@@ -0,0 +1,325 @@
+package com.eleven.springaideepseekdome.memory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AbstractMessage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 JDBC 的持久化聊天记忆存储（写后缓冲 + 热会话近缓存）
+ * <p>
+ * - 写入：{@link #saveAll} 只更新内存并标记会话为脏，后台线程按固定间隔批量落库，
+ *   同一会话在一个周期内的多次写入只落库最后一次（事务内 DELETE + 批量 INSERT）
+ * - 读取：未落库数据 → 近缓存（有界、按访问过期）→ 数据库（单条查询懒加载）
+ * - 关闭：应用停止时同步刷写剩余数据
+ * - 失败：单个会话落库失败只记录失败次数并保留在待写队列中，不影响其他会话落库
+ * - 校验：会话 ID 超过 {@value #MAX_CONVERSATION_ID_LENGTH} 个字符（conversation_id 列长度）时直接拒绝，不进入待写队列
+ * - 序列化：文本存 content 列，消息元数据、助手消息的工具调用与工具消息的响应以 JSON 存 payload 列，
+ *   重新加载后与写入前的消息一致（工具调用与响应保持配对）
+ * <p>
+ * 表结构见 {@link #SCHEMA_DDL}，可通过 {@code ai.chat-memory.jdbc.initialize-schema} 自动创建
+ */
+@Slf4j
+public class WriteBehindJdbcChatMemoryRepository implements ChatMemoryRepository, DisposableBean, MeterBinder {
+
+    /**
+     * 会话 ID 最大长度，与 conversation_id 列长度一致
+     */
+    public static final int MAX_CONVERSATION_ID_LENGTH = 128;
+
+    public static final String SCHEMA_DDL = """
+            CREATE TABLE IF NOT EXISTS ai_chat_memory (
+                conversation_id VARCHAR(128) NOT NULL,
+                seq INT NOT NULL,
+                message_type VARCHAR(16) NOT NULL,
+                content LONGTEXT,
+                payload LONGTEXT,
+                created_at TIMESTAMP NOT NULL,
+                PRIMARY KEY (conversation_id, seq)
+            )
+            """;
+
+    private static final String SELECT_MESSAGES =
+            "SELECT message_type, content, payload FROM ai_chat_memory WHERE conversation_id = ? ORDER BY seq";
+    private static final String SELECT_CONVERSATION_IDS =
+            "SELECT DISTINCT conversation_id FROM ai_chat_memory";
+    private static final String DELETE_MESSAGES =
+            "DELETE FROM ai_chat_memory WHERE conversation_id = ?";
+    private static final String INSERT_MESSAGE =
+            "INSERT INTO ai_chat_memory (conversation_id, seq, message_type, content, payload, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final ObjectMapper JSON = JsonMapper.builder().findAndAddModules().build();
+
+    // content 列之外需要保留的消息内容
+    private record MessagePayload(Map<String, Object> metadata,
+                                  List<AssistantMessage.ToolCall> toolCalls,
+                                  List<ToolResponseMessage.ToolResponse> toolResponses) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final Cache<String, List<Message>> nearCache;
+    // 未落库的会话快照（空列表表示删除）
+    private final Map<String, List<Message>> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder flushedConversations = new LongAdder();
+    private final LongAdder coldLoads = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    public WriteBehindJdbcChatMemoryRepository(JdbcTemplate jdbcTemplate,
+                                               TransactionOperations transactionOperations,
+                                               int nearCacheSize,
+                                               Duration nearCacheIdle,
+                                               Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheSize)
+                .expireAfterAccess(nearCacheIdle)
+                .recordStats()
+                .build();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-memory-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 创建表结构（表已存在时忽略）
+     */
+    public void initializeSchema() {
+        jdbcTemplate.execute(SCHEMA_DDL);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        Set<String> ids = new LinkedHashSet<>(jdbcTemplate.queryForList(SELECT_CONVERSATION_IDS, String.class));
+        pending.forEach((id, messages) -> {
+            if (messages.isEmpty()) {
+                ids.remove(id);
+            } else {
+                ids.add(id);
+            }
+        });
+        return List.copyOf(ids);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        List<Message> unflushed = pending.get(conversationId);
+        if (unflushed != null) {
+            return unflushed;
+        }
+        List<Message> cached = nearCache.getIfPresent(conversationId);
+        if (cached != null) {
+            return cached;
+        }
+        // 在缓存的 compute 之外加载，避免数据库 I/O 期间持有 ConcurrentHashMap 的桶锁（虚拟线程下会钉住载体线程）
+        List<Message> loaded = loadFromDatabase(conversationId);
+        List<Message> raced = nearCache.asMap().putIfAbsent(conversationId, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        checkConversationId(conversationId);
+        List<Message> snapshot = List.copyOf(messages);
+        nearCache.put(conversationId, snapshot);
+        pending.put(conversationId, snapshot);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        checkConversationId(conversationId);
+        nearCache.invalidate(conversationId);
+        pending.put(conversationId, List.of());
+    }
+
+    /**
+     * 将所有未落库的会话写入数据库
+     * <p>
+     * 逐个会话提交；某个会话失败时保留在待写队列中等待下个周期重试，继续写入其余会话
+     */
+    public void flush() {
+        for (String conversationId : List.copyOf(pending.keySet())) {
+            List<Message> messages = pending.get(conversationId);
+            if (messages == null) {
+                continue;
+            }
+            try {
+                transactionOperations.executeWithoutResult(status -> write(conversationId, messages));
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                log.warn("会话 {} 落库失败，将在下个周期重试: {}", conversationId, e.getMessage());
+                continue;
+            }
+            // 仅当期间没有新的写入时才移除，避免覆盖更新的快照
+            pending.remove(conversationId, messages);
+            flushedConversations.increment();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, nearCache, "ai.chat-memory.near-cache");
+        Gauge.builder("ai.chat-memory.pending", pending, Map::size)
+                .description("等待落库的会话数")
+                .register(registry);
+        FunctionCounter.builder("ai.chat-memory.flushed", flushedConversations, LongAdder::sum)
+                .description("已落库的会话写入次数")
+                .register(registry);
+        FunctionCounter.builder("ai.chat-memory.flush.failures", flushFailures, LongAdder::sum)
+                .description("会话落库失败次数")
+                .register(registry);
+        FunctionCounter.builder("ai.chat-memory.cold-loads", coldLoads, LongAdder::sum)
+                .description("从数据库懒加载的会话数")
+                .register(registry);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // 单个会话的失败已在 flush 中处理，这里只防止意外异常终止定时任务
+            log.warn("聊天记忆落库周期执行失败: {}", e.getMessage());
+        }
+    }
+
+    private static void checkConversationId(String conversationId) {
+        if (conversationId == null || conversationId.isEmpty()) {
+            throw new IllegalArgumentException("会话 ID 不能为空");
+        }
+        if (conversationId.length() > MAX_CONVERSATION_ID_LENGTH) {
+            throw new IllegalArgumentException("会话 ID 长度不能超过 " + MAX_CONVERSATION_ID_LENGTH + " 个字符");
+        }
+    }
+
+    private void write(String conversationId, List<Message> messages) {
+        jdbcTemplate.update(DELETE_MESSAGES, conversationId);
+        if (messages.isEmpty()) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Message message = messages.get(i);
+                ps.setString(1, conversationId);
+                ps.setInt(2, i);
+                ps.setString(3, message.getMessageType().name());
+                ps.setString(4, message.getText());
+                ps.setString(5, toPayload(message));
+                ps.setTimestamp(6, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return messages.size();
+            }
+        });
+    }
+
+    private List<Message> loadFromDatabase(String conversationId) {
+        coldLoads.increment();
+        List<Message> messages = new ArrayList<>();
+        jdbcTemplate.query(SELECT_MESSAGES, rs -> {
+            messages.add(toMessage(MessageType.valueOf(rs.getString("message_type")),
+                    rs.getString("content"), rs.getString("payload")));
+        }, conversationId);
+        return List.copyOf(messages);
+    }
+
+    private static String toPayload(Message message) {
+        Map<String, Object> metadata = new HashMap<>(message.getMetadata());
+        metadata.remove(AbstractMessage.MESSAGE_TYPE);
+        List<AssistantMessage.ToolCall> toolCalls = message instanceof AssistantMessage assistant && assistant.hasToolCalls()
+                ? assistant.getToolCalls() : null;
+        List<ToolResponseMessage.ToolResponse> toolResponses = message instanceof ToolResponseMessage tool
+                ? tool.getResponses() : null;
+        try {
+            return JSON.writeValueAsString(new MessagePayload(metadata, toolCalls, toolResponses));
+        } catch (JsonProcessingException e) {
+            // 元数据中存在无法序列化的值时只丢弃元数据，工具调用与响应必须保留
+            log.warn("消息元数据无法序列化，已忽略: {}", e.getOriginalMessage());
+            try {
+                return JSON.writeValueAsString(new MessagePayload(Map.of(), toolCalls, toolResponses));
+            } catch (JsonProcessingException ex) {
+                throw new IllegalStateException("消息序列化失败", ex);
+            }
+        }
+    }
+
+    private static Message toMessage(MessageType type, String content, String payloadJson) {
+        MessagePayload payload = fromPayload(payloadJson);
+        Map<String, Object> metadata = payload.metadata() == null ? Map.of() : payload.metadata();
+        return switch (type) {
+            case USER -> UserMessage.builder().text(content).metadata(metadata).build();
+            case ASSISTANT -> new AssistantMessage(content, metadata,
+                    payload.toolCalls() == null ? List.of() : payload.toolCalls());
+            case SYSTEM -> SystemMessage.builder().text(content).metadata(metadata).build();
+            case TOOL -> new ToolResponseMessage(
+                    payload.toolResponses() == null ? List.of() : payload.toolResponses(), metadata);
+        };
+    }
+
+    private static MessagePayload fromPayload(String payloadJson) {
+        if (payloadJson == null || payloadJson.isEmpty()) {
+            return new MessagePayload(null, null, null);
+        }
+        try {
+            return JSON.readValue(payloadJson, MessagePayload.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("消息反序列化失败: " + e.getOriginalMessage(), e);
+        }
+    }
+}
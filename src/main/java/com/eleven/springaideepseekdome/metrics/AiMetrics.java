@@ -0,0 +1,303 @@
+package com.eleven.springaideepseekdome.metrics;
+
+import com.eleven.springaideepseekdome.domain.dto.ChatCommonRequest.ToolType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.deepseek.api.DeepSeekApi;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 模型、流式输出、SQL 与聊天记忆的指标
+ * <p>
+ * - 模型：{@code ai.llm.latency}（整次调用耗时，含工具调用轮次）、{@code ai.llm.tokens}（prompt / completion / cached）
+ * <p>
+ * token 用量按轮记录：经 ChatClient 的请求由 {@code ToolLoopChatModel} 每轮回调 {@link #onModelResponse}
+ * （最终响应中的累计用量不含缓存命中数），直接调用模型的 {@link #observeCall} / {@link #observeStream} 只有一轮，从响应中记录
+ * - 流式：{@code ai.llm.first-token}（首 token 延迟）、{@code ai.llm.tokens-per-second}（首 token 之后的生成速度）
+ * - SQL：{@code ai.sql.latency}、{@code ai.sql.rows}（不含命中查询结果缓存的调用）
+ * - 聊天记忆：{@code ai.chat-memory.session.size}（每次请求时会话历史的消息数）
+ * <p>
+ * 以上指标均带 {@link RequestTags} 的 endpoint 与 tool.type 标签；工具调用次数与耗时见 {@code ai.tool.calls}。
+ * 未绑定 MeterRegistry 时不记录
+ */
+@Slf4j
+@Component
+public class AiMetrics implements MeterBinder, ModelUsageListener {
+
+    private volatile MeterRegistry meterRegistry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+    }
+
+    /**
+     * 创建请求级指标顾问（挂载到 ChatClient 请求上）
+     */
+    public ChatMetricsAdvisor advisor(String endpoint, ToolType toolType) {
+        return new ChatMetricsAdvisor(this, RequestTags.of(endpoint, toolType));
+    }
+
+    /**
+     * 记录单轮模型响应的 token 用量（请求标签取自提示词的工具上下文）
+     */
+    @Override
+    public void onModelResponse(Prompt prompt, ChatResponse response) {
+        RequestTags tags = prompt.getOptions() instanceof ToolCallingChatOptions options
+                ? RequestTags.fromToolContext(options.getToolContext()) : RequestTags.UNKNOWN;
+        recordTokens(tags, response);
+    }
+
+    /**
+     * 记录直接调用模型的同步调用（单轮，含 token 用量）
+     */
+    public ChatResponse observeCall(RequestTags tags, Supplier<ChatResponse> call) {
+        return observeCall(tags, call, true);
+    }
+
+    /**
+     * @param recordTokens 是否从响应中记录 token 用量（经工具循环的调用由 {@link #onModelResponse} 按轮记录）
+     */
+    ChatResponse observeCall(RequestTags tags, Supplier<ChatResponse> call, boolean recordTokens) {
+        long start = System.nanoTime();
+        ChatResponse response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            recordLatency(tags, null, "call", "error", System.nanoTime() - start);
+            throw e;
+        }
+        recordLatency(tags, response, "call", "success", System.nanoTime() - start);
+        if (recordTokens) {
+            recordTokens(tags, response);
+        }
+        return response;
+    }
+
+    /**
+     * 记录直接调用模型的流式调用（单轮，含 token 用量；每次订阅单独计时）
+     *
+     * @param extractor 从流元素中取出模型响应
+     */
+    public <T> Flux<T> observeStream(RequestTags tags, Flux<T> responses, Function<T, ChatResponse> extractor) {
+        return observeStream(tags, responses, extractor, true);
+    }
+
+    <T> Flux<T> observeStream(RequestTags tags, Flux<T> responses, Function<T, ChatResponse> extractor,
+                              boolean recordTokens) {
+        return Flux.defer(() -> {
+            StreamState state = new StreamState(recordTokens);
+            return responses
+                    .doOnNext(element -> state.onNext(tags, extractor.apply(element)))
+                    .doFinally(signal -> state.onFinally(tags, signal));
+        });
+    }
+
+    /**
+     * 记录本次请求时会话历史的消息数
+     */
+    public void recordHistorySize(RequestTags tags, int messages) {
+        MeterRegistry registry = this.meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        DistributionSummary.builder("ai.chat-memory.session.size")
+                .description("请求时会话历史的消息数")
+                .tags(tags.toTags())
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(messages);
+    }
+
+    /**
+     * 记录一次 SQL 执行（请求标签取自当前工具执行线程）
+     *
+     * @param tool 工具名
+     * @param rows 返回行数，失败时为负数
+     */
+    public void recordSql(String tool, long nanos, int rows) {
+        MeterRegistry registry = this.meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Tags tags = RequestTags.current().toTags().and("tool", tool);
+        Timer.builder("ai.sql.latency")
+                .description("SQL 执行耗时（含读取结果集）")
+                .tags(tags)
+                .tag("outcome", rows < 0 ? "error" : "success")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (rows >= 0) {
+            DistributionSummary.builder("ai.sql.rows")
+                    .description("SQL 返回行数（受行数上限截断）")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(rows);
+        }
+    }
+
+    /**
+     * 读取命中模型上下文缓存的 prompt token 数（DeepSeek / OpenAI 原生用量），无法获取时返回 0
+     */
+    public static int cachedTokens(Usage usage) {
+        Integer cached = null;
+        Object nativeUsage = usage.getNativeUsage();
+        if (nativeUsage instanceof DeepSeekApi.Usage deepSeekUsage && deepSeekUsage.promptTokensDetails() != null) {
+            cached = deepSeekUsage.promptTokensDetails().cachedTokens();
+        } else if (nativeUsage instanceof OpenAiApi.Usage openAiUsage && openAiUsage.promptTokensDetails() != null) {
+            cached = openAiUsage.promptTokensDetails().cachedTokens();
+        }
+        return cached == null ? 0 : cached;
+    }
+
+    private void recordLatency(RequestTags tags, ChatResponse response, String mode, String outcome, long nanos) {
+        MeterRegistry registry = this.meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("ai.llm.latency")
+                .description("模型调用总耗时（含模型内部执行的工具调用轮次）")
+                .tags(tags.toTags())
+                .tag("model", modelOf(response))
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordTokens(RequestTags tags, ChatResponse response) {
+        MeterRegistry registry = this.meterRegistry;
+        Usage usage = usageOf(response);
+        if (registry == null || usage == null) {
+            return;
+        }
+        Tags meterTags = tags.toTags().and("model", modelOf(response));
+        countTokens(registry, meterTags, "prompt", usage.getPromptTokens());
+        countTokens(registry, meterTags, "completion", usage.getCompletionTokens());
+        countTokens(registry, meterTags, "cached", cachedTokens(usage));
+    }
+
+    private static void countTokens(MeterRegistry registry, Tags tags, String type, Integer tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        Counter.builder("ai.llm.tokens")
+                .description("模型用量 token 数（cached 为 prompt 中命中上下文缓存的部分）")
+                .tags(tags)
+                .tag("type", type)
+                .register(registry)
+                .increment(tokens);
+    }
+
+    private static Usage usageOf(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return null;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        return usage == null || usage.getTotalTokens() == null || usage.getTotalTokens() == 0 ? null : usage;
+    }
+
+    private static String modelOf(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return "unknown";
+        }
+        String model = response.getMetadata().getModel();
+        return model == null || model.isEmpty() ? "unknown" : model;
+    }
+
+    private static boolean hasText(ChatResponse response) {
+        return response != null && response.getResult() != null && response.getResult().getOutput() != null
+                && response.getResult().getOutput().getText() != null
+                && !response.getResult().getOutput().getText().isEmpty();
+    }
+
+    // 单次流式调用的计时状态（Reactor 保证同一订阅的信号串行到达）
+    private final class StreamState {
+
+        private final boolean recordTokens;
+        private final long start = System.nanoTime();
+        private long firstToken;
+        private long chunks;
+        private ChatResponse lastResponse;
+        private ChatResponse usageResponse;
+
+        StreamState(boolean recordTokens) {
+            this.recordTokens = recordTokens;
+        }
+
+        void onNext(RequestTags tags, ChatResponse response) {
+            if (response == null) {
+                return;
+            }
+            lastResponse = response;
+            if (usageOf(response) != null) {
+                usageResponse = response;
+            }
+            if (!hasText(response)) {
+                return;
+            }
+            chunks++;
+            if (firstToken == 0) {
+                firstToken = System.nanoTime();
+                MeterRegistry registry = meterRegistry;
+                if (registry != null) {
+                    Timer.builder("ai.llm.first-token")
+                            .description("流式调用首 token 延迟")
+                            .tags(tags.toTags())
+                            .tag("model", modelOf(response))
+                            .publishPercentileHistogram()
+                            .register(registry)
+                            .record(firstToken - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        void onFinally(RequestTags tags, SignalType signal) {
+            long end = System.nanoTime();
+            String outcome = switch (signal) {
+                case ON_COMPLETE -> "success";
+                case ON_ERROR -> "error";
+                default -> "cancelled";
+            };
+            ChatResponse response = usageResponse != null ? usageResponse : lastResponse;
+            recordLatency(tags, response, "stream", outcome, end - start);
+            if (recordTokens) {
+                recordTokens(tags, usageResponse);
+            }
+            MeterRegistry registry = meterRegistry;
+            if (registry == null || signal != SignalType.ON_COMPLETE || firstToken == 0 || end <= firstToken) {
+                return;
+            }
+            // 优先使用用量中的 completion token 数，模型未返回用量时以含文本的增量数近似
+            Usage usage = usageOf(usageResponse);
+            long tokens = usage != null && usage.getCompletionTokens() != null ? usage.getCompletionTokens() : chunks;
+            double seconds = (end - firstToken) / 1e9;
+            DistributionSummary.builder("ai.llm.tokens-per-second")
+                    .description("流式调用首 token 之后的生成速度")
+                    .tags(tags.toTags())
+                    .tag("model", modelOf(response))
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(tokens / seconds);
+        }
+    }
+}
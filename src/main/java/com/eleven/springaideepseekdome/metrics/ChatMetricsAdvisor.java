@@ -0,0 +1,86 @@
+package com.eleven.springaideepseekdome.metrics;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 请求级指标顾问（由 {@link AiMetrics#advisor} 按请求创建）
+ * <p>
+ * 位于聊天记忆等顾问之后、{@code PromptAssemblyAdvisor} 之前：
+ * - 记录模型调用耗时，流式调用额外记录首 token 延迟与生成速度（token 用量由工具循环按轮回调 {@link AiMetrics#onModelResponse} 记录）
+ * - 以注入记忆后的消息数记录会话历史大小
+ * - 把请求标签写入工具上下文，工具调用与 SQL 指标据此带上 endpoint / tool.type 标签
+ */
+public class ChatMetricsAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final AiMetrics metrics;
+    private final RequestTags tags;
+
+    ChatMetricsAdvisor(AiMetrics metrics, RequestTags tags) {
+        this.metrics = metrics;
+        this.tags = tags;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        ChatClientRequest request = before(chatClientRequest);
+        ChatClientResponse[] response = new ChatClientResponse[1];
+        metrics.observeCall(tags, () -> {
+            response[0] = callAdvisorChain.nextCall(request);
+            return response[0].chatResponse();
+        }, false);
+        return response[0];
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        return Flux.defer(() -> metrics.observeStream(tags, streamAdvisorChain.nextStream(before(chatClientRequest)),
+                ChatClientResponse::chatResponse, false));
+    }
+
+    @Override
+    public String getName() {
+        return "ChatMetricsAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // 在记忆等顾问之后、提示词组装顾问之前执行
+        return Ordered.LOWEST_PRECEDENCE - 2;
+    }
+
+    private ChatClientRequest before(ChatClientRequest request) {
+        Prompt prompt = request.prompt();
+        int history = -1; // 不计本次用户消息
+        for (Message message : prompt.getInstructions()) {
+            if (message.getMessageType() != MessageType.SYSTEM) {
+                history++;
+            }
+        }
+        metrics.recordHistorySize(tags, Math.max(history, 0));
+
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)) {
+            return request;
+        }
+        ToolCallingChatOptions copy = options.copy();
+        Map<String, Object> toolContext = new HashMap<>(copy.getToolContext() == null ? Map.of() : copy.getToolContext());
+        toolContext.put(RequestTags.TOOL_CONTEXT_KEY, tags);
+        copy.setToolContext(toolContext);
+        return request.mutate()
+                .prompt(prompt.mutate().chatOptions(copy).build())
+                .build();
+    }
+}
@@ -0,0 +1,21 @@
+package com.eleven.springaideepseekdome.metrics;
+
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+/**
+ * 单轮模型请求的用量监听器
+ * <p>
+ * 由 {@code ToolLoopChatModel} 在每轮模型请求返回带用量的响应后调用（流式调用为携带用量的 chunk）。
+ * 带工具调用的请求最终返回的是各轮累计用量，其中不含模型原生用量（如 DeepSeek 的缓存命中 token 数），
+ * 因此与缓存命中相关的指标需要按轮记录
+ */
+@FunctionalInterface
+public interface ModelUsageListener {
+
+    /**
+     * @param prompt   本轮发给模型的提示词（工具上下文中带有 {@link RequestTags}）
+     * @param response 本轮模型响应，用量中保留模型原生用量
+     */
+    void onModelResponse(Prompt prompt, ChatResponse response);
+}
@@ -0,0 +1,71 @@
+package com.eleven.springaideepseekdome.metrics;
+
+import com.eleven.springaideepseekdome.domain.dto.ChatCommonRequest.ToolType;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 请求级指标标签（接口 + 工具类型）
+ * <p>
+ * 由 {@link ChatMetricsAdvisor} 写入工具上下文（{@link #TOOL_CONTEXT_KEY}），工具执行时从上下文取出并在执行线程上
+ * 通过 {@link #callWith} 设置为当前标签，工具内部（如 SQL 指标）经 {@link #current()} 读取
+ *
+ * @param endpoint 接口路径
+ * @param toolType 工具类型
+ */
+public record RequestTags(String endpoint, ToolType toolType) {
+
+    /**
+     * 工具上下文中保存请求标签的键（工具执行管理器转交给工具前会移除）
+     */
+    public static final String TOOL_CONTEXT_KEY = RequestTags.class.getName();
+
+    /**
+     * 未知来源（非聊天接口触发，或未挂载指标顾问）
+     */
+    public static final RequestTags UNKNOWN = new RequestTags("unknown", null);
+
+    private static final ThreadLocal<RequestTags> CURRENT = new ThreadLocal<>();
+
+    public static RequestTags of(String endpoint, ToolType toolType) {
+        return new RequestTags(endpoint, toolType);
+    }
+
+    public Tags toTags() {
+        return Tags.of("endpoint", endpoint, "tool.type", toolType == null ? "none" : toolType.name().toLowerCase());
+    }
+
+    /**
+     * 从工具上下文读取请求标签
+     */
+    public static RequestTags fromToolContext(Map<String, Object> context) {
+        return context != null && context.get(TOOL_CONTEXT_KEY) instanceof RequestTags tags ? tags : UNKNOWN;
+    }
+
+    /**
+     * 当前线程的请求标签（仅在工具执行期间设置）
+     */
+    public static RequestTags current() {
+        RequestTags tags = CURRENT.get();
+        return tags != null ? tags : UNKNOWN;
+    }
+
+    /**
+     * 以给定标签作为当前线程的请求标签执行
+     */
+    public static <T> T callWith(RequestTags tags, Supplier<T> action) {
+        RequestTags previous = CURRENT.get();
+        CURRENT.set(tags);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
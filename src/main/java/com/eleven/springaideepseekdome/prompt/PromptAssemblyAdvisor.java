@@ -0,0 +1,162 @@
+package com.eleven.springaideepseekdome.prompt;
+
+import com.eleven.springaideepseekdome.console.PromptConsole;
+import com.eleven.springaideepseekdome.metrics.AiMetrics;
+import com.eleven.springaideepseekdome.metrics.ModelUsageListener;
+import com.eleven.springaideepseekdome.tools.schema.SchemaSnapshot;
+import com.eleven.springaideepseekdome.tools.schema.SchemaSnapshotCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.AdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.BaseAdvisor;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 前缀稳定的提示词组装顾问
+ * <p>
+ * DeepSeek 按请求前缀做上下文缓存，只有开头的字节完全一致才能命中。本顾问在所有其他顾问之后、
+ * 调用模型之前统一调整消息顺序：
+ * <ol>
+ *   <li>稳定前缀：预设提示词 {@link PromptConsole#MYSQL_STUDYDB_PROMPT}（无论以何种消息类型传入）
+ *       + 带指纹的表结构快照，合并为一条系统消息，同一快照下逐字节相同</li>
+ *   <li>其他系统消息（如历史对话摘要）</li>
+ *   <li>会话历史与本次用户消息（保持原有相对顺序）</li>
+ * </ol>
+ * 每轮模型请求返回后（{@link ModelUsageListener}）从原生用量中读取缓存命中/未命中的 prompt token 数并记录为指标；
+ * 不从最终响应读取，带工具调用的请求最终响应中只有各轮累计用量，缺少缓存命中数
+ */
+@Slf4j
+@Component
+public class PromptAssemblyAdvisor implements BaseAdvisor, MeterBinder, ModelUsageListener {
+
+    private record StablePrefix(String fingerprint, String text) {
+    }
+
+    private final SchemaSnapshotCache schemaSnapshotCache;
+    private final boolean includeSchema;
+    private final AtomicReference<StablePrefix> prefix = new AtomicReference<>();
+
+    private final LongAdder cacheHitTokens = new LongAdder();
+    private final LongAdder cacheMissTokens = new LongAdder();
+    private final LongAdder assembled = new LongAdder();
+
+    public PromptAssemblyAdvisor(SchemaSnapshotCache schemaSnapshotCache,
+                                 @Value("${ai.prompt.assembly.include-schema:true}") boolean includeSchema) {
+        this.schemaSnapshotCache = schemaSnapshotCache;
+        this.includeSchema = includeSchema;
+    }
+
+    @Override
+    public ChatClientRequest before(ChatClientRequest chatClientRequest, AdvisorChain advisorChain) {
+        List<Message> instructions = chatClientRequest.prompt().getInstructions();
+        boolean presetUsed = false;
+        List<Message> systemMessages = new ArrayList<>(2);
+        List<Message> conversation = new ArrayList<>(instructions.size());
+        for (Message message : instructions) {
+            if (PromptConsole.MYSQL_STUDYDB_PROMPT.equals(message.getText())) {
+                presetUsed = true;
+            } else if (message.getMessageType() == MessageType.SYSTEM) {
+                systemMessages.add(message);
+            } else {
+                conversation.add(message);
+            }
+        }
+
+        List<Message> messages = new ArrayList<>(instructions.size() + 1);
+        if (presetUsed) {
+            messages.add(new SystemMessage(stablePrefix()));
+            assembled.increment();
+        }
+        messages.addAll(systemMessages);
+        messages.addAll(conversation);
+        return chatClientRequest.mutate()
+                .prompt(chatClientRequest.prompt().mutate().messages(messages).build())
+                .build();
+    }
+
+    @Override
+    public ChatClientResponse after(ChatClientResponse chatClientResponse, AdvisorChain advisorChain) {
+        return chatClientResponse;
+    }
+
+    @Override
+    public void onModelResponse(Prompt prompt, ChatResponse response) {
+        recordUsage(response.getMetadata().getUsage());
+    }
+
+    @Override
+    public int getOrder() {
+        // 在记忆等顾问之后、调用模型之前执行
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ai.prompt.cache.tokens", cacheHitTokens, LongAdder::sum)
+                .tag("result", "hit")
+                .description("命中模型上下文缓存的 prompt token 数")
+                .register(registry);
+        FunctionCounter.builder("ai.prompt.cache.tokens", cacheMissTokens, LongAdder::sum)
+                .tag("result", "miss")
+                .description("未命中模型上下文缓存的 prompt token 数")
+                .register(registry);
+        FunctionCounter.builder("ai.prompt.assembled", assembled, LongAdder::sum)
+                .description("以稳定前缀组装的请求数")
+                .register(registry);
+    }
+
+    /**
+     * 当前稳定前缀（表结构指纹不变时返回同一字符串实例）
+     */
+    String stablePrefix() {
+        String fingerprint = "";
+        String schema = null;
+        if (includeSchema) {
+            try {
+                SchemaSnapshot snapshot = schemaSnapshotCache.getSnapshot();
+                fingerprint = snapshot.fingerprint();
+                schema = snapshot.rendered();
+            } catch (RuntimeException e) {
+                // 数据库不可用时退化为只包含预设提示词，模型仍可通过工具获取表结构
+                log.warn("获取表结构快照失败，稳定前缀不包含表结构: {}", e.getMessage());
+            }
+        }
+        StablePrefix current = prefix.get();
+        if (current != null && current.fingerprint().equals(fingerprint)) {
+            return current.text();
+        }
+        String text = schema == null
+                ? PromptConsole.MYSQL_STUDYDB_PROMPT
+                : PromptConsole.MYSQL_STUDYDB_PROMPT + "\n\n【数据库表结构 指纹 " + fingerprint + "】\n" + schema;
+        prefix.set(new StablePrefix(fingerprint, text));
+        return text;
+    }
+
+    private void recordUsage(Usage usage) {
+        if (usage == null || usage.getPromptTokens() == null || usage.getPromptTokens() == 0) {
+            return;
+        }
+        int hit = AiMetrics.cachedTokens(usage);
+        int miss = Math.max(0, usage.getPromptTokens() - hit);
+        cacheHitTokens.add(hit);
+        cacheMissTokens.add(miss);
+        log.debug("prompt token 用量: 缓存命中 {}，未命中 {}", hit, miss);
+    }
+}
@@ -0,0 +1,73 @@
+package com.eleven.springaideepseekdome.retry;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.retry.annotation.Retryable;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * {@code @Retryable(interceptor = "aiRetryInterceptor")} 使用的重试拦截器
+ * <p>
+ * 最大尝试次数取自注解的 {@code maxAttempts}；截止时间按工具名取
+ * {@code ai.tools.parallel.tool-timeouts}，未配置时使用 {@code ai.tools.parallel.timeout}，
+ * 与工具执行超时保持一致——超时取消工具调用后不会再发起重试
+ */
+public class AiRetryInterceptor implements MethodInterceptor {
+
+    private final RetryEngine retryEngine;
+    private final Duration defaultDeadline;
+    private final Map<String, Duration> toolDeadlines;
+
+    public AiRetryInterceptor(RetryEngine retryEngine, Duration defaultDeadline, Map<String, Duration> toolDeadlines) {
+        this.retryEngine = retryEngine;
+        this.defaultDeadline = defaultDeadline;
+        this.toolDeadlines = Map.copyOf(toolDeadlines);
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        Retryable retryable = AnnotatedElementUtils.findMergedAnnotation(method, Retryable.class);
+        int maxAttempts = retryable != null ? retryable.maxAttempts() : 3;
+        String toolName = toolName(method);
+        Duration deadline = toolDeadlines.getOrDefault(toolName, defaultDeadline);
+        try {
+            return retryEngine.execute("工具 " + toolName, maxAttempts, deadline, () -> proceed(invocation));
+        } catch (CheckedFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    // 每次重试使用调用的副本，保证后续拦截器链完整执行（如事务）
+    private static Object proceed(MethodInvocation invocation) {
+        try {
+            if (invocation instanceof ProxyMethodInvocation proxyInvocation) {
+                return proxyInvocation.invocableClone().proceed();
+            }
+            return invocation.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new CheckedFailure(e);
+        }
+    }
+
+    // 受检异常在重试期间的包装（分类时沿 cause 判断），重试结束后还原
+    private static class CheckedFailure extends RuntimeException {
+        CheckedFailure(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private static String toolName(Method method) {
+        Tool tool = AnnotatedElementUtils.findMergedAnnotation(method, Tool.class);
+        return tool != null && StringUtils.hasText(tool.name()) ? tool.name() : method.getName();
+    }
+}
@@ -0,0 +1,34 @@
+package com.eleven.springaideepseekdome.retry;
+
+import org.springframework.ai.chat.model.ChatModel;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 模型调用的重试策略：统一的最大尝试次数，截止时间按模型名覆盖
+ */
+public class ModelRetryPolicy {
+
+    private final RetryEngine retryEngine;
+    private final int maxAttempts;
+    private final Duration defaultDeadline;
+    private final Map<String, Duration> deadlines;
+
+    public ModelRetryPolicy(RetryEngine retryEngine, int maxAttempts, Duration defaultDeadline, Map<String, Duration> deadlines) {
+        this.retryEngine = retryEngine;
+        this.maxAttempts = maxAttempts;
+        this.defaultDeadline = defaultDeadline;
+        this.deadlines = Map.copyOf(deadlines);
+    }
+
+    /**
+     * 为模型增加重试与截止时间
+     *
+     * @param name  模型名（对应 {@code ai.retry.model.deadlines.<模型名>}）
+     * @param model 原始模型
+     */
+    public ChatModel wrap(String name, ChatModel model) {
+        return new RetryingChatModel(name, model, retryEngine, maxAttempts, deadlines.getOrDefault(name, defaultDeadline));
+    }
+}
@@ -0,0 +1,51 @@
+package com.eleven.springaideepseekdome.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局重试预算（令牌桶）
+ * <p>
+ * 每个新请求存入 {@code ratio} 个令牌（上限 {@code maxTokens}），每次重试消耗 1 个令牌；
+ * 令牌不足时放弃重试。稳定状态下重试量约为请求量的 {@code ratio} 倍，
+ * 下游整体故障时不会因为每个请求都重试数次而把流量放大成重试风暴
+ */
+public class RetryBudget {
+
+    // 令牌以千分之一为单位存储
+    private static final long SCALE = 1000;
+
+    private final long maxMilliTokens;
+    private final long depositMilliTokens;
+    private final AtomicLong milliTokens;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        this.maxMilliTokens = maxTokens * SCALE;
+        this.depositMilliTokens = Math.round(ratio * SCALE);
+        this.milliTokens = new AtomicLong(maxMilliTokens);
+    }
+
+    /**
+     * 记录一个新请求（首次调用，不含重试）
+     */
+    public void deposit() {
+        milliTokens.accumulateAndGet(depositMilliTokens, (current, delta) -> Math.min(maxMilliTokens, current + delta));
+    }
+
+    /**
+     * 申请一次重试，令牌不足时返回 false
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = milliTokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!milliTokens.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    public double getTokens() {
+        return milliTokens.get() / (double) SCALE;
+    }
+}
@@ -0,0 +1,174 @@
+package com.eleven.springaideepseekdome.retry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 模型与工具调用的重试引擎
+ * <p>
+ * - 退避：指数退避 + 抖动，第 n 次重试等待 [d/2, d] 内的随机值，d = min(initialBackoff × multiplier^(n-1), maxBackoff)
+ * - 预算：所有调用共享一个 {@link RetryBudget}，预算耗尽时不再重试
+ * - 截止时间：每次调用有总截止时间，剩余时间不足以完成退避时直接失败
+ * - 分类：只重试 {@link RetryableErrors} 判定为瞬时的错误
+ * <p>
+ * 同步调用在调用线程上等待退避（虚拟线程模式下不占用平台线程）；流式调用通过 {@code retryWhen}
+ * 在 Reactor 定时调度器上等待，不阻塞任何线程，且只在首个元素之前失败时重试，截止时间约束首个元素的到达时间
+ */
+@Slf4j
+public class RetryEngine implements MeterBinder {
+
+    private final boolean enabled;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double multiplier;
+    private final RetryBudget budget;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder notRetryable = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    private final LongAdder deadlineExceeded = new LongAdder();
+
+    public RetryEngine(boolean enabled, Duration initialBackoff, Duration maxBackoff, double multiplier, RetryBudget budget) {
+        this.enabled = enabled;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.multiplier = multiplier;
+        this.budget = budget;
+    }
+
+    /**
+     * 同步执行，失败时按策略重试
+     *
+     * @param operation   操作名称（日志用）
+     * @param maxAttempts 最大尝试次数（含首次）
+     * @param deadline    总截止时间（含所有重试与退避）
+     * @param action      实际调用
+     */
+    public <T> T execute(String operation, int maxAttempts, Duration deadline, Supplier<T> action) {
+        long deadlineAt = System.nanoTime() + deadline.toNanos();
+        budget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                Duration delay = nextDelay(operation, attempt, maxAttempts, deadlineAt, e);
+                if (delay == null) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    // 调用已被取消（如工具执行超时），不再重试
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 流式执行：首个元素之前失败时非阻塞地退避重试，已输出内容后失败直接传播
+     *
+     * @param operation   操作名称（日志用）
+     * @param maxAttempts 最大尝试次数（含首次）
+     * @param deadline    首个元素的截止时间（含所有重试与退避）
+     * @param source      实际的流式调用（每次重试重新获取）
+     */
+    public <T> Flux<T> executeStream(String operation, int maxAttempts, Duration deadline, Supplier<Flux<T>> source) {
+        return Flux.defer(() -> {
+            long deadlineAt = System.nanoTime() + deadline.toNanos();
+            budget.deposit();
+            AtomicBoolean emitted = new AtomicBoolean();
+            Flux<T> attempt = Flux.defer(() -> source.get()
+                    .timeout(Mono.delay(remaining(deadlineAt)), item -> Mono.never())
+                    .doOnNext(item -> emitted.set(true)));
+            return attempt.retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                Throwable error = signal.failure();
+                if (emitted.get()) {
+                    return Mono.error(error);
+                }
+                Duration delay = nextDelay(operation, (int) signal.totalRetries() + 1, maxAttempts, deadlineAt, error);
+                return delay == null ? Mono.error(error) : Mono.delay(delay);
+            })));
+        });
+    }
+
+    /**
+     * 第 attempt 次重试的退避时间（包可见便于测试）
+     */
+    Duration backoff(int attempt) {
+        double base = initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1);
+        long cap = (long) Math.min(base, maxBackoff.toMillis());
+        if (cap <= 1) {
+            return Duration.ofMillis(cap);
+        }
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap / 2, cap + 1));
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        register(registry, retries, "retried");
+        register(registry, exhausted, "exhausted");
+        register(registry, notRetryable, "not-retryable");
+        register(registry, budgetExhausted, "budget");
+        register(registry, deadlineExceeded, "deadline");
+        Gauge.builder("ai.retry.budget.tokens", budget, RetryBudget::getTokens)
+                .description("剩余的重试令牌数")
+                .register(registry);
+    }
+
+    private void register(MeterRegistry registry, LongAdder counter, String decision) {
+        FunctionCounter.builder("ai.retry.decisions", counter, LongAdder::sum)
+                .tag("decision", decision)
+                .description("失败调用的重试决策次数")
+                .register(registry);
+    }
+
+    // 返回 null 表示不再重试
+    private Duration nextDelay(String operation, int attempt, int maxAttempts, long deadlineAt, Throwable error) {
+        if (!enabled || !RetryableErrors.isRetryable(error)) {
+            notRetryable.increment();
+            return null;
+        }
+        if (attempt >= maxAttempts) {
+            exhausted.increment();
+            log.warn("{} 已尝试 {} 次仍失败: {}", operation, attempt, error.getMessage());
+            return null;
+        }
+        Duration delay = backoff(attempt);
+        if (System.nanoTime() + delay.toNanos() >= deadlineAt) {
+            deadlineExceeded.increment();
+            log.warn("{} 剩余时间不足，不再重试: {}", operation, error.getMessage());
+            return null;
+        }
+        if (!budget.tryWithdraw()) {
+            budgetExhausted.increment();
+            log.warn("{} 重试预算已耗尽，不再重试: {}", operation, error.getMessage());
+            return null;
+        }
+        retries.increment();
+        log.warn("{} 第 {} 次调用失败，{} ms 后重试: {}", operation, attempt, delay.toMillis(), error.getMessage());
+        return delay;
+    }
+
+    private static Duration remaining(long deadlineAt) {
+        return Duration.ofNanos(Math.max(0, deadlineAt - System.nanoTime()));
+    }
+}
@@ -0,0 +1,100 @@
+package com.eleven.springaideepseekdome.retry;
+
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 可重试错误分类
+ * <p>
+ * 沿异常链查找，命中以下任一类型即可重试：
+ * - HTTP 429 与 5xx（RestClient / WebClient 响应异常，以及 Spring AI 以 "状态码 - 错误" 为消息的模型异常）
+ * - 网络超时、连接失败
+ * - SQL 死锁、锁等待超时、查询超时及其他瞬时错误
+ * <p>
+ * 其余错误（4xx、SQL 语法错误、参数校验失败等）重试也不会成功，直接失败
+ */
+public final class RetryableErrors {
+
+    // MySQL 死锁 / 锁等待超时错误码
+    private static final int MYSQL_DEADLOCK = 1213;
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+    // 串行化失败（死锁）的 SQLState
+    private static final String SQL_STATE_SERIALIZATION_FAILURE = "40001";
+    // Spring AI 模型异常消息以状态码开头，如 "429 - {...}"
+    private static final Pattern STATUS_PREFIX = Pattern.compile("^\\s*(\\d{3})\\b");
+    private static final int MAX_DEPTH = 16;
+
+    private RetryableErrors() {
+    }
+
+    public static boolean isRetryable(Throwable error) {
+        Throwable current = error;
+        for (int depth = 0; current != null && depth < MAX_DEPTH; depth++) {
+            Boolean decision = classify(current);
+            if (decision != null) {
+                return decision;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * 是否为可重试的 HTTP 状态码（429、5xx）
+     */
+    public static boolean isRetryableStatus(int status) {
+        return status == 429 || status >= 500 && status < 600;
+    }
+
+    // 返回 null 表示该层无法判断，继续检查 cause
+    private static Boolean classify(Throwable error) {
+        if (error instanceof RestClientResponseException e) {
+            return isRetryableStatus(e.getStatusCode().value());
+        }
+        if (error instanceof WebClientResponseException e) {
+            return isRetryableStatus(e.getStatusCode().value());
+        }
+        if (error instanceof NonTransientAiException || error instanceof TransientAiException) {
+            Matcher matcher = STATUS_PREFIX.matcher(String.valueOf(error.getMessage()));
+            if (matcher.find()) {
+                return isRetryableStatus(Integer.parseInt(matcher.group(1)));
+            }
+            return error instanceof TransientAiException ? Boolean.TRUE : null;
+        }
+        if (error instanceof ResourceAccessException || error instanceof WebClientRequestException
+                || error instanceof SocketTimeoutException || error instanceof HttpTimeoutException
+                || error instanceof ConnectException || error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof TransientDataAccessException || error instanceof RecoverableDataAccessException) {
+            return true;
+        }
+        if (error instanceof SQLTransientException || error instanceof SQLRecoverableException) {
+            return true;
+        }
+        if (error instanceof SQLException e) {
+            return e.getErrorCode() == MYSQL_DEADLOCK || e.getErrorCode() == MYSQL_LOCK_WAIT_TIMEOUT
+                    || SQL_STATE_SERIALIZATION_FAILURE.equals(e.getSQLState());
+        }
+        return null;
+    }
+}
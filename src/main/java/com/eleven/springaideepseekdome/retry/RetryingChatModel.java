@@ -0,0 +1,49 @@
+package com.eleven.springaideepseekdome.retry;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * 为 ChatModel 增加重试与截止时间
+ * <p>
+ * 同步调用的截止时间约束整体耗时（含重试与退避），流式调用的截止时间约束首个 chunk 的到达时间
+ * <p>
+ * 重试整体重发 {@code delegate} 的调用。若 {@code delegate} 在内部执行工具循环，重试会重新执行已完成的工具，
+ * 因此带工具的请求应由外层的 {@code ToolLoopChatModel} 驱动循环，使每次重试只覆盖一轮模型请求
+ */
+public class RetryingChatModel implements ChatModel {
+
+    private final String name;
+    private final ChatModel delegate;
+    private final RetryEngine retryEngine;
+    private final int maxAttempts;
+    private final Duration deadline;
+
+    public RetryingChatModel(String name, ChatModel delegate, RetryEngine retryEngine, int maxAttempts, Duration deadline) {
+        this.name = name;
+        this.delegate = delegate;
+        this.retryEngine = retryEngine;
+        this.maxAttempts = maxAttempts;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return retryEngine.execute("模型 " + name, maxAttempts, deadline, () -> delegate.call(prompt));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return retryEngine.executeStream("模型 " + name, maxAttempts, deadline, () -> delegate.stream(prompt));
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+}
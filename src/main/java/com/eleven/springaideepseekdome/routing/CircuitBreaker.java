@@ -0,0 +1,87 @@
+package com.eleven.springaideepseekdome.routing;
+
+/**
+ * 简单熔断器
+ * <p>
+ * - CLOSED：正常放行，连续失败达到阈值后打开
+ * - OPEN：拒绝请求，经过 {@code openDuration} 后转为半开
+ * - HALF_OPEN：只放行一个探测请求，成功则关闭，失败则重新打开
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openNanos) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+    }
+
+    /**
+     * 当前是否可以放行（不占用半开探测名额，用于路由排序）
+     */
+    public synchronized boolean isAvailable() {
+        return switch (state) {
+            case CLOSED -> true;
+            case HALF_OPEN -> !probeInFlight;
+            case OPEN -> System.nanoTime() - openedAt >= openNanos;
+        };
+    }
+
+    /**
+     * 申请放行；半开状态下只有一个调用方能获得探测名额
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * 调用被取消（结果未知）：释放半开探测名额，状态不变
+     */
+    public synchronized void onCancel() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,110 @@
+package com.eleven.springaideepseekdome.routing;
+
+import org.springframework.ai.chat.model.ChatModel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路由目标模型及其运行统计
+ * <p>
+ * 延迟、首 token 延迟与错误率均按 EWMA 平滑；延迟尚无样本时为 -1
+ */
+public class ModelRoute {
+
+    private final String name;
+    private final ChatModel model;
+    private final double cost;
+    private final double weight;
+    private final double alpha;
+    private final CircuitBreaker circuitBreaker;
+
+    private final AtomicLong latencyBits = new AtomicLong(Double.doubleToLongBits(-1.0));
+    private final AtomicLong firstTokenBits = new AtomicLong(Double.doubleToLongBits(-1.0));
+    private final AtomicLong errorRateBits = new AtomicLong(Double.doubleToLongBits(0.0));
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public ModelRoute(String name, ChatModel model, double cost, double weight, double alpha, CircuitBreaker circuitBreaker) {
+        this.name = name;
+        this.model = model;
+        this.cost = cost;
+        this.weight = weight;
+        this.alpha = alpha;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ChatModel getModel() {
+        return model;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public double getLatencyMillis() {
+        return Double.longBitsToDouble(latencyBits.get());
+    }
+
+    public double getFirstTokenMillis() {
+        return Double.longBitsToDouble(firstTokenBits.get());
+    }
+
+    public double getErrorRate() {
+        return Double.longBitsToDouble(errorRateBits.get());
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    void recordSuccess(long latencyNanos) {
+        requests.increment();
+        update(latencyBits, latencyNanos / 1_000_000.0);
+        update(errorRateBits, 0.0);
+        circuitBreaker.onSuccess();
+    }
+
+    void recordStreamSuccess() {
+        requests.increment();
+        update(errorRateBits, 0.0);
+        circuitBreaker.onSuccess();
+    }
+
+    void recordFirstToken(long nanos) {
+        update(firstTokenBits, nanos / 1_000_000.0);
+    }
+
+    void recordFailure() {
+        requests.increment();
+        failures.increment();
+        update(errorRateBits, 1.0);
+        circuitBreaker.onFailure();
+    }
+
+    private void update(AtomicLong bits, double sample) {
+        long prev;
+        long next;
+        do {
+            prev = bits.get();
+            double current = Double.longBitsToDouble(prev);
+            next = Double.doubleToLongBits(current < 0 ? sample : current + alpha * (sample - current));
+        } while (!bits.compareAndSet(prev, next));
+    }
+}
@@ -0,0 +1,243 @@
+package com.eleven.springaideepseekdome.routing;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import com.eleven.springaideepseekdome.limit.LimitExceededException;
+import com.eleven.springaideepseekdome.retry.RetryableErrors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多模型路由
+ * <p>
+ * 在多个 ChatModel（DeepSeek、OpenAI）之间按策略选择：
+ * - 路由：按 {@link RoutingPolicy} 排序，错误率超过 {@code degradedErrorRate} 的模型排在最后兜底
+ * - 熔断：每个模型独立熔断，打开期间直接跳过，冷却后放行一个探测请求
+ * - 故障转移：同步调用失败时依次尝试下一个模型；流式调用仅在首个 chunk 之前失败时转移，
+ *   已经输出内容的流不会切换模型，避免拼接出两段不同的回答；模型并发已满（{@link LimitExceededException}）
+ *   时同样转移，但不计入熔断
+ * - 客户端错误：只有可重试的错误（429、5xx、网络 I/O，见 {@link RetryableErrors}）计入熔断并转移；
+ *   400（如上下文超长）、401 等请求本身的错误换模型也不会成功，不计入熔断，直接抛给调用方
+ * <p>
+ * 路由位于 ChatClient 之下，对话记忆、提示词组装等 Advisor 在切换模型时保持不变
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel, MeterBinder {
+
+    private final List<ModelRoute> routes;
+    private final RoutingPolicy policy;
+    private final double degradedErrorRate;
+
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RoutingChatModel(List<ModelRoute> routes, RoutingPolicy policy, double degradedErrorRate) {
+        this.routes = List.copyOf(routes);
+        this.policy = policy;
+        this.degradedErrorRate = degradedErrorRate;
+    }
+
+    public List<ModelRoute> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * 默认选项需支持工具调用，否则 ChatClient 会丢弃请求中配置的工具；
+     * 模型名等其余选项由各模型自身的默认配置补全
+     */
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return ToolCallingChatOptions.builder().build();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        RuntimeException lastError = null;
+        for (ModelRoute route : order(false)) {
+            if (!route.getCircuitBreaker().tryAcquire()) {
+                continue;
+            }
+            if (lastError != null) {
+                failovers.increment();
+            }
+            long start = System.nanoTime();
+            try {
+                ChatResponse response = route.getModel().call(prompt);
+                route.recordSuccess(System.nanoTime() - start);
+                return response;
+            } catch (LimitExceededException e) {
+                // 本地并发已满不是模型故障：不计入熔断，直接转移到其他模型
+                route.getCircuitBreaker().onCancel();
+                lastError = e;
+                log.debug("模型 {} 并发已满，尝试其他模型", route.getName());
+            } catch (RuntimeException e) {
+                if (!RetryableErrors.isRetryable(e)) {
+                    // 请求本身的错误不代表模型故障：释放探测名额后直接抛出
+                    route.getCircuitBreaker().onCancel();
+                    throw e;
+                }
+                route.recordFailure();
+                lastError = e;
+                log.warn("模型 {} 调用失败，尝试其他模型: {}", route.getName(), e.getMessage());
+            }
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+        rejected.increment();
+        throw new IllegalStateException("所有模型均处于熔断状态，请稍后重试");
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> streamFrom(order(true), 0, prompt, null));
+    }
+
+    private Flux<ChatResponse> streamFrom(List<ModelRoute> candidates, int index, Prompt prompt, Throwable lastError) {
+        for (int i = index; i < candidates.size(); i++) {
+            ModelRoute route = candidates.get(i);
+            if (!route.getCircuitBreaker().tryAcquire()) {
+                continue;
+            }
+            if (lastError != null) {
+                failovers.increment();
+            }
+            int next = i + 1;
+            long start = System.nanoTime();
+            AtomicBoolean emitted = new AtomicBoolean();
+            return route.getModel().stream(prompt)
+                    .doOnNext(response -> {
+                        if (emitted.compareAndSet(false, true)) {
+                            route.recordFirstToken(System.nanoTime() - start);
+                        }
+                    })
+                    .doOnComplete(route::recordStreamSuccess)
+                    .doOnCancel(route.getCircuitBreaker()::onCancel)
+                    .onErrorResume(e -> {
+                        if (e instanceof LimitExceededException) {
+                            route.getCircuitBreaker().onCancel();
+                            return streamFrom(candidates, next, prompt, e);
+                        }
+                        if (!RetryableErrors.isRetryable(e)) {
+                            route.getCircuitBreaker().onCancel();
+                            return Flux.error(e);
+                        }
+                        route.recordFailure();
+                        if (emitted.get()) {
+                            return Flux.error(e);
+                        }
+                        log.warn("模型 {} 流式调用失败，尝试其他模型: {}", route.getName(), e.getMessage());
+                        return streamFrom(candidates, next, prompt, e);
+                    });
+        }
+        if (lastError != null) {
+            return Flux.error(lastError);
+        }
+        rejected.increment();
+        return Flux.error(new IllegalStateException("所有模型均处于熔断状态，请稍后重试"));
+    }
+
+    /**
+     * 按策略排序候选模型（熔断打开的模型被排除）
+     */
+    List<ModelRoute> order(boolean streaming) {
+        List<ModelRoute> available = new ArrayList<>(routes.size());
+        for (ModelRoute route : routes) {
+            if (route.getCircuitBreaker().isAvailable()) {
+                available.add(route);
+            }
+        }
+        Comparator<ModelRoute> degradedLast = Comparator.comparing(route -> route.getErrorRate() >= degradedErrorRate);
+        switch (policy) {
+            case CHEAPEST -> available.sort(degradedLast.thenComparingDouble(ModelRoute::getCost));
+            case FASTEST -> available.sort(degradedLast.thenComparingDouble(route -> latencyOf(route, streaming)));
+            case WEIGHTED -> {
+                available.sort(degradedLast.thenComparing(Comparator.comparingDouble(ModelRoute::getWeight).reversed()));
+                int picked = pickWeighted(available);
+                if (picked > 0) {
+                    available.add(0, available.remove(picked));
+                }
+            }
+        }
+        return available;
+    }
+
+    // 尚无样本的模型延迟视为 0，优先获得流量以建立样本
+    private static double latencyOf(ModelRoute route, boolean streaming) {
+        double latency = streaming ? route.getFirstTokenMillis() : route.getLatencyMillis();
+        return Math.max(latency, 0);
+    }
+
+    // 按 权重 × (1 - 错误率) 随机选择首选模型
+    private static int pickWeighted(List<ModelRoute> candidates) {
+        double total = 0;
+        for (ModelRoute route : candidates) {
+            total += effectiveWeight(route);
+        }
+        if (total <= 0) {
+            return 0;
+        }
+        double point = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < candidates.size(); i++) {
+            point -= effectiveWeight(candidates.get(i));
+            if (point < 0) {
+                return i;
+            }
+        }
+        return candidates.size() - 1;
+    }
+
+    private static double effectiveWeight(ModelRoute route) {
+        return Math.max(route.getWeight(), 0) * (1 - route.getErrorRate());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ModelRoute route : routes) {
+            Gauge.builder("ai.model.route.latency", route, ModelRoute::getLatencyMillis)
+                    .description("模型平滑延迟（毫秒，-1 表示尚无样本）")
+                    .tag("model", route.getName())
+                    .register(registry);
+            Gauge.builder("ai.model.route.first-token", route, ModelRoute::getFirstTokenMillis)
+                    .description("流式调用平滑首 token 延迟（毫秒，-1 表示尚无样本）")
+                    .tag("model", route.getName())
+                    .register(registry);
+            Gauge.builder("ai.model.route.error-rate", route, ModelRoute::getErrorRate)
+                    .description("模型平滑错误率")
+                    .tag("model", route.getName())
+                    .register(registry);
+            Gauge.builder("ai.model.route.circuit", route, r -> r.getCircuitBreaker().getState().ordinal())
+                    .description("熔断状态（0 关闭，1 半开，2 打开）")
+                    .tag("model", route.getName())
+                    .register(registry);
+            FunctionCounter.builder("ai.model.route.requests", route, ModelRoute::getRequests)
+                    .description("路由到该模型的请求数")
+                    .tag("model", route.getName())
+                    .register(registry);
+            FunctionCounter.builder("ai.model.route.failures", route, ModelRoute::getFailures)
+                    .description("该模型失败的请求数")
+                    .tag("model", route.getName())
+                    .register(registry);
+        }
+        FunctionCounter.builder("ai.model.router.failovers", failovers, LongAdder::sum)
+                .description("模型故障转移次数")
+                .register(registry);
+        FunctionCounter.builder("ai.model.router.rejected", rejected, LongAdder::sum)
+                .description("所有模型熔断导致拒绝的请求数")
+                .register(registry);
+    }
+}
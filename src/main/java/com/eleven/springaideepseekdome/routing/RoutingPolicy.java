@@ -0,0 +1,35 @@
+package com.eleven.springaideepseekdome.routing;
+
+import java.util.Locale;
+
+/**
+ * 模型路由策略
+ */
+public enum RoutingPolicy {
+    /**
+     * 优先选择成本最低的健康模型
+     */
+    CHEAPEST,
+    /**
+     * 优先选择延迟最低的模型（同步调用看整体延迟，流式调用看首 token 延迟）
+     */
+    FASTEST,
+    /**
+     * 按配置权重随机分流，错误率越高权重越低
+     */
+    WEIGHTED;
+
+    /**
+     * 解析策略（忽略大小写，为空或无法识别时使用 CHEAPEST）
+     */
+    public static RoutingPolicy parse(String value) {
+        if (value == null || value.isBlank()) {
+            return CHEAPEST;
+        }
+        try {
+            return RoutingPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return CHEAPEST;
+        }
+    }
+}
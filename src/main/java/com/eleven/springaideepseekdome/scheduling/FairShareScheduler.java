@@ -0,0 +1,458 @@
+package com.eleven.springaideepseekdome.scheduling;
+
+import com.eleven.springaideepseekdome.limit.LimitExceededException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 按会话（或租户）公平调度的请求准入
+ * <p>
+ * - 分道：交互式流式请求（{@link Lane#STREAM}）与同步/批量请求（{@link Lane#SYNC}）各自独立的并发容量与排队，
+ *   长时间的同步分析不会占满流式请求的容量
+ * - 公平：同一分道内按会话做加权公平排队（SFQ：每个请求的开始标签 = max(虚拟时间, 该会话上一个请求的结束标签)，
+ *   结束标签 = 开始标签 + 1/权重，按开始标签最小者优先），单个会话排队再多也只能按权重分得容量
+ * - 会话上限：单个会话同时进行的请求数不超过 {@code maxInFlightPerKey}，排队数不超过 {@code maxQueuedPerKey}，
+ *   超出时立即拒绝；排队超时同样拒绝（{@link LimitExceededException}，接口层返回 503 + Retry-After）
+ * <p>
+ * 会话键：请求头 {@value #TENANT_HEADER} 优先，其次为客户端传入的会话 ID，都没有时使用客户端地址。
+ * 按地址调度的键（{@value #ADDRESS_KEY_PREFIX}）可能是同一 NAT / 代理后面的多个用户，使用单独的
+ * {@code maxInFlightPerAddress} / {@code maxQueuedPerAddress} 上限
+ */
+@Slf4j
+public class FairShareScheduler implements MeterBinder {
+
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+
+    public static final String ADDRESS_KEY_PREFIX = "addr:";
+
+    public enum Lane {
+        /**
+         * 交互式流式请求
+         */
+        STREAM,
+        /**
+         * 同步与批量请求
+         */
+        SYNC
+    }
+
+    /**
+     * 分道配置
+     *
+     * @param capacity     分道内同时进行的请求数上限
+     * @param queueTimeout 最长排队时间
+     */
+    public record LaneSettings(int capacity, Duration queueTimeout) {
+
+        public LaneSettings {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("分道容量必须大于 0: " + capacity);
+            }
+        }
+    }
+
+    private final int maxInFlightPerKey;
+    private final int maxQueuedPerKey;
+    private final int maxInFlightPerAddress;
+    private final int maxQueuedPerAddress;
+    private final Map<String, Double> weights;
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+
+    private volatile MeterRegistry meterRegistry;
+
+    public FairShareScheduler(Map<Lane, LaneSettings> settings, int maxInFlightPerKey, int maxQueuedPerKey,
+                              Map<String, Double> weights) {
+        this(settings, maxInFlightPerKey, maxQueuedPerKey, maxInFlightPerKey, maxQueuedPerKey, weights);
+    }
+
+    public FairShareScheduler(Map<Lane, LaneSettings> settings, int maxInFlightPerKey, int maxQueuedPerKey,
+                              int maxInFlightPerAddress, int maxQueuedPerAddress, Map<String, Double> weights) {
+        weights.forEach((key, weight) -> {
+            if (weight == null || !(weight > 0) || weight.isInfinite()) {
+                throw new IllegalArgumentException("调度权重必须为大于 0 的有限数: " + key + "=" + weight);
+            }
+        });
+        this.maxInFlightPerKey = maxInFlightPerKey;
+        this.maxQueuedPerKey = maxQueuedPerKey;
+        this.maxInFlightPerAddress = maxInFlightPerAddress;
+        this.maxQueuedPerAddress = maxQueuedPerAddress;
+        this.weights = Map.copyOf(weights);
+        for (Lane lane : Lane.values()) {
+            LaneSettings laneSettings = settings.get(lane);
+            if (laneSettings == null) {
+                throw new IllegalArgumentException("缺少分道配置: " + lane);
+            }
+            lanes.put(lane, new LaneState(lane, laneSettings));
+        }
+    }
+
+    /**
+     * 解析当前请求的调度键（租户请求头 → 会话 ID → 客户端地址）
+     *
+     * @param session 客户端传入的会话 ID（未传时为 null，不要使用自动生成的会话 ID）
+     */
+    public static String resolveKey(String session) {
+        HttpServletRequest request = currentRequest();
+        if (request != null) {
+            String tenant = request.getHeader(TENANT_HEADER);
+            if (tenant != null && !tenant.isBlank()) {
+                return "tenant:" + tenant;
+            }
+        }
+        if (session != null && !session.isBlank()) {
+            return "session:" + session;
+        }
+        return ADDRESS_KEY_PREFIX + (request != null ? request.getRemoteAddr() : "unknown");
+    }
+
+    /**
+     * 同步执行：排队期间阻塞当前线程
+     */
+    public <T> T call(String key, Lane lane, Supplier<T> action) {
+        Ticket ticket = acquire(key, lane);
+        try {
+            return action.get();
+        } finally {
+            ticket.release();
+        }
+    }
+
+    /**
+     * 非阻塞执行单值请求：排队期间不占用线程，完成、失败或取消时归还
+     */
+    public <T> Mono<T> mono(String key, Lane lane, Supplier<Mono<T>> action) {
+        return Mono.usingWhen(acquireAsync(key, lane), ticket -> Mono.defer(action),
+                Ticket::releaseAsync, (ticket, error) -> ticket.releaseAsync(), Ticket::releaseAsync);
+    }
+
+    /**
+     * 非阻塞执行流式请求：排队期间不占用线程，流结束（完成、失败或取消）时归还
+     */
+    public <T> Flux<T> stream(String key, Lane lane, Supplier<Flux<T>> action) {
+        return Flux.usingWhen(acquireAsync(key, lane), ticket -> Flux.defer(action),
+                Ticket::releaseAsync, (ticket, error) -> ticket.releaseAsync(), Ticket::releaseAsync);
+    }
+
+    /**
+     * 阻塞获取准入，排队超时或超出会话上限时抛出 {@link LimitExceededException}
+     */
+    public Ticket acquire(String key, Lane lane) {
+        LaneState state = lanes.get(lane);
+        Waiter waiter = state.enqueue(key);
+        try {
+            return waiter.future.get(state.settings.queueTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return state.abandon(waiter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state.cancel(waiter);
+            throw state.reject(key, "等待调度时被中断");
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * 非阻塞获取准入
+     */
+    public Mono<Ticket> acquireAsync(String key, Lane lane) {
+        return Mono.defer(() -> {
+            LaneState state = lanes.get(lane);
+            Waiter waiter = state.enqueue(key);
+            return Mono.fromFuture(waiter.future, true)
+                    .timeout(state.settings.queueTimeout())
+                    .onErrorResume(TimeoutException.class, e -> Mono.fromCallable(() -> state.abandon(waiter)))
+                    .doOnCancel(() -> state.cancel(waiter));
+        });
+    }
+
+    public int getInFlight(Lane lane) {
+        return lanes.get(lane).inFlight();
+    }
+
+    public int getQueued(Lane lane) {
+        return lanes.get(lane).queued();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        for (LaneState state : lanes.values()) {
+            String lane = state.lane.name().toLowerCase();
+            Gauge.builder("ai.scheduler.in-flight", state, LaneState::inFlight)
+                    .description("分道内进行中的请求数")
+                    .tag("lane", lane)
+                    .register(registry);
+            Gauge.builder("ai.scheduler.queued", state, LaneState::queued)
+                    .description("分道内排队的请求数")
+                    .tag("lane", lane)
+                    .register(registry);
+            Gauge.builder("ai.scheduler.keys", state, LaneState::activeKeys)
+                    .description("分道内有请求进行或排队的会话数")
+                    .tag("lane", lane)
+                    .register(registry);
+            FunctionCounter.builder("ai.scheduler.rejected", state.rejected, LongAdder::sum)
+                    .description("超出会话上限或排队超时被拒绝的请求数")
+                    .tag("lane", lane)
+                    .register(registry);
+        }
+    }
+
+    private void recordWait(Lane lane, long nanos) {
+        MeterRegistry registry = this.meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("ai.scheduler.wait")
+                .description("请求排队等待时间")
+                .tag("lane", lane.name().toLowerCase())
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes servletAttributes ? servletAttributes.getRequest() : null;
+    }
+
+    /**
+     * 准入凭证，请求结束时归还（重复归还无效）
+     */
+    public final class Ticket {
+
+        private final LaneState state;
+        private final Flow flow;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(LaneState state, Flow flow) {
+            this.state = state;
+            this.flow = flow;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                state.release(flow);
+            }
+        }
+
+        private Mono<Void> releaseAsync() {
+            return Mono.fromRunnable(this::release);
+        }
+    }
+
+    // 单个会话在某个分道内的队列
+    private static final class Flow {
+        private final String key;
+        private final double weight;
+        private final int maxInFlight;
+        private final int maxQueued;
+        private final Deque<Waiter> queue = new ArrayDeque<>();
+        private int inFlight;
+        private double finishTag;
+
+        private Flow(String key, double weight, int maxInFlight, int maxQueued) {
+            this.key = key;
+            this.weight = weight;
+            this.maxInFlight = maxInFlight;
+            this.maxQueued = maxQueued;
+        }
+    }
+
+    private static final class Waiter {
+        private final Flow flow;
+        private final double startTag;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Ticket> future = new CompletableFuture<>();
+
+        private Waiter(Flow flow, double startTag) {
+            this.flow = flow;
+            this.startTag = startTag;
+        }
+    }
+
+    private final class LaneState {
+
+        private final Lane lane;
+        private final LaneSettings settings;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Flow> flows = new HashMap<>();
+        private final LongAdder rejected = new LongAdder();
+        private int inFlight;
+        private int queued;
+        private double virtualTime;
+
+        private LaneState(Lane lane, LaneSettings settings) {
+            this.lane = lane;
+            this.settings = settings;
+        }
+
+        Waiter enqueue(String key) {
+            lock.lock();
+            try {
+                Flow flow = flows.computeIfAbsent(key, this::newFlow);
+                if (flow.queue.size() >= flow.maxQueued) {
+                    throw reject(key, "排队请求数已达上限 " + flow.maxQueued);
+                }
+                double startTag = Math.max(virtualTime, flow.finishTag);
+                flow.finishTag = startTag + 1.0 / flow.weight;
+                Waiter waiter = new Waiter(flow, startTag);
+                flow.queue.addLast(waiter);
+                queued++;
+                dispatch();
+                return waiter;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(Flow flow) {
+            lock.lock();
+            try {
+                inFlight--;
+                flow.inFlight--;
+                removeIfIdle(flow);
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // 等待超时：仍在队列中则移除并拒绝，已获得准入则直接使用
+        Ticket abandon(Waiter waiter) {
+            lock.lock();
+            try {
+                if (waiter.future.cancel(false)) {
+                    dequeue(waiter);
+                    throw reject(waiter.flow.key, "排队等待超过 " + settings.queueTimeout().toMillis() + " ms");
+                }
+            } finally {
+                lock.unlock();
+            }
+            return waiter.future.join();
+        }
+
+        // 调用方放弃等待：仍在队列中则移除，已获得准入则直接归还
+        void cancel(Waiter waiter) {
+            lock.lock();
+            try {
+                if (waiter.future.cancel(false)) {
+                    dequeue(waiter);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            waiter.future.join().release();
+        }
+
+        LimitExceededException reject(String key, String reason) {
+            rejected.increment();
+            log.warn("调度拒绝 {}（{}）: {}", key, lane, reason);
+            return new LimitExceededException("scheduler." + lane.name().toLowerCase(), key + " " + reason, Duration.ofSeconds(1));
+        }
+
+        int inFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int queued() {
+            lock.lock();
+            try {
+                return queued;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int activeKeys() {
+            lock.lock();
+            try {
+                return flows.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // 以下方法需持有锁
+
+        // 容量有空闲时，在未达会话上限的会话中选择队首开始标签最小的请求准入
+        private void dispatch() {
+            while (inFlight < settings.capacity()) {
+                Waiter next = null;
+                for (Flow flow : flows.values()) {
+                    Waiter head = flow.queue.peekFirst();
+                    if (head != null && flow.inFlight < flow.maxInFlight
+                            && (next == null || head.startTag < next.startTag)) {
+                        next = head;
+                    }
+                }
+                if (next == null) {
+                    return;
+                }
+                Flow flow = next.flow;
+                flow.queue.pollFirst();
+                queued--;
+                inFlight++;
+                flow.inFlight++;
+                virtualTime = Math.max(virtualTime, next.startTag);
+                if (!next.future.complete(new Ticket(this, flow))) {
+                    // 调用方已放弃等待
+                    inFlight--;
+                    flow.inFlight--;
+                    continue;
+                }
+                recordWait(lane, System.nanoTime() - next.enqueuedAt);
+            }
+        }
+
+        private Flow newFlow(String key) {
+            boolean address = key.startsWith(ADDRESS_KEY_PREFIX);
+            return new Flow(key, weights.getOrDefault(key, 1.0),
+                    address ? maxInFlightPerAddress : maxInFlightPerKey,
+                    address ? maxQueuedPerAddress : maxQueuedPerKey);
+        }
+
+        private void dequeue(Waiter waiter) {
+            if (waiter.flow.queue.remove(waiter)) {
+                queued--;
+            }
+            removeIfIdle(waiter.flow);
+        }
+
+        private void removeIfIdle(Flow flow) {
+            if (flow.inFlight == 0 && flow.queue.isEmpty()) {
+                flows.remove(flow.key, flow);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.eleven.springaideepseekdome.stream;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.util.List;
+
+/**
+ * 流式响应帧
+ * <p>
+ * 字段与原 Map 形式的响应保持一致，直接拼接为 JSON 字符串，
+ * SSE 写出时不再经过 ObjectMapper 对 Map 做序列化
+ *
+ * @param session 会话ID
+ * @param round   当前对话轮次
+ * @param content AI生成内容（可能是多个增量合并后的结果）
+ * @param tools   使用过的工具列表
+ */
+public record SseFrame(String session, int round, String content, List<String> tools) {
+
+    private static final JsonStringEncoder ENCODER = JsonStringEncoder.getInstance();
+
+    /**
+     * 序列化为 JSON：{"session":"...","round":N,"content":"...","tools":[...]}
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(48 + session.length() + content.length());
+        sb.append("{\"session\":\"");
+        ENCODER.quoteAsString(session, sb);
+        sb.append("\",\"round\":").append(round).append(",\"content\":\"");
+        ENCODER.quoteAsString(content, sb);
+        sb.append("\",\"tools\":[");
+        for (int i = 0; i < tools.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('"');
+            ENCODER.quoteAsString(tools.get(i), sb);
+            sb.append('"');
+        }
+        return sb.append("]}").toString();
+    }
+}
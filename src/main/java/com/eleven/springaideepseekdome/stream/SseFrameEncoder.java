@@ -0,0 +1,191 @@
+package com.eleven.springaideepseekdome.stream;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 流式接口 SSE 帧编码器
+ * <p>
+ * - 将模型的增量响应编码为预序列化的 JSON 帧（{@link SseFrame}）
+ * - 对话轮次在每个流的首帧计算一次，之后复用，不再逐 token 查询聊天记忆
+ * - 合并细小增量：累计内容达到 {@code max-bytes} 或距首个未发送增量超过 {@code interval} 时发送一帧；
+ *   包含工具调用的增量立即发送，流结束或出错前先发送剩余内容
+ * - {@code interval} 为 0 时关闭合并，每个增量对应一帧
+ */
+@Slf4j
+@Component
+public class SseFrameEncoder implements MeterBinder {
+
+    private final Duration interval;
+    private final int maxBytes;
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+
+    public SseFrameEncoder(@Value("${ai.stream.coalesce.interval:30ms}") Duration interval,
+                           @Value("${ai.stream.coalesce.max-bytes:64}") int maxBytes) {
+        this.interval = interval;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 编码流式响应
+     *
+     * @param sessionId 会话ID
+     * @param round     对话轮次（首帧时调用一次）
+     * @param responses 模型增量响应
+     * @return JSON 帧流（由 Spring MVC 按 SSE data 写出）
+     */
+    public Flux<String> encode(String sessionId, IntSupplier round, Flux<ChatResponse> responses) {
+        return Flux.create(sink -> {
+            Coalescer coalescer = new Coalescer(sessionId, round, sink);
+            Disposable upstream = responses.subscribe(coalescer::onChunk, coalescer::onError, coalescer::onComplete);
+            sink.onDispose(() -> {
+                upstream.dispose();
+                coalescer.cancelTimer();
+            });
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ai.stream.chunks", chunks, LongAdder::sum)
+                .description("模型返回的流式增量数")
+                .register(registry);
+        FunctionCounter.builder("ai.stream.frames", frames, LongAdder::sum)
+                .description("合并后发送的 SSE 帧数")
+                .register(registry);
+    }
+
+    // 单个流的合并状态，上游线程与定时线程通过对象锁互斥
+    private final class Coalescer {
+
+        private final String sessionId;
+        private final IntSupplier roundSupplier;
+        private final FluxSink<String> sink;
+        private final StringBuilder pending = new StringBuilder(128);
+        private int pendingBytes;
+        private int round = -1;
+        private Disposable timer;
+
+        Coalescer(String sessionId, IntSupplier roundSupplier, FluxSink<String> sink) {
+            this.sessionId = sessionId;
+            this.roundSupplier = roundSupplier;
+            this.sink = sink;
+        }
+
+        synchronized void onChunk(ChatResponse response) {
+            chunks.increment();
+            Generation generation = response.getResult();
+            if (generation == null || generation.getOutput() == null) {
+                return;
+            }
+            AssistantMessage output = generation.getOutput();
+            String text = output.getText();
+            List<AssistantMessage.ToolCall> toolCalls = output.getToolCalls();
+
+            if (toolCalls != null && !toolCalls.isEmpty()) {
+                if (text != null) {
+                    append(text);
+                }
+                emit(toolCalls.stream().map(Object::toString).toList());
+                return;
+            }
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+            append(text);
+            if (interval.isZero() || pendingBytes >= maxBytes) {
+                emit(List.of());
+            } else if (timer == null) {
+                timer = scheduler.schedule(this::onTimer, interval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void onError(Throwable error) {
+            if (!pending.isEmpty()) {
+                emit(List.of());
+            }
+            sink.error(error);
+        }
+
+        synchronized void onComplete() {
+            if (!pending.isEmpty()) {
+                emit(List.of());
+            }
+            sink.complete();
+        }
+
+        synchronized void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        private synchronized void onTimer() {
+            timer = null;
+            if (!pending.isEmpty()) {
+                emit(List.of());
+            }
+        }
+
+        private void append(String text) {
+            pending.append(text);
+            pendingBytes += utf8Length(text);
+        }
+
+        private void emit(List<String> tools) {
+            cancelTimer();
+            if (round < 0) {
+                round = roundSupplier.getAsInt();
+            }
+            SseFrame frame = new SseFrame(sessionId, round, pending.toString(), tools);
+            pending.setLength(0);
+            pendingBytes = 0;
+            String json = frame.toJson();
+            if (log.isDebugEnabled()) {
+                log.debug("流式响应数据: {}", json);
+            }
+            frames.increment();
+            sink.next(json);
+        }
+    }
+
+    private static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isSurrogate(c)) {
+                // 代理对按 4 字节计，每个字符计 2
+                bytes += 2;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
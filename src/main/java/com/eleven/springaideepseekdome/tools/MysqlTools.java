@@ -1,19 +1,33 @@
 package com.eleven.springaideepseekdome.tools;
 
+import com.eleven.springaideepseekdome.limit.AdaptiveConcurrencyLimiter;
+import com.eleven.springaideepseekdome.metrics.AiMetrics;
+import com.eleven.springaideepseekdome.tools.execution.ToolDeadline;
+import com.eleven.springaideepseekdome.tools.schema.SchemaRelevanceIndex;
+import com.eleven.springaideepseekdome.tools.schema.SchemaSnapshotCache;
+import com.eleven.springaideepseekdome.tools.sql.BoundedResultSetExtractor;
+import com.eleven.springaideepseekdome.tools.sql.ColumnarResultConverter;
+import com.eleven.springaideepseekdome.tools.sql.QueryResult;
+import com.eleven.springaideepseekdome.tools.sql.QueryResultCache;
+import com.eleven.springaideepseekdome.tools.sql.SqlStatementClassifier;
+import com.eleven.springaideepseekdome.tools.sql.TableResultSetExtractor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @program: IntelliJ IDEA / spring-ai-deepseek-demo
@@ -28,77 +42,52 @@ import java.util.regex.Pattern;
 @RequiredArgsConstructor // 自动生成构造函数
 public class MysqlTools {
 
+    private static final int DEFAULT_FETCH_SIZE = 100;
+
     private final JdbcTemplate jdbcTemplate;
+    private final SchemaSnapshotCache schemaSnapshotCache;
+    private final QueryResultCache queryResultCache;
+    private final SchemaRelevanceIndex schemaRelevanceIndex;
+    private final AdaptiveConcurrencyLimiter jdbcQueryLimiter; // 查询类工具的自适应并发限制
+    private final AiMetrics aiMetrics; // SQL 耗时与返回行数指标
+
+    @Value("${ai.tools.mysql.query.max-rows:200}")
+    private int maxRows; // 单次查询返回的最大行数
+    @Value("${ai.tools.mysql.query.max-bytes:65536}")
+    private long maxBytes; // 单次查询返回的最大字节数（近似 token 预算）
+    @Value("${ai.tools.mysql.query.streaming:true}")
+    private boolean streaming; // 是否启用 MySQL 流式读取
+    @Value("${ai.tools.mysql.query.max-cell-chars:64}")
+    private int maxCellChars; // 表格渲染时单元格最大字符数
+
+    private volatile Boolean mysqlDriver;
+
+    /**
+     * 检索与问题相关的表结构
+     * <p>
+     * 基于表名、列名及注释的倒排索引（CJK 2-gram 分词 + BM25 排序），只返回 Top-K 表及其业务键关联表的精简结构，
+     * 避免每次把全部表结构放入上下文
+     * @param question 用户问题或关键词
+     * @param topK 返回的表数量
+     * @return 精简表结构文本
+     */
+    @Tool(description = "根据问题或关键词检索最相关的表，只返回这些表及其业务键关联表的精简结构（字段、类型、注释、唯一键）；编写 SQL 前优先使用本工具，找不到需要的表时再调用 getMySQLTableStructure")
+    @Retryable(interceptor = "aiRetryInterceptor", maxAttempts = 2)
+    public String findRelevantTables(@ToolParam(description = "用户问题或业务关键词") String question,
+                                     @ToolParam(description = "返回的表数量，默认 5", required = false) Integer topK) {
+        try {
+            return SchemaRelevanceIndex.render(schemaRelevanceIndex.search(question, topK));
+        } catch (Exception e) {
+            throw new RuntimeException("检索相关表失败: " + e.getMessage(), e);
+        }
+    }
 
-    @Tool(description = "获取当前数据库所有表的元数据结构（包含表名、字段、类型、注释、索引）")
+    @Tool(description = "获取当前数据库所有表的元数据结构（包含表名、字段、类型、注释、索引）；表较多时优先使用 findRelevantTables")
     @Retryable(interceptor = "aiRetryInterceptor",  maxAttempts = 2)  // 执行失败重试
-    @Transactional(readOnly = true) // 只读事务
     public String getMySQLTableStructure() {
         try {
-            String tableQuery = """
-            SELECT TABLE_NAME, TABLE_COMMENT 
-            FROM INFORMATION_SCHEMA.TABLES 
-            WHERE TABLE_SCHEMA = DATABASE()
-            """;
-            log.info("\n\n[元数据查询]\nSQL: {}\n", tableQuery);
-
-            List<String> tables = jdbcTemplate.query(tableQuery, (rs, rowNum) -> {
-                String tableName = rs.getString("TABLE_NAME");
-                String tableComment = rs.getString("TABLE_COMMENT");
-
-                // 获取列信息（原逻辑）
-                String columnQuery = """
-                SELECT COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, COLUMN_COMMENT 
-                FROM INFORMATION_SCHEMA.COLUMNS 
-                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?
-                """;
-                List<String> columns = jdbcTemplate.query(columnQuery,
-                        ps -> ps.setString(1, tableName),
-                        (colRs, colNum) -> String.format("- %s (%s) %s NULL | 注释: %s",
-                                colRs.getString("COLUMN_NAME"),
-                                colRs.getString("COLUMN_TYPE"),
-                                "NO".equals(colRs.getString("IS_NULLABLE")) ? "NOT" : "",
-                                colRs.getString("COLUMN_COMMENT")
-                        )
-                );
-
-                // 新增：获取索引信息
-                String indexQuery = """
-                SELECT 
-                    INDEX_NAME, 
-                    COLUMN_NAME, 
-                    NON_UNIQUE,
-                    INDEX_TYPE
-                FROM INFORMATION_SCHEMA.STATISTICS 
-                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?
-                ORDER BY INDEX_NAME, SEQ_IN_INDEX
-                """;
-                List<String> indexes = jdbcTemplate.query(indexQuery,
-                        ps -> ps.setString(1, tableName),
-                        (idxRs, idxNum) -> {
-                            String indexName = idxRs.getString("INDEX_NAME");
-                            String columnName = idxRs.getString("COLUMN_NAME");
-                            boolean isUnique = !idxRs.getBoolean("NON_UNIQUE");
-                            String indexType = idxRs.getString("INDEX_TYPE");
-
-                            return String.format("- %s (%s): %s | 类型: %s",
-                                    isUnique ? "唯一索引" : "普通索引",
-                                    indexName,
-                                    columnName,
-                                    indexType
-                            );
-                        }
-                );
-
-                return String.format("## 表名: %s\n注释: %s\n字段结构:\n%s\n索引信息:\n%s\n",
-                        tableName,
-                        tableComment.isEmpty() ? "无注释" : tableComment,
-                        String.join("\n", columns),
-                        indexes.isEmpty() ? "无索引" : String.join("\n", indexes)
-                );
-            });
-
-            return "当前数据库表结构:\n\n" + String.join("\n", tables);
+            // 从表结构快照缓存读取（三条集合查询加载，按指纹增量刷新）
+            return schemaSnapshotCache.getRenderedSnapshot();
         } catch (Exception e) {
             throw new RuntimeException("获取数据库元数据失败: " + e.getMessage(), e);
         }
@@ -106,14 +95,20 @@ public class MysqlTools {
 
     /**
      * 执行通用 SQL 查询并返回结构化结果
+     * <p>
+     * 使用流式游标边读边校验行数/字节上限，超出即停止读取并在结果中说明截断情况；
+     * 结果直接从 ResultSet 编码为列式 JSON 返回给模型；相同查询命中结果缓存时不访问数据库
+     * <p>
+     * 单条 SELECT 不开启事务：JPA 事务管理器开启只读事务时会立即借用连接并执行只读设置与提交，
+     * 方法级事务会让缓存命中也占用连接池
      * @param sql 要执行的 SQL 语句
      * @param params SQL 参数
-     * @return 包含列信息和行数据的 Map 列表
+     * @return 包含列式 JSON 和截断说明的查询结果
      */
-    @Tool(description = "执行 SQL 查询并返回结构化结果")
+    @Tool(description = "执行 SQL 查询并返回列式结构化结果（columns/types 只出现一次，rows 为行数组；结果过大时会被截断并附带截断说明）",
+            resultConverter = ColumnarResultConverter.class)
     @Retryable(interceptor = "aiRetryInterceptor", maxAttempts = 3)
-    @Transactional(readOnly = true)
-    public List<Map<String, Object>> executeQuery(String sql, Object... params) {
+    public QueryResult executeQuery(String sql, Object... params) {
         // 打印带参数的完整 SQL
         log.info("\n\n[SQL 执行日志]\n原始 SQL: {}\n参数: {}\n",
                 sql,
@@ -125,49 +120,125 @@ public class MysqlTools {
         // 新增安全校验
         validateQueryOnly(sql);
 
-        return jdbcTemplate.query(sql, params, new ResultSetExtractor<>() {
-            @Override
-            public List<Map<String, Object>> extractData(ResultSet rs) {
-                try {
-                    List<Map<String, Object>> result = new ArrayList<>();
-                    ResultSetMetaData metaData = rs.getMetaData();
-                    int columnCount = metaData.getColumnCount();
-
-                    // 记录结果集大小
-                    int rowCount = 0;
-
-                    while (rs.next()) {
-                        Map<String, Object> row = new LinkedHashMap<>();
-                        for (int i = 1; i <= columnCount; i++) {
-                            String columnName = metaData.getColumnLabel(i);
-                            Object value = rs.getObject(i);
-                            row.put(columnName, value);
-                        }
-                        result.add(row);
-                        rowCount++;
-                    }
-
-                    // 打印执行结果摘要
-                    log.info("\n[SQL 执行结果]\n返回行数: {}\n列字段: {}\n",
-                            rowCount,
-                            getColumnNames(metaData, columnCount));
-
-                    // 打印前5行样本数据（避免大结果集日志膨胀）
-                    if (!result.isEmpty()) {
-                        log.debug("\n[样本数据预览]\n{}",
-                                formatSampleData(result, Math.min(5, result.size())));
-                    }
-
-                    return result;
-                } catch (Exception e) {
-                    throw new RuntimeException("SQL 查询执行失败", e);
-                }
+        // 相同指纹 + 参数的查询直接返回缓存结果
+        // 未命中缓存时在数据库并发限制内执行
+        return queryResultCache.get(sql, params, () -> jdbcQueryLimiter.execute(() -> runQuery(sql, params)));
+    }
+
+    // 辅助方法：流式执行查询并编码结果
+    private QueryResult runQuery(String sql, Object... params) {
+        long start = System.nanoTime();
+        try {
+            QueryResult result = jdbcTemplate.query(boundedStatement(sql, params),
+                    new BoundedResultSetExtractor(maxRows, maxBytes, log.isDebugEnabled() ? 5 : 0));
+            aiMetrics.recordSql("executeQuery", System.nanoTime() - start, result.rowCount());
+
+            // 打印执行结果摘要
+            log.info("\n[SQL 执行结果]\n返回行数: {}\n列字段: {}\n截断: {}\n",
+                    result.rowCount(),
+                    result.columns(),
+                    result.truncated() ? result.truncation() : "否");
+
+            // 打印前5行样本数据（避免大结果集日志膨胀）
+            if (!result.sample().isEmpty()) {
+                log.debug("\n[样本数据预览]\n{}",
+                        formatSampleData(result.sample(), result.sample().size()));
+            }
+
+            return result;
+        } catch (Exception e) {
+            aiMetrics.recordSql("executeQuery", System.nanoTime() - start, -1);
+            throw new RuntimeException("SQL 查询执行失败", e);
+        }
+    }
+
+    /**
+     * 执行 SQL 查询并在服务端直接渲染为表格（结果返回给模型）
+     * <p>
+     * 查询与渲染合并为一次工具调用，模型无需把查询结果再作为参数传回 {@link #toMarkdownTable}
+     * @param sql 要执行的 SQL 语句
+     * @param format 表格格式：MARKDOWN（默认）或 CSV
+     * @param params SQL 参数
+     * @return 表格字符串
+     */
+    @Tool(description = "执行 SQL 查询并直接返回 Markdown（默认）或 CSV 表格；需要以表格展示查询结果时优先使用本工具，而不是先查询再调用 toMarkdownTable")
+    @Retryable(interceptor = "aiRetryInterceptor", maxAttempts = 3)
+    public String executeQueryAsTable(String sql,
+                                      @ToolParam(description = "表格格式：MARKDOWN 或 CSV", required = false) String format,
+                                      Object... params) {
+        return renderQuery("executeQueryAsTable", sql, format, params);
+    }
+
+    /**
+     * 执行 SQL 查询并将表格直接返回给用户（结果不再经过模型）
+     * @param sql 要执行的 SQL 语句
+     * @param format 表格格式：MARKDOWN（默认）或 CSV
+     * @param params SQL 参数
+     * @return 表格字符串（直接作为最终回答）
+     */
+    @Tool(description = "执行 SQL 查询并把 Markdown（默认）或 CSV 表格直接作为最终回答展示给用户，结果不会再返回给你；仅在用户只需要查看明细表格、无需进一步分析时使用",
+            returnDirect = true)
+    @Retryable(interceptor = "aiRetryInterceptor", maxAttempts = 3)
+    public String showQueryTable(String sql,
+                                 @ToolParam(description = "表格格式：MARKDOWN 或 CSV", required = false) String format,
+                                 Object... params) {
+        return renderQuery("showQueryTable", sql, format, params);
+    }
+
+    // 辅助方法：校验并流式渲染查询结果（先获取并发许可，连接在许可内才借用，排队期间不占用连接池）
+    private String renderQuery(String tool, String sql, String format, Object... params) {
+        log.info("\n\n[SQL 执行日志]\n完整 SQL: {}\n格式: {}\n", buildFullSql(sql, params), format);
+        validateQueryOnly(sql);
+        return jdbcQueryLimiter.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                TableResultSetExtractor extractor = new TableResultSetExtractor(
+                        TableResultSetExtractor.Format.parse(format), maxRows, maxBytes, maxCellChars);
+                String table = jdbcTemplate.query(boundedStatement(sql, params), extractor);
+                aiMetrics.recordSql(tool, System.nanoTime() - start, extractor.getRowCount());
+                return table;
+            } catch (Exception e) {
+                aiMetrics.recordSql(tool, System.nanoTime() - start, -1);
+                throw new RuntimeException("SQL 查询执行失败", e);
             }
         });
     }
 
-    // 辅助方法：构建带参数的完整 SQL（仅用于日志）
-    private String buildFullSql(String sql, Object... params) {
+    // 辅助方法：创建流式、有界的只读查询语句（工具调用有截止时间时设置查询超时，超时由数据库取消查询）
+    private PreparedStatementCreator boundedStatement(String sql, Object... params) {
+        return con -> {
+            Duration remaining = ToolDeadline.remaining();
+            if (remaining != null && remaining.isZero()) {
+                throw new IllegalStateException("工具调用已超时，不再执行查询");
+            }
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (remaining != null) {
+                // 查询超时以秒为单位，向上取整
+                ps.setQueryTimeout((int) Math.max(1, (remaining.toMillis() + 999) / 1000));
+            }
+            ps.setFetchSize(resolveFetchSize(con));
+            // 多取一行用于判断是否截断，服务端通过 SQL_SELECT_LIMIT 提前停止
+            ps.setMaxRows(maxRows + 1);
+            new ArgumentPreparedStatementSetter(params).setValues(ps);
+            return ps;
+        };
+    }
+
+    // 辅助方法：MySQL 使用流式读取（Integer.MIN_VALUE），其他驱动使用普通批量 fetch
+    private int resolveFetchSize(Connection con) throws SQLException {
+        if (!streaming) {
+            return DEFAULT_FETCH_SIZE;
+        }
+        Boolean mysql = mysqlDriver;
+        if (mysql == null) {
+            mysql = con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+            mysqlDriver = mysql;
+        }
+        return mysql ? Integer.MIN_VALUE : DEFAULT_FETCH_SIZE;
+    }
+
+    // 辅助方法：构建带参数的完整 SQL（仅用于日志，包可见供基准测试使用）
+    static String buildFullSql(String sql, Object... params) {
         if (params == null || params.length == 0) {
             return sql;
         }
@@ -187,7 +258,7 @@ public class MysqlTools {
 
 
     // 辅助方法：格式化 SQL 参数
-    private String formatSqlParam(Object param) {
+    private static String formatSqlParam(Object param) {
         if (param == null) {
             return "NULL";
         }
@@ -206,18 +277,8 @@ public class MysqlTools {
         return param.toString();
     }
 
-    // 辅助方法：获取列名列表
-    private List<String> getColumnNames(ResultSetMetaData metaData, int columnCount)
-            throws Exception {
-        List<String> columns = new ArrayList<>();
-        for (int i = 1; i <= columnCount; i++) {
-            columns.add(metaData.getColumnLabel(i));
-        }
-        return columns;
-    }
-
-    // 辅助方法：格式化样本数据
-    private String formatSampleData(List<Map<String, Object>> result, int sampleSize) {
+    // 辅助方法：格式化样本数据（包可见供基准测试使用）
+    static String formatSampleData(List<Map<String, Object>> result, int sampleSize) {
         StringBuilder sb = new StringBuilder();
         List<String> headers = new ArrayList<>(result.get(0).keySet());
 
@@ -249,8 +310,13 @@ public class MysqlTools {
      * @param result 查询结果
      * @return Markdown 表格字符串
      */
-    @Tool(description = "将查询结果转换为 Markdown 表格")
+    @Tool(description = "将已有的查询结果转换为 Markdown 表格（需要查询并展示表格时请直接使用 executeQueryAsTable）")
     public String toMarkdownTable(List<Map<String, Object>> result) {
+        return renderMarkdownTable(result);
+    }
+
+    // 辅助方法：渲染 Markdown 表格（不依赖实例状态，包可见供基准测试使用）
+    static String renderMarkdownTable(List<Map<String, Object>> result) {
         if (result.isEmpty()) {
             return "无数据";
         }
@@ -273,53 +339,15 @@ public class MysqlTools {
 
 
 
+    /**
+     * 校验 SQL 只包含只读语句
+     * <p>
+     * 单遍词法扫描（不使用正则），正确处理注释、引号标识符、字符串中的关键字和分号
+     * @param sql 要校验的 SQL 语句
+     * @throws IllegalArgumentException 空语句、非法操作类型或检测到危险操作时抛出
+     */
     public void validateQueryOnly(String sql) {
-        // 1. 预处理SQL语句
-        String processedSql = sql
-                .replaceAll("/\\*.*?\\*/", "") // 移除块注释
-                .replaceAll("--.*", "")       // 移除行注释
-                .trim()                       // 去除前后空格
-                .toUpperCase();               // 统一转为大写
-
-        // 2. 分离多条SQL语句
-        String[] statements = processedSql.split(";");
-
-        for (String stmt : statements) {
-            // 3. 提取首个有效关键字
-            String firstKeyword = Arrays.stream(stmt.split("\\s+"))
-                    .filter(word -> !word.isEmpty())
-                    .findFirst()
-                    .orElse("");
-
-            // 4. 定义合法关键字白名单
-            Set<String> allowedKeywords = Set.of(
-                    "SELECT", "SHOW", "DESC", "DESCRIBE", "EXPLAIN",
-                    "WITH", "USE", "HELP"
-            );
-
-            // 5. 定义禁止关键字黑名单
-            Set<String> forbiddenKeywords = Set.of(
-                    "INSERT", "UPDATE", "DELETE", "DROP", "ALTER",
-                    "TRUNCATE", "CREATE", "GRANT", "REVOKE", "MERGE",
-                    "CALL", "EXECUTE", "REPLACE", "LOCK", "UNLOCK"
-            );
-
-            // 6. 校验关键字合法性
-            if (firstKeyword.isEmpty()) {
-                throw new IllegalArgumentException("空语句");
-            }
-
-            if (!allowedKeywords.contains(firstKeyword)) {
-                throw new IllegalArgumentException("非法操作类型: " + firstKeyword);
-            }
-
-            // 7. 使用正则防止误判
-            Pattern pattern = Pattern.compile("\\b(" + String.join("|", forbiddenKeywords) + ")\\b", Pattern.CASE_INSENSITIVE);
-            Matcher matcher = pattern.matcher(stmt);
-            if (matcher.find()) {
-                throw new IllegalArgumentException("检测到危险操作: " + stmt);
-            }
-        }
+        SqlStatementClassifier.validateReadOnly(sql);
     }
 
 
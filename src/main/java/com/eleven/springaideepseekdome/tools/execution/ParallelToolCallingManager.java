@@ -0,0 +1,377 @@
+package com.eleven.springaideepseekdome.tools.execution;
+
+import com.eleven.springaideepseekdome.metrics.RequestTags;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.observation.DefaultToolCallingObservationConvention;
+import org.springframework.ai.tool.observation.ToolCallingObservationContext;
+import org.springframework.ai.tool.observation.ToolCallingObservationConvention;
+import org.springframework.ai.tool.observation.ToolCallingObservationDocumentation;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 并行工具调用管理器
+ * <p>
+ * - 模型在同一轮返回多个工具调用时，在有界线程池上并发执行，整轮耗时约为各调用耗时的最大值
+ * - 每个工具有独立超时（{@code toolTimeouts} 未配置的工具使用默认超时），超时的调用取消执行并以说明文字作为结果返回给模型
+ *   同步工具的截止时间经 {@link ToolDeadline} 传给工具内部，SQL 工具据此设置查询超时，超时后由数据库取消查询
+ * - 工具结果按模型给出的调用顺序写入 {@link ToolResponseMessage}，各调用耗时写入消息元数据 {@link #METADATA_TOOL_LATENCY}
+ * - 实现 {@link ReactiveToolCallback} 的工具（如异步 MCP 工具）直接订阅执行，不占用线程池线程
+ * - 工具定义解析、工具上下文、异常处理器与观测行为与 Spring AI 默认实现保持一致
+ * - 工具调用耗时指标 {@code ai.tool.calls} 带请求标签（{@link RequestTags}，经工具上下文传入，不转交给工具），
+ *   同步工具执行期间该标签同时设置为执行线程的当前标签
+ * <p>
+ * {@link #executeToolCallsAsync} 不阻塞订阅线程，供流式工具循环使用；{@link #executeToolCalls} 在其上阻塞等待。
+ * 线程池与排队都已满时由调用线程直接执行（非阻塞线程上转交 boundedElastic），不丢弃工具调用
+ */
+@Slf4j
+public class ParallelToolCallingManager implements ToolCallingManager, DisposableBean, MeterBinder {
+
+    public static final String METADATA_TOOL_LATENCY = "toolLatencyMillis";
+
+    private static final ToolCallingObservationConvention DEFAULT_OBSERVATION_CONVENTION =
+            new DefaultToolCallingObservationConvention();
+
+    private final ToolCallingManager delegate;
+    private final ToolCallbackResolver toolCallbackResolver;
+    private final ToolExecutionExceptionProcessor toolExecutionExceptionProcessor;
+    private final ObservationRegistry observationRegistry;
+    private final ToolCallingObservationConvention observationConvention;
+    private final Duration defaultTimeout;
+    private final Map<String, Duration> toolTimeouts;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder parallelTurns = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    // 并行执行相对串行执行节省的时间（各调用耗时之和 - 整轮耗时）
+    private final LongAdder savedMillis = new LongAdder();
+    private volatile MeterRegistry meterRegistry;
+
+    public ParallelToolCallingManager(ToolCallingManager delegate,
+                                      ToolCallbackResolver toolCallbackResolver,
+                                      ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+                                      ObservationRegistry observationRegistry,
+                                      ToolCallingObservationConvention observationConvention,
+                                      int maxThreads,
+                                      int queueCapacity,
+                                      Duration defaultTimeout,
+                                      Map<String, Duration> toolTimeouts) {
+        this.delegate = delegate;
+        this.toolCallbackResolver = toolCallbackResolver;
+        this.toolExecutionExceptionProcessor = toolExecutionExceptionProcessor;
+        this.observationRegistry = observationRegistry;
+        this.observationConvention = observationConvention;
+        this.defaultTimeout = defaultTimeout;
+        this.toolTimeouts = Map.copyOf(toolTimeouts);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "tool-exec-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                ParallelToolCallingManager::rejected);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 线程池与排队都已满：阻塞调用线程直接执行；Reactor 非阻塞线程（如流式响应的网络线程）上转交 boundedElastic 执行
+     */
+    private static void rejected(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        if (Schedulers.isInNonBlockingThread()) {
+            Schedulers.boundedElastic().schedule(task);
+        } else {
+            task.run();
+        }
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        return executeToolCallsAsync(prompt, chatResponse).block();
+    }
+
+    /**
+     * 非阻塞地执行一轮工具调用
+     * <p>
+     * 响应式工具直接组合到返回的 Mono 中，同步工具在线程池上执行、完成时发出结果；
+     * 订阅线程不等待任何工具，可在 Reactor 非阻塞线程上订阅（流式工具循环即如此）。
+     * 取消订阅或超时会取消尚未完成的调用
+     */
+    public Mono<ToolExecutionResult> executeToolCallsAsync(Prompt prompt, ChatResponse chatResponse) {
+        if (prompt == null || chatResponse == null) {
+            return Mono.error(new IllegalArgumentException("prompt 与 chatResponse 不能为空"));
+        }
+        return Mono.defer(() -> {
+            AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                    .map(Generation::getOutput)
+                    .filter(AssistantMessage::hasToolCalls)
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+
+            List<ToolCallback> optionCallbacks = prompt.getOptions() instanceof ToolCallingChatOptions options
+                    ? options.getToolCallbacks() : List.of();
+            RequestTags requestTags = prompt.getOptions() instanceof ToolCallingChatOptions options
+                    ? RequestTags.fromToolContext(options.getToolContext()) : RequestTags.UNKNOWN;
+            ToolContext toolContext = buildToolContext(prompt, assistantMessage);
+
+            List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+            List<Mono<TimedResponse>> calls = new ArrayList<>(toolCalls.size());
+            boolean returnDirect = true;
+            for (AssistantMessage.ToolCall toolCall : toolCalls) {
+                ToolCallback callback = resolve(toolCall.name(), optionCallbacks);
+                returnDirect &= callback.getToolMetadata().returnDirect();
+                calls.add(execute(toolCall, callback, toolContext, requestTags));
+            }
+
+            boolean direct = returnDirect;
+            long start = System.nanoTime();
+            // 各调用同时订阅，结果按模型给出的调用顺序排列
+            return Flux.mergeSequential(calls, Math.max(1, calls.size()), 1)
+                    .collectList()
+                    .map(responses -> {
+                        Map<String, Long> latencyMillis = new LinkedHashMap<>();
+                        long sumMillis = 0;
+                        for (int i = 0; i < toolCalls.size(); i++) {
+                            long millis = TimeUnit.NANOSECONDS.toMillis(responses.get(i).nanos());
+                            sumMillis += millis;
+                            latencyMillis.put(toolCalls.get(i).id(), millis);
+                        }
+                        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                        if (toolCalls.size() > 1) {
+                            parallelTurns.increment();
+                            savedMillis.add(Math.max(0, sumMillis - wallMillis));
+                        }
+                        log.debug("执行 {} 个工具调用，整轮耗时 {} ms，各调用耗时 {}", toolCalls.size(), wallMillis, latencyMillis);
+
+                        List<ToolResponseMessage.ToolResponse> toolResponses = responses.stream()
+                                .map(TimedResponse::response)
+                                .toList();
+                        ToolResponseMessage toolResponseMessage = new ToolResponseMessage(toolResponses,
+                                Map.of(METADATA_TOOL_LATENCY, latencyMillis));
+                        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+                        history.add(assistantMessage);
+                        history.add(toolResponseMessage);
+                        return ToolExecutionResult.builder()
+                                .conversationHistory(history)
+                                .returnDirect(direct)
+                                .build();
+                    });
+        });
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        FunctionCounter.builder("ai.tool.parallel.turns", parallelTurns, LongAdder::sum)
+                .description("并行执行多个工具调用的轮次")
+                .register(registry);
+        FunctionCounter.builder("ai.tool.parallel.saved", savedMillis, LongAdder::sum)
+                .description("并行执行相对串行执行节省的时间（毫秒）")
+                .baseUnit("milliseconds")
+                .register(registry);
+        FunctionCounter.builder("ai.tool.calls.timeouts", timeouts, LongAdder::sum)
+                .description("工具调用超时次数")
+                .register(registry);
+    }
+
+    private ToolCallback resolve(String toolName, List<ToolCallback> optionCallbacks) {
+        ToolCallback callback = optionCallbacks.stream()
+                .filter(candidate -> toolName.equals(candidate.getToolDefinition().name()))
+                .findFirst()
+                .orElseGet(() -> toolCallbackResolver.resolve(toolName));
+        if (callback == null) {
+            throw new IllegalStateException("No ToolCallback found for tool name: " + toolName);
+        }
+        return callback;
+    }
+
+    private String call(ToolCallback callback, String arguments, ToolContext toolContext) {
+        ToolCallingObservationContext observationContext = observationContext(callback, arguments);
+        return observation(observationContext)
+                .observe(() -> {
+                    String result;
+                    try {
+                        result = callback.call(arguments, toolContext);
+                    } catch (ToolExecutionException e) {
+                        result = toolExecutionExceptionProcessor.process(e);
+                    }
+                    observationContext.setToolCallResult(result);
+                    return result == null ? "" : result;
+                });
+    }
+
+    private Mono<String> callAsync(ReactiveToolCallback callback, String arguments, ToolContext toolContext) {
+        ToolCallingObservationContext observationContext = observationContext(callback, arguments);
+        Observation observation = observation(observationContext);
+        return Mono.defer(() -> {
+                    observation.start();
+                    return callback.callAsync(arguments, toolContext);
+                })
+                .onErrorResume(ToolExecutionException.class,
+                        e -> Mono.fromSupplier(() -> toolExecutionExceptionProcessor.process(e)))
+                .defaultIfEmpty("")
+                .doOnNext(observationContext::setToolCallResult)
+                .doOnError(observation::error)
+                .doFinally(signal -> observation.stop());
+    }
+
+    private static ToolCallingObservationContext observationContext(ToolCallback callback, String arguments) {
+        return ToolCallingObservationContext.builder()
+                .toolDefinition(callback.getToolDefinition())
+                .toolMetadata(callback.getToolMetadata())
+                .toolCallArguments(arguments)
+                .build();
+    }
+
+    private Observation observation(ToolCallingObservationContext observationContext) {
+        return ToolCallingObservationDocumentation.TOOL_CALL.observation(observationConvention,
+                DEFAULT_OBSERVATION_CONVENTION, () -> observationContext, observationRegistry);
+    }
+
+    /**
+     * 执行单个工具调用；超时（从该调用开始计时）时取消执行，并以说明文字作为结果
+     */
+    private Mono<TimedResponse> execute(AssistantMessage.ToolCall toolCall, ToolCallback callback,
+                                        ToolContext toolContext, RequestTags requestTags) {
+        Duration timeout = timeoutFor(toolCall.name());
+        return Mono.defer(() -> {
+            long callStart = System.nanoTime();
+            Mono<String> result = callback instanceof ReactiveToolCallback reactiveCallback
+                    // 非阻塞工具直接订阅，不占用工具执行线程
+                    ? callAsync(reactiveCallback, toolCall.arguments(), toolContext)
+                    // 截止时间从本次调用开始计算，与下方的超时一致；工具内部据此下推超时（如 SQL 查询超时）
+                    : submit(() -> ToolDeadline.callWith(callStart + timeout.toNanos(),
+                            () -> RequestTags.callWith(requestTags, () -> call(callback, toolCall.arguments(), toolContext))));
+            return result
+                    .timeout(timeout)
+                    .map(text -> {
+                        long nanos = System.nanoTime() - callStart;
+                        record(requestTags, toolCall.name(), "success", nanos);
+                        return new TimedResponse(
+                                new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), text), nanos);
+                    })
+                    .onErrorResume(TimeoutException.class, e -> {
+                        long nanos = System.nanoTime() - callStart;
+                        timeouts.increment();
+                        record(requestTags, toolCall.name(), "timeout", nanos);
+                        log.warn("工具 {} 执行超时，已取消: {}", toolCall.name(), toolCall.id());
+                        String text = String.format("工具 %s 执行超时（超过 %d ms），已取消本次调用，请缩小查询范围或稍后重试",
+                                toolCall.name(), timeout.toMillis());
+                        return Mono.just(new TimedResponse(
+                                new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), text), nanos));
+                    })
+                    .doOnError(e -> record(requestTags, toolCall.name(), "error", System.nanoTime() - callStart))
+                    .onErrorMap(e -> !(e instanceof RuntimeException || e instanceof Error),
+                            e -> new IllegalStateException("工具执行失败: " + toolCall.name(), e));
+        });
+    }
+
+    /**
+     * 在线程池上执行同步工具，完成时发出结果；取消订阅时中断执行线程
+     */
+    private Mono<String> submit(Supplier<String> call) {
+        return Mono.defer(() -> {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            Future<?> task = executor.submit(() -> {
+                try {
+                    result.complete(call.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return Mono.fromFuture(result).doOnCancel(() -> task.cancel(true));
+        });
+    }
+
+    private Duration timeoutFor(String toolName) {
+        return toolTimeouts.getOrDefault(toolName, defaultTimeout);
+    }
+
+    private void record(RequestTags requestTags, String toolName, String outcome, long nanos) {
+        MeterRegistry registry = this.meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("ai.tool.calls")
+                .description("单个工具调用耗时")
+                .tags(requestTags.toTags())
+                .tag("tool", toolName)
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private record TimedResponse(ToolResponseMessage.ToolResponse response, long nanos) {
+    }
+
+    private static ToolContext buildToolContext(Prompt prompt, AssistantMessage assistantMessage) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)
+                || options.getToolContext() == null || options.getToolContext().isEmpty()) {
+            return new ToolContext(Map.of());
+        }
+        Map<String, Object> context = new HashMap<>(options.getToolContext());
+        // 请求指标标签只供本管理器使用，不转交给工具
+        context.remove(RequestTags.TOOL_CONTEXT_KEY);
+        if (context.isEmpty()) {
+            return new ToolContext(Map.of());
+        }
+        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+        history.add(new AssistantMessage(assistantMessage.getText(), assistantMessage.getMetadata(),
+                assistantMessage.getToolCalls()));
+        context.put(ToolContext.TOOL_CALL_HISTORY, history);
+        return new ToolContext(context);
+    }
+}
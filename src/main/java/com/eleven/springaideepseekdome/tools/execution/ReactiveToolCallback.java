@@ -0,0 +1,32 @@
+package com.eleven.springaideepseekdome.tools.execution;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import reactor.core.publisher.Mono;
+
+/**
+ * 支持非阻塞调用的工具回调
+ * <p>
+ * {@link ParallelToolCallingManager} 对实现该接口的工具直接订阅 {@link #callAsync}，
+ * 调用期间不占用工具执行线程；同步的 {@link #call} 仍可用于其他调用方
+ */
+public interface ReactiveToolCallback extends ToolCallback {
+
+    /**
+     * 非阻塞地执行工具调用
+     *
+     * @param toolInput   模型给出的 JSON 参数
+     * @param toolContext 工具上下文（可能为空）
+     */
+    Mono<String> callAsync(String toolInput, ToolContext toolContext);
+
+    @Override
+    default String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    default String call(String toolInput, ToolContext toolContext) {
+        return callAsync(toolInput, toolContext).block();
+    }
+}
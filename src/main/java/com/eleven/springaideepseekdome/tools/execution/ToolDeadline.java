@@ -0,0 +1,47 @@
+package com.eleven.springaideepseekdome.tools.execution;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * 工具调用截止时间
+ * <p>
+ * {@link ParallelToolCallingManager} 在执行线程上通过 {@link #callWith} 设置当前调用的截止时间（与工具超时一致），
+ * 工具内部经 {@link #remaining()} 读取剩余时间，把超时下推到下游（如 JDBC {@code Statement#setQueryTimeout}）。
+ * 超时后仅中断执行线程无法停止数据库中的查询，下推后由数据库在截止时间取消查询并释放连接
+ */
+public final class ToolDeadline {
+
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private ToolDeadline() {
+    }
+
+    /**
+     * 当前调用的剩余时间（未设置截止时间时返回 null；已过期时返回 {@link Duration#ZERO}）
+     */
+    public static Duration remaining() {
+        Long deadline = CURRENT.get();
+        if (deadline == null) {
+            return null;
+        }
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+
+    /**
+     * 以给定截止时间（{@link System#nanoTime()} 时间基准）作为当前线程的截止时间执行
+     */
+    public static <T> T callWith(long deadlineNanos, Supplier<T> action) {
+        Long previous = CURRENT.get();
+        CURRENT.set(deadlineNanos);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.eleven.springaideepseekdome.tools.execution;
+
+import com.eleven.springaideepseekdome.metrics.ModelUsageListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolExecutionEligibilityPredicate;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionEligibilityPredicate;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.support.UsageCalculator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 在模型之外执行工具调用循环的 ChatModel
+ * <p>
+ * Spring AI 的 DeepSeek / OpenAI 模型默认在一次 call / stream 内部完成"请求模型 → 执行工具 → 再请求模型"的循环，
+ * 包在模型外层的重试与并发限制因此作用于整个循环：某一轮失败后重试会重新执行之前所有轮次的工具（含 SQL），
+ * 并发许可在工具执行期间也一直被占用。本类关闭模型内部的工具执行，由自己驱动循环：
+ * - 每轮只向下游（重试 → 并发限制 → 模型）发起一次模型请求，重试只重发失败的那一轮
+ * - 工具在上一轮模型请求结束后执行，不占用模型并发许可，许可的耗时样本也不包含工具耗时
+ * - 同步调用返回的用量为各轮累计值，与模型内部循环的行为一致；每轮的原始用量通知 {@link ModelUsageListener}
+ * <p>
+ * 调用方已关闭内部工具执行（internalToolExecutionEnabled=false）或未使用工具选项时原样转发
+ */
+@Slf4j
+public class ToolLoopChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final ToolCallingManager toolCallingManager;
+    private final List<ModelUsageListener> usageListeners;
+    private final ToolExecutionEligibilityPredicate eligibilityPredicate = new DefaultToolExecutionEligibilityPredicate();
+
+    public ToolLoopChatModel(ChatModel delegate, ToolCallingManager toolCallingManager) {
+        this(delegate, toolCallingManager, List.of());
+    }
+
+    public ToolLoopChatModel(ChatModel delegate, ToolCallingManager toolCallingManager,
+                             List<ModelUsageListener> usageListeners) {
+        this.delegate = delegate;
+        this.toolCallingManager = toolCallingManager;
+        this.usageListeners = List.copyOf(usageListeners);
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)
+                || !ToolCallingChatOptions.isInternalToolExecutionEnabled(options)) {
+            return notifyUsage(prompt, delegate.call(prompt));
+        }
+        Prompt round = new Prompt(prompt.getInstructions(), singleRound(options));
+        ChatResponse previous = null;
+        while (true) {
+            ChatResponse response = withCumulativeUsage(notifyUsage(round, delegate.call(round)), previous);
+            if (!eligibilityPredicate.isToolExecutionRequired(options, response)) {
+                return response;
+            }
+            ToolExecutionResult result = toolCallingManager.executeToolCalls(round, response);
+            if (result.returnDirect()) {
+                return ChatResponse.builder()
+                        .from(response)
+                        .generations(ToolExecutionResult.buildGenerations(result))
+                        .build();
+            }
+            round = new Prompt(result.conversationHistory(), round.getOptions());
+            previous = response;
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)
+                || !ToolCallingChatOptions.isInternalToolExecutionEnabled(options)) {
+            return delegate.stream(prompt).doOnNext(response -> notifyUsage(prompt, response));
+        }
+        return streamRound(new Prompt(prompt.getInstructions(), singleRound(options)), options);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    private Flux<ChatResponse> streamRound(Prompt round, ToolCallingChatOptions options) {
+        return Flux.defer(() -> {
+            // 模型把同一轮的工具调用合并为一个 chunk 输出；本轮的流结束（归还并发许可）后再执行工具并开始下一轮
+            AtomicReference<ChatResponse> toolCallResponse = new AtomicReference<>();
+            return delegate.stream(round)
+                    .doOnNext(response -> notifyUsage(round, response))
+                    .filter(response -> {
+                        if (eligibilityPredicate.isToolExecutionRequired(options, response)) {
+                            toolCallResponse.set(response);
+                            return false;
+                        }
+                        return true;
+                    })
+                    .concatWith(Flux.defer(() -> {
+                        ChatResponse response = toolCallResponse.get();
+                        if (response == null) {
+                            return Flux.empty();
+                        }
+                        return executeAsync(round, response).flatMapMany(result -> result.returnDirect()
+                                ? Flux.just(ChatResponse.builder()
+                                        .from(response)
+                                        .generations(ToolExecutionResult.buildGenerations(result))
+                                        .build())
+                                : streamRound(new Prompt(result.conversationHistory(), round.getOptions()), options));
+                    }));
+        });
+    }
+
+    private Mono<ToolExecutionResult> executeAsync(Prompt round, ChatResponse response) {
+        if (toolCallingManager instanceof ParallelToolCallingManager parallel) {
+            // 不占用订阅线程等待工具结果，响应式 MCP 工具全程非阻塞
+            return parallel.executeToolCallsAsync(round, response);
+        }
+        return Mono.fromCallable(() -> toolCallingManager.executeToolCalls(round, response))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private ChatResponse notifyUsage(Prompt round, ChatResponse response) {
+        if (usageListeners.isEmpty() || response == null || response.getMetadata() == null
+                || UsageCalculator.isEmpty(response.getMetadata().getUsage())) {
+            return response;
+        }
+        for (ModelUsageListener listener : usageListeners) {
+            try {
+                listener.onModelResponse(round, response);
+            } catch (RuntimeException e) {
+                // 指标记录失败不影响请求
+                log.warn("模型用量监听器执行失败: {}", e.getMessage());
+            }
+        }
+        return response;
+    }
+
+    // 每轮只请求一次模型，工具由本类执行
+    private static ToolCallingChatOptions singleRound(ToolCallingChatOptions options) {
+        ToolCallingChatOptions copy = options.copy();
+        copy.setInternalToolExecutionEnabled(false);
+        return copy;
+    }
+
+    private static ChatResponse withCumulativeUsage(ChatResponse response, ChatResponse previous) {
+        if (previous == null || response.getMetadata() == null) {
+            return response;
+        }
+        ChatResponseMetadata metadata = response.getMetadata();
+        Usage cumulative = UsageCalculator.getCumulativeUsage(metadata.getUsage(), previous);
+        ChatResponseMetadata.Builder builder = ChatResponseMetadata.builder()
+                .id(metadata.getId())
+                .model(metadata.getModel())
+                .rateLimit(metadata.getRateLimit())
+                .promptMetadata(metadata.getPromptMetadata())
+                .usage(cumulative);
+        metadata.entrySet().forEach(entry -> builder.keyValue(entry.getKey(), entry.getValue()));
+        return ChatResponse.builder()
+                .from(response)
+                .metadata(builder.build())
+                .build();
+    }
+}
@@ -0,0 +1,12 @@
+package com.eleven.springaideepseekdome.tools.schema;
+
+/**
+ * 表结构快照变化事件
+ * <p>
+ * 指纹包含表的 UPDATE_TIME，因此表数据写入后也会触发，可用于失效依赖数据库内容的缓存
+ *
+ * @param previousVersion 变化前的快照版本
+ * @param currentVersion  变化后的快照版本
+ */
+public record SchemaChangedEvent(long previousVersion, long currentVersion) {
+}
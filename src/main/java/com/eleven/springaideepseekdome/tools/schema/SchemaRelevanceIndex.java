@@ -0,0 +1,278 @@
+package com.eleven.springaideepseekdome.tools.schema;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 表结构相关性索引
+ * <p>
+ * - 基于 {@link SchemaSnapshot} 在内存中构建倒排索引，文档为表，字段为表名、表注释、列名、列注释
+ * - 分词：ASCII 标识符按下划线/驼峰切分为单词，CJK 连续文本切分为字符 2-gram，中英文问题都能匹配
+ * - 排序：BM25（表名与表注释权重高于列），返回 Top-K 表及其业务键关联表（如 course_id → t_course）
+ * - 快照版本变化时在下次检索时重建索引
+ */
+@Component
+public class SchemaRelevanceIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TABLE_FIELD_WEIGHT = 3;
+    private static final int COLUMN_FIELD_WEIGHT = 1;
+
+    /**
+     * 检索结果
+     *
+     * @param table     表结构
+     * @param score     BM25 得分（关联表为 0）
+     * @param neighbour 是否为通过业务键关联补充的表
+     */
+    public record Match(SchemaSnapshot.Table table, double score, boolean neighbour) {
+    }
+
+    // 某一快照版本的不可变索引
+    private record Postings(long version,
+                            List<SchemaSnapshot.Table> tables,
+                            Map<String, Map<Integer, Integer>> termFrequencies,
+                            int[] lengths,
+                            double averageLength,
+                            Map<String, Integer> tablesByName) {
+    }
+
+    private final SchemaSnapshotCache schemaSnapshotCache;
+    private final int defaultTopK;
+    private final int maxNeighbours;
+    private final AtomicReference<Postings> postings = new AtomicReference<>();
+
+    public SchemaRelevanceIndex(SchemaSnapshotCache schemaSnapshotCache,
+                                @Value("${ai.tools.mysql.relevance.top-k:5}") int defaultTopK,
+                                @Value("${ai.tools.mysql.relevance.max-neighbours:5}") int maxNeighbours) {
+        this.schemaSnapshotCache = schemaSnapshotCache;
+        this.defaultTopK = defaultTopK;
+        this.maxNeighbours = maxNeighbours;
+    }
+
+    /**
+     * 检索与问题相关的表
+     *
+     * @param question 用户问题或关键词
+     * @param topK     返回的最多表数（不含关联表），为空或非正数时使用默认值
+     * @return 按相关性排序的表，关联表排在最后
+     */
+    public List<Match> search(String question, Integer topK) {
+        Postings index = currentPostings();
+        int limit = topK == null || topK <= 0 ? defaultTopK : topK;
+
+        double[] scores = new double[index.tables().size()];
+        int n = index.tables().size();
+        for (String term : new LinkedHashSet<>(tokenize(question))) {
+            Map<Integer, Integer> postingList = index.termFrequencies().get(term);
+            if (postingList == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (n - postingList.size() + 0.5) / (postingList.size() + 0.5));
+            for (Map.Entry<Integer, Integer> posting : postingList.entrySet()) {
+                int doc = posting.getKey();
+                int tf = posting.getValue();
+                double norm = K1 * (1 - B + B * index.lengths()[doc] / index.averageLength());
+                scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>();
+        for (int doc = 0; doc < n; doc++) {
+            if (scores[doc] > 0) {
+                ranked.add(doc);
+            }
+        }
+        ranked.sort((a, b) -> Double.compare(scores[b], scores[a]));
+
+        List<Match> matches = new ArrayList<>();
+        Set<Integer> selected = new LinkedHashSet<>();
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            int doc = ranked.get(i);
+            selected.add(doc);
+            matches.add(new Match(index.tables().get(doc), scores[doc], false));
+        }
+        for (int doc : neighbours(index, selected)) {
+            matches.add(new Match(index.tables().get(doc), 0, true));
+        }
+        return matches;
+    }
+
+    /**
+     * 渲染检索结果为精简结构文本
+     */
+    public static String render(List<Match> matches) {
+        if (matches.isEmpty()) {
+            return "未找到相关的表，请换用表名、字段名或业务关键词重试，或调用 getMySQLTableStructure 获取全部表结构";
+        }
+        StringBuilder sb = new StringBuilder(matches.size() * 256);
+        for (Match match : matches) {
+            SchemaSnapshot.Table table = match.table();
+            sb.append("## ").append(table.name());
+            if (table.comment() != null && !table.comment().isEmpty()) {
+                sb.append(' ').append(table.comment());
+            }
+            if (match.neighbour()) {
+                sb.append("（关联表）");
+            }
+            sb.append('\n');
+            for (SchemaSnapshot.Column column : table.columns()) {
+                sb.append("- ").append(column.name()).append(' ').append(column.type());
+                if (column.comment() != null && !column.comment().isEmpty()) {
+                    sb.append(' ').append(column.comment());
+                }
+                sb.append('\n');
+            }
+            Set<String> keys = new LinkedHashSet<>();
+            for (SchemaSnapshot.Index index : table.indexes()) {
+                if (index.unique() && !"PRIMARY".equals(index.name())) {
+                    keys.add(index.column());
+                }
+            }
+            if (!keys.isEmpty()) {
+                sb.append("唯一键: ").append(String.join(", ", keys)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private Postings currentPostings() {
+        SchemaSnapshot snapshot = schemaSnapshotCache.getSnapshot();
+        Postings current = postings.get();
+        if (current != null && current.version() == snapshot.version()) {
+            return current;
+        }
+        Postings built = build(snapshot);
+        postings.set(built);
+        return built;
+    }
+
+    static Postings build(SchemaSnapshot snapshot) {
+        List<SchemaSnapshot.Table> tables = snapshot.tables();
+        Map<String, Map<Integer, Integer>> termFrequencies = new HashMap<>();
+        Map<String, Integer> tablesByName = new HashMap<>();
+        int[] lengths = new int[tables.size()];
+        long totalLength = 0;
+        for (int doc = 0; doc < tables.size(); doc++) {
+            SchemaSnapshot.Table table = tables.get(doc);
+            tablesByName.put(table.name().toLowerCase(Locale.ROOT), doc);
+            int length = 0;
+            length += addTerms(termFrequencies, doc, table.name(), TABLE_FIELD_WEIGHT);
+            length += addTerms(termFrequencies, doc, table.comment(), TABLE_FIELD_WEIGHT);
+            for (SchemaSnapshot.Column column : table.columns()) {
+                length += addTerms(termFrequencies, doc, column.name(), COLUMN_FIELD_WEIGHT);
+                length += addTerms(termFrequencies, doc, column.comment(), COLUMN_FIELD_WEIGHT);
+            }
+            lengths[doc] = Math.max(1, length);
+            totalLength += lengths[doc];
+        }
+        double averageLength = tables.isEmpty() ? 1 : (double) totalLength / tables.size();
+        return new Postings(snapshot.version(), tables, termFrequencies, lengths, averageLength, tablesByName);
+    }
+
+    private static int addTerms(Map<String, Map<Integer, Integer>> termFrequencies, int doc, String text, int weight) {
+        List<String> terms = tokenize(text);
+        for (String term : terms) {
+            termFrequencies.computeIfAbsent(term, k -> new HashMap<>()).merge(doc, weight, Integer::sum);
+        }
+        return terms.size() * weight;
+    }
+
+    // 业务键关联：xxx_id 列对应名为 xxx / t_xxx 的表，或在该列上有唯一索引的其他表
+    private List<Integer> neighbours(Postings index, Set<Integer> selected) {
+        Set<Integer> result = new LinkedHashSet<>();
+        for (int doc : selected) {
+            for (SchemaSnapshot.Column column : index.tables().get(doc).columns()) {
+                String name = column.name().toLowerCase(Locale.ROOT);
+                if (!name.endsWith("_id") || result.size() >= maxNeighbours) {
+                    continue;
+                }
+                String entity = name.substring(0, name.length() - 3);
+                Integer target = index.tablesByName().get("t_" + entity);
+                if (target == null) {
+                    target = index.tablesByName().get(entity);
+                }
+                if (target == null) {
+                    target = uniqueKeyOwner(index, name, doc);
+                }
+                if (target != null && !selected.contains(target)) {
+                    result.add(target);
+                }
+            }
+        }
+        return List.copyOf(result).subList(0, Math.min(result.size(), maxNeighbours));
+    }
+
+    private static Integer uniqueKeyOwner(Postings index, String column, int self) {
+        for (int doc = 0; doc < index.tables().size(); doc++) {
+            if (doc == self) {
+                continue;
+            }
+            for (SchemaSnapshot.Index idx : index.tables().get(doc).indexes()) {
+                if (idx.unique() && column.equalsIgnoreCase(idx.column())) {
+                    return doc;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 分词：ASCII 标识符按下划线/驼峰切分为小写单词（忽略单字母），CJK 连续文本切分为 2-gram
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        StringBuilder cjk = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80 && Character.isLetterOrDigit(c)) {
+                flushCjk(cjk, terms);
+                // 驼峰边界
+                if (Character.isUpperCase(c) && !word.isEmpty() && Character.isLowerCase(word.charAt(word.length() - 1))) {
+                    flushWord(word, terms);
+                }
+                word.append(Character.toLowerCase(c));
+            } else if (Character.isIdeographic(c)) {
+                flushWord(word, terms);
+                cjk.append(c);
+            } else {
+                flushWord(word, terms);
+                flushCjk(cjk, terms);
+            }
+        }
+        flushWord(word, terms);
+        flushCjk(cjk, terms);
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> terms) {
+        if (word.length() > 1) {
+            terms.add(word.toString());
+        }
+        word.setLength(0);
+    }
+
+    private static void flushCjk(StringBuilder cjk, List<String> terms) {
+        if (cjk.length() == 1) {
+            terms.add(cjk.toString());
+        }
+        for (int i = 0; i + 1 < cjk.length(); i++) {
+            terms.add(cjk.substring(i, i + 2));
+        }
+        cjk.setLength(0);
+    }
+}
@@ -0,0 +1,96 @@
+package com.eleven.springaideepseekdome.tools.schema;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 数据库表结构快照（不可变）
+ * <p>
+ * - 由 {@link SchemaSnapshotCache} 通过三条集合查询一次性加载
+ * - {@code rendered} 为预先渲染好的工具返回文本，命中缓存时直接返回
+ * - {@code fingerprint} 为 TABLES/COLUMNS/STATISTICS 的校验和，用于判断是否需要刷新
+ *
+ * @param version     快照版本号（每次重新加载递增）
+ * @param fingerprint 表结构指纹
+ * @param tables      表结构列表（按表名排序）
+ * @param rendered    渲染后的表结构文本
+ * @param loadedAt    加载时间
+ */
+public record SchemaSnapshot(long version,
+                             String fingerprint,
+                             List<Table> tables,
+                             String rendered,
+                             Instant loadedAt) {
+
+    /**
+     * 表结构
+     */
+    public record Table(String name, String comment, List<Column> columns, List<Index> indexes) {
+    }
+
+    /**
+     * 字段结构
+     */
+    public record Column(String name, String type, boolean nullable, String comment) {
+    }
+
+    /**
+     * 索引结构（一个索引列对应一条记录）
+     */
+    public record Index(String name, String column, boolean unique, String type) {
+    }
+
+    /**
+     * 构建快照并渲染工具返回文本
+     */
+    public static SchemaSnapshot of(long version, String fingerprint, List<Table> tables) {
+        return new SchemaSnapshot(version, fingerprint, List.copyOf(tables), render(tables), Instant.now());
+    }
+
+    // 渲染格式与原 getMySQLTableStructure 逐表查询的输出保持一致
+    private static String render(List<Table> tables) {
+        StringBuilder sb = new StringBuilder(tables.size() * 512);
+        sb.append("当前数据库表结构:\n\n");
+        for (int t = 0; t < tables.size(); t++) {
+            if (t > 0) {
+                sb.append('\n');
+            }
+            renderTable(sb, tables.get(t));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 渲染单张表的结构文本
+     */
+    public static void renderTable(StringBuilder sb, Table table) {
+        sb.append("## 表名: ").append(table.name()).append('\n');
+        sb.append("注释: ").append(table.comment() == null || table.comment().isEmpty() ? "无注释" : table.comment()).append('\n');
+        sb.append("字段结构:\n");
+        for (int i = 0; i < table.columns().size(); i++) {
+            Column column = table.columns().get(i);
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append("- ").append(column.name())
+                    .append(" (").append(column.type()).append(") ")
+                    .append(column.nullable() ? "" : "NOT").append(" NULL | 注释: ")
+                    .append(column.comment());
+        }
+        sb.append("\n索引信息:\n");
+        if (table.indexes().isEmpty()) {
+            sb.append("无索引");
+        }
+        for (int i = 0; i < table.indexes().size(); i++) {
+            Index index = table.indexes().get(i);
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append("- ").append(index.unique() ? "唯一索引" : "普通索引")
+                    .append(" (").append(index.name()).append("): ")
+                    .append(index.column())
+                    .append(" | 类型: ").append(index.type());
+        }
+        sb.append('\n');
+    }
+}
@@ -0,0 +1,254 @@
+package com.eleven.springaideepseekdome.tools.schema;
+
+import com.eleven.springaideepseekdome.tools.sql.SqlStatementClassifier;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 表结构快照缓存
+ * <p>
+ * - 加载：TABLES / COLUMNS / STATISTICS 三条集合查询，替代原先 2N+1 次逐表查询
+ * - 命中：直接返回内存中预渲染好的文本，不访问数据库
+ * - 刷新：超过校验间隔后由单个调用方执行一次指纹查询（UPDATE_TIME + 字段/索引校验和），
+ *   指纹变化才重新加载，其余并发调用方继续使用旧快照
+ * - 排除：应用内部表（聊天记忆等）不进入快照与指纹，不会出现在提示词和表检索结果中
+ * - 事件：指纹变化重新加载后发布 {@link SchemaChangedEvent}（表结构或表数据更新时间变化）
+ * - 指标：命中/未命中/刷新/校验次数（实现 {@link MeterBinder}，接入 Actuator 后自动注册）
+ */
+@Slf4j
+@Component
+public class SchemaSnapshotCache implements MeterBinder {
+
+    // 排除应用内部表的过滤条件
+    private static final String EXCLUDE_INTERNAL_TABLES = SqlStatementClassifier.INTERNAL_TABLES.stream()
+            .map(table -> "'" + table + "'")
+            .collect(Collectors.joining(", ", "TABLE_NAME NOT IN (", ")"));
+
+    private static final String TABLE_QUERY = """
+            SELECT TABLE_NAME, TABLE_COMMENT
+            FROM INFORMATION_SCHEMA.TABLES
+            WHERE TABLE_SCHEMA = DATABASE() AND %s
+            ORDER BY TABLE_NAME
+            """.formatted(EXCLUDE_INTERNAL_TABLES);
+
+    private static final String COLUMN_QUERY = """
+            SELECT TABLE_NAME, COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, COLUMN_COMMENT
+            FROM INFORMATION_SCHEMA.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE() AND %s
+            ORDER BY TABLE_NAME, ORDINAL_POSITION
+            """.formatted(EXCLUDE_INTERNAL_TABLES);
+
+    private static final String INDEX_QUERY = """
+            SELECT TABLE_NAME, INDEX_NAME, COLUMN_NAME, NON_UNIQUE, INDEX_TYPE
+            FROM INFORMATION_SCHEMA.STATISTICS
+            WHERE TABLE_SCHEMA = DATABASE() AND %s
+            ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX
+            """.formatted(EXCLUDE_INTERNAL_TABLES);
+
+    // 单次往返计算表结构指纹：表更新时间 + 字段校验和 + 索引校验和
+    private static final String FINGERPRINT_QUERY = """
+            SELECT
+                (SELECT CONCAT(COUNT(*), ':', COALESCE(SUM(CRC32(CONCAT_WS('|',
+                        TABLE_NAME, TABLE_COMMENT, CREATE_TIME, UPDATE_TIME))), 0))
+                 FROM INFORMATION_SCHEMA.TABLES
+                 WHERE TABLE_SCHEMA = DATABASE() AND %1$s) AS TABLE_CHECKSUM,
+                (SELECT CONCAT(COUNT(*), ':', COALESCE(SUM(CRC32(CONCAT_WS('|',
+                        TABLE_NAME, COLUMN_NAME, ORDINAL_POSITION, COLUMN_TYPE, IS_NULLABLE, COLUMN_COMMENT))), 0))
+                 FROM INFORMATION_SCHEMA.COLUMNS
+                 WHERE TABLE_SCHEMA = DATABASE() AND %1$s) AS COLUMN_CHECKSUM,
+                (SELECT CONCAT(COUNT(*), ':', COALESCE(SUM(CRC32(CONCAT_WS('|',
+                        TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX, COLUMN_NAME, NON_UNIQUE, INDEX_TYPE))), 0))
+                 FROM INFORMATION_SCHEMA.STATISTICS
+                 WHERE TABLE_SCHEMA = DATABASE() AND %1$s) AS INDEX_CHECKSUM
+            """.formatted(EXCLUDE_INTERNAL_TABLES);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long checkIntervalNanos;
+
+    private final AtomicReference<SchemaSnapshot> current = new AtomicReference<>();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicLong versionSequence = new AtomicLong();
+    private volatile long lastCheckedNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder validations = new LongAdder();
+
+    public SchemaSnapshotCache(JdbcTemplate jdbcTemplate,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${ai.tools.mysql.schema-cache.check-interval:30s}") Duration checkInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.checkIntervalNanos = checkInterval.toNanos();
+    }
+
+    /**
+     * 获取预渲染的表结构文本
+     */
+    public String getRenderedSnapshot() {
+        return getSnapshot().rendered();
+    }
+
+    /**
+     * 获取当前表结构快照
+     * <p>
+     * 首次调用阻塞加载；之后只有超过校验间隔时，由抢到锁的那个调用方执行指纹校验
+     */
+    public SchemaSnapshot getSnapshot() {
+        SchemaSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            return loadBlocking();
+        }
+        hits.increment();
+        if (System.nanoTime() - lastCheckedNanos > checkIntervalNanos && refreshLock.tryLock()) {
+            try {
+                if (System.nanoTime() - lastCheckedNanos > checkIntervalNanos) {
+                    return revalidate(snapshot);
+                }
+            } catch (RuntimeException e) {
+                // 校验失败时继续使用旧快照，下个校验周期再试
+                log.warn("表结构指纹校验失败，继续使用版本 {} 的快照: {}", snapshot.version(), e.getMessage());
+                lastCheckedNanos = System.nanoTime();
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 获取当前已加载的快照（未加载时返回 null，不触发数据库访问）
+     */
+    public SchemaSnapshot peek() {
+        return current.get();
+    }
+
+    /**
+     * 主动失效当前快照（下次访问时强制校验指纹）
+     */
+    public void invalidate() {
+        lastCheckedNanos = System.nanoTime() - checkIntervalNanos - 1;
+    }
+
+    private SchemaSnapshot loadBlocking() {
+        refreshLock.lock();
+        try {
+            SchemaSnapshot snapshot = current.get();
+            if (snapshot != null) {
+                hits.increment();
+                return snapshot;
+            }
+            misses.increment();
+            return reload(queryFingerprint());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private SchemaSnapshot revalidate(SchemaSnapshot snapshot) {
+        validations.increment();
+        String fingerprint = queryFingerprint();
+        if (fingerprint.equals(snapshot.fingerprint())) {
+            lastCheckedNanos = System.nanoTime();
+            return snapshot;
+        }
+        log.info("\n[元数据缓存]\n表结构指纹变化，重新加载快照 (版本 {})\n", snapshot.version());
+        refreshes.increment();
+        SchemaSnapshot reloaded = reload(fingerprint);
+        eventPublisher.publishEvent(new SchemaChangedEvent(snapshot.version(), reloaded.version()));
+        return reloaded;
+    }
+
+    private String queryFingerprint() {
+        return jdbcTemplate.queryForObject(FINGERPRINT_QUERY, (rs, rowNum) ->
+                rs.getString("TABLE_CHECKSUM") + "/" + rs.getString("COLUMN_CHECKSUM") + "/" + rs.getString("INDEX_CHECKSUM"));
+    }
+
+    private SchemaSnapshot reload(String fingerprint) {
+        long start = System.nanoTime();
+
+        Map<String, String> tableComments = new LinkedHashMap<>();
+        jdbcTemplate.query(TABLE_QUERY, rs -> {
+            tableComments.put(rs.getString("TABLE_NAME"), rs.getString("TABLE_COMMENT"));
+        });
+
+        Map<String, List<SchemaSnapshot.Column>> columns = new LinkedHashMap<>();
+        jdbcTemplate.query(COLUMN_QUERY, rs -> {
+            columns.computeIfAbsent(rs.getString("TABLE_NAME"), k -> new ArrayList<>())
+                    .add(new SchemaSnapshot.Column(
+                            rs.getString("COLUMN_NAME"),
+                            rs.getString("COLUMN_TYPE"),
+                            !"NO".equals(rs.getString("IS_NULLABLE")),
+                            rs.getString("COLUMN_COMMENT")));
+        });
+
+        Map<String, List<SchemaSnapshot.Index>> indexes = new LinkedHashMap<>();
+        jdbcTemplate.query(INDEX_QUERY, rs -> {
+            indexes.computeIfAbsent(rs.getString("TABLE_NAME"), k -> new ArrayList<>())
+                    .add(new SchemaSnapshot.Index(
+                            rs.getString("INDEX_NAME"),
+                            rs.getString("COLUMN_NAME"),
+                            !rs.getBoolean("NON_UNIQUE"),
+                            rs.getString("INDEX_TYPE")));
+        });
+
+        List<SchemaSnapshot.Table> tables = new ArrayList<>(tableComments.size());
+        tableComments.forEach((name, comment) -> tables.add(new SchemaSnapshot.Table(
+                name,
+                comment,
+                List.copyOf(columns.getOrDefault(name, List.of())),
+                List.copyOf(indexes.getOrDefault(name, List.of())))));
+
+        SchemaSnapshot snapshot = SchemaSnapshot.of(versionSequence.incrementAndGet(), fingerprint, tables);
+        current.set(snapshot);
+        lastCheckedNanos = System.nanoTime();
+
+        log.info("\n[元数据缓存]\n加载表结构快照: 版本 {}, 表数量 {}, 耗时 {} ms\n",
+                snapshot.version(), tables.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return snapshot;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ai.schema.snapshot.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("表结构快照缓存命中次数")
+                .register(registry);
+        FunctionCounter.builder("ai.schema.snapshot.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("表结构快照缓存未命中次数")
+                .register(registry);
+        FunctionCounter.builder("ai.schema.snapshot.refreshes", refreshes, LongAdder::sum)
+                .description("表结构指纹变化导致的重新加载次数")
+                .register(registry);
+        FunctionCounter.builder("ai.schema.snapshot.validations", validations, LongAdder::sum)
+                .description("表结构指纹校验次数")
+                .register(registry);
+        Gauge.builder("ai.schema.snapshot.tables", current, ref -> ref.get() == null ? 0 : ref.get().tables().size())
+                .description("当前快照中的表数量")
+                .register(registry);
+        Gauge.builder("ai.schema.snapshot.version", current, ref -> ref.get() == null ? 0 : ref.get().version())
+                .description("当前快照版本号")
+                .register(registry);
+    }
+}
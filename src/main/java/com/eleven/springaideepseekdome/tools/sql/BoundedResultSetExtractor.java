@@ -0,0 +1,197 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 有界列式结果集提取器
+ * <p>
+ * - 边读边校验行数上限与字节预算（近似 token 预算），超出即停止读取游标
+ * - 配合 MySQL 流式 fetch（fetchSize = Integer.MIN_VALUE）使用时，堆内存占用只与上限相关，与表大小无关
+ * - 直接从 ResultSet 流式写出列式 JSON：列名/类型只输出一次，之后每行是一个数组，不创建逐行 Map
+ * - 截断时在结果中说明"返回 N 行，至少 M 行"，便于模型缩小查询范围
+ * <p>
+ * 输出格式：
+ * <pre>
+ * {"columns":["id","name"],"types":["BIGINT","VARCHAR"],"rows":[[1,"a"],[2,"b"]],
+ *  "rowCount":2,"truncated":false}
+ * </pre>
+ */
+public class BoundedResultSetExtractor implements ResultSetExtractor<QueryResult> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final int maxRows;
+    private final long maxBytes;
+    private final int sampleSize;
+
+    public BoundedResultSetExtractor(int maxRows, long maxBytes) {
+        this(maxRows, maxBytes, 0);
+    }
+
+    /**
+     * @param maxRows    最大行数
+     * @param maxBytes   最大字节数（近似 token 预算）
+     * @param sampleSize 额外采集的日志预览行数（0 表示不采集）
+     */
+    public BoundedResultSetExtractor(int maxRows, long maxBytes, int sampleSize) {
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public QueryResult extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        List<Map<String, Object>> sample = sampleSize > 0 ? new ArrayList<>(sampleSize) : List.of();
+        // 行值缓冲区在各行之间复用
+        Object[] values = new Object[columnCount];
+        int rowCount = 0;
+        long bytes = 0;
+        String truncation = null;
+
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("columns");
+            for (String label : labels) {
+                gen.writeString(label);
+            }
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("types");
+            for (int i = 1; i <= columnCount; i++) {
+                gen.writeString(metaData.getColumnTypeName(i));
+            }
+            gen.writeEndArray();
+
+            gen.writeArrayFieldStart("rows");
+            while (rs.next()) {
+                if (rowCount >= maxRows) {
+                    truncation = String.format("结果已截断：返回 %d 行，实际至少 %d 行（超过行数上限 %d），请增加过滤条件、LIMIT 或改用聚合查询",
+                            rowCount, rowCount + 1, maxRows);
+                    break;
+                }
+
+                long rowBytes = 2;
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = rs.getObject(i + 1);
+                    rowBytes += estimateBytes(values[i]) + 1;
+                }
+
+                // 至少保留一行，避免单行超大时模型拿不到任何数据
+                if (rowCount > 0 && bytes + rowBytes > maxBytes) {
+                    truncation = String.format("结果已截断：返回 %d 行，实际至少 %d 行（超过结果大小上限 %d 字节），请减少查询列或增加过滤条件",
+                            rowCount, rowCount + 1, maxBytes);
+                    break;
+                }
+
+                gen.writeStartArray();
+                for (int i = 0; i < columnCount; i++) {
+                    writeValue(gen, values[i]);
+                }
+                gen.writeEndArray();
+
+                if (rowCount < sampleSize) {
+                    Map<String, Object> row = new LinkedHashMap<>(columnCount * 2);
+                    for (int i = 0; i < columnCount; i++) {
+                        row.put(labels[i], values[i]);
+                    }
+                    sample.add(row);
+                }
+                rowCount++;
+                bytes += rowBytes;
+            }
+            gen.writeEndArray();
+
+            gen.writeNumberField("rowCount", rowCount);
+            gen.writeBooleanField("truncated", truncation != null);
+            if (truncation != null) {
+                gen.writeStringField("truncation", truncation);
+            }
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("查询结果编码失败", e);
+        }
+
+        return new QueryResult(List.of(labels), rowCount, truncation != null, truncation,
+                out.toString(StandardCharsets.UTF_8), sample);
+    }
+
+    // 按 JDBC 值类型直接写出 JSON，避免经过 ObjectMapper 反射
+    private static void writeValue(JsonGenerator gen, Object value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof String s) {
+            gen.writeString(s);
+        } else if (value instanceof Integer n) {
+            gen.writeNumber(n);
+        } else if (value instanceof Long n) {
+            gen.writeNumber(n);
+        } else if (value instanceof BigDecimal n) {
+            gen.writeNumber(n);
+        } else if (value instanceof BigInteger n) {
+            gen.writeNumber(n);
+        } else if (value instanceof Double n) {
+            gen.writeNumber(n);
+        } else if (value instanceof Float n) {
+            gen.writeNumber(n);
+        } else if (value instanceof Short n) {
+            gen.writeNumber(n);
+        } else if (value instanceof Byte n) {
+            gen.writeNumber(n);
+        } else if (value instanceof Boolean b) {
+            gen.writeBoolean(b);
+        } else if (value instanceof byte[] data) {
+            gen.writeBinary(data);
+        } else {
+            // 日期时间等类型输出字符串形式
+            gen.writeString(value.toString());
+        }
+    }
+
+    /**
+     * 估算值序列化后的 UTF-8 字节数
+     */
+    static long estimateBytes(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof CharSequence cs) {
+            long bytes = 2;
+            for (int i = 0, len = cs.length(); i < len; i++) {
+                char c = cs.charAt(i);
+                bytes += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+            }
+            return bytes;
+        }
+        if (value instanceof byte[] data) {
+            // Base64 编码后约为 4/3
+            return (data.length * 4L) / 3 + 4;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 8;
+        }
+        return value.toString().length() + 2;
+    }
+}
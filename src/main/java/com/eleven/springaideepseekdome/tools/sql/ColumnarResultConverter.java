@@ -0,0 +1,25 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import org.springframework.ai.tool.execution.DefaultToolCallResultConverter;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
+
+import java.lang.reflect.Type;
+
+/**
+ * 查询结果工具返回值转换器
+ * <p>
+ * {@link QueryResult} 在读取 ResultSet 时已编码为列式 JSON，这里直接返回，
+ * 其他类型交给 Spring AI 默认转换器处理
+ */
+public class ColumnarResultConverter implements ToolCallResultConverter {
+
+    private static final ToolCallResultConverter DEFAULT_CONVERTER = new DefaultToolCallResultConverter();
+
+    @Override
+    public String convert(Object result, Type returnType) {
+        if (result instanceof QueryResult queryResult) {
+            return queryResult.json();
+        }
+        return DEFAULT_CONVERTER.convert(result, returnType);
+    }
+}
@@ -0,0 +1,25 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL 查询工具返回结果
+ * <p>
+ * 返回给模型的内容为 {@code json}（列式编码，见 {@link BoundedResultSetExtractor}），
+ * 由 {@link ColumnarResultConverter} 原样输出，不再经过逐行 Map 的 JSON 序列化
+ *
+ * @param columns    列名列表
+ * @param rowCount   返回行数（已按行数/字节上限截断）
+ * @param truncated  是否被截断
+ * @param truncation 截断说明（未截断时为 null），提示模型缩小查询范围
+ * @param json       列式 JSON 编码后的结果
+ * @param sample     日志预览样本行（仅在需要时采集，否则为空列表）
+ */
+public record QueryResult(List<String> columns,
+                          int rowCount,
+                          boolean truncated,
+                          String truncation,
+                          String json,
+                          List<Map<String, Object>> sample) {
+}
@@ -0,0 +1,226 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import com.eleven.springaideepseekdome.tools.schema.SchemaChangedEvent;
+import com.eleven.springaideepseekdome.tools.schema.SchemaSnapshot;
+import com.eleven.springaideepseekdome.tools.schema.SchemaSnapshotCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * AI 生成 SQL 的查询结果缓存
+ * <p>
+ * - 键：{@link SqlFingerprint} 归一化后的 SQL + 绑定参数（空白、注释、关键字大小写差异的同一查询共享结果；
+ *   标识符大小写保留；{@code byte[]} 参数按内容比较）
+ * - 过期：按条目 TTL，SHOW/DESC/EXPLAIN 等元数据语句使用更长的 TTL
+ * - 容量：按结果字节数加权限制总内存，Caffeine W-TinyLFU 淘汰
+ * - 失效：支持按表失效；表结构快照指纹变化（含表数据更新时间）时整体失效
+ * - 含 NOW()/RAND() 等不确定函数的查询不缓存
+ */
+@Slf4j
+@Component
+public class QueryResultCache implements MeterBinder {
+
+    private static final List<String> VOLATILE_FUNCTIONS = List.of(
+            "now(", "sysdate(", "curdate(", "curtime(", "current_timestamp", "current_date", "current_time",
+            "localtime", "unix_timestamp(", "utc_", "rand(", "uuid(", "connection_id(", "last_insert_id(", "found_rows("
+    );
+
+    private final SchemaSnapshotCache schemaSnapshotCache;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long metadataTtlNanos;
+    private final Cache<Key, Entry> cache;
+
+    public QueryResultCache(SchemaSnapshotCache schemaSnapshotCache,
+                            @Value("${ai.tools.mysql.query-cache.enabled:true}") boolean enabled,
+                            @Value("${ai.tools.mysql.query-cache.ttl:60s}") Duration ttl,
+                            @Value("${ai.tools.mysql.query-cache.metadata-ttl:10m}") Duration metadataTtl,
+                            @Value("${ai.tools.mysql.query-cache.max-weight:33554432}") long maxWeight) {
+        this.schemaSnapshotCache = schemaSnapshotCache;
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.metadataTtlNanos = metadataTtl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Key key, Entry entry) -> entry.weight())
+                .expireAfter(new Expiry<Key, Entry>() {
+                    @Override
+                    public long expireAfterCreate(Key key, Entry entry, long currentTime) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 读取缓存，未命中时执行查询并写入缓存
+     * <p>
+     * 查询在缓存锁外执行，避免慢查询阻塞同一分段上的其他键
+     */
+    public QueryResult get(String sql, Object[] params, Supplier<QueryResult> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        String fingerprint = SqlFingerprint.of(sql);
+        if (isVolatile(fingerprint)) {
+            return loader.get();
+        }
+
+        Key key = new Key(fingerprint, keyParams(params));
+        Entry cached = cache.getIfPresent(key);
+        if (cached != null) {
+            log.info("\n[SQL 结果缓存]\n命中: {}\n", fingerprint);
+            return cached.result();
+        }
+
+        QueryResult result = loader.get();
+        long ttl = isMetadataStatement(fingerprint) ? metadataTtlNanos : ttlNanos;
+        cache.put(key, new Entry(result, referencedTables(fingerprint), ttl));
+        return result;
+    }
+
+    /**
+     * 按表失效（表名不区分大小写）
+     */
+    public void invalidateTables(Collection<String> tables) {
+        Set<String> names = new HashSet<>();
+        for (String table : tables) {
+            names.add(table.toLowerCase(Locale.ROOT));
+        }
+        cache.asMap().entrySet().removeIf(e -> e.getValue().tables().stream().anyMatch(names::contains));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onSchemaChanged(SchemaChangedEvent event) {
+        log.info("\n[SQL 结果缓存]\n表结构快照变化 ({} -> {})，清空查询结果缓存\n",
+                event.previousVersion(), event.currentVersion());
+        invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "ai.sql.query-result");
+    }
+
+    // 数组参数按内容比较（数组的 equals/hashCode 为引用语义）
+    private static List<Object> keyParams(Object[] params) {
+        if (params == null || params.length == 0) {
+            return List.of();
+        }
+        Object[] copy = new Object[params.length];
+        for (int i = 0; i < params.length; i++) {
+            copy[i] = params[i] instanceof byte[] bytes ? new BinaryParam(bytes.clone()) : params[i];
+        }
+        return Arrays.asList(copy);
+    }
+
+    private static boolean isVolatile(String fingerprint) {
+        // 指纹保留标识符大小写，未识别为关键字的函数名可能为大写
+        String lower = fingerprint.toLowerCase(Locale.ROOT);
+        for (String function : VOLATILE_FUNCTIONS) {
+            if (lower.contains(function)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMetadataStatement(String fingerprint) {
+        return fingerprint.startsWith("show") || fingerprint.startsWith("desc") || fingerprint.startsWith("explain");
+    }
+
+    // 从指纹中提取已知表名（依赖已加载的表结构快照，未加载时仅依赖 TTL 与整体失效）
+    private Set<String> referencedTables(String fingerprint) {
+        SchemaSnapshot snapshot = schemaSnapshotCache.peek();
+        if (snapshot == null) {
+            return Set.of();
+        }
+        Set<String> known = new HashSet<>(snapshot.tables().size() * 2);
+        for (SchemaSnapshot.Table table : snapshot.tables()) {
+            known.add(table.name().toLowerCase(Locale.ROOT));
+        }
+
+        Set<String> tables = new HashSet<>();
+        int len = fingerprint.length();
+        int start = -1;
+        for (int i = 0; i <= len; i++) {
+            char c = i < len ? fingerprint.charAt(i) : ' ';
+            boolean identifierChar = Character.isLetterOrDigit(c) || c == '_' || c == '$';
+            if (identifierChar && start < 0) {
+                start = i;
+            } else if (!identifierChar && start >= 0) {
+                String word = fingerprint.substring(start, i).toLowerCase(Locale.ROOT);
+                if (known.contains(word)) {
+                    tables.add(word);
+                }
+                start = -1;
+            }
+        }
+        return Set.copyOf(tables);
+    }
+
+    private record Key(String fingerprint, List<Object> params) {
+    }
+
+    private record BinaryParam(byte[] bytes) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BinaryParam other && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public String toString() {
+            return HexFormat.of().formatHex(bytes);
+        }
+    }
+
+    private record Entry(QueryResult result, Set<String> tables, long ttlNanos) {
+
+        // 按字符数估算占用（String 内部最多 2 字节/字符）
+        int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, 64L + result.json().length() * 2L);
+        }
+    }
+}
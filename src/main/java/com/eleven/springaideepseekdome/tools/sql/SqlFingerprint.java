@@ -0,0 +1,79 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * SQL 指纹（用于查询结果缓存的键）
+ * <p>
+ * 基于 {@link SqlLexer} 单遍完成归一化：
+ * - 移除注释（块注释、-- 行注释、# 行注释）
+ * - 连续空白折叠为一个空格，标点两侧的空白去除
+ * - 字符串字面量与标识符原样保留（MySQL 表名在 Linux 上区分大小写，列别名决定结果列名），
+ *   只有关键字与常用函数名转小写（关键字大小写差异不影响命中）
+ * - 去掉末尾分号
+ */
+public final class SqlFingerprint {
+
+    // 大小写不敏感、可安全转小写的关键字与函数名
+    private static final Set<String> KEYWORDS = Set.of(
+            "select", "distinct", "from", "where", "and", "or", "not", "in", "is", "null", "like", "between",
+            "exists", "group", "by", "order", "asc", "desc", "having", "limit", "offset", "as", "on", "using",
+            "join", "inner", "left", "right", "outer", "cross", "natural", "straight_join", "union", "all",
+            "case", "when", "then", "else", "end", "with", "recursive", "over", "partition", "rows", "range",
+            "interval", "true", "false", "show", "tables", "columns", "full", "index", "indexes", "keys",
+            "status", "variables", "databases", "create", "table", "describe", "explain", "analyze", "format",
+            "count", "sum", "avg", "min", "max", "group_concat", "if", "ifnull", "coalesce", "nullif",
+            "cast", "convert", "concat", "substring", "lower", "upper", "length", "char_length", "round",
+            "floor", "ceil", "abs", "date", "date_format", "date_add", "date_sub", "datediff", "year", "month",
+            "day", "hour", "minute", "second", "week", "quarter", "now", "sysdate", "curdate", "curtime",
+            "current_timestamp", "current_date", "current_time", "localtime", "localtimestamp",
+            "unix_timestamp", "utc_date", "utc_time", "utc_timestamp", "rand", "uuid", "connection_id",
+            "last_insert_id", "found_rows", "row_number", "rank", "dense_rank", "lag", "lead", "div", "mod",
+            "regexp", "rlike", "escape", "binary", "collate", "for", "share", "lock", "mode", "of");
+
+    private SqlFingerprint() {
+    }
+
+    public static String of(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        SqlLexer lexer = new SqlLexer(sql);
+
+        for (SqlLexer.TokenType type = lexer.next(); type != SqlLexer.TokenType.EOF; type = lexer.next()) {
+            if (lexer.precededBySpace() && !sb.isEmpty()
+                    && !isPunctuation(lexer.firstChar()) && !isPunctuation(sb.charAt(sb.length() - 1))) {
+                sb.append(' ');
+            }
+            if (type == SqlLexer.TokenType.WORD && isKeyword(sql, lexer.start(), lexer.end())) {
+                for (int i = lexer.start(); i < lexer.end(); i++) {
+                    sb.append(Character.toLowerCase(sql.charAt(i)));
+                }
+            } else {
+                sb.append(sql, lexer.start(), lexer.end());
+            }
+        }
+
+        // 去掉末尾分号
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) == ';') {
+            end--;
+        }
+        sb.setLength(end);
+        return sb.toString();
+    }
+
+    private static boolean isKeyword(String sql, int start, int end) {
+        // 最长的关键字为 current_timestamp（17 个字符）
+        if (end - start > 17) {
+            return false;
+        }
+        return KEYWORDS.contains(sql.substring(start, end).toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isPunctuation(char c) {
+        return switch (c) {
+            case '(', ')', ',', '=', '<', '>', '!', '*', '+', '/', ';' -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,197 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+/**
+ * MySQL 方言单遍词法分析器
+ * <p>
+ * - 游标式接口：{@link #next()} 返回下一个词法单元类型，位置通过 {@link #start()}/{@link #end()} 读取，不创建 Token 对象
+ * - 跳过空白与注释（块注释、-- 行注释、# 行注释），并记录单元前是否存在空白/注释
+ * - 识别字符串字面量（'...'、"..."，支持反斜杠与双写引号转义）与反引号标识符
+ * - MySQL 可执行注释 {@code /*! ... *}{@code /} 中的内容会被服务端执行，按普通 SQL 继续解析
+ * <p>
+ * 非线程安全，每次分析创建一个实例
+ */
+public final class SqlLexer {
+
+    /**
+     * 词法单元类型
+     */
+    public enum TokenType {
+        /** 关键字、标识符、数字等连续的单词字符 */
+        WORD,
+        /** 字符串字面量（含引号） */
+        STRING,
+        /** 反引号标识符（含反引号） */
+        QUOTED_IDENTIFIER,
+        /** 语句分隔符 ; */
+        SEMICOLON,
+        /** 其他单个符号 */
+        SYMBOL,
+        /** 输入结束 */
+        EOF
+    }
+
+    private final String sql;
+    private final int length;
+    private int position;
+    private int start;
+    private int end;
+    private boolean precededBySpace;
+    private boolean inExecutableComment;
+
+    public SqlLexer(String sql) {
+        this.sql = sql;
+        this.length = sql.length();
+    }
+
+    /**
+     * 读取下一个词法单元
+     */
+    public TokenType next() {
+        precededBySpace = skipWhitespaceAndComments();
+        start = position;
+        if (position >= length) {
+            end = position;
+            return TokenType.EOF;
+        }
+
+        char c = sql.charAt(position);
+        if (c == '\'' || c == '"') {
+            position = skipQuoted(position, c);
+            end = position;
+            return TokenType.STRING;
+        }
+        if (c == '`') {
+            position = skipQuoted(position, c);
+            end = position;
+            return TokenType.QUOTED_IDENTIFIER;
+        }
+        if (isWordChar(c)) {
+            do {
+                position++;
+            } while (position < length && isWordChar(sql.charAt(position)));
+            end = position;
+            return TokenType.WORD;
+        }
+
+        position++;
+        end = position;
+        return c == ';' ? TokenType.SEMICOLON : TokenType.SYMBOL;
+    }
+
+    /**
+     * 当前单元起始位置（含）
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * 当前单元结束位置（不含）
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * 当前单元之前是否有空白或注释
+     */
+    public boolean precededBySpace() {
+        return precededBySpace;
+    }
+
+    /**
+     * 当前单元首字符
+     */
+    public char firstChar() {
+        return sql.charAt(start);
+    }
+
+    /**
+     * 当前单元是否为指定关键字（忽略大小写，不分配字符串）
+     */
+    public boolean isKeyword(String keyword) {
+        return end - start == keyword.length() && sql.regionMatches(true, start, keyword, 0, keyword.length());
+    }
+
+    /**
+     * 当前单元是否为指定标识符（忽略大小写，反引号标识符按去掉反引号后的内容比较，不分配字符串）
+     */
+    public boolean isIdentifier(String name) {
+        int from = start;
+        int to = end;
+        if (to - from >= 2 && sql.charAt(from) == '`') {
+            from++;
+            to--;
+        }
+        return to - from == name.length() && sql.regionMatches(true, from, name, 0, name.length());
+    }
+
+    /**
+     * 当前单元文本
+     */
+    public String text() {
+        return sql.substring(start, end);
+    }
+
+    // 跳过空白和注释，返回是否跳过了内容
+    private boolean skipWhitespaceAndComments() {
+        boolean skipped = false;
+        while (position < length) {
+            char c = sql.charAt(position);
+            if (Character.isWhitespace(c)) {
+                position++;
+            } else if (c == '/' && peek(1) == '*') {
+                if (peek(2) == '!') {
+                    // 可执行注释：跳过 /*! 与可选的版本号，内容按 SQL 解析
+                    position += 3;
+                    while (position < length && Character.isDigit(sql.charAt(position))) {
+                        position++;
+                    }
+                    inExecutableComment = true;
+                } else {
+                    int close = sql.indexOf("*/", position + 2);
+                    position = close < 0 ? length : close + 2;
+                }
+            } else if (c == '*' && inExecutableComment && peek(1) == '/') {
+                position += 2;
+                inExecutableComment = false;
+            } else if (c == '#' || (c == '-' && peek(1) == '-' && (position + 2 >= length || Character.isWhitespace(peek(2))))) {
+                while (position < length && sql.charAt(position) != '\n') {
+                    position++;
+                }
+            } else {
+                return skipped;
+            }
+            skipped = true;
+        }
+        return skipped;
+    }
+
+    // 跳过引号内容（支持反斜杠转义与双写引号转义），返回结束位置
+    private int skipQuoted(int from, char quote) {
+        int i = from + 1;
+        while (i < length) {
+            char c = sql.charAt(i++);
+            if (c == '\\' && quote != '`') {
+                i++;
+            } else if (c == quote) {
+                if (i < length && sql.charAt(i) == quote) {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return length;
+    }
+
+    private char peek(int offset) {
+        int i = position + offset;
+        return i < length ? sql.charAt(i) : '\0';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '$' || c == '@' || c >= 0x80;
+    }
+}
@@ -0,0 +1,110 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import java.util.List;
+
+/**
+ * SQL 只读语句判定
+ * <p>
+ * 基于 {@link SqlLexer} 单遍扫描，不使用正则：
+ * - 按分号（引号与注释之外）切分语句，每条语句的首个关键字必须在白名单内
+ * - 任意位置出现黑名单关键字即判定为危险操作（字符串、反引号标识符、注释中的内容不参与判定）
+ * - 引用应用内部表（{@link #INTERNAL_TABLES}，含反引号写法）即拒绝
+ */
+public final class SqlStatementClassifier {
+
+    // 合法关键字白名单（语句首个关键字）
+    private static final String[] ALLOWED_KEYWORDS = {
+            "SELECT", "SHOW", "DESC", "DESCRIBE", "EXPLAIN",
+            "WITH", "USE", "HELP"
+    };
+
+    // 禁止关键字黑名单
+    private static final String[] FORBIDDEN_KEYWORDS = {
+            "INSERT", "UPDATE", "DELETE", "DROP", "ALTER",
+            "TRUNCATE", "CREATE", "GRANT", "REVOKE", "MERGE",
+            "CALL", "EXECUTE", "REPLACE", "LOCK", "UNLOCK",
+            "OUTFILE", "DUMPFILE", "LOAD_FILE"
+    };
+
+    /**
+     * 应用内部表（聊天记忆与归档），不对模型开放查询，也不出现在表结构快照中
+     */
+    public static final List<String> INTERNAL_TABLES = List.of("ai_chat_memory", "ai_chat_memory_archive");
+
+    private SqlStatementClassifier() {
+    }
+
+    /**
+     * 判断 SQL 是否全部为只读语句
+     */
+    public static boolean isReadOnly(String sql) {
+        try {
+            validateReadOnly(sql);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 校验 SQL 只包含只读语句
+     *
+     * @throws IllegalArgumentException 空语句、非法操作类型或检测到危险操作时抛出
+     */
+    public static void validateReadOnly(String sql) {
+        SqlLexer lexer = new SqlLexer(sql);
+        boolean statementStart = true;
+        int statements = 0;
+
+        for (SqlLexer.TokenType type = lexer.next(); type != SqlLexer.TokenType.EOF; type = lexer.next()) {
+            if (type == SqlLexer.TokenType.SEMICOLON) {
+                statementStart = true;
+                continue;
+            }
+
+            if (statementStart) {
+                statementStart = false;
+                statements++;
+                if (type != SqlLexer.TokenType.WORD || indexOfKeyword(lexer, ALLOWED_KEYWORDS) < 0) {
+                    throw new IllegalArgumentException("非法操作类型: " + lexer.text());
+                }
+                continue;
+            }
+
+            if (type == SqlLexer.TokenType.WORD) {
+                int forbidden = indexOfKeyword(lexer, FORBIDDEN_KEYWORDS);
+                if (forbidden >= 0) {
+                    throw new IllegalArgumentException("检测到危险操作: " + FORBIDDEN_KEYWORDS[forbidden]);
+                }
+            }
+            if (type == SqlLexer.TokenType.WORD || type == SqlLexer.TokenType.QUOTED_IDENTIFIER) {
+                String internal = internalTable(lexer);
+                if (internal != null) {
+                    throw new IllegalArgumentException("禁止访问内部表: " + internal);
+                }
+            }
+        }
+
+        if (statements == 0) {
+            throw new IllegalArgumentException("空语句");
+        }
+    }
+
+    private static String internalTable(SqlLexer lexer) {
+        for (String table : INTERNAL_TABLES) {
+            if (lexer.isIdentifier(table)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOfKeyword(SqlLexer lexer, String[] keywords) {
+        for (int i = 0; i < keywords.length; i++) {
+            if (lexer.isKeyword(keywords[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,190 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * 表格渲染结果集提取器
+ * <p>
+ * - 直接从 ResultSet 逐行写入输出缓冲区，生成 Markdown 或 CSV 表格，不物化中间行数据
+ * - 单元格超过宽度上限时截断（以 … 结尾），Markdown 中转义 | 与换行
+ * - 与 {@link BoundedResultSetExtractor} 一致地执行行数/字节上限（按输出的 UTF-8 字节数计算，中文每字 3 字节），
+ *   并在表格后附加截断说明
+ */
+public class TableResultSetExtractor implements ResultSetExtractor<String> {
+
+    /**
+     * 表格输出格式
+     */
+    public enum Format {
+        MARKDOWN,
+        CSV;
+
+        /**
+         * 解析格式（忽略大小写，为空或无法识别时使用 Markdown）
+         */
+        public static Format parse(String value) {
+            if (value == null || value.isBlank()) {
+                return MARKDOWN;
+            }
+            try {
+                return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return MARKDOWN;
+            }
+        }
+    }
+
+    private final Format format;
+    private final int maxRows;
+    private final long maxBytes;
+    private final int maxCellChars;
+    private int rowCount;
+
+    public TableResultSetExtractor(Format format, int maxRows, long maxBytes, int maxCellChars) {
+        this.format = format;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.maxCellChars = maxCellChars;
+    }
+
+    @Override
+    public String extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        StringBuilder sb = new StringBuilder(1024);
+
+        // 表头
+        if (format == Format.MARKDOWN) {
+            sb.append('|');
+            for (int i = 1; i <= columnCount; i++) {
+                sb.append(' ');
+                appendCell(sb, metaData.getColumnLabel(i));
+                sb.append(" |");
+            }
+            sb.append("\n|").append("---|".repeat(columnCount)).append('\n');
+        } else {
+            for (int i = 1; i <= columnCount; i++) {
+                if (i > 1) {
+                    sb.append(',');
+                }
+                appendCell(sb, metaData.getColumnLabel(i));
+            }
+            sb.append('\n');
+        }
+
+        long bytes = utf8Length(sb, 0, sb.length());
+        rowCount = 0;
+        String truncation = null;
+        while (rs.next()) {
+            if (rowCount >= maxRows) {
+                truncation = String.format("结果已截断：显示 %d 行，实际至少 %d 行（超过行数上限 %d）", rowCount, rowCount + 1, maxRows);
+                break;
+            }
+
+            int rowStart = sb.length();
+            if (format == Format.MARKDOWN) {
+                sb.append('|');
+                for (int i = 1; i <= columnCount; i++) {
+                    sb.append(' ');
+                    Object value = rs.getObject(i);
+                    appendCell(sb, value == null ? "NULL" : value.toString());
+                    sb.append(" |");
+                }
+            } else {
+                for (int i = 1; i <= columnCount; i++) {
+                    if (i > 1) {
+                        sb.append(',');
+                    }
+                    Object value = rs.getObject(i);
+                    if (value != null) {
+                        appendCell(sb, value.toString());
+                    }
+                }
+            }
+            sb.append('\n');
+
+            // 至少保留一行；超出字节上限时回退本行
+            long rowBytes = utf8Length(sb, rowStart, sb.length());
+            if (rowCount > 0 && bytes + rowBytes > maxBytes) {
+                sb.setLength(rowStart);
+                truncation = String.format("结果已截断：显示 %d 行，实际至少 %d 行（超过结果大小上限 %d 字节）", rowCount, rowCount + 1, maxBytes);
+                break;
+            }
+            bytes += rowBytes;
+            rowCount++;
+        }
+
+        if (rowCount == 0) {
+            return "无数据";
+        }
+        if (truncation != null) {
+            sb.append(format == Format.MARKDOWN ? "\n> " : "# ").append(truncation).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 最近一次提取写入表格的行数（不含被截断的行）
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    // UTF-8 编码后的字节数（代理对每个 char 计 2 字节，合计 4 字节）
+    private static long utf8Length(CharSequence text, int from, int to) {
+        long bytes = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            bytes += c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isSurrogate(c) ? 2 : 3;
+        }
+        return bytes;
+    }
+
+    // 写入单元格：按宽度上限截断并按格式转义
+    private void appendCell(StringBuilder sb, String text) {
+        int len = Math.min(text.length(), maxCellChars);
+        if (format == Format.MARKDOWN) {
+            for (int i = 0; i < len; i++) {
+                char c = text.charAt(i);
+                if (c == '|') {
+                    sb.append("\\|");
+                } else if (c == '\n' || c == '\r') {
+                    sb.append(' ');
+                } else {
+                    sb.append(c);
+                }
+            }
+            if (text.length() > maxCellChars) {
+                sb.append('…');
+            }
+            return;
+        }
+
+        boolean quote = false;
+        for (int i = 0; i < len && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (quote) {
+            sb.append('"');
+        }
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        if (text.length() > maxCellChars) {
+            sb.append('…');
+        }
+        if (quote) {
+            sb.append('"');
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.eleven.springaideepseekdome.cache;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InFlightRequestCoalescerTests {
+
+    private final InFlightRequestCoalescer coalescer = new InFlightRequestCoalescer(true);
+
+    @Test
+    void concurrentIdenticalCallsShareOneUpstreamCall() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<InFlightRequestCoalescer.Result>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> coalescer.call("deepseek", "有哪些表？", () -> {
+                    upstreamCalls.incrementAndGet();
+                    await(release);
+                    return "共 3 张表";
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            int shared = 0;
+            for (Future<InFlightRequestCoalescer.Result> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).answer()).isEqualTo("共 3 张表");
+                shared += result.get().shared() ? 1 : 0;
+            }
+            assertThat(upstreamCalls).hasValue(1);
+            assertThat(shared).isEqualTo(3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void onlyExactTextInSameScopeIsShared() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<InFlightRequestCoalescer.Result>> results = new ArrayList<>();
+            // 标点、空白或作用域（模型、选项、工具类型）不同都不共享
+            String[][] requests = {{"deepseek", "有哪些表？"}, {"deepseek", "  有哪些表"},
+                    {"openai", "有哪些表？"}, {"deepseek|MCP", "有哪些表？"}};
+            for (String[] request : requests) {
+                results.add(executor.submit(() -> coalescer.call(request[0], request[1], () -> {
+                    upstreamCalls.incrementAndGet();
+                    await(release);
+                    return request[0] + ":" + request[1];
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            for (int i = 0; i < requests.length; i++) {
+                InFlightRequestCoalescer.Result result = results.get(i).get(5, TimeUnit.SECONDS);
+                assertThat(result.shared()).isFalse();
+                assertThat(result.answer()).isEqualTo(requests[i][0] + ":" + requests[i][1]);
+            }
+            assertThat(upstreamCalls).hasValue(4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failureIsSharedAndNotRemembered() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<InFlightRequestCoalescer.Result>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(() -> coalescer.call("deepseek", "你好", () -> {
+                    upstreamCalls.incrementAndGet();
+                    await(release);
+                    throw new IllegalStateException("429 Too Many Requests");
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<InFlightRequestCoalescer.Result> result : results) {
+                assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("429 Too Many Requests");
+            }
+            assertThat(upstreamCalls).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 调用结束后不保留结果
+        assertThat(coalescer.call("deepseek", "你好", () -> "再次调用").answer()).isEqualTo("再次调用");
+    }
+
+    @Test
+    void lateStreamSubscriberReceivesReplayThenLiveTail() {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        Sinks.Many<String> tokens = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<String> first = coalescer.stream("deepseek-stream", "讲个笑话", () -> {
+            upstreamCalls.incrementAndGet();
+            return tokens.asFlux();
+        });
+        List<String> firstReceived = new ArrayList<>();
+        first.subscribe(firstReceived::add);
+        tokens.tryEmitNext("从前");
+        tokens.tryEmitNext("有座山");
+
+        List<String> lateReceived = new ArrayList<>();
+        coalescer.stream("deepseek-stream", "讲个笑话", Flux::<String>empty).subscribe(lateReceived::add);
+        tokens.tryEmitNext("。");
+        tokens.tryEmitComplete();
+
+        assertThat(upstreamCalls).hasValue(1);
+        assertThat(firstReceived).containsExactly("从前", "有座山", "。");
+        assertThat(lateReceived).containsExactly("从前", "有座山", "。");
+
+        // 上游结束后相同请求重新调用
+        assertThat(coalescer.stream("deepseek-stream", "讲个笑话", () -> Flux.just("新回答")).collectList().block())
+                .containsExactly("新回答");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
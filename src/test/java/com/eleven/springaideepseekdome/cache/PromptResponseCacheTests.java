@@ -0,0 +1,61 @@
+package com.eleven.springaideepseekdome.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptResponseCacheTests {
+
+    private final PromptResponseCache cache = new PromptResponseCache(true, true, 0.8, Duration.ofMinutes(10), 1 << 20);
+
+    @Test
+    void exactMatchIgnoresCaseWhitespaceAndTrailingPunctuation() {
+        cache.put("chat", "What is  MySQL?", "一个关系型数据库");
+
+        assertThat(cache.lookup("chat", " what is mysql？", null)).isEqualTo("一个关系型数据库");
+        assertThat(cache.lookup("other", "what is mysql", null)).isNull();
+    }
+
+    @Test
+    void nearDuplicateQuestionsShareAnswer() {
+        cache.put("chat", "请介绍一下课节表 t_course 中各个字段的含义和用途", "字段说明");
+
+        assertThat(cache.lookup("chat", "请介绍一下课节表 t_course 中各个字段的含义与用途", null)).isEqualTo("字段说明");
+        assertThat(cache.lookup("chat", "今天北京的天气怎么样，适合出门跑步吗", null)).isNull();
+    }
+
+    @Test
+    void differentNumbersNeverMatchApproximately() {
+        cache.put("chat", "查询课节表中 status 为 2 的课程有哪些字段和含义", "答案二");
+
+        assertThat(cache.lookup("chat", "查询课节表中 status 为 3 的课程有哪些字段和含义", null)).isNull();
+    }
+
+    @Test
+    void bypassHeaderSkipsLookup() {
+        cache.put("chat", "什么是索引", "加速查询的数据结构");
+
+        assertThat(cache.lookup("chat", "什么是索引", "bypass")).isNull();
+    }
+
+    @Test
+    void differentNegationsNeverMatchApproximately() {
+        cache.put("chat", "查询课节表中有哪些课程已经设置了上课老师和教室", "已设置的课程");
+
+        assertThat(cache.lookup("chat", "查询课节表中有哪些课程没有设置了上课老师和教室", null)).isNull();
+        assertThat(cache.lookup("chat", "查询课节表中有哪些课程已经设置了上课老师与教室", null)).isEqualTo("已设置的课程");
+        assertThat(PromptResponseCache.guard("status 为 2 且 not null")).isEqualTo("2|not");
+        assertThat(PromptResponseCache.guard("notes 中的 note")).isEmpty();
+    }
+
+    @Test
+    void nearMatchIsOffByDefault() {
+        PromptResponseCache exactOnly = new PromptResponseCache(true, false, 0.8, Duration.ofMinutes(10), 1 << 20);
+        exactOnly.put("chat", "请介绍一下课节表 t_course 中各个字段的含义和用途", "字段说明");
+
+        assertThat(exactOnly.lookup("chat", "请介绍一下课节表 t_course 中各个字段的含义与用途", null)).isNull();
+        assertThat(exactOnly.lookup("chat", "请介绍一下课节表 t_course 中各个字段的含义和用途？", null)).isEqualTo("字段说明");
+    }
+}
@@ -0,0 +1,25 @@
+package com.eleven.springaideepseekdome.config;
+
+import com.eleven.springaideepseekdome.jdbc.ConcurrencyLimitedDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadConfigTests {
+
+    private final BeanPostProcessor postProcessor =
+            VirtualThreadConfig.concurrencyLimitedDataSourcePostProcessor(new MockEnvironment());
+
+    @Test
+    void onlyAnalyticsDataSourceIsWrapped() {
+        Object analytics = postProcessor.postProcessAfterInitialization(new JdbcDataSource(), "dataSource");
+        JdbcDataSource other = new JdbcDataSource();
+
+        assertThat(analytics).isInstanceOf(ConcurrencyLimitedDataSource.class);
+        assertThat(postProcessor.postProcessAfterInitialization(other, "chatMemoryDataSource")).isSameAs(other);
+        assertThat(postProcessor.postProcessAfterInitialization(analytics, "dataSource")).isSameAs(analytics);
+    }
+}
@@ -0,0 +1,32 @@
+package com.eleven.springaideepseekdome.jdbc;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimitedDataSourceTests {
+
+    @Test
+    void connectionsBeyondLimitWaitAndTimeOut() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:limited;DB_CLOSE_DELAY=-1");
+        ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(h2, 1, Duration.ofMillis(50));
+
+        Connection first = dataSource.getConnection();
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+
+        first.close();
+        // 重复关闭不会多归还许可
+        first.close();
+        try (Connection second = dataSource.getConnection()) {
+            assertThat(second.isValid(1)).isTrue();
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        }
+    }
+}
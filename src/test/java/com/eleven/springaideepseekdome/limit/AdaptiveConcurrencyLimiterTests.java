@@ -0,0 +1,107 @@
+package com.eleven.springaideepseekdome.limit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTests {
+
+    @Test
+    void excessRequestsQueueThenShed() {
+        // smoothing 为 0：上限固定，便于验证排队行为
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 1, Duration.ofSeconds(5), 0.0);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire();
+
+        AtomicReference<AdaptiveConcurrencyLimiter.Permit> queued = new AtomicReference<>();
+        limiter.acquireAsync().subscribe(queued::set);
+        assertThat(limiter.getQueueDepth()).isEqualTo(1);
+
+        // 队列已满：立即拒绝并给出重试时间
+        assertThatThrownBy(limiter::acquire)
+                .isInstanceOfSatisfying(LimitExceededException.class, e -> {
+                    assertThat(e.getLimiter()).isEqualTo("test");
+                    assertThat(e.getRetryAfter()).isGreaterThanOrEqualTo(Duration.ofSeconds(1));
+                });
+
+        first.success();
+        assertThat(queued.get()).isNotNull();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        queued.get().success();
+
+        // 排队超时
+        AdaptiveConcurrencyLimiter impatient = newLimiter(1, 1, Duration.ofMillis(50), 0.0);
+        AdaptiveConcurrencyLimiter.Permit holder = impatient.acquire();
+        assertThatThrownBy(impatient::acquire).isInstanceOf(LimitExceededException.class);
+        assertThat(impatient.getQueueDepth()).isZero();
+        holder.ignore();
+        assertThat(impatient.getInFlight()).isZero();
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueue() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 4, Duration.ofSeconds(5), 0.0);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire();
+
+        Disposable waiting = limiter.acquireAsync().subscribe();
+        waiting.dispose();
+        first.success();
+
+        assertThat(limiter.getQueueDepth()).isZero();
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void limitGrowsWhenLatencyIsStable() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(4, 0, Duration.ZERO, 1.0);
+
+        for (int round = 0; round < 3; round++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll(limiter);
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::success);
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(4);
+    }
+
+    @Test
+    void limitShrinksOnLatencyIncreaseAndOverload() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(10, 0, Duration.ZERO, 1.0);
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll(limiter);
+        // 第一个样本建立正常延迟基线
+        permits.get(permits.size() - 1).success();
+        Thread.sleep(50);
+        permits.subList(0, permits.size() - 1).forEach(AdaptiveConcurrencyLimiter.Permit::success);
+
+        int afterLatency = limiter.getLimit();
+        assertThat(afterLatency).isLessThan(10);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+        permit.failed(new NonTransientAiException("429 - rate limit reached"));
+        assertThat(limiter.getLimit()).isLessThanOrEqualTo(afterLatency);
+
+        // 业务错误不影响上限
+        int before = limiter.getLimit();
+        limiter.acquire().failed(new IllegalArgumentException("只允许查询语句"));
+        assertThat(limiter.getLimit()).isEqualTo(before);
+    }
+
+    private static List<AdaptiveConcurrencyLimiter.Permit> acquireAll(AdaptiveConcurrencyLimiter limiter) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        int limit = limiter.getLimit();
+        for (int i = 0; i < limit; i++) {
+            permits.add(limiter.acquire());
+        }
+        return permits;
+    }
+
+    private static AdaptiveConcurrencyLimiter newLimiter(int initialLimit, int maxQueue, Duration queueTimeout, double smoothing) {
+        return new AdaptiveConcurrencyLimiter("test", initialLimit, 1, 50, maxQueue, queueTimeout, 1.5, smoothing, 0.05);
+    }
+}
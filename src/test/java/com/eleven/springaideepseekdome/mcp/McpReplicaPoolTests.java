@@ -0,0 +1,152 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class McpReplicaPoolTests {
+
+    private static final McpSchema.Tool TOOL = new McpSchema.Tool("weather", "查询天气",
+            new McpSchema.JsonSchema("object", Map.of(), List.of(), false, null, null));
+
+    private McpReplicaPool pool;
+
+    @AfterEach
+    void tearDown() {
+        pool.destroy();
+    }
+
+    @Test
+    void callsAreRoutedToFasterReplica() {
+        McpSyncClient slow = standIn(80);
+        McpSyncClient fast = standIn(5);
+        pool = newPool(16, new McpReplica("slow", slow, 0.5, 16), new McpReplica("fast", fast, 0.5, 16));
+
+        // 建立延迟样本
+        pool.getReplicas().forEach(replica -> replica.recordSuccess(replica.getName().equals("slow") ? 80_000_000 : 5_000_000));
+        ToolCallback callback = pool.listToolCallbacks().get(0);
+        for (int i = 0; i < 5; i++) {
+            assertThat(callback.call("{}")).contains("ok");
+        }
+
+        verify(slow, never()).callTool(any());
+        verify(fast, times(5)).callTool(any());
+        assertThat(callback.getToolDefinition().name()).isEqualTo("mcp_weather");
+    }
+
+    @Test
+    void failedReplicaIsSkippedAndMarkedUnhealthy() {
+        McpSyncClient broken = standIn(0);
+        when(broken.callTool(any())).thenThrow(connectFailure());
+        McpSyncClient healthy = standIn(20);
+        McpReplica brokenReplica = new McpReplica("broken", broken, 0.5, 16);
+        pool = newPool(2, brokenReplica, new McpReplica("healthy", healthy, 0.5, 16));
+
+        ToolCallback callback = pool.listToolCallbacks().get(0);
+        for (int i = 0; i < 4; i++) {
+            assertThat(callback.call("{}")).contains("ok");
+        }
+
+        assertThat(brokenReplica.isHealthy()).isFalse();
+        // 标记为不健康后不再优先选择
+        verify(broken, times(2)).callTool(any());
+        verify(healthy, times(4)).callTool(any());
+    }
+
+    @Test
+    void failureAfterSendIsNotFailedOverForNonIdempotentTool() {
+        McpSyncClient timingOut = standIn(0);
+        when(timingOut.callTool(any())).thenThrow(new IllegalStateException("请求超时"));
+        McpSyncClient other = standIn(20);
+        pool = newPool(3, new McpReplica("timing-out", timingOut, 0.5, 16), new McpReplica("other", other, 0.5, 16));
+        pool.getReplicas().get(0).recordSuccess(1_000_000);
+        pool.getReplicas().get(1).recordSuccess(50_000_000);
+
+        ToolCallback callback = pool.listToolCallbacks().get(0);
+
+        assertThatThrownBy(() -> callback.call("{}")).hasMessageContaining("请求超时");
+        verify(other, never()).callTool(any());
+    }
+
+    @Test
+    void idempotentToolFailsOverOnAnyError() {
+        McpSyncClient timingOut = standIn(0);
+        when(timingOut.callTool(any())).thenThrow(new IllegalStateException("请求超时"));
+        McpSyncClient other = standIn(20);
+        pool = new McpReplicaPool(List.of(new McpReplica("timing-out", timingOut, 0.5, 16),
+                new McpReplica("other", other, 0.5, 16)), "mcp", 3, Duration.ofMillis(100), Duration.ZERO, Set.of("weather"));
+        pool.getReplicas().get(0).recordSuccess(1_000_000);
+        pool.getReplicas().get(1).recordSuccess(50_000_000);
+
+        assertThat(pool.listToolCallbacks().get(0).call("{}")).contains("ok");
+        verify(other).callTool(any());
+    }
+
+    @Test
+    void saturatedReplicaIsBypassed() {
+        McpSyncClient first = standIn(0);
+        McpSyncClient second = standIn(0);
+        McpReplica busy = new McpReplica("busy", first, 0.5, 1);
+        pool = newPool(3, busy, new McpReplica("idle", second, 0.5, 1));
+        assertThat(busy.tryAcquire()).isTrue();
+
+        pool.listToolCallbacks().get(0).call("{}");
+
+        verify(first, never()).callTool(any());
+        verify(second).callTool(any());
+        busy.release();
+    }
+
+    @Test
+    void healthCheckRecoversReplica() {
+        McpSyncClient client = standIn(0);
+        McpReplica replica = new McpReplica("r1", client, 0.5, 4);
+        pool = newPool(1, replica);
+        replica.recordFailure(1);
+        assertThat(replica.isHealthy()).isFalse();
+
+        pool.checkHealth();
+
+        assertThat(replica.isHealthy()).isTrue();
+        assertThat(replica.getLatencyMillis()).isGreaterThanOrEqualTo(0);
+        verify(client).ping();
+    }
+
+    private McpReplicaPool newPool(int failureThreshold, McpReplica... replicas) {
+        return new McpReplicaPool(List.of(replicas), "mcp", failureThreshold, Duration.ofMillis(100), Duration.ZERO);
+    }
+
+    // SSE 传输建立连接失败时的异常形态
+    private static RuntimeException connectFailure() {
+        return new IllegalStateException("连接被拒绝", new ConnectException("Connection refused"));
+    }
+
+    // 模拟一个本地 MCP 服务副本，工具调用耗时 latencyMillis
+    private static McpSyncClient standIn(long latencyMillis) {
+        McpSyncClient client = mock(McpSyncClient.class);
+        when(client.isInitialized()).thenReturn(true);
+        when(client.listTools()).thenReturn(new McpSchema.ListToolsResult(List.of(TOOL), null));
+        when(client.callTool(any())).thenAnswer(invocation -> {
+            Thread.sleep(latencyMillis);
+            return new McpSchema.CallToolResult(List.of(new McpSchema.TextContent("ok")), false);
+        });
+        return client;
+    }
+}
@@ -0,0 +1,83 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class McpSyncCallLimiterTests {
+
+    @Test
+    void callsBeyondLimitWaitAndTimeOut() throws Exception {
+        McpSyncCallLimiter limiter = new McpSyncCallLimiter(1, Duration.ofMillis(50));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ToolCallback blocking = limiter.limit(tool("search", input -> {
+            entered.countDown();
+            await(release);
+            return "ok";
+        }));
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> blocking.call("{}"));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> blocking.call("{}"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("search");
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+        // 许可已归还
+        assertThat(limiter.limit(tool("search", input -> "again")).call("{}")).isEqualTo("again");
+    }
+
+    @Test
+    void permitIsReleasedWhenToolFails() {
+        McpSyncCallLimiter limiter = new McpSyncCallLimiter(1, Duration.ofMillis(50));
+        ToolCallback failing = limiter.limit(tool("search", input -> {
+            throw new IllegalStateException("MCP 服务错误");
+        }));
+
+        assertThatThrownBy(() -> failing.call("{}")).hasMessage("MCP 服务错误");
+        assertThatThrownBy(() -> failing.call("{}", new ToolContext(Map.of()))).hasMessage("MCP 服务错误");
+        assertThat(failing.getToolDefinition().name()).isEqualTo("search");
+    }
+
+    private static ToolCallback tool(String name, Function<String, String> body) {
+        ToolDefinition definition = DefaultToolDefinition.builder()
+                .name(name)
+                .description(name)
+                .inputSchema("{}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return body.apply(toolInput);
+            }
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
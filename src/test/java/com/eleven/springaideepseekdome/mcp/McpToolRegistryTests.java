@@ -0,0 +1,106 @@
+package com.eleven.springaideepseekdome.mcp;
+
+import io.modelcontextprotocol.client.McpAsyncClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.mcp.SyncMcpToolCallbackProvider;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.ResolvableType;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class McpToolRegistryTests {
+
+    private SyncMcpToolCallbackProvider provider;
+    private McpToolRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        provider = mock(SyncMcpToolCallbackProvider.class);
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("mcpToolCallbacks", provider);
+        registry = new McpToolRegistry(beanFactory.getBeanProvider(SyncMcpToolCallbackProvider.class),
+                beanFactory.getBeanProvider(McpReplicaPool.class),
+                beanFactory.getBeanProvider(ResolvableType.forClassWithGenerics(List.class, McpAsyncClient.class)),
+                beanFactory.getBeanProvider(McpSyncCallLimiter.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.destroy();
+    }
+
+    @Test
+    void snapshotIsLoadedOnceAndReused() {
+        ToolCallback tool = mock(ToolCallback.class);
+        when(provider.getToolCallbacks()).thenReturn(new ToolCallback[]{tool});
+
+        assertThat(registry.getToolCallbacks()).containsExactly(tool);
+        assertThat(registry.getToolCallbacks()).containsExactly(tool);
+        assertThat(registry.getSnapshot().version()).isEqualTo(1);
+        verify(provider, times(1)).getToolCallbacks();
+    }
+
+    @Test
+    void listChangedNotificationSwapsInNewVersion() {
+        ToolCallback first = mock(ToolCallback.class);
+        ToolCallback second = mock(ToolCallback.class);
+        when(provider.getToolCallbacks()).thenReturn(new ToolCallback[]{first}, new ToolCallback[]{first, second});
+        registry.getSnapshot();
+
+        registry.onListChanged(new McpListChangedEvent("server1", McpListChangedEvent.Kind.TOOLS));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> registry.getSnapshot().version() == 2);
+        assertThat(registry.getToolCallbacks()).containsExactly(first, second);
+    }
+
+    @Test
+    void failedRefreshKeepsPreviousSnapshot() {
+        ToolCallback tool = mock(ToolCallback.class);
+        when(provider.getToolCallbacks())
+                .thenReturn(new ToolCallback[]{tool})
+                .thenThrow(new IllegalStateException("连接断开"));
+        registry.getSnapshot();
+
+        registry.onListChanged(new McpListChangedEvent("server1", McpListChangedEvent.Kind.PROMPTS));
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(provider, times(2)).getToolCallbacks());
+        assertThat(registry.getSnapshot().version()).isEqualTo(1);
+        assertThat(registry.getToolCallbacks()).containsExactly(tool);
+    }
+
+    @Test
+    void syncToolsAreLimitedWhenLimiterIsConfigured() {
+        ToolCallback tool = mock(ToolCallback.class);
+        when(tool.getToolDefinition()).thenReturn(DefaultToolDefinition.builder()
+                .name("search").description("search").inputSchema("{}").build());
+        when(tool.call("{}")).thenReturn("ok");
+        when(provider.getToolCallbacks()).thenReturn(new ToolCallback[]{tool});
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("mcpToolCallbacks", provider);
+        beanFactory.addBean("mcpSyncCallLimiter", new McpSyncCallLimiter(1, Duration.ofMillis(50)));
+        McpToolRegistry limited = new McpToolRegistry(beanFactory.getBeanProvider(SyncMcpToolCallbackProvider.class),
+                beanFactory.getBeanProvider(McpReplicaPool.class),
+                beanFactory.getBeanProvider(ResolvableType.forClassWithGenerics(List.class, McpAsyncClient.class)),
+                beanFactory.getBeanProvider(McpSyncCallLimiter.class));
+        try {
+            List<ToolCallback> callbacks = limited.getToolCallbacks();
+
+            assertThat(callbacks).hasSize(1).doesNotContain(tool);
+            assertThat(callbacks.get(0).call("{}")).isEqualTo("ok");
+        } finally {
+            limited.destroy();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.eleven.springaideepseekdome.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CompactingChatMemoryTests {
+
+    private final List<Message> archived = new ArrayList<>();
+    private ChatClient chatClient;
+    private CompactingChatMemory chatMemory;
+
+    @BeforeEach
+    void setUp() {
+        chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        when(chatClient.prompt().system(any(String.class)).user(any(String.class)).options(any()).call().content())
+                .thenReturn("用户查询了 t_course 表的课程数量，结果为 42");
+        MessageWindowChatMemory delegate = MessageWindowChatMemory.builder()
+                .chatMemoryRepository(new InMemoryChatMemoryRepository())
+                .maxMessages(100)
+                .build();
+        chatMemory = new CompactingChatMemory(delegate, chatClient,
+                (conversationId, messages) -> archived.addAll(messages), Integer.MAX_VALUE, 2, 256);
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatMemory.destroy();
+    }
+
+    @Test
+    void compactReplacesOlderMessagesWithSummary() {
+        chatMemory.add("s1", List.of(new UserMessage("有多少课程"), new AssistantMessage("共 42 门"),
+                new UserMessage("按年级统计"), new AssistantMessage("2020 年级 42 门")));
+
+        chatMemory.compact("s1");
+
+        List<Message> messages = chatMemory.get("s1");
+        assertThat(messages).hasSize(3);
+        assertThat(messages.get(0)).isInstanceOf(SystemMessage.class);
+        assertThat(messages.get(0).getText()).startsWith(CompactingChatMemory.SUMMARY_PREFIX).contains("42");
+        assertThat(messages.subList(1, 3)).extracting(Message::getText).containsExactly("按年级统计", "2020 年级 42 门");
+        assertThat(archived).extracting(Message::getText).containsExactly("有多少课程", "共 42 门");
+    }
+
+    @Test
+    void compactIsSkippedWhenSessionFitsInRecentWindow() {
+        chatMemory.add("s1", List.of(new UserMessage("有多少课程"), new AssistantMessage("共 42 门")));
+
+        chatMemory.compact("s1");
+
+        assertThat(chatMemory.get("s1")).hasSize(2);
+        assertThat(archived).isEmpty();
+    }
+
+    @Test
+    void compactIsSkippedWhenRecentMessagesAloneExceedBudget() {
+        CompactingChatMemory tight = new CompactingChatMemory(MessageWindowChatMemory.builder()
+                .chatMemoryRepository(new InMemoryChatMemoryRepository())
+                .maxMessages(100)
+                .build(), chatClient, (conversationId, messages) -> archived.addAll(messages), 50, 2, 256);
+        try {
+            String longAnswer = "课程明细：" + "t_course 第 1 行数据；".repeat(100);
+            tight.add("s1", List.of(new UserMessage("有多少课程"), new AssistantMessage("共 42 门"),
+                    new UserMessage("列出所有课程"), new AssistantMessage(longAnswer)));
+
+            tight.compact("s1");
+
+            assertThat(tight.get("s1")).hasSize(4);
+            assertThat(archived).isEmpty();
+        } finally {
+            tight.destroy();
+        }
+    }
+}
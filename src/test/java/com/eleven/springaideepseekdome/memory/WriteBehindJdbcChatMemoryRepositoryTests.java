@@ -0,0 +1,148 @@
+package com.eleven.springaideepseekdome.memory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteBehindJdbcChatMemoryRepositoryTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private WriteBehindJdbcChatMemoryRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:chat_memory_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repository = newRepository();
+        repository.initializeSchema();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.destroy();
+    }
+
+    @Test
+    void saveIsBufferedUntilFlush() {
+        repository.saveAll("s1", List.of(new UserMessage("你好"), new AssistantMessage("你好，有什么可以帮你？")));
+
+        assertThat(countRows("s1")).isZero();
+        assertThat(repository.findByConversationId("s1")).hasSize(2);
+
+        repository.flush();
+
+        assertThat(countRows("s1")).isEqualTo(2);
+    }
+
+    @Test
+    void repeatedSavesInOneCycleWriteOnlyLatestSnapshot() {
+        repository.saveAll("s1", List.of(new UserMessage("第一轮")));
+        repository.saveAll("s1", List.of(new UserMessage("第一轮"), new AssistantMessage("回答一"), new UserMessage("第二轮")));
+        repository.flush();
+
+        assertThat(countRows("s1")).isEqualTo(3);
+    }
+
+    @Test
+    void coldSessionIsLoadedFromDatabaseAfterRestart() {
+        repository.saveAll("s1", List.of(new UserMessage("问题"), new AssistantMessage("答案")));
+        repository.destroy();
+
+        repository = newRepository();
+        List<Message> messages = repository.findByConversationId("s1");
+
+        assertThat(messages).extracting(Message::getText).containsExactly("问题", "答案");
+        assertThat(messages.get(1)).isInstanceOf(AssistantMessage.class);
+        assertThat(repository.findConversationIds()).containsExactly("s1");
+    }
+
+    @Test
+    void deleteRemovesConversation() {
+        repository.saveAll("s1", List.of(new UserMessage("问题")));
+        repository.flush();
+
+        repository.deleteByConversationId("s1");
+
+        assertThat(repository.findByConversationId("s1")).isEmpty();
+        assertThat(repository.findConversationIds()).isEmpty();
+        repository.flush();
+        assertThat(countRows("s1")).isZero();
+    }
+
+    @Test
+    void toolCallsAndResponsesSurviveReload() {
+        AssistantMessage toolCall = new AssistantMessage("", Map.of("finishReason", "TOOL_CALLS"), List.of(
+                new AssistantMessage.ToolCall("call_1", "function", "executeQuery", "{\"sql\":\"SELECT 1\"}")));
+        ToolResponseMessage toolResponse = new ToolResponseMessage(List.of(
+                new ToolResponseMessage.ToolResponse("call_1", "executeQuery", "{\"rows\":[[1]]}")));
+        repository.saveAll("s1", List.of(new UserMessage("查一下"), toolCall, toolResponse, new AssistantMessage("结果是 1")));
+        repository.destroy();
+
+        repository = newRepository();
+        List<Message> messages = repository.findByConversationId("s1");
+
+        assertThat(messages).hasSize(4);
+        AssistantMessage reloadedCall = (AssistantMessage) messages.get(1);
+        assertThat(reloadedCall.getToolCalls()).isEqualTo(toolCall.getToolCalls());
+        assertThat(reloadedCall.getMetadata()).containsEntry("finishReason", "TOOL_CALLS");
+        assertThat(((ToolResponseMessage) messages.get(2)).getResponses()).isEqualTo(toolResponse.getResponses());
+        assertThat(messages.get(3).getText()).isEqualTo("结果是 1");
+    }
+
+    @Test
+    void failedConversationStaysPendingWithoutBlockingOthers() {
+        jdbcTemplate.execute("ALTER TABLE ai_chat_memory ADD CONSTRAINT ck_broken CHECK (conversation_id <> 'broken')");
+        repository.saveAll("s1", List.of(new UserMessage("问题一")));
+        repository.saveAll("broken", List.of(new UserMessage("写不进去")));
+        repository.saveAll("s2", List.of(new UserMessage("问题二")));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        repository.bindTo(registry);
+
+        repository.flush();
+        repository.flush();
+
+        assertThat(countRows("s1")).isEqualTo(1);
+        assertThat(countRows("s2")).isEqualTo(1);
+        assertThat(repository.findByConversationId("broken")).extracting(Message::getText).containsExactly("写不进去");
+        assertThat(registry.get("ai.chat-memory.pending").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("ai.chat-memory.flush.failures").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void overLengthConversationIdIsRejectedBeforeQueueing() {
+        String id = "s".repeat(WriteBehindJdbcChatMemoryRepository.MAX_CONVERSATION_ID_LENGTH + 1);
+
+        assertThatThrownBy(() -> repository.saveAll(id, List.of(new UserMessage("问题"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(repository.findConversationIds()).isEmpty();
+    }
+
+    private WriteBehindJdbcChatMemoryRepository newRepository() {
+        return new WriteBehindJdbcChatMemoryRepository(jdbcTemplate, transactionTemplate,
+                100, Duration.ofMinutes(5), Duration.ofHours(1));
+    }
+
+    private int countRows(String conversationId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ai_chat_memory WHERE conversation_id = ?", Integer.class, conversationId);
+    }
+}
@@ -0,0 +1,129 @@
+package com.eleven.springaideepseekdome.metrics;
+
+import com.eleven.springaideepseekdome.domain.dto.ChatCommonRequest.ToolType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.deepseek.api.DeepSeekApi;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AiMetricsTests {
+
+    private SimpleMeterRegistry registry;
+    private AiMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new AiMetrics();
+        metrics.bindTo(registry);
+    }
+
+    private static ChatResponse response(String text, DefaultUsage usage) {
+        ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder().model("deepseek-chat");
+        if (usage != null) {
+            metadata.usage(usage);
+        }
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(new AssistantMessage(text))))
+                .metadata(metadata.build())
+                .build();
+    }
+
+    @Test
+    void streamRecordsFirstTokenThroughputAndUsage() {
+        RequestTags tags = RequestTags.of("/ai/chat/stream", ToolType.FUNCTION);
+        Flux<ChatResponse> upstream = Flux.just(response("你", null), response("好", null), response("", new DefaultUsage(12, 2)));
+
+        List<ChatResponse> received = metrics.observeStream(tags, upstream, Function.identity()).collectList().block();
+
+        assertThat(received).hasSize(3);
+        assertThat(registry.get("ai.llm.first-token").tag("endpoint", "/ai/chat/stream").tag("tool.type", "function")
+                .tag("model", "deepseek-chat").timer().count()).isEqualTo(1);
+        assertThat(registry.get("ai.llm.latency").tag("mode", "stream").tag("outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("ai.llm.tokens-per-second").summary().count()).isEqualTo(1);
+        assertThat(registry.get("ai.llm.tokens").tag("type", "prompt").counter().count()).isEqualTo(12);
+        assertThat(registry.get("ai.llm.tokens").tag("type", "completion").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void advisorRecordsHistoryAndPassesTagsToTools() {
+        ChatMetricsAdvisor advisor = metrics.advisor("/ai/chat/sync", ToolType.FUNCTION);
+        Prompt prompt = new Prompt(List.of(new SystemMessage("系统"), new UserMessage("上一轮"),
+                new AssistantMessage("回答"), new UserMessage("本轮")), ToolCallingChatOptions.builder().build());
+        ChatClientRequest request = ChatClientRequest.builder().prompt(prompt).context(Map.of()).build();
+        CallAdvisorChain chain = mock(CallAdvisorChain.class);
+        when(chain.nextCall(any())).thenReturn(ChatClientResponse.builder()
+                .chatResponse(response("结果", new DefaultUsage(30, 5))).context(Map.of()).build());
+
+        advisor.adviseCall(request, chain);
+
+        ArgumentCaptor<ChatClientRequest> captor = ArgumentCaptor.forClass(ChatClientRequest.class);
+        verify(chain).nextCall(captor.capture());
+        ToolCallingChatOptions options = (ToolCallingChatOptions) captor.getValue().prompt().getOptions();
+        assertThat(RequestTags.fromToolContext(options.getToolContext()))
+                .isEqualTo(RequestTags.of("/ai/chat/sync", ToolType.FUNCTION));
+        assertThat(registry.get("ai.chat-memory.session.size").tag("endpoint", "/ai/chat/sync").summary().totalAmount())
+                .isEqualTo(2);
+        assertThat(registry.get("ai.llm.latency").tag("mode", "call").tag("tool.type", "function").timer().count())
+                .isEqualTo(1);
+        // 经 ChatClient 的请求由工具循环按轮记录 token，顾问不从累计用量中重复记录
+        assertThat(registry.find("ai.llm.tokens").counter()).isNull();
+    }
+
+    @Test
+    void roundUsageRecordsCachedTokensFromDeepSeekNativeUsage() {
+        RequestTags tags = RequestTags.of("/ai/chat/sync", ToolType.FUNCTION);
+        Prompt prompt = new Prompt(List.of(new UserMessage("有多少课程")), ToolCallingChatOptions.builder()
+                .toolContext(Map.of(RequestTags.TOOL_CONTEXT_KEY, tags))
+                .build());
+
+        // 工具调用轮与最终回答轮各自带 DeepSeek 原生用量
+        metrics.onModelResponse(prompt, response("", new DefaultUsage(1000, 20, 1020,
+                new DeepSeekApi.Usage(20, 1000, 1020, new DeepSeekApi.Usage.PromptTokensDetails(896)))));
+        metrics.onModelResponse(prompt, response("共 3 门", new DefaultUsage(1200, 30, 1230,
+                new DeepSeekApi.Usage(30, 1200, 1230, new DeepSeekApi.Usage.PromptTokensDetails(1024)))));
+
+        assertThat(registry.get("ai.llm.tokens").tag("type", "cached").tag("endpoint", "/ai/chat/sync")
+                .tag("tool.type", "function").counter().count()).isEqualTo(1920);
+        assertThat(registry.get("ai.llm.tokens").tag("type", "prompt").counter().count()).isEqualTo(2200);
+        assertThat(registry.get("ai.llm.tokens").tag("type", "completion").counter().count()).isEqualTo(50);
+    }
+
+    @Test
+    void sqlMetricsUseTagsOfCurrentToolExecution() {
+        RequestTags.callWith(RequestTags.of("/ai/chat", ToolType.FUNCTION), () -> {
+            metrics.recordSql("executeQuery", 1_000_000, 42);
+            return null;
+        });
+        metrics.recordSql("executeQuery", 1_000_000, -1);
+
+        assertThat(registry.get("ai.sql.rows").tag("endpoint", "/ai/chat").tag("tool", "executeQuery").summary().totalAmount())
+                .isEqualTo(42);
+        assertThat(registry.get("ai.sql.latency").tag("endpoint", "unknown").tag("outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+}
@@ -0,0 +1,87 @@
+package com.eleven.springaideepseekdome.prompt;
+
+import com.eleven.springaideepseekdome.console.PromptConsole;
+import com.eleven.springaideepseekdome.tools.schema.SchemaSnapshot;
+import com.eleven.springaideepseekdome.tools.schema.SchemaSnapshotCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.deepseek.api.DeepSeekApi;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PromptAssemblyAdvisorTests {
+
+    @Test
+    void stablePrefixIsMovedFirstAndVolatileContentAfter() {
+        SchemaSnapshotCache schemaSnapshotCache = mock(SchemaSnapshotCache.class);
+        when(schemaSnapshotCache.getSnapshot()).thenReturn(SchemaSnapshot.of(1, "abc123", List.of()));
+        PromptAssemblyAdvisor advisor = new PromptAssemblyAdvisor(schemaSnapshotCache, true);
+
+        ChatClientRequest request = new ChatClientRequest(new Prompt(List.of(
+                new SystemMessage("【历史对话摘要】\n查询过课程数"),
+                new UserMessage("有多少课程"),
+                new AssistantMessage("42 门"),
+                new UserMessage(PromptConsole.MYSQL_STUDYDB_PROMPT),
+                new UserMessage("按年级统计"))), Map.of());
+
+        List<Message> messages = advisor.before(request, null).prompt().getInstructions();
+
+        assertThat(messages).extracting(Message::getMessageType).containsExactly(
+                MessageType.SYSTEM, MessageType.SYSTEM, MessageType.USER, MessageType.ASSISTANT, MessageType.USER);
+        assertThat(messages.get(0).getText())
+                .startsWith(PromptConsole.MYSQL_STUDYDB_PROMPT)
+                .contains("指纹 abc123");
+        assertThat(messages.get(1).getText()).startsWith("【历史对话摘要】");
+        assertThat(messages.get(4).getText()).isEqualTo("按年级统计");
+        // 同一快照下返回同一前缀
+        assertThat(advisor.stablePrefix()).isSameAs(advisor.stablePrefix());
+    }
+
+    @Test
+    void cacheTokensAreReadFromNativeUsageOfEachRound() {
+        PromptAssemblyAdvisor advisor = new PromptAssemblyAdvisor(mock(SchemaSnapshotCache.class), true);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        advisor.bindTo(registry);
+        Prompt prompt = new Prompt(List.of(new UserMessage("有多少课程")));
+
+        advisor.onModelResponse(prompt, response(new DefaultUsage(1000, 20, 1020,
+                new DeepSeekApi.Usage(20, 1000, 1020, new DeepSeekApi.Usage.PromptTokensDetails(896)))));
+        advisor.onModelResponse(prompt, response(new DefaultUsage(1200, 30, 1230,
+                new DeepSeekApi.Usage(30, 1200, 1230, new DeepSeekApi.Usage.PromptTokensDetails(1024)))));
+
+        assertThat(registry.get("ai.prompt.cache.tokens").tag("result", "hit").functionCounter().count()).isEqualTo(1920);
+        assertThat(registry.get("ai.prompt.cache.tokens").tag("result", "miss").functionCounter().count()).isEqualTo(280);
+    }
+
+    @Test
+    void requestsWithoutPresetKeepTheirMessages() {
+        PromptAssemblyAdvisor advisor = new PromptAssemblyAdvisor(mock(SchemaSnapshotCache.class), true);
+        ChatClientRequest request = new ChatClientRequest(new Prompt(List.of(new UserMessage("你好"))), Map.of());
+
+        assertThat(advisor.before(request, null).prompt().getInstructions())
+                .extracting(Message::getText).containsExactly("你好");
+    }
+
+    private static ChatResponse response(DefaultUsage usage) {
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(new AssistantMessage("结果"))))
+                .metadata(ChatResponseMetadata.builder().usage(usage).build())
+                .build();
+    }
+}
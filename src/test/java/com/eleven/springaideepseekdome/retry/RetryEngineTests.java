@@ -0,0 +1,136 @@
+package com.eleven.springaideepseekdome.retry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.retry.annotation.Retryable;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import reactor.core.publisher.Flux;
+
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryEngineTests {
+
+    private final RetryEngine engine = newEngine(new RetryBudget(0.1, 20));
+
+    @Test
+    void classifiesTransientErrors() {
+        assertThat(RetryableErrors.isRetryable(new NonTransientAiException("429 - rate limit reached"))).isTrue();
+        assertThat(RetryableErrors.isRetryable(new NonTransientAiException("400 - invalid request"))).isFalse();
+        assertThat(RetryableErrors.isRetryable(new TransientAiException("503 - overloaded"))).isTrue();
+        assertThat(RetryableErrors.isRetryable(HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "", null, null, null))).isTrue();
+        assertThat(RetryableErrors.isRetryable(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "", null, null, null))).isFalse();
+        assertThat(RetryableErrors.isRetryable(new RuntimeException("SQL 查询执行失败",
+                new SQLTransactionRollbackException("Deadlock found", "40001", 1213)))).isTrue();
+        assertThat(RetryableErrors.isRetryable(new RuntimeException("SQL 查询执行失败",
+                new SQLSyntaxErrorException("You have an error in your SQL syntax", "42000", 1064)))).isFalse();
+        assertThat(RetryableErrors.isRetryable(new IllegalArgumentException("只允许查询语句"))).isFalse();
+    }
+
+    @Test
+    void transientFailuresAreRetriedWithBackoff() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = engine.execute("模型 deepseek", 3, Duration.ofSeconds(5), () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new TransientAiException("503 - overloaded");
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void permanentFailuresAndExhaustedBudgetAreNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        assertThatThrownBy(() -> engine.execute("模型 deepseek", 3, Duration.ofSeconds(5), () -> {
+            calls.incrementAndGet();
+            throw new NonTransientAiException("401 - invalid api key");
+        })).hasMessageContaining("401");
+        assertThat(calls).hasValue(1);
+
+        RetryEngine starved = newEngine(new RetryBudget(0, 1));
+        AtomicInteger starvedCalls = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> starved.execute("模型 deepseek", 3, Duration.ofSeconds(5), () -> {
+                starvedCalls.incrementAndGet();
+                throw new TransientAiException("503 - overloaded");
+            }));
+        }
+        // 预算只有 1 个令牌：第一个请求重试一次，之后的请求不再重试
+        assertThat(starvedCalls).hasValue(4);
+    }
+
+    @Test
+    void deadlineStopsRetries() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> engine.execute("工具 executeQuery", 10, Duration.ofMillis(30), () -> {
+            calls.incrementAndGet();
+            throw new TransientAiException("503 - overloaded");
+        }));
+
+        assertThat(calls.get()).isLessThan(10);
+    }
+
+    @Test
+    void streamRetriesOnlyBeforeFirstChunk() {
+        AtomicInteger calls = new AtomicInteger();
+        Flux<String> stream = engine.executeStream("模型 deepseek", 3, Duration.ofSeconds(5), () ->
+                calls.incrementAndGet() == 1 ? Flux.error(new TransientAiException("502 - bad gateway")) : Flux.just("你", "好"));
+        assertThat(stream.collectList().block()).containsExactly("你", "好");
+        assertThat(calls).hasValue(2);
+
+        AtomicInteger partialCalls = new AtomicInteger();
+        Flux<String> partial = engine.executeStream("模型 deepseek", 3, Duration.ofSeconds(5), () -> {
+            partialCalls.incrementAndGet();
+            return Flux.concat(Flux.just("半"), Flux.error(new TransientAiException("502 - bad gateway")));
+        });
+        List<String> received = new ArrayList<>();
+        assertThatThrownBy(() -> partial.doOnNext(received::add).blockLast()).isInstanceOf(TransientAiException.class);
+        assertThat(received).containsExactly("半");
+        assertThat(partialCalls).hasValue(1);
+    }
+
+    @Test
+    void interceptorUsesRetryableMaxAttempts() {
+        FlakyTools target = new FlakyTools();
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addAdvice(new AiRetryInterceptor(engine, Duration.ofSeconds(5), Map.of()));
+        FlakyTools tools = (FlakyTools) proxyFactory.getProxy();
+
+        assertThat(tools.query()).isEqualTo("ok");
+        assertThat(target.calls).hasValue(2);
+    }
+
+    private static RetryEngine newEngine(RetryBudget budget) {
+        return new RetryEngine(true, Duration.ofMillis(5), Duration.ofMillis(20), 2.0, budget);
+    }
+
+    static class FlakyTools {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Retryable(interceptor = "aiRetryInterceptor", maxAttempts = 2)
+        public String query() {
+            if (calls.incrementAndGet() == 1) {
+                throw new RuntimeException("SQL 查询执行失败", new SQLTransactionRollbackException("Deadlock found", "40001", 1213));
+            }
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.eleven.springaideepseekdome.routing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 经真实 OpenAiChatModel 与 HTTP 调用验证路由：两个 OpenAI 兼容的桩服务返回 5xx、429、400 或超时，
+ * 检查可重试错误经模型客户端抛出后计入熔断并转移到另一个模型，请求本身的错误直接抛出
+ */
+class RoutingChatModelHttpTests {
+
+    private static final Duration READ_TIMEOUT = Duration.ofMillis(300);
+    private static final Prompt PROMPT = new Prompt("你好");
+
+    private StubServer primary;
+    private StubServer secondary;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        primary = new StubServer("deepseek");
+        secondary = new StubServer("openai");
+    }
+
+    @AfterEach
+    void tearDown() {
+        primary.stop();
+        secondary.stop();
+    }
+
+    @Test
+    void serverErrorsOpenCircuitAndFailOver() {
+        primary.respond(Reply.status(500));
+        RoutingChatModel router = router(2, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(text(router.call(PROMPT))).isEqualTo("openai");
+        }
+
+        // 连续失败 2 次后熔断打开，第 3 次请求不再发往该模型
+        assertThat(primary.requests).hasValue(2);
+        assertThat(secondary.requests).hasValue(3);
+        ModelRoute route = router.getRoutes().get(0);
+        assertThat(route.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(route.getFailures()).isEqualTo(2);
+    }
+
+    @Test
+    void rateLimitAndReadTimeoutCountAsFailures() {
+        RoutingChatModel router = router(2, Duration.ofMinutes(1));
+
+        primary.respond(Reply.status(429));
+        assertThat(text(router.call(PROMPT))).isEqualTo("openai");
+        assertThat(router.getRoutes().get(0).getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        primary.respond(Reply.delayed(READ_TIMEOUT.multipliedBy(5)));
+        assertThat(text(router.call(PROMPT))).isEqualTo("openai");
+
+        assertThat(router.getRoutes().get(0).getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(text(router.call(PROMPT))).isEqualTo("openai");
+        assertThat(primary.requests).hasValue(2);
+    }
+
+    @Test
+    void badRequestIsRethrownWithoutFailover() {
+        primary.respond(Reply.status(400));
+        RoutingChatModel router = router(1, Duration.ofMinutes(1));
+
+        assertThatThrownBy(() -> router.call(PROMPT)).hasMessageStartingWith("400");
+
+        assertThat(secondary.requests).hasValue(0);
+        assertThat(router.getRoutes().get(0).getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenProbeClosesCircuitOnceServerRecovers() throws InterruptedException {
+        primary.respond(Reply.status(503));
+        RoutingChatModel router = router(1, Duration.ofMillis(200));
+
+        assertThat(text(router.call(PROMPT))).isEqualTo("openai");
+        assertThat(router.getRoutes().get(0).getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        primary.respond(Reply.ok());
+        Thread.sleep(250);
+
+        assertThat(text(router.call(PROMPT))).isEqualTo("deepseek");
+        assertThat(router.getRoutes().get(0).getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void streamFailsOverOnServerErrorBeforeFirstChunk() {
+        primary.respond(Reply.status(502));
+        RoutingChatModel router = router(2, Duration.ofMinutes(1));
+
+        String answer = String.join("", router.stream(PROMPT)
+                .map(RoutingChatModelHttpTests::text)
+                .collectList()
+                .block());
+
+        assertThat(answer).isEqualTo("openai");
+        assertThat(primary.requests).hasValue(1);
+        assertThat(router.getRoutes().get(0).getFailures()).isEqualTo(1);
+        assertThat(router.getRoutes().get(1).getFirstTokenMillis()).isGreaterThanOrEqualTo(0);
+    }
+
+    private RoutingChatModel router(int failureThreshold, Duration openDuration) {
+        return new RoutingChatModel(List.of(
+                route("deepseek", 1, primary, failureThreshold, openDuration),
+                route("openai", 4, secondary, failureThreshold, openDuration)), RoutingPolicy.CHEAPEST, 1.0);
+    }
+
+    private static ModelRoute route(String name, double cost, StubServer server, int failureThreshold, Duration openDuration) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setReadTimeout(READ_TIMEOUT);
+        OpenAiApi api = OpenAiApi.builder()
+                .baseUrl(server.baseUrl())
+                .apiKey("test-key")
+                .restClientBuilder(RestClient.builder().requestFactory(requestFactory))
+                .build();
+        // 模型客户端不重试，失败直接交给路由处理
+        OpenAiChatModel model = OpenAiChatModel.builder()
+                .openAiApi(api)
+                .defaultOptions(OpenAiChatOptions.builder().model(name + "-chat").build())
+                .retryTemplate(RetryTemplate.builder().maxAttempts(1).build())
+                .build();
+        return new ModelRoute(name, model, cost, 1, 0.5, new CircuitBreaker(failureThreshold, openDuration.toNanos()));
+    }
+
+    private static String text(ChatResponse response) {
+        return response.getResult() == null || response.getResult().getOutput().getText() == null
+                ? "" : response.getResult().getOutput().getText();
+    }
+
+    private record Reply(int status, Duration delay) {
+
+        static Reply ok() {
+            return new Reply(200, Duration.ZERO);
+        }
+
+        static Reply status(int status) {
+            return new Reply(status, Duration.ZERO);
+        }
+
+        static Reply delayed(Duration delay) {
+            return new Reply(200, delay);
+        }
+    }
+
+    /**
+     * OpenAI 兼容的桩服务：按当前设定的 {@link Reply} 响应 /v1/chat/completions，成功时回答内容为服务名
+     */
+    private static final class StubServer {
+
+        private final String answer;
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final AtomicReference<Reply> reply = new AtomicReference<>(Reply.ok());
+        private final AtomicInteger requests = new AtomicInteger();
+
+        StubServer(String answer) throws IOException {
+            this.answer = answer;
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/v1/chat/completions", this::handle);
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void respond(Reply next) {
+            reply.set(next);
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            boolean stream = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)
+                    .contains("\"stream\":true");
+            Reply current = reply.get();
+            try {
+                Thread.sleep(current.delay().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.close();
+                return;
+            }
+            if (current.status() != 200) {
+                write(exchange, current.status(), "application/json",
+                        "{\"error\":{\"message\":\"stub error\",\"type\":\"server_error\"}}");
+            } else if (stream) {
+                write(exchange, 200, "text/event-stream", "data: " + chunk("{\"role\":\"assistant\",\"content\":\"" + answer + "\"}", "null")
+                        + "\n\ndata: " + chunk("{}", "\"stop\"") + "\n\ndata: [DONE]\n\n");
+            } else {
+                write(exchange, 200, "application/json", """
+                        {"id":"chatcmpl-1","object":"chat.completion","created":1700000000,"model":"%s-chat",
+                         "choices":[{"index":0,"message":{"role":"assistant","content":"%s"},"finish_reason":"stop"}],
+                         "usage":{"prompt_tokens":5,"completion_tokens":1,"total_tokens":6}}
+                        """.formatted(answer, answer));
+            }
+        }
+
+        private String chunk(String delta, String finishReason) {
+            return "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1700000000,\"model\":\""
+                    + answer + "-chat\",\"choices\":[{\"index\":0,\"delta\":" + delta + ",\"finish_reason\":" + finishReason + "}]}";
+        }
+
+        private static void write(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
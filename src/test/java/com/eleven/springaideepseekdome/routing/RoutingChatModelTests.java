@@ -0,0 +1,160 @@
+package com.eleven.springaideepseekdome.routing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RoutingChatModelTests {
+
+    private static final Prompt PROMPT = new Prompt("你好");
+
+    @Test
+    void cheapestModelIsPreferredAndFailsOver() {
+        ChatModel cheap = mock(ChatModel.class);
+        when(cheap.call(any(Prompt.class))).thenThrow(new TransientAiException("500 - Internal Server Error"));
+        ChatModel expensive = answering("openai");
+        RoutingChatModel router = new RoutingChatModel(List.of(
+                route("deepseek", cheap, 1, 2, Duration.ofMinutes(1)),
+                route("openai", expensive, 4, 2, Duration.ofMinutes(1))), RoutingPolicy.CHEAPEST, 0.9);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(text(router.call(PROMPT))).isEqualTo("openai");
+        }
+
+        // 连续失败 2 次后熔断打开，不再调用
+        verify(cheap, times(2)).call(any(Prompt.class));
+        assertThat(router.getRoutes().get(0).getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void halfOpenProbeClosesCircuit() throws InterruptedException {
+        ChatModel flaky = mock(ChatModel.class);
+        when(flaky.call(any(Prompt.class)))
+                .thenThrow(new NonTransientAiException("429 - Too Many Requests"))
+                .thenReturn(response("deepseek"));
+        RoutingChatModel router = new RoutingChatModel(List.of(
+                route("deepseek", flaky, 1, 1, Duration.ofMillis(200))), RoutingPolicy.CHEAPEST, 0.5);
+
+        assertThatThrownBy(() -> router.call(PROMPT)).hasMessageContaining("429");
+        assertThatThrownBy(() -> router.call(PROMPT)).hasMessageContaining("熔断");
+
+        Thread.sleep(250);
+        assertThat(text(router.call(PROMPT))).isEqualTo("deepseek");
+        assertThat(router.getRoutes().get(0).getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void degradedModelIsTriedLast() {
+        ChatModel cheap = answering("deepseek");
+        ChatModel expensive = answering("openai");
+        RoutingChatModel router = new RoutingChatModel(List.of(
+                route("deepseek", cheap, 1, 5, Duration.ofMinutes(1)),
+                route("openai", expensive, 4, 5, Duration.ofMinutes(1))), RoutingPolicy.CHEAPEST, 0.5);
+        router.getRoutes().get(0).recordFailure();
+
+        assertThat(text(router.call(PROMPT))).isEqualTo("openai");
+        verify(cheap, never()).call(any(Prompt.class));
+    }
+
+    @Test
+    void fastestPolicyUsesObservedLatency() {
+        ChatModel slow = answering("slow");
+        ChatModel fast = answering("fast");
+        RoutingChatModel router = new RoutingChatModel(List.of(
+                route("slow", slow, 1, 1, Duration.ofMinutes(1)),
+                route("fast", fast, 1, 1, Duration.ofMinutes(1))), RoutingPolicy.FASTEST, 0.5);
+        router.getRoutes().get(0).recordSuccess(800_000_000);
+        router.getRoutes().get(1).recordSuccess(100_000_000);
+
+        assertThat(text(router.call(PROMPT))).isEqualTo("fast");
+        verify(slow, never()).call(any(Prompt.class));
+    }
+
+    @Test
+    void streamFailsOverOnlyBeforeFirstChunk() {
+        ChatModel failing = mock(ChatModel.class);
+        when(failing.stream(any(Prompt.class))).thenReturn(Flux.error(new TransientAiException("503 - Service Unavailable")));
+        ChatModel healthy = mock(ChatModel.class);
+        when(healthy.stream(any(Prompt.class))).thenReturn(Flux.just(response("你"), response("好")));
+        RoutingChatModel router = new RoutingChatModel(List.of(
+                route("deepseek", failing, 1, 5, Duration.ofMinutes(1)),
+                route("openai", healthy, 4, 5, Duration.ofMinutes(1))), RoutingPolicy.CHEAPEST, 1.0);
+
+        List<String> chunks = router.stream(PROMPT).map(RoutingChatModelTests::text).collectList().block();
+        assertThat(chunks).containsExactly("你", "好");
+        assertThat(router.getRoutes().get(1).getFirstTokenMillis()).isGreaterThanOrEqualTo(0);
+
+        // 已输出内容后失败：不切换模型，直接向调用方传播错误
+        when(failing.stream(any(Prompt.class))).thenReturn(
+                Flux.concat(Flux.just(response("半")), Flux.error(new IllegalStateException("连接中断"))));
+        assertThatThrownBy(() -> router.stream(PROMPT).collectList().block()).hasMessageContaining("连接中断");
+        verify(healthy, times(1)).stream(any(Prompt.class));
+    }
+
+    @Test
+    void clientErrorsAreRethrownWithoutTrippingCircuit() {
+        ChatModel cheap = mock(ChatModel.class);
+        when(cheap.call(any(Prompt.class))).thenThrow(new NonTransientAiException("400 - context length exceeded"));
+        when(cheap.stream(any(Prompt.class))).thenReturn(Flux.error(new NonTransientAiException("401 - invalid api key")));
+        ChatModel expensive = answering("openai");
+        RoutingChatModel router = new RoutingChatModel(List.of(
+                route("deepseek", cheap, 1, 1, Duration.ofMinutes(1)),
+                route("openai", expensive, 4, 1, Duration.ofMinutes(1))), RoutingPolicy.CHEAPEST, 0.5);
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> router.call(PROMPT)).hasMessageStartingWith("400");
+        }
+        assertThatThrownBy(() -> router.stream(PROMPT).blockLast()).hasMessageStartingWith("401");
+
+        // 请求本身的错误不转移到其他模型，也不计入熔断与错误率
+        verify(expensive, never()).call(any(Prompt.class));
+        verify(expensive, never()).stream(any(Prompt.class));
+        ModelRoute route = router.getRoutes().get(0);
+        assertThat(route.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(route.getFailures()).isZero();
+    }
+
+    @Test
+    void defaultOptionsKeepToolCallbacks() {
+        RoutingChatModel router = new RoutingChatModel(List.of(), RoutingPolicy.CHEAPEST, 0.5);
+
+        assertThat(router.getDefaultOptions()).isInstanceOf(ToolCallingChatOptions.class);
+    }
+
+    private static ModelRoute route(String name, ChatModel model, double cost, int failureThreshold, Duration openDuration) {
+        return new ModelRoute(name, model, cost, 1, 0.5, new CircuitBreaker(failureThreshold, openDuration.toNanos()));
+    }
+
+    private static ChatModel answering(String text) {
+        ChatModel model = mock(ChatModel.class);
+        when(model.call(any(Prompt.class))).thenReturn(response(text));
+        return model;
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static String text(ChatResponse response) {
+        return response.getResult().getOutput().getText();
+    }
+}
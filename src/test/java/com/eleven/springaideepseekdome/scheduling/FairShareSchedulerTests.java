@@ -0,0 +1,140 @@
+package com.eleven.springaideepseekdome.scheduling;
+
+import com.eleven.springaideepseekdome.limit.LimitExceededException;
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler.Lane;
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler.LaneSettings;
+import com.eleven.springaideepseekdome.scheduling.FairShareScheduler.Ticket;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class FairShareSchedulerTests {
+
+    private static FairShareScheduler scheduler(int capacity, Duration queueTimeout, int maxInFlightPerKey, int maxQueuedPerKey) {
+        LaneSettings settings = new LaneSettings(capacity, queueTimeout);
+        return new FairShareScheduler(Map.of(Lane.SYNC, settings, Lane.STREAM, settings),
+                maxInFlightPerKey, maxQueuedPerKey, Map.of());
+    }
+
+    @Test
+    void heavyKeyIsCappedAtMaxInFlight() {
+        FairShareScheduler scheduler = scheduler(10, Duration.ofSeconds(5), 2, 8);
+        List<Ticket> tickets = new ArrayList<>();
+        tickets.add(scheduler.acquire("heavy", Lane.SYNC));
+        tickets.add(scheduler.acquire("heavy", Lane.SYNC));
+
+        CompletableFuture<Ticket> third = CompletableFuture.supplyAsync(() -> scheduler.acquire("heavy", Lane.SYNC));
+        await().atMost(Duration.ofSeconds(5)).until(() -> scheduler.getQueued(Lane.SYNC) == 1);
+        assertThat(scheduler.getInFlight(Lane.SYNC)).isEqualTo(2);
+
+        // 其他会话与其他分道不受影响
+        tickets.add(scheduler.acquire("light", Lane.SYNC));
+        tickets.add(scheduler.acquire("heavy", Lane.STREAM));
+
+        tickets.get(0).release();
+        tickets.add(third.join());
+        assertThat(scheduler.getQueued(Lane.SYNC)).isZero();
+        tickets.forEach(Ticket::release);
+        assertThat(scheduler.getInFlight(Lane.SYNC)).isZero();
+    }
+
+    @Test
+    void lightKeyIsAdmittedAheadOfQueuedHeavyRequests() throws Exception {
+        FairShareScheduler scheduler = scheduler(1, Duration.ofSeconds(5), 10, 10);
+        Ticket running = scheduler.acquire("heavy", Lane.SYNC);
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            waiting.add(CompletableFuture.runAsync(() -> scheduler.call("heavy", Lane.SYNC, () -> admitted.add("heavy"))));
+            int queued = i + 1;
+            await().atMost(Duration.ofSeconds(5)).until(() -> scheduler.getQueued(Lane.SYNC) == queued);
+        }
+        waiting.add(CompletableFuture.runAsync(() -> scheduler.call("light", Lane.SYNC, () -> admitted.add("light"))));
+        await().atMost(Duration.ofSeconds(5)).until(() -> scheduler.getQueued(Lane.SYNC) == 4);
+
+        running.release();
+        CompletableFuture.allOf(waiting.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        // 轻量会话最后到达，但开始标签最小，先于排队的重度请求准入
+        assertThat(admitted).containsExactly("light", "heavy", "heavy", "heavy");
+    }
+
+    @Test
+    void rejectsWhenSessionQueueIsFullOrWaitTimesOut() {
+        FairShareScheduler scheduler = scheduler(1, Duration.ofSeconds(5), 1, 1);
+        Ticket running = scheduler.acquire("a", Lane.SYNC);
+        CompletableFuture<Ticket> queued = CompletableFuture.supplyAsync(() -> scheduler.acquire("a", Lane.SYNC));
+        await().atMost(Duration.ofSeconds(5)).until(() -> scheduler.getQueued(Lane.SYNC) == 1);
+
+        assertThatThrownBy(() -> scheduler.acquire("a", Lane.SYNC))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessageContaining("排队请求数已达上限");
+        running.release();
+        queued.join().release();
+
+        FairShareScheduler impatient = scheduler(1, Duration.ofMillis(50), 1, 1);
+        Ticket blocking = impatient.acquire("a", Lane.SYNC);
+        assertThatThrownBy(() -> impatient.acquire("b", Lane.SYNC))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessageContaining("排队等待超过");
+        assertThat(impatient.getQueued(Lane.SYNC)).isZero();
+        blocking.release();
+    }
+
+    @Test
+    void streamReleasesOnCancel() {
+        FairShareScheduler scheduler = scheduler(1, Duration.ofSeconds(5), 1, 8);
+        Disposable subscription = scheduler.stream("a", Lane.STREAM, Flux::never).subscribe();
+        assertThat(scheduler.getInFlight(Lane.STREAM)).isEqualTo(1);
+
+        subscription.dispose();
+        assertThat(scheduler.getInFlight(Lane.STREAM)).isZero();
+
+        List<Integer> items = scheduler.stream("a", Lane.STREAM, () -> Flux.just(1, 2, 3)).collectList().block();
+        assertThat(items).containsExactly(1, 2, 3);
+        assertThat(scheduler.getInFlight(Lane.STREAM)).isZero();
+    }
+
+    @Test
+    void addressKeysUseTheirOwnLimits() {
+        LaneSettings settings = new LaneSettings(10, Duration.ofMillis(50));
+        FairShareScheduler scheduler = new FairShareScheduler(Map.of(Lane.SYNC, settings, Lane.STREAM, settings),
+                1, 1, 4, 8, Map.of());
+        List<Ticket> tickets = new ArrayList<>();
+        // 同一地址后的多个匿名用户
+        for (int i = 0; i < 4; i++) {
+            tickets.add(scheduler.acquire(FairShareScheduler.ADDRESS_KEY_PREFIX + "10.0.0.1", Lane.SYNC));
+        }
+        assertThat(scheduler.getInFlight(Lane.SYNC)).isEqualTo(4);
+
+        tickets.add(scheduler.acquire("session:a", Lane.SYNC));
+        assertThatThrownBy(() -> scheduler.acquire("session:a", Lane.SYNC))
+                .isInstanceOf(LimitExceededException.class);
+        tickets.forEach(Ticket::release);
+    }
+
+    @Test
+    void nonPositiveWeightsAndCapacitiesAreRejected() {
+        LaneSettings settings = new LaneSettings(1, Duration.ofSeconds(1));
+        Map<Lane, LaneSettings> lanes = Map.of(Lane.SYNC, settings, Lane.STREAM, settings);
+        assertThatThrownBy(() -> new FairShareScheduler(lanes, 1, 1, Map.of("tenant:a", 0.0)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("tenant:a");
+        assertThatThrownBy(() -> new FairShareScheduler(lanes, 1, 1, Map.of("tenant:a", -2.0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new LaneSettings(0, Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
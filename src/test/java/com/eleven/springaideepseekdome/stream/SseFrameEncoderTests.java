@@ -0,0 +1,68 @@
+package com.eleven.springaideepseekdome.stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SseFrameEncoderTests {
+
+    @Test
+    void coalescesDeltasBySizeAndCapturesRoundOnce() {
+        SseFrameEncoder encoder = new SseFrameEncoder(Duration.ofSeconds(10), 8);
+        AtomicInteger roundCalls = new AtomicInteger();
+
+        List<String> frames = encoder.encode("s1", () -> {
+                    roundCalls.incrementAndGet();
+                    return 3;
+                }, Flux.just(chunk("abc"), chunk("def"), chunk("gh"), chunk("ij")))
+                .collectList()
+                .block();
+
+        assertThat(frames).containsExactly(
+                "{\"session\":\"s1\",\"round\":3,\"content\":\"abcdefgh\",\"tools\":[]}",
+                "{\"session\":\"s1\",\"round\":3,\"content\":\"ij\",\"tools\":[]}");
+        assertThat(roundCalls).hasValue(1);
+    }
+
+    @Test
+    void flushesPendingDeltasAfterInterval() {
+        SseFrameEncoder encoder = new SseFrameEncoder(Duration.ofMillis(20), 1024);
+
+        List<String> frames = encoder.encode("s1", () -> 0,
+                        Flux.concat(Flux.just(chunk("课程")), Flux.just(chunk("数")).delaySubscription(Duration.ofMillis(200))))
+                .collectList()
+                .block();
+
+        assertThat(frames).hasSize(2);
+        assertThat(frames.get(0)).contains("\"content\":\"课程\"");
+    }
+
+    @Test
+    void toolCallsAreSentImmediately() {
+        SseFrameEncoder encoder = new SseFrameEncoder(Duration.ofSeconds(10), 1024);
+        AssistantMessage toolCall = new AssistantMessage("", Map.of(),
+                List.of(new AssistantMessage.ToolCall("1", "function", "executeQuery", "{}")));
+
+        List<String> frames = encoder.encode("s1", () -> 0,
+                        Flux.just(chunk("好的"), new ChatResponse(List.of(new Generation(toolCall))), chunk("结果")))
+                .collectList()
+                .block();
+
+        assertThat(frames).hasSize(2);
+        assertThat(frames.get(0)).contains("\"content\":\"好的\"").contains("executeQuery");
+        assertThat(frames.get(1)).contains("\"content\":\"结果\"").contains("\"tools\":[]");
+    }
+
+    private static ChatResponse chunk(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+}
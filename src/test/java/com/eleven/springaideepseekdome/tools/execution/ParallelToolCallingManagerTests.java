@@ -0,0 +1,209 @@
+package com.eleven.springaideepseekdome.tools.execution;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.StaticToolCallbackResolver;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelToolCallingManagerTests {
+
+    private ParallelToolCallingManager manager;
+
+    @AfterEach
+    void tearDown() {
+        manager.destroy();
+    }
+
+    @Test
+    void toolCallsRunConcurrentlyAndKeepOrder() {
+        manager = newManager(Duration.ofSeconds(5), Map.of());
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt(sleepingTool("slow", 1000), sleepingTool("fast", 100),
+                sleepingTool("medium", 500)), response("slow", "fast", "medium"));
+
+        ToolResponseMessage message = (ToolResponseMessage) result.conversationHistory().get(2);
+        assertThat(message.getResponses()).extracting(ToolResponseMessage.ToolResponse::name)
+                .containsExactly("slow", "fast", "medium");
+        assertThat(message.getResponses()).extracting(ToolResponseMessage.ToolResponse::responseData)
+                .containsExactly("slow-done", "fast-done", "medium-done");
+        // 串行执行至少需要 1600 ms
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1400));
+        @SuppressWarnings("unchecked")
+        Map<String, Long> latency = (Map<String, Long>) message.getMetadata().get(ParallelToolCallingManager.METADATA_TOOL_LATENCY);
+        assertThat(latency).containsOnlyKeys("id-slow", "id-fast", "id-medium");
+        assertThat(latency.get("id-slow")).isGreaterThanOrEqualTo(1000);
+        assertThat(latency.values().stream().mapToLong(Long::longValue).sum()).isGreaterThanOrEqualTo(1600);
+        assertThat(result.conversationHistory()).hasSize(3);
+    }
+
+    @Test
+    void timedOutToolReturnsExplanationWithoutFailingTurn() {
+        manager = newManager(Duration.ofSeconds(5), Map.of("slow", Duration.ofMillis(100)));
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt(sleepingTool("slow", 2000), sleepingTool("fast", 10)),
+                response("slow", "fast"));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        ToolResponseMessage message = (ToolResponseMessage) result.conversationHistory().get(2);
+        assertThat(message.getResponses().get(0).responseData()).contains("执行超时");
+        assertThat(message.getResponses().get(1).responseData()).isEqualTo("fast-done");
+    }
+
+    @Test
+    void reactiveToolsRunWithoutExecutorThreads() {
+        manager = newManager(Duration.ofSeconds(5), Map.of(), 1);
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt(delayedTool("a", 500), delayedTool("b", 500),
+                delayedTool("c", 500)), response("a", "b", "c"));
+
+        // 线程池只有 1 个线程，若占用线程执行则至少需要 1500 ms
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1200));
+        ToolResponseMessage message = (ToolResponseMessage) result.conversationHistory().get(2);
+        assertThat(message.getResponses()).extracting(ToolResponseMessage.ToolResponse::responseData)
+                .containsExactly("a-done", "b-done", "c-done");
+    }
+
+    @Test
+    void asyncExecutionDoesNotBlockNonBlockingThreads() {
+        manager = newManager(Duration.ofSeconds(5), Map.of("slow", Duration.ofMillis(100)), 1);
+        // 在 Reactor 非阻塞线程上订阅：任何阻塞等待都会抛出异常
+        ToolExecutionResult result = manager.executeToolCallsAsync(prompt(delayedTool("a", 200), sleepingTool("b", 50),
+                        sleepingTool("slow", 2000)), response("a", "b", "slow"))
+                .subscribeOn(Schedulers.parallel())
+                .block(Duration.ofSeconds(3));
+
+        ToolResponseMessage message = (ToolResponseMessage) result.conversationHistory().get(2);
+        assertThat(message.getResponses().get(0).responseData()).isEqualTo("a-done");
+        assertThat(message.getResponses().get(1).responseData()).isEqualTo("b-done");
+        assertThat(message.getResponses().get(2).responseData()).contains("执行超时");
+    }
+
+    @Test
+    void toolTimeoutIsVisibleInsideSyncTool() {
+        manager = newManager(Duration.ofSeconds(5), Map.of("probe", Duration.ofSeconds(2)));
+        AtomicReference<Duration> seen = new AtomicReference<>();
+        ToolDefinition definition = DefaultToolDefinition.builder()
+                .name("probe")
+                .description("probe")
+                .inputSchema("{}")
+                .build();
+        ToolCallback probe = new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                seen.set(ToolDeadline.remaining());
+                return "probe-done";
+            }
+        };
+
+        manager.executeToolCalls(prompt(probe), response("probe"));
+
+        // 工具内部读到的剩余时间不超过该工具的超时；调用结束后执行线程上不再残留截止时间
+        assertThat(seen.get()).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(2));
+        assertThat(ToolDeadline.remaining()).isNull();
+    }
+
+    private ParallelToolCallingManager newManager(Duration timeout, Map<String, Duration> toolTimeouts) {
+        return newManager(timeout, toolTimeouts, 4);
+    }
+
+    private ParallelToolCallingManager newManager(Duration timeout, Map<String, Duration> toolTimeouts, int maxThreads) {
+        StaticToolCallbackResolver resolver = new StaticToolCallbackResolver(List.of());
+        DefaultToolExecutionExceptionProcessor processor = DefaultToolExecutionExceptionProcessor.builder().build();
+        DefaultToolCallingManager delegate = DefaultToolCallingManager.builder()
+                .toolCallbackResolver(resolver)
+                .toolExecutionExceptionProcessor(processor)
+                .build();
+        return new ParallelToolCallingManager(delegate, resolver, processor, ObservationRegistry.NOOP, null,
+                maxThreads, 16, timeout, toolTimeouts);
+    }
+
+    private static Prompt prompt(ToolCallback... callbacks) {
+        return new Prompt(List.of(new UserMessage("统计一下")),
+                ToolCallingChatOptions.builder().toolCallbacks(callbacks).build());
+    }
+
+    private static ChatResponse response(String... toolNames) {
+        List<AssistantMessage.ToolCall> toolCalls = Arrays.stream(toolNames)
+                .map(name -> new AssistantMessage.ToolCall("id-" + name, "function", name, "{}"))
+                .toList();
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), toolCalls))));
+    }
+
+    private static ToolCallback delayedTool(String name, long millis) {
+        ToolDefinition definition = DefaultToolDefinition.builder()
+                .name(name)
+                .description(name)
+                .inputSchema("{}")
+                .build();
+        return new ReactiveToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public Mono<String> callAsync(String toolInput, ToolContext toolContext) {
+                return Mono.delay(Duration.ofMillis(millis)).thenReturn(name + "-done");
+            }
+        };
+    }
+
+    private static ToolCallback sleepingTool(String name, long millis) {
+        ToolDefinition definition = DefaultToolDefinition.builder()
+                .name(name)
+                .description(name)
+                .inputSchema("{}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return call(toolInput, null);
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return "interrupted";
+                }
+                return name + "-done";
+            }
+        };
+    }
+}
@@ -0,0 +1,204 @@
+package com.eleven.springaideepseekdome.tools.execution;
+
+import com.eleven.springaideepseekdome.limit.AdaptiveConcurrencyLimiter;
+import com.eleven.springaideepseekdome.limit.LimitedChatModel;
+import com.eleven.springaideepseekdome.retry.RetryBudget;
+import com.eleven.springaideepseekdome.retry.RetryEngine;
+import com.eleven.springaideepseekdome.retry.RetryingChatModel;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolLoopChatModelTests {
+
+    private final AtomicInteger toolCalls = new AtomicInteger();
+    private final List<Prompt> modelPrompts = new CopyOnWriteArrayList<>();
+    private Runnable onToolCall = () -> {
+    };
+
+    @Test
+    void retryResendsOnlyTheFailedRound() {
+        AtomicInteger secondRoundAttempts = new AtomicInteger();
+        ChatModel model = scripted(prompt -> {
+            if (!hasToolResponse(prompt)) {
+                return toolCallResponse(new DefaultUsage(10, 2));
+            }
+            if (secondRoundAttempts.incrementAndGet() == 1) {
+                throw new TransientAiException("503 - overloaded");
+            }
+            return textResponse("共 3 门课程", new DefaultUsage(20, 3));
+        });
+        RetryEngine retryEngine = new RetryEngine(true, Duration.ofMillis(5), Duration.ofMillis(20), 2.0, new RetryBudget(0.1, 20));
+        List<Integer> roundPromptTokens = new CopyOnWriteArrayList<>();
+        ChatModel loop = new ToolLoopChatModel(
+                new RetryingChatModel("deepseek", model, retryEngine, 3, Duration.ofSeconds(5)), toolCallingManager(),
+                List.of((prompt, round) -> roundPromptTokens.add(round.getMetadata().getUsage().getPromptTokens())));
+
+        ChatResponse response = loop.call(prompt());
+
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("共 3 门课程");
+        assertThat(toolCalls).hasValue(1);
+        assertThat(modelPrompts).hasSize(3);
+        assertThat(modelPrompts).allSatisfy(prompt -> assertThat(
+                ToolCallingChatOptions.isInternalToolExecutionEnabled(prompt.getOptions())).isFalse());
+        // 监听器收到每轮的原始用量，同步调用返回各轮累计用量
+        assertThat(roundPromptTokens).containsExactly(10, 20);
+        assertThat(response.getMetadata().getUsage().getPromptTokens()).isEqualTo(30);
+        assertThat(response.getMetadata().getUsage().getCompletionTokens()).isEqualTo(5);
+    }
+
+    @Test
+    void streamRunsToolsBetweenRounds() {
+        ChatModel model = scripted(prompt -> {
+            throw new UnsupportedOperationException();
+        }, prompt -> hasToolResponse(prompt)
+                ? Flux.just(textResponse("共 3 ", null), textResponse("门课程", new DefaultUsage(20, 3)))
+                : Flux.just(toolCallResponse(new DefaultUsage(10, 2))));
+
+        List<String> texts = new ToolLoopChatModel(model, toolCallingManager()).stream(prompt())
+                .map(chunk -> chunk.getResult().getOutput().getText())
+                .collectList()
+                .block();
+
+        assertThat(texts).containsExactly("共 3 ", "门课程");
+        assertThat(toolCalls).hasValue(1);
+        assertThat(modelPrompts).hasSize(2);
+    }
+
+    @Test
+    void modelPermitIsReleasedWhileToolsRun() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("model.test", 1, 1, 1,
+                0, Duration.ofMillis(100), 2.0, 0.2, 0.05);
+        List<Integer> inFlightDuringTools = new CopyOnWriteArrayList<>();
+        onToolCall = () -> inFlightDuringTools.add(limiter.getInFlight());
+        ChatModel model = scripted(prompt -> hasToolResponse(prompt)
+                ? textResponse("共 3 门课程", null)
+                : toolCallResponse(null));
+        ChatModel loop = new ToolLoopChatModel(new LimitedChatModel(model, limiter), toolCallingManager());
+
+        loop.call(prompt());
+        loop.stream(prompt()).blockLast();
+
+        assertThat(inFlightDuringTools).containsExactly(0, 0);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void promptWithInternalExecutionDisabledIsForwardedAsIs() {
+        ChatModel model = scripted(prompt -> toolCallResponse(null));
+        Prompt prompt = new Prompt(List.of(new UserMessage("有几门课程")), ToolCallingChatOptions.builder()
+                .toolCallbacks(countingTool())
+                .internalToolExecutionEnabled(false)
+                .build());
+
+        ChatResponse response = new ToolLoopChatModel(model, toolCallingManager()).call(prompt);
+
+        assertThat(response.hasToolCalls()).isTrue();
+        assertThat(toolCalls).hasValue(0);
+        assertThat(modelPrompts).containsExactly(prompt);
+    }
+
+    private Prompt prompt() {
+        return new Prompt(List.of(new UserMessage("有几门课程")),
+                ToolCallingChatOptions.builder().toolCallbacks(countingTool()).build());
+    }
+
+    private ChatModel scripted(Function<Prompt, ChatResponse> call) {
+        return scripted(call, prompt -> Flux.just(call.apply(prompt)));
+    }
+
+    private ChatModel scripted(Function<Prompt, ChatResponse> call, Function<Prompt, Flux<ChatResponse>> stream) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                modelPrompts.add(prompt);
+                return call.apply(prompt);
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                modelPrompts.add(prompt);
+                return stream.apply(prompt);
+            }
+        };
+    }
+
+    private static boolean hasToolResponse(Prompt prompt) {
+        return prompt.getInstructions().stream().anyMatch(message -> message.getMessageType() == MessageType.TOOL);
+    }
+
+    private static ChatResponse toolCallResponse(DefaultUsage usage) {
+        AssistantMessage message = new AssistantMessage("", Map.of(), List.of(
+                new AssistantMessage.ToolCall("call_1", "function", "countCourses", "{}")));
+        return response(message, usage);
+    }
+
+    private static ChatResponse textResponse(String text, DefaultUsage usage) {
+        return response(new AssistantMessage(text), usage);
+    }
+
+    private static ChatResponse response(AssistantMessage message, DefaultUsage usage) {
+        ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder().model("deepseek-chat");
+        if (usage != null) {
+            metadata.usage(usage);
+        }
+        return ChatResponse.builder()
+                .generations(List.of(new Generation(message)))
+                .metadata(metadata.build())
+                .build();
+    }
+
+    private static DefaultToolCallingManager toolCallingManager() {
+        return DefaultToolCallingManager.builder().build();
+    }
+
+    private ToolCallback countingTool() {
+        ToolDefinition definition = DefaultToolDefinition.builder()
+                .name("countCourses")
+                .description("统计课程数")
+                .inputSchema("{}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return call(toolInput, null);
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                toolCalls.incrementAndGet();
+                onToolCall.run();
+                return "3";
+            }
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package com.eleven.springaideepseekdome.tools.schema;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SchemaRelevanceIndexTests {
+
+    private SchemaRelevanceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        SchemaSnapshot snapshot = SchemaSnapshot.of(1, "fp", List.of(
+                table("t_course", "课程表",
+                        column("course_id", "课程ID"), column("course_name", "课程名称"), column("school_id", "学校ID")),
+                table("t_course_lessons", "课节表",
+                        column("lesson_id", "课节ID"), column("course_id", "课程ID"), column("status", "课节状态")),
+                table("t_school", "学校表",
+                        column("school_id", "学校ID"), column("school_name", "学校名称")),
+                table("t_order", "订单表",
+                        column("order_no", "订单编号"), column("amount", "订单金额"))));
+        SchemaSnapshotCache cache = mock(SchemaSnapshotCache.class);
+        when(cache.getSnapshot()).thenReturn(snapshot);
+        index = new SchemaRelevanceIndex(cache, 5, 5);
+    }
+
+    @Test
+    void chineseQuestionRanksMatchingTableFirstAndAddsBusinessKeyNeighbours() {
+        List<SchemaRelevanceIndex.Match> matches = index.search("查询课节状态为2的课节数", 1);
+
+        assertThat(matches).extracting(m -> m.table().name()).containsExactly("t_course_lessons", "t_course");
+        assertThat(matches.get(1).neighbour()).isTrue();
+    }
+
+    @Test
+    void englishIdentifiersAreSplitIntoWords() {
+        assertThat(SchemaRelevanceIndex.tokenize("t_course orderNo 课程"))
+                .containsExactly("course", "order", "no", "课程");
+        assertThat(index.search("order amount", 1)).extracting(m -> m.table().name()).containsExactly("t_order");
+    }
+
+    @Test
+    void unrelatedQuestionReturnsNothing() {
+        assertThat(index.search("天气", 3)).isEmpty();
+        assertThat(SchemaRelevanceIndex.render(List.of())).contains("未找到相关的表");
+    }
+
+    private static SchemaSnapshot.Table table(String name, String comment, SchemaSnapshot.Column... columns) {
+        return new SchemaSnapshot.Table(name, comment, List.of(columns), List.of());
+    }
+
+    private static SchemaSnapshot.Column column(String name, String comment) {
+        return new SchemaSnapshot.Column(name, "varchar(32)", true, comment);
+    }
+}
@@ -0,0 +1,123 @@
+package com.eleven.springaideepseekdome.tools.schema;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SchemaSnapshotCacheTests {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final AtomicReference<String> fingerprint = new AtomicReference<>("1:100/3:200/1:300");
+    private final AtomicReference<String> tableName = new AtomicReference<>("t_course");
+    private final AtomicInteger fingerprintQueries = new AtomicInteger();
+    private final AtomicInteger tableQueries = new AtomicInteger();
+    private SchemaSnapshotCache cache;
+
+    @BeforeEach
+    void setUp() {
+        // 指纹查询返回当前指纹，TABLES 查询返回一张表，COLUMNS / STATISTICS 查询为空
+        when(jdbcTemplate.queryForObject(anyString(), ArgumentMatchers.<RowMapper<String>>any())).thenAnswer(invocation -> {
+            fingerprintQueries.incrementAndGet();
+            String value = fingerprint.get();
+            if (value == null) {
+                throw new QueryTimeoutException("指纹查询超时");
+            }
+            return value;
+        });
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            if (sql.contains("INFORMATION_SCHEMA.TABLES")) {
+                tableQueries.incrementAndGet();
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("TABLE_NAME")).thenReturn(tableName.get());
+                when(rs.getString("TABLE_COMMENT")).thenReturn("课程表");
+                invocation.<RowCallbackHandler>getArgument(1).processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        cache = new SchemaSnapshotCache(jdbcTemplate, eventPublisher, Duration.ofHours(1));
+    }
+
+    @Test
+    void snapshotIsLoadedOnceAndServedFromMemory() {
+        assertThat(cache.peek()).isNull();
+
+        SchemaSnapshot first = cache.getSnapshot();
+        SchemaSnapshot second = cache.getSnapshot();
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.version()).isEqualTo(1);
+        assertThat(first.tables()).extracting(SchemaSnapshot.Table::name).containsExactly("t_course");
+        assertThat(cache.getRenderedSnapshot()).contains("t_course").contains("课程表");
+        assertThat(fingerprintQueries).hasValue(1);
+        assertThat(tableQueries).hasValue(1);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        assertThat(registry.get("ai.schema.snapshot.requests").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("ai.schema.snapshot.requests").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void unchangedFingerprintKeepsSnapshot() {
+        SchemaSnapshot loaded = cache.getSnapshot();
+
+        cache.invalidate();
+        SchemaSnapshot revalidated = cache.getSnapshot();
+
+        assertThat(revalidated).isSameAs(loaded);
+        assertThat(fingerprintQueries).hasValue(2);
+        assertThat(tableQueries).hasValue(1);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void changedFingerprintReloadsAndPublishesEvent() {
+        SchemaSnapshot loaded = cache.getSnapshot();
+
+        fingerprint.set("2:150/5:260/2:310");
+        tableName.set("t_school");
+        cache.invalidate();
+        SchemaSnapshot reloaded = cache.getSnapshot();
+
+        assertThat(reloaded.version()).isEqualTo(loaded.version() + 1);
+        assertThat(reloaded.fingerprint()).isEqualTo("2:150/5:260/2:310");
+        assertThat(reloaded.tables()).extracting(SchemaSnapshot.Table::name).containsExactly("t_school");
+        assertThat(cache.peek()).isSameAs(reloaded);
+        verify(eventPublisher).publishEvent(new SchemaChangedEvent(1, 2));
+    }
+
+    @Test
+    void failedValidationKeepsServingOldSnapshot() {
+        SchemaSnapshot loaded = cache.getSnapshot();
+
+        fingerprint.set(null);
+        cache.invalidate();
+
+        assertThat(cache.getSnapshot()).isSameAs(loaded);
+        // 失败后记录校验时间，校验间隔内不再重试
+        assertThat(cache.getSnapshot()).isSameAs(loaded);
+        assertThat(fingerprintQueries).hasValue(2);
+    }
+}
@@ -0,0 +1,92 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedResultSetExtractorTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bounded_extractor_" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE t_course (id INT PRIMARY KEY, name VARCHAR(200))");
+        jdbcTemplate.update("INSERT INTO t_course VALUES (1, 'Java 基础'), (2, 'MySQL 索引'), (3, 'Spring AI')");
+    }
+
+    @Test
+    void smallResultIsEncodedAsColumnarJson() throws Exception {
+        QueryResult result = extract(new BoundedResultSetExtractor(10, 4096, 1));
+
+        assertThat(result.truncated()).isFalse();
+        assertThat(result.truncation()).isNull();
+        assertThat(result.rowCount()).isEqualTo(3);
+        assertThat(result.columns()).containsExactly("id", "name");
+        assertThat(result.sample()).containsExactly(Map.of("id", 1, "name", "Java 基础"));
+
+        JsonNode json = objectMapper.readTree(result.json());
+        assertThat(json.get("rows").toString()).isEqualTo("[[1,\"Java 基础\"],[2,\"MySQL 索引\"],[3,\"Spring AI\"]]");
+        assertThat(json.get("rowCount").asInt()).isEqualTo(3);
+        assertThat(json.get("truncated").asBoolean()).isFalse();
+        assertThat(json.has("truncation")).isFalse();
+    }
+
+    @Test
+    void rowLimitStopsReadingAndExplainsTruncation() throws Exception {
+        QueryResult result = extract(new BoundedResultSetExtractor(2, 4096));
+
+        assertThat(result.truncated()).isTrue();
+        assertThat(result.rowCount()).isEqualTo(2);
+        assertThat(result.truncation())
+                .isEqualTo("结果已截断：返回 2 行，实际至少 3 行（超过行数上限 2），请增加过滤条件、LIMIT 或改用聚合查询");
+
+        JsonNode json = objectMapper.readTree(result.json());
+        assertThat(json.get("rows")).hasSize(2);
+        assertThat(json.get("truncated").asBoolean()).isTrue();
+        assertThat(json.get("truncation").asText()).isEqualTo(result.truncation());
+    }
+
+    @Test
+    void byteBudgetStopsReadingAndExplainsTruncation() throws Exception {
+        long firstRowBytes = 2 + (BoundedResultSetExtractor.estimateBytes(1) + 1)
+                + (BoundedResultSetExtractor.estimateBytes("Java 基础") + 1);
+        QueryResult result = extract(new BoundedResultSetExtractor(10, firstRowBytes + 1));
+
+        assertThat(result.truncated()).isTrue();
+        assertThat(result.rowCount()).isEqualTo(1);
+        assertThat(result.truncation()).isEqualTo("结果已截断：返回 1 行，实际至少 2 行（超过结果大小上限 "
+                + (firstRowBytes + 1) + " 字节），请减少查询列或增加过滤条件");
+        assertThat(objectMapper.readTree(result.json()).get("rows")).hasSize(1);
+    }
+
+    @Test
+    void firstRowIsKeptEvenWhenOverBudget() {
+        QueryResult result = extract(new BoundedResultSetExtractor(10, 1));
+
+        assertThat(result.rowCount()).isEqualTo(1);
+        assertThat(result.truncated()).isTrue();
+    }
+
+    @Test
+    void stringSizeIsEstimatedInUtf8Bytes() {
+        // 两侧引号 2 字节 + ASCII 1 字节 + 中文 3 字节
+        assertThat(BoundedResultSetExtractor.estimateBytes("ab")).isEqualTo(4);
+        assertThat(BoundedResultSetExtractor.estimateBytes("课程")).isEqualTo(8);
+        assertThat(BoundedResultSetExtractor.estimateBytes(null)).isEqualTo(4);
+    }
+
+    private QueryResult extract(BoundedResultSetExtractor extractor) {
+        return jdbcTemplate.query("SELECT id, name FROM t_course ORDER BY id", extractor);
+    }
+}
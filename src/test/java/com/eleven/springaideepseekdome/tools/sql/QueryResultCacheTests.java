@@ -0,0 +1,62 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import com.eleven.springaideepseekdome.tools.schema.SchemaSnapshotCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class QueryResultCacheTests {
+
+    private final QueryResultCache cache = new QueryResultCache(mock(SchemaSnapshotCache.class), true,
+            Duration.ofMinutes(1), Duration.ofMinutes(10), 1 << 20);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void equivalentQueriesAreServedFromCache() {
+        cache.get("SELECT * FROM t_course WHERE status = ?", new Object[]{2}, loader());
+        cache.get("select *\nfrom t_course   where status=? ;", new Object[]{2}, loader());
+        cache.get("SELECT * FROM t_course WHERE status = ?", new Object[]{3}, loader());
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void identifierCaseIsNotFolded() {
+        cache.get("SELECT * FROM t_course", null, loader());
+        cache.get("SELECT * FROM T_COURSE", null, loader());
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void binaryParametersAreComparedByContent() {
+        cache.get("SELECT * FROM t_file WHERE hash = ?", new Object[]{new byte[]{1, 2, 3}}, loader());
+        cache.get("SELECT * FROM t_file WHERE hash = ?", new Object[]{new byte[]{1, 2, 3}}, loader());
+        cache.get("SELECT * FROM t_file WHERE hash = ?", new Object[]{new byte[]{1, 2, 4}}, loader());
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void volatileFunctionsAreNeverCached() {
+        cache.get("SELECT NOW()", null, loader());
+        cache.get("SELECT NOW()", null, loader());
+        cache.get("SELECT * FROM t_course WHERE created_at > Unix_Timestamp() - 60", null, loader());
+        cache.get("SELECT * FROM t_course WHERE created_at > Unix_Timestamp() - 60", null, loader());
+
+        assertThat(loads).hasValue(4);
+    }
+
+    private Supplier<QueryResult> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            return new QueryResult(List.of("id"), 1, false, null, "{\"columns\":[\"id\"],\"rows\":[[1]]}", List.of());
+        };
+    }
+}
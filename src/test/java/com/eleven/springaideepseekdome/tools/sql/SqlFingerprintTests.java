@@ -0,0 +1,50 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+class SqlFingerprintTests {
+
+    static Stream<Arguments> sameQuery() {
+        return Stream.of(
+                // 关键字大小写、空白与末尾分号
+                arguments("SELECT * FROM t_course WHERE status = 2", "select *  from t_course\n where status=2;"),
+                arguments("SELECT COUNT(*) FROM t_course", "select count( * ) from t_course"),
+                // 注释
+                arguments("SELECT id FROM t_course", "SELECT /* 课程 */ id FROM t_course -- 全部"),
+                arguments("SELECT id FROM t_course", "SELECT id # 主键\nFROM t_course"),
+                arguments("SHOW TABLES", "show   tables;")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("sameQuery")
+    void equivalentQueriesShareFingerprint(String sql, String variant) {
+        assertThat(SqlFingerprint.of(variant)).isEqualTo(SqlFingerprint.of(sql));
+    }
+
+    static Stream<Arguments> differentQuery() {
+        return Stream.of(
+                // 表名在 Linux 上区分大小写
+                arguments("SELECT * FROM t_course", "SELECT * FROM T_Course"),
+                // 列别名决定结果列名
+                arguments("SELECT id AS courseId FROM t_course", "SELECT id AS courseid FROM t_course"),
+                arguments("SELECT `Name` FROM t_course", "SELECT `name` FROM t_course"),
+                // 字符串字面量
+                arguments("SELECT * FROM t_course WHERE name = 'Java'", "SELECT * FROM t_course WHERE name = 'java'"),
+                arguments("SELECT * FROM t_course WHERE status = 2", "SELECT * FROM t_course WHERE status = 3")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("differentQuery")
+    void identifiersAndLiteralsKeepTheirCase(String sql, String variant) {
+        assertThat(SqlFingerprint.of(variant)).isNotEqualTo(SqlFingerprint.of(sql));
+    }
+}
@@ -0,0 +1,52 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlLexerTests {
+
+    @Test
+    void splitsTokensAndSkipsComments() {
+        assertThat(tokens("SELECT `a b`, 'x;y' -- c\n FROM t # d\n; /* e */ SHOW"))
+                .containsExactly("WORD:SELECT", "QUOTED_IDENTIFIER:`a b`", "SYMBOL:,", "STRING:'x;y'",
+                        "WORD:FROM", "WORD:t", "SEMICOLON:;", "WORD:SHOW");
+    }
+
+    @Test
+    void executableCommentContentIsLexedAsSql() {
+        assertThat(tokens("SELECT /*!40101 DROP */ 1"))
+                .containsExactly("WORD:SELECT", "WORD:DROP", "WORD:1");
+    }
+
+    @Test
+    void escapedQuotesStayInsideString() {
+        assertThat(tokens("SELECT 'a''b', \"c\\\"d\", 'unterminated"))
+                .containsExactly("WORD:SELECT", "STRING:'a''b'", "SYMBOL:,", "STRING:\"c\\\"d\"",
+                        "SYMBOL:,", "STRING:'unterminated");
+    }
+
+    @Test
+    void keywordAndIdentifierMatchingIgnoresCaseAndBackticks() {
+        SqlLexer lexer = new SqlLexer("select `Ai_Chat_Memory`");
+        lexer.next();
+        assertThat(lexer.isKeyword("SELECT")).isTrue();
+        assertThat(lexer.isKeyword("SEL")).isFalse();
+        lexer.next();
+        assertThat(lexer.precededBySpace()).isTrue();
+        assertThat(lexer.isIdentifier("ai_chat_memory")).isTrue();
+        assertThat(lexer.isKeyword("ai_chat_memory")).isFalse();
+    }
+
+    private static List<String> tokens(String sql) {
+        SqlLexer lexer = new SqlLexer(sql);
+        List<String> tokens = new ArrayList<>();
+        for (SqlLexer.TokenType type = lexer.next(); type != SqlLexer.TokenType.EOF; type = lexer.next()) {
+            tokens.add(type + ":" + lexer.text());
+        }
+        return tokens;
+    }
+}
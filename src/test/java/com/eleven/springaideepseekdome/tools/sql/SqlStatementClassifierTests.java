@@ -0,0 +1,88 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+class SqlStatementClassifierTests {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT * FROM t_course",
+            "  select count(*) from t_course where status = 2",
+            "SHOW TABLES",
+            "DESC t_course",
+            "EXPLAIN SELECT * FROM t_course",
+            "WITH c AS (SELECT * FROM t_course) SELECT * FROM c",
+            // 字符串中的关键字与分号
+            "SELECT * FROM t_log WHERE action = 'DROP TABLE t_course'",
+            "SELECT \"delete\" AS label",
+            "SELECT 'it''s; DROP TABLE t' AS s",
+            "SELECT 'a\\'; DELETE FROM t' AS s",
+            // 反引号标识符
+            "SELECT `update`, `delete` FROM `t_course`",
+            // 普通注释
+            "SELECT 1 /* DROP TABLE t */",
+            "SELECT 1 # DROP TABLE t",
+            "SELECT 1 -- DROP TABLE t",
+            "SELECT 1 --\nFROM dual",
+            // 多条只读语句与结尾分号
+            "SELECT 1; SELECT 2;",
+            // 内部表名只出现在字符串中（元数据查询）
+            "SELECT * FROM information_schema.tables WHERE table_name = 'ai_chat_memory'"
+    })
+    void acceptsReadOnlyStatements(String sql) {
+        assertThat(SqlStatementClassifier.isReadOnly(sql)).isTrue();
+    }
+
+    static Stream<Arguments> rejectedStatements() {
+        return Stream.of(
+                // 非只读语句
+                arguments("UPDATE t_course SET status = 1", "非法操作类型"),
+                arguments("insert into t_course values (1)", "非法操作类型"),
+                arguments("(SELECT 1)", "非法操作类型"),
+                arguments("'SELECT' 1", "非法操作类型"),
+                // 堆叠语句
+                arguments("SELECT 1; DROP TABLE t_course", "非法操作类型"),
+                arguments("SELECT 1;DELETE FROM t_course", "非法操作类型"),
+                arguments("SELECT ';'; DROP TABLE t_course", "非法操作类型"),
+                // 可写 CTE 与锁定读
+                arguments("WITH c AS (SELECT 1) DELETE FROM t_course", "DELETE"),
+                arguments("SELECT * FROM t_course FOR UPDATE", "UPDATE"),
+                arguments("SELECT * FROM t_course LOCK IN SHARE MODE", "LOCK"),
+                // 文件读写
+                arguments("SELECT * FROM t_course INTO OUTFILE '/tmp/course.csv'", "OUTFILE"),
+                arguments("SELECT course_name INTO DUMPFILE '/tmp/x' FROM t_course", "DUMPFILE"),
+                arguments("SELECT LOAD_FILE('/etc/passwd')", "LOAD_FILE"),
+                // 可执行注释中的内容会被服务端执行
+                arguments("SELECT 1 /*! ; DROP TABLE t_course */", "非法操作类型"),
+                arguments("SELECT 1 /*!50000 UNION SELECT LOAD_FILE('/etc/passwd') */", "LOAD_FILE"),
+                arguments("/*!UPDATE*/ t_course SET status = 1", "非法操作类型"),
+                // 没有空格的 -- 不是注释
+                arguments("SELECT 1 --DELETE", "DELETE"),
+                // 内部表
+                arguments("SELECT * FROM ai_chat_memory", "ai_chat_memory"),
+                arguments("SELECT * FROM `AI_CHAT_MEMORY_ARCHIVE`", "ai_chat_memory_archive"),
+                arguments("SELECT content FROM db_study.ai_chat_memory WHERE 1 = 1", "ai_chat_memory"),
+                // 空语句
+                arguments("", "空语句"),
+                arguments(" ; -- 注释", "空语句")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("rejectedStatements")
+    void rejectsUnsafeStatements(String sql, String reason) {
+        assertThat(SqlStatementClassifier.isReadOnly(sql)).isFalse();
+        assertThatThrownBy(() -> SqlStatementClassifier.validateReadOnly(sql))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(reason);
+    }
+}
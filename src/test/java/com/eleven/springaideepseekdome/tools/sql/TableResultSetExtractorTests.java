@@ -0,0 +1,107 @@
+package com.eleven.springaideepseekdome.tools.sql;
+
+import com.eleven.springaideepseekdome.tools.sql.TableResultSetExtractor.Format;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TableResultSetExtractorTests {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:table_extractor_" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE t_course (id INT PRIMARY KEY, name VARCHAR(200), teacher VARCHAR(50))");
+        jdbcTemplate.update("INSERT INTO t_course VALUES (1, 'Java | 基础', '张老师'), (2, 'MySQL, \"索引\"', NULL), "
+                + "(3, '多行\n描述', '李老师')");
+    }
+
+    @Test
+    void markdownEscapesPipesAndNewlines() {
+        String table = extract(new TableResultSetExtractor(Format.MARKDOWN, 10, 4096, 100));
+
+        assertThat(table).isEqualTo("""
+                | id | name | teacher |
+                |---|---|---|
+                | 1 | Java \\| 基础 | 张老师 |
+                | 2 | MySQL, "索引" | NULL |
+                | 3 | 多行 描述 | 李老师 |
+                """);
+    }
+
+    @Test
+    void csvQuotesSeparatorsAndLeavesNullEmpty() {
+        String table = extract(new TableResultSetExtractor(Format.CSV, 10, 4096, 100));
+
+        assertThat(table).isEqualTo("""
+                id,name,teacher
+                1,Java | 基础,张老师
+                2,"MySQL, ""索引\"\"",
+                3,"多行
+                描述",李老师
+                """);
+    }
+
+    @Test
+    void rowLimitAppendsTruncationNote() {
+        TableResultSetExtractor extractor = new TableResultSetExtractor(Format.MARKDOWN, 2, 4096, 100);
+        String table = extract(extractor);
+
+        assertThat(extractor.getRowCount()).isEqualTo(2);
+        assertThat(table).doesNotContain("| 3 |")
+                .endsWith("\n> 结果已截断：显示 2 行，实际至少 3 行（超过行数上限 2）\n");
+    }
+
+    @Test
+    void byteLimitCountsEncodedBytes() {
+        // 表头 + 第 1 行共 72 个 UTF-8 字节（54 个字符），第 2 行 28 字节
+        String header = "| id | name | teacher |\n|---|---|---|\n";
+        String firstRow = "| 1 | Java \\| 基础 | 张老师 |\n";
+        long firstBytes = (header + firstRow).getBytes(StandardCharsets.UTF_8).length;
+        assertThat(firstBytes).isGreaterThan((header + firstRow).length());
+
+        // 按字符数可以容纳前两行，按字节数只能容纳第 1 行
+        TableResultSetExtractor extractor = new TableResultSetExtractor(Format.MARKDOWN, 10, firstBytes + 20, 100);
+        String table = extract(extractor);
+
+        assertThat(extractor.getRowCount()).isEqualTo(1);
+        assertThat(table).startsWith(header + firstRow)
+                .contains("结果已截断：显示 1 行，实际至少 2 行（超过结果大小上限 " + (firstBytes + 20) + " 字节）");
+    }
+
+    @Test
+    void firstRowIsKeptEvenWhenOverLimit() {
+        TableResultSetExtractor extractor = new TableResultSetExtractor(Format.CSV, 10, 1, 100);
+        String table = extract(extractor);
+
+        assertThat(extractor.getRowCount()).isEqualTo(1);
+        assertThat(table).startsWith("id,name,teacher\n1,Java | 基础,张老师\n# 结果已截断");
+    }
+
+    @Test
+    void longCellsAreCutAtWidthLimit() {
+        String table = extract(new TableResultSetExtractor(Format.MARKDOWN, 1, 4096, 4));
+
+        assertThat(table).contains("| 1 | Java… | 张老师 |");
+    }
+
+    @Test
+    void emptyResultIsReportedAsNoData() {
+        String table = jdbcTemplate.query("SELECT * FROM t_course WHERE id > 100",
+                new TableResultSetExtractor(Format.MARKDOWN, 10, 4096, 100));
+
+        assertThat(table).isEqualTo("无数据");
+    }
+
+    private String extract(TableResultSetExtractor extractor) {
+        return jdbcTemplate.query("SELECT id, name, teacher FROM t_course ORDER BY id", extractor);
+    }
+}